@@ -19,25 +19,76 @@ import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.LifecycleListener;
 import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.cleanup.CleanUpManager;
+import org.pageseeder.ox.cleanup.CleanUpMode;
+import org.pageseeder.ox.core.ModelRegistry;
 import org.pageseeder.ox.core.StepJob;
+import org.pageseeder.ox.core.StepResultCache;
+import org.pageseeder.ox.metrics.Metrics;
+import org.pageseeder.ox.process.FairShareJobScheduler;
+import org.pageseeder.ox.process.FifoJobScheduler;
+import org.pageseeder.ox.process.FileJobStore;
+import org.pageseeder.ox.process.JobStore;
+import org.pageseeder.ox.process.PipelineJobManager;
+import org.pageseeder.ox.process.PipelineJobScheduler;
+import org.pageseeder.ox.process.StepJobManager;
+import org.pageseeder.ox.process.StepJobQueue;
+import org.pageseeder.ox.util.BoundedCache;
+import org.pageseeder.ox.util.XSLT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * The life cycle listener for OX.
  *
  * - Start the Clean Up Manager: Responsible to delete the files creadted by OX
+ * - Stop the threads processing the jobs and their steps when OX stops.
+ * - Configure how the jobs are executed: Berlioz config (ox2.executor.mode) is either "pool" (default)
+ *   or "virtual", and (ox2.executor.max-concurrent-jobs) limits the jobs running at the same time in virtual mode.
+ * - Configure the order of the waiting jobs: Berlioz config (ox2.scheduler) is either "fifo" (default), "fair-share"
+ *   or the class name of a {@link PipelineJobScheduler}.
+ * - Configure where the pipeline jobs are persisted: Berlioz config (ox2.job-store) is either "none" (default),
+ *   "file" to save them in the package directories or the class name of a {@link JobStore} with a public
+ *   constructor without arguments (for example org.pageseeder.ox.sql.core.SqliteJobStore). When a job store is
+ *   configured, the pipeline job manager is started with OX so that the saved jobs are recovered straight away.
+ * - Configure the maximum number of compiled stylesheets kept in memory: Berlioz config (ox2.xslt.cache-size), and
+ *   the maximum total size of their files: Berlioz config (ox2.xslt.cache-max-size-mb), not bounded if not set.
+ * - Configure the number of threads compiling the model stylesheets and schematrons when OX starts and when the
+ *   models are reloaded: Berlioz config (ox2.warm-up.threads), 0 disables the warm up.
+ * - Reload the models when their files change: Berlioz config (ox2.models.watch), true by default.
+ * - Store the results of the steps with cache="true": Berlioz config (ox2.step-cache.directory), the cache is
+ *   disabled if not set, and (ox2.step-cache.max-size-mb) bounds the size of the cache.
+ * - Record the latency metrics: Berlioz config (ox2.metrics.enabled), true by default, and register them as
+ *   MBeans: Berlioz config (ox2.metrics.jmx), true by default.
  *
  * @author Carlos Cabral
  * @since 29 October 2018
  */
 public final class OXLifecycle implements LifecycleListener {
 
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(OXLifecycle.class);
+
   @Override
   public boolean start() {
+    configureExecutor();
+    configureScheduler();
+    configureJobStore();
+    XSLT.setCacheSize(GlobalSettings.get("ox2.xslt.cache-size", BoundedCache.DEFAULT_MAX_ENTRIES));
+    long xsltMaxSizeMb = GlobalSettings.get("ox2.xslt.cache-max-size-mb", 0);
+    if (xsltMaxSizeMb > 0) XSLT.setCacheMaxSize(xsltMaxSizeMb << 20);
+    OXConfig.get().setWarmUpThreads(GlobalSettings.get("ox2.warm-up.threads", OXConfig.get().getWarmUpThreads()));
+    watchModels();
+    warmUpModels();
+    configureStepCache();
+    configureMetrics();
+    recoverJobs();
+
     File packagesRootFolder = OXConfig.getOXTempFolder();
     long maxInactiveTimeAllowed = Long.parseLong(GlobalSettings.get("ox2.max-inactive-time-ms", String.valueOf(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS)));
-    CleanUpManager cleanUpManager = CleanUpManager.getInstance(maxInactiveTimeAllowed, CleanUpManager.DEFAULT_DELAY, packagesRootFolder);
+    CleanUpManager cleanUpManager = CleanUpManager.getInstance(maxInactiveTimeAllowed, CleanUpManager.DEFAULT_DELAY, packagesRootFolder, cleanUpMode());
     cleanUpManager.addFileToIgnore(OXConfig.getOXTempUploadFolder());
     cleanUpManager.start();
 
@@ -49,8 +100,133 @@ public final class OXLifecycle implements LifecycleListener {
   public boolean stop() {
     CleanUpManager cleanUpManager = CleanUpManager.getInstance();
     if (cleanUpManager != null) cleanUpManager.stop();
+    ModelRegistry.get().stopWatching();
+    PipelineJobManager.shutdown();
+    StepJobManager.shutdown();
+    Metrics.get().unregisterMBeans();
 
     return true;
   }
 
+  /**
+   * Start watching the models directory so that the models are reloaded when they change.
+   */
+  private static void watchModels() {
+    if (!GlobalSettings.get("ox2.models.watch", true)) return;
+    Requests.ensureConfigured();
+    try {
+      ModelRegistry.get().startWatching();
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to watch the models, they are checked when requested", ex);
+    }
+  }
+
+  /**
+   * Compile the stylesheets and schematrons of the models in the background so that the first jobs do not have to
+   * wait for them.
+   */
+  private static void warmUpModels() {
+    if (OXConfig.get().getWarmUpThreads() <= 0) return;
+    Requests.ensureConfigured();
+    ModelRegistry.get().warmUp();
+  }
+
+  /**
+   * Start the pipeline job manager when a job store is configured, so that the jobs which had not completed
+   * before the restart are processed without waiting for a request to create the manager.
+   */
+  private static void recoverJobs() {
+    if (PipelineJobManager.getJobStore() == null) return;
+    Requests.ensureConfigured();
+    new PipelineJobManager(
+        GlobalSettings.get("ox2.threads.number", StepJobManager.DEAULT_NUMBER_OF_THREAD),
+        GlobalSettings.get("ox2.max-stored-completed-job", StepJobQueue.DEFAULT_MAX_STORED_COMPLETED_JOB));
+  }
+
+  /**
+   * Set where the results of the steps are cached, it should not be in the OX temp folder.
+   */
+  private static void configureStepCache() {
+    String directory = GlobalSettings.get("ox2.step-cache.directory");
+    if (directory == null || directory.isEmpty()) return;
+    StepResultCache cache = StepResultCache.get();
+    cache.setDirectory(new File(directory));
+    long maxSizeMb = GlobalSettings.get("ox2.step-cache.max-size-mb", (int) (StepResultCache.DEFAULT_MAX_SIZE >> 20));
+    cache.setMaxSize(maxSizeMb << 20);
+  }
+
+  /**
+   * Enable the latency metrics and register them as MBeans.
+   */
+  private static void configureMetrics() {
+    Metrics metrics = Metrics.get();
+    metrics.setEnabled(GlobalSettings.get("ox2.metrics.enabled", true));
+    if (metrics.isEnabled() && GlobalSettings.get("ox2.metrics.jmx", true)) {
+      metrics.registerMBeans();
+    }
+  }
+
+  /**
+   * @return how the clean up job finds the files to delete
+   */
+  private static CleanUpMode cleanUpMode() {
+    String mode = GlobalSettings.get("ox2.cleanup.mode", CleanUpMode.SCAN.name());
+    try {
+      return CleanUpMode.valueOf(mode.toUpperCase());
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Invalid clean up mode {}, using {}", mode, CleanUpMode.SCAN);
+      return CleanUpMode.SCAN;
+    }
+  }
+
+  /**
+   * Set how the pipeline and step jobs are executed before any job manager is created.
+   */
+  private static void configureExecutor() {
+    OXConfig config = OXConfig.get();
+    String mode = GlobalSettings.get("ox2.executor.mode", OXConfig.ExecutorMode.POOL.name());
+    try {
+      config.setExecutorMode(OXConfig.ExecutorMode.valueOf(mode.toUpperCase()));
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Invalid executor mode {}, using {}", mode, OXConfig.ExecutorMode.POOL);
+    }
+    config.setMaxConcurrentJobs(GlobalSettings.get("ox2.executor.max-concurrent-jobs", OXConfig.DEFAULT_MAX_CONCURRENT_JOBS));
+  }
+
+  /**
+   * Set the scheduler used to order the waiting pipeline jobs.
+   */
+  private static void configureScheduler() {
+    String scheduler = GlobalSettings.get("ox2.scheduler", "fifo");
+    if ("fifo".equals(scheduler)) {
+      PipelineJobManager.setJobScheduler(FifoJobScheduler.class);
+    } else if ("fair-share".equals(scheduler)) {
+      PipelineJobManager.setJobScheduler(FairShareJobScheduler.class);
+    } else {
+      try {
+        PipelineJobManager.setJobScheduler(Class.forName(scheduler).asSubclass(PipelineJobScheduler.class));
+      } catch (ClassNotFoundException | ClassCastException ex) {
+        LOGGER.warn("Invalid job scheduler {}, using fifo", scheduler);
+      }
+    }
+  }
+
+  /**
+   * Set where the pipeline jobs are persisted before any job manager is created.
+   */
+  private static void configureJobStore() {
+    String store = GlobalSettings.get("ox2.job-store", "none");
+    if ("none".equals(store)) {
+      PipelineJobManager.setJobStore(null);
+    } else if ("file".equals(store)) {
+      PipelineJobManager.setJobStore(new FileJobStore(OXConfig.getOXTempFolder()));
+    } else {
+      try {
+        PipelineJobManager.setJobStore(Class.forName(store).asSubclass(JobStore.class).getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException | ClassCastException ex) {
+        LOGGER.error("Invalid job store {}, the jobs are not persisted", store, ex);
+      }
+    }
+  }
+
 }
@@ -19,6 +19,7 @@ import org.pageseeder.berlioz.GlobalSettings;
 import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.ModelRegistry;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.xmlwriter.XMLWriter;
 
@@ -77,25 +78,25 @@ public final class Requests {
     ensureConfigured();
     boolean isReload = "true".equals(req.getParameter("ox-reload", "false")) ? true : false;
 
+    ModelRegistry registry = ModelRegistry.get();
+    if (isReload) {
+      registry.refresh();
+    }
+
     String name = req.getParameter("model");
     // Try model specified in request
     if (name != null && !name.isEmpty()) {
-      if (Model.isDefined(name)) {
-        return new Model(name);
-      } else {
+      Model model = registry.getModel(name);
+      if (model == null) {
         Errors.invalidParameter(req, xml, "model");
-        return null;
       }
+      return model;
     }
     // Revert to default model
-    Model model = Model.getDefault();
+    Model model = registry.getDefault();
     if (model == null) {
       Errors.invalidParameter(req, xml, "model");
       return null;
-    } else {
-      if (isReload) {
-        model.reload();
-      }
     }
     return model;
   }
@@ -111,9 +112,10 @@ public final class Requests {
   public static List<Model> listModel(ContentRequest req, XMLWriter xml) throws IOException {
     ensureConfigured();
     boolean isReload = "true".equals(req.getParameter("ox-reload", "false")) ? true : false;
-    List<Model> models = Model.listModels(isReload);
-    return models;
-
+    if (isReload) {
+      ModelRegistry.get().refresh();
+    }
+    return ModelRegistry.get().listModels();
   }
 
   /**
@@ -17,6 +17,7 @@ package org.pageseeder.ox.berlioz.filter;
 
 import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.berlioz.servlet.OXGetFile;
+import org.pageseeder.ox.berlioz.util.FileResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +25,7 @@ import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -44,9 +43,6 @@ public final class OXDownload implements Filter {
   /**  the logger. */
   private static final Logger LOGGER = LoggerFactory.getLogger(OXDownload.class);
 
-  /**  the buffer size. */
-  private static final int BUFFER_SIZE = 2048;
-
   /**  the matching prefix pattern. */
   private String pattern;
 
@@ -102,21 +98,7 @@ public final class OXDownload implements Filter {
       res.setContentType("unknown".equals(mediaType) ? "application/octet-stream" : mediaType);
       res.setHeader("Content-Disposition", "attachment; filename=\"" + file.getName() + '"');
 
-      try (InputStream ins = new FileInputStream(file)) {
-        // get output stream for servlet
-        ServletOutputStream outs = res.getOutputStream();
-        byte[] buff = new byte[BUFFER_SIZE];
-        boolean reading = true;
-        while (reading) {
-          int i = ins.read(buff, 0, BUFFER_SIZE);
-          if (i > 0) {
-            outs.write(buff, 0, i);
-          }
-          if (i != BUFFER_SIZE) {
-            reading = false;
-          }
-        }
-      }
+      FileResponse.send(req, res, file);
     }
 
     // cannot find the file
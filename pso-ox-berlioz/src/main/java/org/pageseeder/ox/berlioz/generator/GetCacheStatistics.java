@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.berlioz.generator;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.ox.core.StepResultCache;
+import org.pageseeder.ox.util.BoundedCache;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+
+/**
+ * <p>To display the size, hits, misses, evictions and load times of the OX caches
+ * (for example the compiled XSLT stylesheets) and the hit rate of the results of the steps.</p>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class GetCacheStatistics extends BasicGenerator {
+
+  @Override
+  public void process(ContentRequest req, XMLWriter xml) throws BerliozException, IOException {
+    xml.openElement("caches");
+    for (BoundedCache<?> cache : BoundedCache.caches()) {
+      cache.toXML(xml);
+    }
+    StepResultCache.get().toXML(xml);
+    xml.closeElement();
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.berlioz.generator;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.ox.cleanup.CleanUpManager;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+
+/**
+ * <p>To display the status of the clean up of the temporary folder, how long the sweeps take and how many
+ * packages, files and bytes were deleted.</p>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class GetCleanUpStatistics extends BasicGenerator {
+
+  @Override
+  public void process(ContentRequest req, XMLWriter xml) throws BerliozException, IOException {
+    CleanUpManager manager = CleanUpManager.getInstance();
+    if (manager != null) {
+      manager.toXML(xml);
+    } else {
+      xml.openElement("cleanup");
+      xml.attribute("status", "not-started");
+      xml.closeElement();
+    }
+  }
+}
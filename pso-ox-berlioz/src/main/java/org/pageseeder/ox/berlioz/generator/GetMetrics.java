@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.berlioz.generator;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.ox.metrics.Metrics;
+import org.pageseeder.ox.util.StringUtils;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+
+/**
+ * <p>To display the latencies recorded by OX (queue wait, pipelines, steps, XSLT compilation and transformation,
+ * downloads) with their count, errors, mean, percentiles and maximum.</p>
+ *
+ * <p>The optional parameter <code>model</code> only displays the metrics of that model.</p>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class GetMetrics extends BasicGenerator {
+
+  @Override
+  public void process(ContentRequest req, XMLWriter xml) throws BerliozException, IOException {
+    String model = req.getParameter("model");
+    Metrics.get().toXML(xml, StringUtils.isBlank(model) ? null : model);
+  }
+}
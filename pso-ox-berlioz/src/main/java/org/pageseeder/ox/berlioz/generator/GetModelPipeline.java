@@ -20,6 +20,7 @@ import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.ox.berlioz.Errors;
 import org.pageseeder.ox.berlioz.Requests;
 import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.ModelRegistry;
 import org.pageseeder.ox.util.StringUtils;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
@@ -46,13 +47,12 @@ public final class GetModelPipeline extends BasicGenerator {
     // Try model specified in request
     Model model = null;
     if (name != null && !name.isEmpty()) {
-      if (Model.isDefined(name)) {
-        model = new Model(name);
-      } else {
+      model = ModelRegistry.get().getModel(name);
+      if (model == null) {
         Errors.noModel(req, xml, name);
       }
     } else {
-      model = Model.getDefault();
+      model = ModelRegistry.get().getDefault();
     }
 
     if (model != null) {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.berlioz.generator;
+
+import org.pageseeder.berlioz.BerliozException;
+import org.pageseeder.berlioz.content.ContentRequest;
+import org.pageseeder.ox.core.ModelWarmUp;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+
+/**
+ * <p>To display whether the model stylesheets have been compiled since the models were reloaded
+ * and how long each stylesheet took to compile.</p>
+ *
+ * <p>The status is "warm" when all the stylesheets have been compiled, "warming" while they are compiled
+ * and "cold" when the models have not been reloaded.</p>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class GetWarmUpStatus extends BasicGenerator {
+
+  @Override
+  public void process(ContentRequest req, XMLWriter xml) throws BerliozException, IOException {
+    ModelWarmUp warmUp = ModelWarmUp.last();
+    if (warmUp != null) {
+      warmUp.toXML(xml);
+    } else {
+      xml.openElement("warm-up");
+      xml.attribute("status", "cold");
+      xml.closeElement();
+    }
+  }
+}
@@ -20,6 +20,7 @@ import org.pageseeder.berlioz.content.ContentRequest;
 import org.pageseeder.ox.berlioz.Errors;
 import org.pageseeder.ox.berlioz.Requests;
 import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.ModelRegistry;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,13 +45,12 @@ public final class ListModelPipelines extends BasicGenerator {
     // Try model specified in request
     Model model = null;
     if (name != null && !name.isEmpty()) {
-      if (Model.isDefined(name)) {
-        model = new Model(name);
-      } else {
+      model = ModelRegistry.get().getModel(name);
+      if (model == null) {
         Errors.noModel(req, xml, name);
       }
     } else {
-      model = Model.getDefault();
+      model = ModelRegistry.get().getDefault();
     }
 
     if (model != null) {
@@ -16,19 +16,22 @@
 package org.pageseeder.ox.berlioz.servlet;
 
 import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.berlioz.util.FileResponse;
 import org.pageseeder.ox.berlioz.util.NonceUtils;
+import org.pageseeder.ox.util.CharsetDetector;
 import org.pageseeder.ox.util.FileUtils;
+import org.pageseeder.ox.util.ScriptNonceWriter;
 import org.pageseeder.ox.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * <p>Get a file inside in the ox structure (Packages). </p>
@@ -45,7 +48,7 @@ public final class OXGetFile extends HttpServlet {
   private static final Logger LOGGER = LoggerFactory.getLogger(OXGetFile.class);
 
   /**  the buffer size. */
-  private static final int BUFFER_SIZE = 2048;
+  private static final int BUFFER_SIZE = 8192;
 
   /**  the matching prefix pattern. */
   private String pattern;
@@ -94,40 +97,20 @@ public final class OXGetFile extends HttpServlet {
          String nonce = NonceUtils.getNonce(req);
          if ("text/html".equals(mediaType) && !StringUtils.isBlank(nonce)) {
 
-           // Read the HTML file
-           StringBuilder htmlContent = new StringBuilder();
-           try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-             String line;
-             while ((line = reader.readLine()) != null) {
-               htmlContent.append(line).append(System.lineSeparator());
+           // Add the nonce to the script tags while copying the file
+           Charset charset = CharsetDetector.getFromBOM(file);
+           if (charset == null) charset = StandardCharsets.UTF_8;
+           res.setCharacterEncoding(charset.name());
+           try (Reader reader = new InputStreamReader(new FileInputStream(file), charset);
+                Writer out = new ScriptNonceWriter(res.getWriter(), nonce)) {
+             char[] buffer = new char[BUFFER_SIZE];
+             int read;
+             while ((read = reader.read(buffer)) != -1) {
+               out.write(buffer, 0, read);
              }
            }
-
-           // Replace the text
-           String originalText = "<script";
-           String newText = "<script nonce=\"" + nonce + "\"";
-           String modifiedContent = htmlContent.toString().replace(originalText, newText);
-
-           // Return the modified content
-           PrintWriter out = res.getWriter();
-           out.println(modifiedContent);
          } else {
-
-           try (InputStream ins = Files.newInputStream(file.toPath())) {
-             // get output stream for servlet
-             ServletOutputStream outs = res.getOutputStream();
-             byte[] buff = new byte[BUFFER_SIZE];
-             boolean reading = true;
-             while (reading) {
-               int i = ins.read(buff, 0, BUFFER_SIZE);
-               if (i > 0) {
-                 outs.write(buff, 0, i);
-               }
-               if (i != BUFFER_SIZE) {
-                 reading = false;
-               }
-             }
-           }
+           FileResponse.send(req, res, file);
          }
        }
 
@@ -76,6 +76,10 @@ public class BerliozOXUtils {
   /**
    * To pipeline jobs.
    *
+   * <p>The group of each job used by the fair share scheduler is the value of the package parameter defined by
+   * the Berlioz config (ox2.scheduler.group-parameter) (default: model). The priority is defined by the
+   * <code>priority</code> attribute of the pipeline in the model.
+   *
    * @param packs the packs
    * @return the list
    */
@@ -85,20 +89,26 @@ public class BerliozOXUtils {
     long slowSize = GlobalSettings.get("ox2.slow-mode.size", -1);
     long maxInactiveTimeAllowed = Long.parseLong(GlobalSettings.get("ox2.max-inactive-time-ms",
         String.valueOf(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS)));
+    String groupParameter = GlobalSettings.get("ox2.scheduler.group-parameter", "model");
     LOGGER.debug("Started creating the Pipeline Jobs");
     for (PackageData pack : packs) {
       boolean isSlowMode = slowSize > 0 && pack.getOriginal().exists() && (pack.getOriginal().length() - slowSize * 1024 > 0);
       LOGGER.debug("slow mode {}", isSlowMode);
       String p = pack.getParameter("pipeline");
       String modelName = pack.getParameter("model");
-      Model model = new Model(modelName);
+      Model model = ModelRegistry.get().getModel(modelName);
       LOGGER.debug("Model {} ", modelName);
+      if (model == null) {
+        LOGGER.warn("model {} not found", modelName);
+        continue;
+      }
       if (p != null) {
         Pipeline pipeline = model.getPipeline(p);
         if (pipeline != null) {
           PipelineJob job = new PipelineJob(pipeline, pack);
           job.setSlowMode(isSlowMode);
           job.setMaxInactiveTimeAllowed(maxInactiveTimeAllowed);
+          schedule(job, pack.getParameter(groupParameter));
           jobs.add(job);
         } else {
           LOGGER.warn("pipeline {} not found", p);
@@ -107,6 +117,7 @@ public class BerliozOXUtils {
         Pipeline pipeline = model.getPipelineDefault();
         PipelineJob job = new PipelineJob(pipeline, pack);
         job.setSlowMode(isSlowMode);
+        schedule(job, pack.getParameter(groupParameter));
         jobs.add(job);
       }
     }
@@ -115,6 +126,26 @@ public class BerliozOXUtils {
     return jobs;
   }
 
+  /**
+   * Set the scheduling group and priority of the job.
+   *
+   * @param job   the job
+   * @param group the group of the job, if <code>null</code> the model is used.
+   */
+  private static void schedule(PipelineJob job, String group) {
+    if (!StringUtils.isBlank(group)) {
+      job.setGroup(group);
+    }
+    String priority = job.getPipeline().extraAttributes().get("priority");
+    if (!StringUtils.isBlank(priority)) {
+      try {
+        job.setPriority(Integer.parseInt(priority.trim()));
+      } catch (NumberFormatException ex) {
+        LOGGER.warn("Invalid priority {} for pipeline {}", priority, job.getPipeline().id());
+      }
+    }
+  }
+
   /**
    * Ensure the configuration file is set.
    */
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.berlioz.util;
+
+import org.pageseeder.ox.util.FileDownload;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends a file as the body of an HTTP response.
+ *
+ * <p>The headers, status and range are computed by {@link FileDownload} which supports conditional requests
+ * and byte ranges.
+ *
+ * <p>The content type and disposition must be set by the caller.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class FileResponse {
+
+  private FileResponse() {
+  }
+
+  /**
+   * Sends the file.
+   *
+   * @param req  the HTTP request
+   * @param res  the HTTP response
+   * @param file the file to send
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void send(HttpServletRequest req, HttpServletResponse res, File file) throws IOException {
+    FileDownload download = FileDownload.of(file, req::getHeader);
+    for (Map.Entry<String, String> header : download.headers().entrySet()) {
+      res.setHeader(header.getKey(), header.getValue());
+    }
+    if (download.isError()) {
+      res.sendError(download.status());
+    } else {
+      res.setStatus(download.status());
+      download.transfer(res.getOutputStream());
+    }
+  }
+}
@@ -17,6 +17,7 @@ package org.pageseeder.ox.client;
 
 import org.pageseeder.berlioz.BerliozException;
 import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.util.FileDownload;
 import org.pageseeder.ox.util.FileUtils;
 import org.pageseeder.ox.util.StringUtils;
 import org.pageseeder.xmlwriter.XML.NamespaceAware;
@@ -32,6 +33,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -42,7 +44,6 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
 
   /** As per requirement */
   private static final long serialVersionUID = 20160624L;
-  private static final int BUFFER_SIZE = 2048;
 
   @Override
   public void init(ServletConfig config) throws ServletException {
@@ -95,7 +96,7 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
       XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
       processor.process(xml);
 
-      toHttpResponse(res, destination);
+      toHttpResponse(req, res, destination);
 
     } catch (BerliozException ex) {
       res.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
@@ -106,24 +107,26 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
   /**
    * Create the HTTP response for the outcome.
    *
+   * @param req     The req is a {@link HttpServletRequest}.
    * @param res     The res is a {@link HttpServletResponse}.
    * @param source  The file need to send to download.
    * @throws IOException
    */
-  private static void toHttpResponse(HttpServletResponse res, File file) throws IOException {
+  private static void toHttpResponse(HttpServletRequest req, HttpServletResponse res, File file) throws IOException {
     List<File> files = new ArrayList<File>();
     files.add(file);
-    toHttpResponse(res, files, FileUtils.getFileExtension(file));
+    toHttpResponse(req, res, files, FileUtils.getFileExtension(file));
   }
 
   /**
    * Create the HTTP response for the outcome.
    *
+   * @param req     The req is a {@link HttpServletRequest}.
    * @param res     The res is a {@link HttpServletResponse}.
    * @param source  The file need to send to download.
    * @throws IOException
    */
-  private static void toHttpResponse(HttpServletResponse res, List<File> files, String format) throws IOException {
+  private static void toHttpResponse(HttpServletRequest req, HttpServletResponse res, List<File> files, String format) throws IOException {
     // set content type
     res.setContentType(getContentType(format));
     switch (format) {
@@ -134,7 +137,7 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
       toXMLResponse(res, files);
       break;
     case "docx":
-      toDOCXResponse(res, files);
+      toDOCXResponse(req, res, files);
       break;
     default:
       throw new UnsupportedOperationException("Format of " + format + " haven't implemented yet.");
@@ -142,19 +145,19 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
   }
 
   /**
-   * return the html snippet in a full html content.
+   * return the docx file as an attachment, byte ranges and conditional requests are supported.
+   * @param req the HttpServletRequest
    * @param res the HttpServletResponse
    * @param files the list of files
    * @throws IOException
    */
-  private static void toDOCXResponse(HttpServletResponse res, List<File> files) throws IOException {
+  private static void toDOCXResponse(HttpServletRequest req, HttpServletResponse res, List<File> files) throws IOException {
     if (files == null || files.size() == 0) {
       res.setStatus(HttpServletResponse.SC_NOT_FOUND);
     } else if (files.size() == 1) {
       File file = files.get(0);
       res.setHeader("Content-Disposition", "attachment; filename=\"" + file.getName() + '"');
-      ServletOutputStream out = res.getOutputStream();
-      toResponse(out, file);
+      toFileResponse(req, res, file);
     } else {
       //files.size() > 1
       throw new UnsupportedOperationException("The return for more than one docx haven't implemented yet.");
@@ -199,21 +202,28 @@ public final class OXDownloadServlet extends HttpServlet implements Servlet {
    * @throws IOException
    */
   private static void toResponse(OutputStream out, File file) throws IOException {
+    FileUtils.transfer(file, 0, file.length(), out);
+  }
 
-    // get file
-    try (InputStream ins = new BufferedInputStream(new FileInputStream(file))) {
-      // get output stream for response
-      byte[] buff = new byte[BUFFER_SIZE];
-      boolean reading = true;
-      while (reading) {
-        int i = ins.read(buff, 0, BUFFER_SIZE);
-        if (i > 0) {
-          out.write(buff, 0, i);
-        }
-        if (i != BUFFER_SIZE) {
-          reading = false;
-        }
-      }
+  /**
+   * Send the whole file or the requested byte range with the ETag and Last-Modified headers, or 304 when the
+   * client already has the file.
+   *
+   * @param req the HttpServletRequest
+   * @param res the HttpServletResponse
+   * @param file the file need to write it out.
+   * @throws IOException
+   */
+  private static void toFileResponse(HttpServletRequest req, HttpServletResponse res, File file) throws IOException {
+    FileDownload download = FileDownload.of(file, req::getHeader);
+    for (Map.Entry<String, String> header : download.headers().entrySet()) {
+      res.setHeader(header.getKey(), header.getValue());
+    }
+    if (download.isError()) {
+      res.sendError(download.status());
+    } else {
+      res.setStatus(download.status());
+      download.transfer(res.getOutputStream());
     }
   }
 
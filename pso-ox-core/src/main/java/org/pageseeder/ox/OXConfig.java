@@ -29,6 +29,32 @@ public class OXConfig {
    * The folder name where the files will be uploaded.
    */
   public final static String TEMP_UPLOAD_FOLDER_NAME = "upload";
+
+  /**
+   * The default maximum number of jobs running at the same time in {@link ExecutorMode#VIRTUAL} mode.
+   */
+  public final static int DEFAULT_MAX_CONCURRENT_JOBS = 100;
+
+  /**
+   * How the pipeline and step jobs are executed.
+   */
+  public enum ExecutorMode {
+
+    /**
+     * A fixed number of platform threads, each processing one job at a time (default).
+     */
+    POOL,
+
+    /**
+     * One virtual thread per job, the number of jobs running at the same time is limited by
+     * {@link OXConfig#getMaxConcurrentJobs()}.
+     *
+     * <p>Virtual threads require Java 21, on older versions a new platform thread is used for each job.
+     */
+    VIRTUAL
+
+  }
+
   /**
    * Singleton instance.
    */
@@ -62,6 +88,78 @@ public class OXConfig {
     this.models = models;
   }
 
+  /**
+   * How the jobs are executed.
+   */
+  private ExecutorMode executorMode = ExecutorMode.POOL;
+
+  /**
+   * The maximum number of jobs running at the same time in {@link ExecutorMode#VIRTUAL} mode.
+   */
+  private int maxConcurrentJobs = DEFAULT_MAX_CONCURRENT_JOBS;
+
+  /**
+   * The number of threads used to compile the model stylesheets when the models are reloaded.
+   */
+  private int warmUpThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Gets the number of warm up threads.
+   *
+   * @return the number of threads used to compile the model stylesheets when the models are reloaded (0 if disabled)
+   */
+  public int getWarmUpThreads() {
+    return this.warmUpThreads;
+  }
+
+  /**
+   * Sets the number of warm up threads.
+   *
+   * @param warmUpThreads the number of threads used to compile the model stylesheets when OX starts and when the
+   *                      models are reloaded, 0 to disable the warm up.
+   */
+  public void setWarmUpThreads(int warmUpThreads) {
+    this.warmUpThreads = Math.max(0, warmUpThreads);
+  }
+
+  /**
+   * Gets the executor mode.
+   *
+   * @return how the pipeline and step jobs are executed
+   */
+  public ExecutorMode getExecutorMode() {
+    return this.executorMode;
+  }
+
+  /**
+   * Sets the executor mode.
+   *
+   * <p>The mode must be set before the first job manager is created.
+   *
+   * @param executorMode how the pipeline and step jobs are executed
+   */
+  public void setExecutorMode(ExecutorMode executorMode) {
+    this.executorMode = executorMode != null ? executorMode : ExecutorMode.POOL;
+  }
+
+  /**
+   * Gets max concurrent jobs.
+   *
+   * @return the maximum number of jobs running at the same time in {@link ExecutorMode#VIRTUAL} mode.
+   */
+  public int getMaxConcurrentJobs() {
+    return this.maxConcurrentJobs;
+  }
+
+  /**
+   * Sets max concurrent jobs.
+   *
+   * @param maxConcurrentJobs the maximum number of jobs running at the same time in {@link ExecutorMode#VIRTUAL} mode.
+   */
+  public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+    this.maxConcurrentJobs = maxConcurrentJobs > 0 ? maxConcurrentJobs : DEFAULT_MAX_CONCURRENT_JOBS;
+  }
+
   /**
    * Get ox config.
    *
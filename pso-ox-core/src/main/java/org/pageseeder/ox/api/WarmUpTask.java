@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.api;
+
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.ModelWarmUp;
+
+/**
+ * This is a Service Provider Interface for the warm up of the models, which will be used by {@link ModelWarmUp}
+ * together with the compilation of the model stylesheets.
+ * <p>
+ * A module can use it to compile what its steps need, for example schemas, before the first job.
+ * To register a task, you must specify it in :CLASSPATH/META-INF/services/org.pageseeder.ox.api.WarmUpTask
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public interface WarmUpTask {
+
+  /**
+   * The name of the task
+   *
+   * @return the name of the task
+   */
+  String getName();
+
+  /**
+   * Compiles what the steps of the model need.
+   *
+   * <p>Errors should be logged rather than thrown so that the other tasks are not affected.
+   *
+   * @param model the model
+   * @return the number of items compiled
+   */
+  int warmUp(Model model);
+
+}
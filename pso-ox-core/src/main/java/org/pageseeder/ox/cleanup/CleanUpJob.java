@@ -27,6 +27,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -61,6 +62,18 @@ public class CleanUpJob implements Runnable {
     */
    private final List<File> filesToIgnore = new ArrayList<>();
 
+   /** How the files to delete are found. */
+   private final CleanUpMode _mode;
+
+   /** The statistics of this job. */
+   private final CleanUpStatistics statistics = new CleanUpStatistics();
+
+   /** When the packages of the base directory were last added to the index (index mode only). */
+   private long lastSeed = 0;
+
+   /** In index mode, the base directory is listed (not walked) every hour to find packages missing from the index. */
+   private static final long SEED_INTERVAL = 60 * 60 * 1000;
+
   /**
    * Instantiates a new clean up job.
    *
@@ -69,9 +82,22 @@ public class CleanUpJob implements Runnable {
    * @param base            The packages root directory.
    */
   public CleanUpJob(long maxInactiveTime, long checkUpDelay, File base) {
+    this(maxInactiveTime, checkUpDelay, base, CleanUpMode.SCAN);
+  }
+
+  /**
+   * Instantiates a new clean up job.
+   *
+   * @param maxInactiveTime How long (milliseconds) a file can be inactive in the drive.
+   * @param checkUpDelay    the check up delay
+   * @param base            The packages root directory.
+   * @param mode            How the files to delete are found.
+   */
+  public CleanUpJob(long maxInactiveTime, long checkUpDelay, File base, CleanUpMode mode) {
      super();
      LOGGER_JOB.debug("Max Inactive Time: {}", maxInactiveTime);
      LOGGER_JOB.debug("Base Directory: {}", base);
+     LOGGER_JOB.debug("Mode: {}", mode);
 
      //Validate inputs
      if (maxInactiveTime < 1) throw new IllegalArgumentException("Max Inactive Time must be positive.");
@@ -82,6 +108,7 @@ public class CleanUpJob implements Runnable {
      this._maxInactiveTime = maxInactiveTime;
      this._checkUpDelay = checkUpDelay;
      this._base = base;
+     this._mode = mode != null ? mode : CleanUpMode.SCAN;
      this.setStatus(CleanUpStatus.NOT_STARTED);
    }
 
@@ -142,9 +169,98 @@ public class CleanUpJob implements Runnable {
     *
     * @throws IOException Signals that an I/O exception has occurred.
     */
-   private void clean() throws IOException {
+   void clean() throws IOException {
      LOGGER_JOB.trace("Cleaning Starter Folder: {}", this.getBase().getAbsolutePath());
-     clean(this.getBase(), 0);
+     long start = System.nanoTime();
+     try {
+       if (this._mode == CleanUpMode.INDEX) {
+         cleanIndexed();
+       } else {
+         clean(this.getBase(), 0);
+       }
+     } finally {
+       this.statistics.sweep(System.nanoTime() - start);
+       LOGGER_JOB.debug("Clean up took {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+     }
+   }
+
+   /**
+    * Delete the expired packages from the index, then clean the folders which must be ignored (upload folder).
+    *
+    * <p>The index is seeded with the packages of the base directory on the first run and every hour after that,
+    * this only lists the base directory without walking the packages.
+    *
+    * @throws IOException Signals that an I/O exception has occurred.
+    */
+   private void cleanIndexed() throws IOException {
+     PackageExpiryIndex index = PackageExpiryIndex.get();
+     long now = System.currentTimeMillis();
+     if (now - this.lastSeed >= SEED_INTERVAL) {
+       seed(index);
+       this.lastSeed = now;
+     }
+
+     long threshold = now - this.getMaxInactiveTime();
+     for (String id : index.expired(threshold)) {
+       File file = new File(this.getBase(), id);
+       if (!file.exists() || shouldBeIgnored(file)) continue;
+
+       // The package is still used by a job or it was modified after its last recorded activity
+       if (!StringUtils.isBlank(PipelineJobQueue.getJobId(id))) {
+         index.touch(id, now);
+       } else if (file.lastModified() >= threshold) {
+         index.touch(id, file.lastModified());
+       } else {
+         LOGGER_JOB.trace("Deleting expired package {}", id);
+         deleteAll(file);
+         this.statistics.packageDeleted();
+       }
+     }
+
+     for (File ignored : new ArrayList<>(this.filesToIgnore)) {
+       if (ignored.isDirectory() && this.getBase().equals(ignored.getParentFile())) {
+         clean(ignored, 1);
+       }
+     }
+   }
+
+   /**
+    * Add the files of the base directory to the index using their last modified date.
+    *
+    * @param index the index to update
+    */
+   private void seed(PackageExpiryIndex index) {
+     File[] files = this.getBase().listFiles();
+     if (files == null) return;
+     for (File file : files) {
+       if (!shouldBeIgnored(file)) {
+         index.touch(file.getName(), file.lastModified());
+       }
+     }
+     LOGGER_JOB.debug("Clean up index contains {} packages", index.size());
+   }
+
+   /**
+    * Delete a file or a directory and its content regardless of the last modified dates.
+    *
+    * @param file the file or directory to delete
+    */
+   private void deleteAll(File file) {
+     File[] children = file.listFiles();
+     if (children != null) {
+       for (File child : children) {
+         deleteAll(child);
+       }
+     }
+     boolean isFile = file.isFile();
+     long length = isFile ? file.length() : 0;
+     if (file.delete()) {
+       if (isFile) this.statistics.fileDeleted(length);
+       LOGGER_JOB.trace("Deleted file {}.", file.getAbsolutePath());
+     } else {
+       this.statistics.failed();
+       LOGGER_JOB.error("Failed to delete file {}.", file.getAbsolutePath());
+     }
    }
 
    /**
@@ -221,9 +337,13 @@ public class CleanUpJob implements Runnable {
    private void delete (File toDelete, long lastModifiedDate) {
      long threshold = System.currentTimeMillis() - this._maxInactiveTime;
      if (lastModifiedDate < threshold && !shouldBeIgnored(toDelete)) {
+       boolean isFile = toDelete.isFile();
+       long length = isFile ? toDelete.length() : 0;
        if (toDelete.delete()) {
+         if (isFile) this.statistics.fileDeleted(length);
          LOGGER_JOB.trace("Deleted file {}.", toDelete.getAbsolutePath());
        } else {
+         this.statistics.failed();
          LOGGER_JOB.error("Failed to delete file {}.", toDelete.getAbsolutePath());
        }
      }
@@ -275,6 +395,24 @@ public class CleanUpJob implements Runnable {
      this.status = status;
    }
 
+  /**
+   * Gets the mode.
+   *
+   * @return how the files to delete are found
+   */
+  public CleanUpMode getMode() {
+     return this._mode;
+  }
+
+  /**
+   * Gets the statistics.
+   *
+   * @return the statistics of this job
+   */
+  public CleanUpStatistics getStatistics() {
+     return this.statistics;
+  }
+
   /**
    * Gets the max inactive time.
    *
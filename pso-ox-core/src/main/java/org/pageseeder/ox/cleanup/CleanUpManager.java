@@ -17,10 +17,13 @@ package org.pageseeder.ox.cleanup;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -32,7 +35,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * @author Carlos Cabral
  * @since 25 October 2018
  */
-public class CleanUpManager {
+public class CleanUpManager implements XMLWritable {
 
   /**  the logger. */
   private static final Logger LOGGER = LoggerFactory.getLogger(CleanUpManager.class);
@@ -63,8 +66,9 @@ public class CleanUpManager {
    * @param maxInactiveTime How long (milliseconds) a file can be inactive in the drive.
    * @param delay the delay between check up.
    * @param base The packages root directory.
+   * @param mode How the files to delete are found.
    */
-  private CleanUpManager(long maxInactiveTime, long delay, File base) {
+  private CleanUpManager(long maxInactiveTime, long delay, File base, CleanUpMode mode) {
     //Started the thread pool
     this.threadPool = Executors.newSingleThreadExecutor();
     this.started = new AtomicBoolean(false);
@@ -74,7 +78,7 @@ public class CleanUpManager {
     long tempDelay = delay > 0 ? delay : DEFAULT_DELAY;
 
     //Instantiate job class
-    this.cleanUpJob = new CleanUpJob(maxInactiveTime, tempDelay, base);
+    this.cleanUpJob = new CleanUpJob(maxInactiveTime, tempDelay, base, mode);
   }
 
   /**
@@ -86,8 +90,21 @@ public class CleanUpManager {
    * @return single instance of CleanUpManager
    */
   public static synchronized @NotNull CleanUpManager getInstance(long maxInactiveTime, long delay, File base) {
+    return getInstance(maxInactiveTime, delay, base, CleanUpMode.SCAN);
+  }
+
+  /**
+   * Returns .
+   *
+   * @param maxInactiveTime How long (milliseconds) a file can be inactive in the drive.
+   * @param delay           the delay between check up.
+   * @param base            The packages root directory.
+   * @param mode            How the files to delete are found, only used when the instance is created.
+   * @return single instance of CleanUpManager
+   */
+  public static synchronized @NotNull CleanUpManager getInstance(long maxInactiveTime, long delay, File base, CleanUpMode mode) {
     if (INSTANCE == null) {
-      INSTANCE = new CleanUpManager(maxInactiveTime, delay, base);
+      INSTANCE = new CleanUpManager(maxInactiveTime, delay, base, mode);
     }
     return INSTANCE;
   }
@@ -110,6 +127,7 @@ public class CleanUpManager {
     if (!this.started.getAndSet(true)) {
       //Execute Clean up job
       LOGGER.debug("Execute Clean UP JOB");
+      PackageExpiryIndex.get().setEnabled(this.cleanUpJob.getMode() == CleanUpMode.INDEX);
       this.threadPool.execute(this.cleanUpJob);
     }
   }
@@ -131,6 +149,7 @@ public class CleanUpManager {
       } finally {
         LOGGER.debug("Clean UP Manager Stopped.");
         this.threadPool.shutdownNow();
+        PackageExpiryIndex.get().setEnabled(false);
         //Destroy Singleton instance
         INSTANCE = null;
       }
@@ -163,4 +182,27 @@ public class CleanUpManager {
   public CleanUpStatus status () {
     return this.cleanUpJob.getStatus();
   }
+
+  /**
+   * Return job statistics.
+   *
+   * @return the statistics
+   */
+  public CleanUpStatistics statistics() {
+    return this.cleanUpJob.getStatistics();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("cleanup");
+    xml.attribute("status", this.cleanUpJob.getStatus().name().toLowerCase().replace('_', '-'));
+    xml.attribute("mode", this.cleanUpJob.getMode().name().toLowerCase());
+    xml.attribute("max-inactive-time-ms", Long.toString(this.cleanUpJob.getMaxInactiveTime()));
+    xml.attribute("delay-ms", Long.toString(this.cleanUpJob.getCheckUpDelay()));
+    if (this.cleanUpJob.getMode() == CleanUpMode.INDEX) {
+      xml.attribute("indexed-packages", PackageExpiryIndex.get().size());
+    }
+    this.cleanUpJob.getStatistics().toXML(xml);
+    xml.closeElement();
+  }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.cleanup;
+
+/**
+ * How the clean up job finds the files to delete.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public enum CleanUpMode {
+
+  /**
+   * Walk the whole temporary folder and delete the files which have not been modified recently (default).
+   */
+  SCAN,
+
+  /**
+   * Only delete the packages found in the {@link PackageExpiryIndex}, the packages are recorded when they are
+   * created and when their jobs complete.
+   */
+  INDEX;
+
+}
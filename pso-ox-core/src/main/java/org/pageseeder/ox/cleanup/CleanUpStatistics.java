@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.cleanup;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of a clean up job: how long the sweeps take and how much was deleted.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class CleanUpStatistics implements XMLWritable {
+
+  private final AtomicLong sweeps = new AtomicLong();
+
+  private final AtomicLong sweepNanos = new AtomicLong();
+
+  private final AtomicLong packagesDeleted = new AtomicLong();
+
+  private final AtomicLong filesDeleted = new AtomicLong();
+
+  private final AtomicLong bytesReclaimed = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  /** When the last sweep finished in milliseconds (0 if none). */
+  private volatile long lastSweep = 0;
+
+  /** How long the last sweep took in nanoseconds. */
+  private volatile long lastSweepNanos = 0;
+
+  /**
+   * Record a sweep.
+   *
+   * @param nanos how long it took in nanoseconds
+   */
+  void sweep(long nanos) {
+    this.sweeps.incrementAndGet();
+    this.sweepNanos.addAndGet(nanos);
+    this.lastSweepNanos = nanos;
+    this.lastSweep = System.currentTimeMillis();
+  }
+
+  /**
+   * Record a deleted file.
+   *
+   * @param bytes the size of the file
+   */
+  void fileDeleted(long bytes) {
+    this.filesDeleted.incrementAndGet();
+    this.bytesReclaimed.addAndGet(bytes);
+  }
+
+  /**
+   * Record a deleted package.
+   */
+  void packageDeleted() {
+    this.packagesDeleted.incrementAndGet();
+  }
+
+  /**
+   * Record a file which could not be deleted.
+   */
+  void failed() {
+    this.failures.incrementAndGet();
+  }
+
+  /**
+   * @return the number of sweeps
+   */
+  public long sweeps() {
+    return this.sweeps.get();
+  }
+
+  /**
+   * @return the number of packages deleted
+   */
+  public long packagesDeleted() {
+    return this.packagesDeleted.get();
+  }
+
+  /**
+   * @return the number of files deleted
+   */
+  public long filesDeleted() {
+    return this.filesDeleted.get();
+  }
+
+  /**
+   * @return the size of the files deleted in bytes
+   */
+  public long bytesReclaimed() {
+    return this.bytesReclaimed.get();
+  }
+
+  /**
+   * @return the number of files which could not be deleted
+   */
+  public long failures() {
+    return this.failures.get();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    long sweeps = this.sweeps.get();
+    xml.openElement("statistics");
+    xml.attribute("sweeps", Long.toString(sweeps));
+    if (this.lastSweep > 0) {
+      xml.attribute("last-sweep", Long.toString(this.lastSweep));
+      xml.attribute("last-sweep-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.lastSweepNanos)));
+    }
+    xml.attribute("sweep-time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.sweepNanos.get())));
+    if (sweeps > 0) {
+      xml.attribute("average-sweep-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.sweepNanos.get() / sweeps)));
+    }
+    xml.attribute("packages-deleted", Long.toString(this.packagesDeleted.get()));
+    xml.attribute("files-deleted", Long.toString(this.filesDeleted.get()));
+    xml.attribute("bytes-reclaimed", Long.toString(this.bytesReclaimed.get()));
+    xml.attribute("failures", Long.toString(this.failures.get()));
+    xml.closeElement();
+  }
+}
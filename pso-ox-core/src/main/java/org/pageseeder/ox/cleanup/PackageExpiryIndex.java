@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.cleanup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The packages ordered by the time of their last activity, so that the clean up job only needs to look at the
+ * head of the queue instead of walking the whole temporary folder.
+ *
+ * <p>A package is recorded when it is created and again when its job completes. Recording a package again
+ * adds a new entry to the queue and the older entry is ignored when it reaches the head.
+ *
+ * <p>Nothing is recorded while the index is disabled so that it does not grow when the clean up job scans the
+ * folder instead.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class PackageExpiryIndex {
+
+  /** Oldest first. */
+  private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return Long.compare(a._time, b._time);
+    }
+  };
+
+  /** Singleton Instance of this class. */
+  private static final PackageExpiryIndex INSTANCE = new PackageExpiryIndex();
+
+  /** The time of the last activity by package id. */
+  private final Map<String, Long> packages = new HashMap<>();
+
+  /** The entries ordered by time, may contain older entries of the packages. */
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>(ORDER);
+
+  /** Whether packages are recorded. */
+  private volatile boolean enabled = false;
+
+  /**
+   * @return the index used by the clean up job.
+   */
+  public static PackageExpiryIndex get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Enable or disable the index, the index is cleared when it is disabled.
+   *
+   * @param enabled whether packages are recorded
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) clear();
+  }
+
+  /**
+   * @return whether packages are recorded
+   */
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Record an activity on a package now.
+   *
+   * @param id the package id
+   */
+  public void touch(String id) {
+    touch(id, System.currentTimeMillis());
+  }
+
+  /**
+   * Record an activity on a package, it is ignored if a later activity was already recorded.
+   *
+   * @param id   the package id
+   * @param time the time of the activity in milliseconds
+   */
+  public synchronized void touch(String id, long time) {
+    if (!this.enabled || id == null) return;
+    Long current = this.packages.get(id);
+    if (current == null || time > current) {
+      this.packages.put(id, time);
+      this.queue.add(new Entry(id, time));
+    }
+  }
+
+  /**
+   * Remove and return the packages without any activity since the specified time.
+   *
+   * @param threshold the time in milliseconds
+   * @return the ids of the expired packages, the oldest first
+   */
+  public synchronized List<String> expired(long threshold) {
+    List<String> expired = new ArrayList<>();
+    while (!this.queue.isEmpty() && this.queue.peek()._time < threshold) {
+      Entry entry = this.queue.poll();
+      Long current = this.packages.get(entry._id);
+      if (current != null && current == entry._time) {
+        this.packages.remove(entry._id);
+        expired.add(entry._id);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return the number of packages in the index
+   */
+  public synchronized int size() {
+    return this.packages.size();
+  }
+
+  /**
+   * Remove all the packages.
+   */
+  public synchronized void clear() {
+    this.packages.clear();
+    this.queue.clear();
+  }
+
+  /**
+   * A package and the time of one of its activities.
+   */
+  private static final class Entry {
+
+    private final String _id;
+
+    private final long _time;
+
+    private Entry(String id, long time) {
+      this._id = id;
+      this._time = time;
+    }
+  }
+}
@@ -66,6 +66,11 @@ public final class Model implements XMLWritable {
    */
   private final List<Pipeline> _pipelines = new ArrayList<Pipeline>();
 
+  /**
+   * The pipelines defined for this model by id.
+   */
+  private final Map<String, Pipeline> _pipelinesById = new HashMap<>();
+
   /**
    * The status to indicate whether the config file has been loaded
    */
@@ -116,12 +121,11 @@ public final class Model implements XMLWritable {
    * @param pipeline
    */
   private void addPipeline (Pipeline pipeline) {
-    for (Pipeline s : this._pipelines) {
-      //Check the uniqueness of the step
-      if (s.id().equals(pipeline.id())) {
-        throw new IllegalArgumentException("The model " + this.name() + "already has the pipeline " + pipeline.id());
-      }
+    //Check the uniqueness of the pipeline
+    if (this._pipelinesById.containsKey(pipeline.id())) {
+      throw new IllegalArgumentException("The model " + this.name() + "already has the pipeline " + pipeline.id());
     }
+    this._pipelinesById.put(pipeline.id(), pipeline);
     this._pipelines.add(pipeline);
   }
 
@@ -156,6 +160,9 @@ public final class Model implements XMLWritable {
    */
   public boolean reload() {
     this.hasLoaded = false;
+    this._pipelines.clear();
+    this._pipelinesById.clear();
+    this.extraAttributes.clear();
     return load();
   }
 
@@ -231,6 +238,32 @@ public final class Model implements XMLWritable {
     return templates;
   }
 
+  /**
+   * Returns the stylesheets of this model referenced by the steps, that is the values of the <code>xsl</code> and
+   * <code>_xslt-*</code> parameters which are existing XSLT files of this model.
+   *
+   * @return the stylesheets used by this model (never <code>null</code>)
+   */
+  public List<File> listStylesheets() {
+    load();
+    Set<File> stylesheets = new LinkedHashSet<>();
+    for (Pipeline pipeline : this._pipelines) {
+      for (int i = 0; i < pipeline.size(); i++) {
+        for (Map.Entry<String, String> p : pipeline.getStep(i).parameters().entrySet()) {
+          String value = p.getValue();
+          if (("xsl".equals(p.getKey()) || p.getKey().startsWith("_xslt-")) && value != null
+              && (value.endsWith(".xsl") || value.endsWith(".xslt"))) {
+            File xsl = getFile(value);
+            if (xsl.isFile()) {
+              stylesheets.add(xsl);
+            }
+          }
+        }
+      }
+    }
+    return new ArrayList<>(stylesheets);
+  }
+
   @Override
   public void toXML(XMLWriter xml) throws IOException {
     this.toXML(xml, null);
@@ -316,7 +349,32 @@ public final class Model implements XMLWritable {
     List<Model> models = new ArrayList<Model>();
 
     LOGGER.debug("Model Directory: " + getModelsDirectory().getAbsoluteFile());
-    String[] names = getModelsDirectory().list(new FilenameFilter() {
+    String[] names = listModelNames(getModelsDirectory());
+
+    if (names != null) {
+      for (String name : names) {
+        Model model = new Model(name);
+        models.add(model);
+        if (reload) {
+          model.reload();
+        }
+      }
+    }
+    if (reload && OXConfig.get().getWarmUpThreads() > 0) {
+      ModelWarmUp.start(models, OXConfig.get().getWarmUpThreads());
+    }
+    return models;
+  }
+
+  /**
+   * Returns the names of the models in the specified directory, that is its sub-directories containing a
+   * <code>model.xml</code> file.
+   *
+   * @param modelsDirectory the directory containing all the models
+   * @return the names of the models or <code>null</code> if the directory cannot be listed
+   */
+  static String[] listModelNames(File modelsDirectory) {
+    return modelsDirectory.list(new FilenameFilter() {
       @Override
       public boolean accept(File modelsRootDirectoy, String name) {
         //Model wrapper directory
@@ -332,17 +390,6 @@ public final class Model implements XMLWritable {
         return isModelDirectory;
       }
     });
-
-    if (names != null) {
-      for (String name : names) {
-        Model model = new Model(name);
-        models.add(model);
-        if (reload) {
-          model.reload();
-        }
-      }
-    }
-    return models;
   }
 
   // XML Parsing
@@ -383,10 +430,7 @@ public final class Model implements XMLWritable {
    */
   public Pipeline getPipeline(String id) {
     load();
-    for (Pipeline p : this._pipelines) {
-      if (p.id().equals(id)) { return p; }
-    }
-    return null;
+    return this._pipelinesById.get(id);
   }
 
   /**
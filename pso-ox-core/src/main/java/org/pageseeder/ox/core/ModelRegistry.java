@@ -0,0 +1,482 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the models loaded in memory so that they are not listed and parsed for every request.
+ *
+ * <ul>
+ *   <li>The models are loaded once and never modified: when a model changes, a new {@link Model} is loaded and
+ *   replaces the previous one atomically. The jobs which have already started keep the pipeline they were given.</li>
+ *   <li>When watching (see {@link #startWatching()}), the models directory is watched for changes and the models
+ *   are reloaded when a file changes, the stylesheets of a reloaded model are compiled again if the warm up is
+ *   enabled (see {@link OXConfig#getWarmUpThreads()}).</li>
+ *   <li>When not watching, the last modified date of the <code>model.xml</code> file is checked each time a model is
+ *   requested and the models directory each time the models are listed.</li>
+ *   <li>If a model cannot be loaded, for example because its definition is being edited, the previous version is
+ *   kept.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class ModelRegistry implements XMLWritable {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelRegistry.class);
+
+  /** Time to wait for more changes before reloading, so that a model being copied is only loaded once. */
+  private static final long QUIET_PERIOD_MS = 500;
+
+  /** The sole instance. */
+  private static final ModelRegistry INSTANCE = new ModelRegistry();
+
+  /** The models currently in use. */
+  private volatile Snapshot snapshot = null;
+
+  /** The thread watching the models directory, if any. */
+  private volatile Watcher watcher = null;
+
+  /** The number of times a model was loaded. */
+  private final AtomicLong loads = new AtomicLong();
+
+  private ModelRegistry() {
+  }
+
+  /**
+   * @return the model registry.
+   */
+  public static ModelRegistry get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the model with the specified name.
+   *
+   * @param name the name of the model
+   * @return the model loaded or <code>null</code> if it is not defined
+   */
+  public Model getModel(String name) {
+    if (name == null) return null;
+    Snapshot current = current();
+    Entry entry = current._models.get(name);
+    if (!isWatching()) {
+      File definition = new File(new File(current._directory, name), "model.xml");
+      long modified = definition.lastModified();
+      if (entry == null ? modified != 0 : entry._modified != modified) {
+        entry = update(name);
+      }
+    }
+    return entry != null ? entry._model : null;
+  }
+
+  /**
+   * Returns the pipeline of the specified model.
+   *
+   * @param model    the name of the model
+   * @param pipeline the id of the pipeline
+   * @return the pipeline or <code>null</code> if the model or the pipeline is not defined
+   */
+  public Pipeline getPipeline(String model, String pipeline) {
+    Model m = getModel(model);
+    return m != null ? m.getPipeline(pipeline) : null;
+  }
+
+  /**
+   * @return the models loaded in the order they are listed by {@link Model#listModels()}.
+   */
+  public List<Model> listModels() {
+    Snapshot current = current();
+    if (!isWatching() && isStale(current)) {
+      current = refresh(false);
+    }
+    List<Model> models = new ArrayList<>(current._models.size());
+    for (Entry entry : current._models.values()) {
+      models.add(entry._model);
+    }
+    return models;
+  }
+
+  /**
+   * @return the first model or <code>null</code> if there is no model.
+   */
+  public Model getDefault() {
+    List<Model> models = listModels();
+    return models.isEmpty() ? null : models.get(0);
+  }
+
+  /**
+   * Loads all the models again and compiles their stylesheets if the warm up is enabled.
+   */
+  public void refresh() {
+    refresh(true);
+  }
+
+  /**
+   * Compiles the stylesheets of the models loaded and runs the warm up tasks in the background.
+   *
+   * @return the warm up started or <code>null</code> if the warm up is disabled
+   */
+  public ModelWarmUp warmUp() {
+    int threads = OXConfig.get().getWarmUpThreads();
+    return threads > 0 ? ModelWarmUp.start(listModels(), threads) : null;
+  }
+
+  /**
+   * Starts watching the models directory, the models are loaded first.
+   *
+   * @throws IOException If the directory cannot be watched
+   */
+  public synchronized void startWatching() throws IOException {
+    if (this.watcher != null) return;
+    refresh(false);
+    Watcher w = new Watcher(current()._directory.toPath());
+    w.start();
+    this.watcher = w;
+    LOGGER.info("Watching the models in {}", current()._directory);
+  }
+
+  /**
+   * Stops watching the models directory.
+   */
+  public synchronized void stopWatching() {
+    if (this.watcher == null) return;
+    this.watcher.close();
+    this.watcher = null;
+  }
+
+  /**
+   * @return <code>true</code> if the models directory is watched for changes.
+   */
+  public boolean isWatching() {
+    Watcher w = this.watcher;
+    return w != null && w.isAlive();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    Snapshot current = current();
+    xml.openElement("model-registry");
+    xml.attribute("directory", current._directory.getPath());
+    xml.attribute("watching", Boolean.toString(isWatching()));
+    xml.attribute("version", Long.toString(current._version));
+    xml.attribute("models", current._models.size());
+    xml.attribute("loads", Long.toString(this.loads.get()));
+    xml.closeElement();
+  }
+
+  /**
+   * @return the current snapshot, rebuilt if the models directory has changed.
+   */
+  private Snapshot current() {
+    Snapshot current = this.snapshot;
+    File directory = OXConfig.get().getModelsDirectory();
+    if (current == null || !current._directory.equals(directory)) {
+      synchronized (this) {
+        current = this.snapshot;
+        if (current == null || !current._directory.equals(directory)) {
+          // The watcher is for the previous directory
+          if (this.watcher != null && current != null) {
+            LOGGER.warn("The models directory has changed, stopped watching {}", current._directory);
+            stopWatching();
+          }
+          current = load(directory, Collections.<String, Entry>emptyMap(), 1);
+          this.snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * @return <code>true</code> if a model was added, removed or modified since the snapshot was loaded.
+   */
+  private static boolean isStale(Snapshot snapshot) {
+    if (snapshot._listed != snapshot._directory.lastModified()) return true;
+    for (Map.Entry<String, Entry> e : snapshot._models.entrySet()) {
+      File definition = new File(new File(snapshot._directory, e.getKey()), "model.xml");
+      if (e.getValue()._modified != definition.lastModified()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Lists and loads all the models, the models which have not changed are kept unless <code>all</code> is true.
+   */
+  private synchronized Snapshot refresh(boolean all) {
+    Snapshot previous = current();
+    Snapshot current = load(previous._directory, all ? Collections.<String, Entry>emptyMap() : previous._models, previous._version + 1);
+    this.snapshot = current;
+    if (all) {
+      warmUp();
+    }
+    return current;
+  }
+
+  /**
+   * Loads the specified model again or removes it if it no longer exists.
+   *
+   * @return the new entry or <code>null</code>
+   */
+  private synchronized Entry update(String name) {
+    Snapshot previous = current();
+    Map<String, Entry> models = new LinkedHashMap<>(previous._models);
+    Entry entry = loadModel(previous._directory, name, previous._models.get(name));
+    if (entry == null) {
+      if (models.remove(name) != null) {
+        LOGGER.info("Model {} removed", name);
+      }
+    } else {
+      models.put(name, entry);
+    }
+    this.snapshot = new Snapshot(previous._directory, previous._listed, previous._version + 1, models);
+    return entry;
+  }
+
+  private Snapshot load(File directory, Map<String, Entry> previous, long version) {
+    long listed = directory.lastModified();
+    Map<String, Entry> models = new LinkedHashMap<>();
+    String[] names = Model.listModelNames(directory);
+    if (names != null) {
+      for (String name : names) {
+        Entry entry = previous.get(name);
+        File definition = new File(new File(directory, name), "model.xml");
+        if (entry == null || entry._modified != definition.lastModified()) {
+          entry = loadModel(directory, name, entry);
+        }
+        if (entry != null) {
+          models.put(name, entry);
+        }
+      }
+    }
+    return new Snapshot(directory, listed, version, models);
+  }
+
+  /**
+   * Loads a new version of the model.
+   *
+   * @return the new version, the previous version if it cannot be loaded or <code>null</code> if it no longer exists
+   */
+  private Entry loadModel(File directory, String name, Entry previous) {
+    File definition = new File(new File(directory, name), "model.xml");
+    if (!definition.isFile()) return null;
+    long modified = definition.lastModified();
+    Model model = new Model(name);
+    try {
+      if (model.load()) {
+        this.loads.incrementAndGet();
+        LOGGER.debug("Model {} loaded", name);
+        return new Entry(model, modified);
+      }
+    } catch (RuntimeException ex) {
+      LOGGER.warn("Unable to load model {}", name, ex);
+    }
+    if (previous != null) {
+      LOGGER.warn("Unable to load model {}, keeping the previous version", name);
+    }
+    return previous;
+  }
+
+  /**
+   * Reloads the models which have changed and compiles their stylesheets if the warm up is enabled.
+   */
+  private void changed(Set<String> names, boolean overflow) {
+    if (overflow) {
+      refresh(true);
+      return;
+    }
+    List<Model> models = new ArrayList<>();
+    for (String name : names) {
+      Entry entry = update(name);
+      if (entry != null) {
+        models.add(entry._model);
+      }
+    }
+    if (!models.isEmpty() && OXConfig.get().getWarmUpThreads() > 0) {
+      ModelWarmUp.start(models, OXConfig.get().getWarmUpThreads());
+    }
+  }
+
+  /**
+   * The models loaded at one point in time, it is never modified.
+   */
+  private static final class Snapshot {
+
+    /** The models directory. */
+    private final File _directory;
+
+    /** The last modified date of the models directory when it was listed. */
+    private final long _listed;
+
+    /** Incremented each time a model is loaded or removed. */
+    private final long _version;
+
+    /** The models by name in the order they were listed. */
+    private final Map<String, Entry> _models;
+
+    private Snapshot(File directory, long listed, long version, Map<String, Entry> models) {
+      this._directory = directory;
+      this._listed = listed;
+      this._version = version;
+      this._models = Collections.unmodifiableMap(models);
+    }
+  }
+
+  /**
+   * A model loaded with the last modified date of its definition.
+   */
+  private static final class Entry {
+
+    private final Model _model;
+
+    private final long _modified;
+
+    private Entry(Model model, long modified) {
+      this._model = model;
+      this._modified = modified;
+    }
+  }
+
+  /**
+   * Watches the models directory and all its sub-directories.
+   */
+  private final class Watcher extends Thread {
+
+    private final Path _root;
+
+    private final WatchService _service;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    private Watcher(Path root) throws IOException {
+      super("ox-model-watcher");
+      setDaemon(true);
+      this._root = root;
+      this._service = FileSystems.getDefault().newWatchService();
+      register(root);
+    }
+
+    /**
+     * Registers the directory and all its sub-directories.
+     */
+    private void register(Path directory) throws IOException {
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          WatchKey key = dir.register(Watcher.this._service, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+          Watcher.this.keys.put(key, dir);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          Set<String> names = new LinkedHashSet<>();
+          // Wait for a change, then collect the changes until it is quiet
+          boolean overflow = process(this._service.take(), names);
+          WatchKey key;
+          while ((key = this._service.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+            overflow |= process(key, names);
+          }
+          if (overflow || !names.isEmpty()) {
+            LOGGER.info("Models changed {}", overflow ? "(all)" : names);
+            changed(names, overflow);
+          }
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } catch (ClosedWatchServiceException ex) {
+        LOGGER.debug("Stopped watching the models");
+      }
+    }
+
+    /**
+     * Adds the names of the models changed to the set.
+     *
+     * @return <code>true</code> if some events were lost
+     */
+    private boolean process(WatchKey key, Set<String> names) {
+      boolean overflow = false;
+      Path dir = this.keys.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+          overflow = true;
+          continue;
+        }
+        Path path = dir.resolve((Path) event.context());
+        Path relative = this._root.relativize(path);
+        if (relative.getNameCount() > 0) {
+          names.add(relative.getName(0).toString());
+        }
+        // Watch the new directories as well
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+          try {
+            register(path);
+          } catch (IOException ex) {
+            LOGGER.warn("Unable to watch {}", path, ex);
+          }
+        }
+      }
+      if (!key.reset()) {
+        this.keys.remove(key);
+      }
+      return overflow;
+    }
+
+    private void close() {
+      try {
+        this._service.close();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to stop watching the models", ex);
+      }
+      interrupt();
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.pageseeder.ox.api.WarmUpTask;
+import org.pageseeder.ox.util.XSLT;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles the stylesheets used by the models in parallel so that the first jobs after a restart do not have
+ * to wait for them.
+ *
+ * <p>The compiled templates are kept by the XSLT cache (see {@link XSLT#getTemplates(File)}). The
+ * {@link WarmUpTask}s registered as services are also run for each model, for example to compile the schematrons
+ * used by the validation steps. The last warm up
+ * started is available from {@link #last()} so that a node can report whether it is ready.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class ModelWarmUp implements XMLWritable {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ModelWarmUp.class);
+
+  /** The last warm up started. */
+  private static volatile ModelWarmUp last = null;
+
+  /** The stylesheets to compile. */
+  private final List<Stylesheet> _stylesheets;
+
+  /** The warm up tasks to run for each model. */
+  private final List<Task> _tasks;
+
+  /** Counted down each time a stylesheet has been compiled or a task has run. */
+  private final CountDownLatch _done;
+
+  /** When the warm up started. */
+  private final long _started = System.nanoTime();
+
+  /** When the warm up finished in nanoseconds, -1 while running. */
+  private volatile long finished = -1;
+
+  private ModelWarmUp(List<Stylesheet> stylesheets, List<Task> tasks) {
+    this._stylesheets = stylesheets;
+    this._tasks = tasks;
+    this._done = new CountDownLatch(stylesheets.size() + tasks.size());
+  }
+
+  /**
+   * Starts compiling the stylesheets of the specified models and running the warm up tasks in the background.
+   *
+   * @param models  the models
+   * @param threads the maximum number of stylesheets or tasks processed at the same time
+   * @return the warm up started
+   */
+  public static ModelWarmUp start(List<Model> models, int threads) {
+    List<Stylesheet> stylesheets = new ArrayList<>();
+    Set<File> found = new HashSet<>();
+    for (Model model : models) {
+      try {
+        for (File xsl : model.listStylesheets()) {
+          if (found.add(xsl)) {
+            stylesheets.add(new Stylesheet(model.name(), model.getRoot().toPath().relativize(xsl.toPath()).toString().replace('\\', '/'), xsl));
+          }
+        }
+      } catch (IllegalArgumentException ex) {
+        LOGGER.warn("Unable to list the stylesheets of model {}: {}", model.name(), ex.getMessage());
+      }
+    }
+    List<Task> tasks = new ArrayList<>();
+    for (WarmUpTask task : ServiceLoader.load(WarmUpTask.class)) {
+      for (Model model : models) {
+        tasks.add(new Task(model, task));
+      }
+    }
+    final ModelWarmUp warmUp = new ModelWarmUp(stylesheets, tasks);
+    last = warmUp;
+    int total = stylesheets.size() + tasks.size();
+    if (total == 0) {
+      warmUp.finished = System.nanoTime();
+      return warmUp;
+    }
+    LOGGER.info("Compiling {} model stylesheets and running {} warm up tasks", stylesheets.size(), tasks.size());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, total)), r -> {
+      Thread thread = new Thread(r, "ox-warm-up");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (final Stylesheet stylesheet : stylesheets) {
+      executor.execute(() -> warmUp.compile(stylesheet));
+    }
+    for (final Task task : tasks) {
+      executor.execute(() -> warmUp.run(task));
+    }
+    executor.shutdown();
+    return warmUp;
+  }
+
+  /**
+   * @return the last warm up started or <code>null</code> if the models have not been reloaded.
+   */
+  public static ModelWarmUp last() {
+    return last;
+  }
+
+  /**
+   * @return <code>true</code> when all the stylesheets have been compiled (or failed to compile) and all the tasks
+   *         have run.
+   */
+  public boolean isWarm() {
+    return this._done.getCount() == 0;
+  }
+
+  /**
+   * Waits until all the stylesheets have been compiled and all the tasks have run.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return <code>true</code> if the stylesheets have been compiled, <code>false</code> if the time elapsed.
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    return this._done.await(timeout, unit);
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    int compiled = 0;
+    int failed = 0;
+    for (Stylesheet s : this._stylesheets) {
+      if (s.error != null) failed++;
+      else if (s.time >= 0) compiled++;
+    }
+    long end = this.finished >= 0 ? this.finished : System.nanoTime();
+    xml.openElement("warm-up");
+    xml.attribute("status", isWarm() ? "warm" : "warming");
+    xml.attribute("stylesheets", this._stylesheets.size());
+    xml.attribute("compiled", compiled);
+    xml.attribute("failed", failed);
+    xml.attribute("tasks", this._tasks.size());
+    xml.attribute("time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(end - this._started)));
+    for (Stylesheet s : this._stylesheets) {
+      xml.openElement("stylesheet");
+      xml.attribute("model", s._model);
+      xml.attribute("path", s._path);
+      if (s.time >= 0) {
+        xml.attribute("time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(s.time)));
+      }
+      if (s.error != null) {
+        xml.attribute("error", s.error);
+      }
+      xml.closeElement();
+    }
+    for (Task t : this._tasks) {
+      xml.openElement("task");
+      xml.attribute("name", t._task.getName());
+      xml.attribute("model", t._model.name());
+      if (t.time >= 0) {
+        xml.attribute("compiled", t.compiled);
+        xml.attribute("time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(t.time)));
+      }
+      if (t.error != null) {
+        xml.attribute("error", t.error);
+      }
+      xml.closeElement();
+    }
+    xml.closeElement();
+  }
+
+  /**
+   * Compiles the stylesheet and records how long it took.
+   */
+  private void compile(Stylesheet stylesheet) {
+    long start = System.nanoTime();
+    try {
+      XSLT.getTemplates(stylesheet._file);
+      LOGGER.debug("Compiled {} of model {} in {}ms", stylesheet._path, stylesheet._model, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (Exception ex) {
+      LOGGER.warn("Unable to compile {} of model {}: {}", stylesheet._path, stylesheet._model, ex.getMessage());
+      stylesheet.error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+    } finally {
+      stylesheet.time = System.nanoTime() - start;
+      done();
+    }
+  }
+
+  /**
+   * Runs the warm up task for its model and records how long it took.
+   */
+  private void run(Task task) {
+    long start = System.nanoTime();
+    try {
+      task.compiled = task._task.warmUp(task._model);
+      LOGGER.debug("Warm up {} of model {} compiled {} in {}ms", task._task.getName(), task._model.name(), task.compiled, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (Exception ex) {
+      LOGGER.warn("Unable to warm up {} of model {}: {}", task._task.getName(), task._model.name(), ex.getMessage());
+      task.error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+    } finally {
+      task.time = System.nanoTime() - start;
+      done();
+    }
+  }
+
+  /**
+   * Counts down a stylesheet or task and records when the warm up finished.
+   */
+  private void done() {
+    this._done.countDown();
+    if (this._done.getCount() == 0) {
+      this.finished = System.nanoTime();
+      LOGGER.info("Compiled {} model stylesheets and ran {} warm up tasks in {}ms", this._stylesheets.size(), this._tasks.size(), TimeUnit.NANOSECONDS.toMillis(this.finished - this._started));
+    }
+  }
+
+  /**
+   * A stylesheet to compile.
+   */
+  private static final class Stylesheet {
+
+    private final String _model;
+
+    private final String _path;
+
+    private final File _file;
+
+    /** The compile time in nanoseconds, -1 until compiled. */
+    private volatile long time = -1;
+
+    private volatile String error = null;
+
+    private Stylesheet(String model, String path, File file) {
+      this._model = model;
+      this._path = path;
+      this._file = file;
+    }
+  }
+
+  /**
+   * A warm up task to run for a model.
+   */
+  private static final class Task {
+
+    private final Model _model;
+
+    private final WarmUpTask _task;
+
+    /** The run time in nanoseconds, -1 until run. */
+    private volatile long time = -1;
+
+    /** The number of items compiled by the task. */
+    private volatile int compiled = 0;
+
+    private volatile String error = null;
+
+    private Task(Model model, WarmUpTask task) {
+      this._model = model;
+      this._task = task;
+    }
+  }
+}
@@ -19,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.api.PackageInspector;
+import org.pageseeder.ox.cleanup.PackageExpiryIndex;
 import org.pageseeder.ox.util.*;
 import org.pageseeder.xmlwriter.XMLWritable;
 import org.pageseeder.xmlwriter.XMLWriter;
@@ -476,6 +477,7 @@ public final class PackageData implements XMLWritable, Serializable {
     LOGGER.debug("Generating a new package data: {}", id);
     PackageData data = new PackageData(System.currentTimeMillis(), id, file);
     data.saveProperties();
+    PackageExpiryIndex.get().touch(id, data._created);
     LOGGER.debug("The new package data {} was created.", id);
     return data;
   }
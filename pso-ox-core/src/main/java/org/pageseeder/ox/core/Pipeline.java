@@ -16,6 +16,8 @@
 package org.pageseeder.ox.core;
 
 import org.pageseeder.ox.OXException;
+import org.pageseeder.ox.metrics.MetricTags;
+import org.pageseeder.ox.metrics.Metrics;
 import org.pageseeder.ox.util.StringUtils;
 import org.pageseeder.xmlwriter.XMLWritable;
 import org.pageseeder.xmlwriter.XMLWriter;
@@ -29,6 +31,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -85,12 +88,20 @@ public final class Pipeline implements XMLWritable, Serializable {
    */
   private final List<StepDefinition> _steps = new ArrayList<StepDefinition>();
 
+  /**
+   * Steps in this pipeline by id.
+   */
+  private final Map<String, StepDefinition> _stepsById = new HashMap<>();
+
   /** If there are any other attributes that are not expected. */
   private final Map<String, String> _extraAttributes = new HashMap<>();
 
   /** If there are any other elements that are not expected. */
   private final List<GenericInfo> _extraElements = new ArrayList<>();
 
+  /** The tags to record the metrics of this pipeline, lazily initialized. */
+  private transient volatile MetricTags _metricTags;
+
   /**
    * Instantiates a new pipeline.
    *
@@ -197,6 +208,30 @@ public final class Pipeline implements XMLWritable, Serializable {
   }
 
 
+  /**
+   * Extra attributes.
+   *
+   * @return the attributes of the pipeline element that are not expected (unmodifiable)
+   */
+  public Map<String, String> extraAttributes() {
+    return Collections.unmodifiableMap(this._extraAttributes);
+  }
+
+  /**
+   * Metric tags.
+   *
+   * @return the tags to record the metrics of this pipeline (model and pipeline id).
+   */
+  public MetricTags metricTags() {
+    MetricTags tags = this._metricTags;
+    if (tags == null) {
+      Model model = this._steps.isEmpty() ? null : this._steps.get(0).model();
+      tags = Metrics.get().tags(model != null ? model.name() : null, this._id, null);
+      this._metricTags = tags;
+    }
+    return tags;
+  }
+
   /**
    * Adds the extra attributes.
    *
@@ -212,12 +247,11 @@ public final class Pipeline implements XMLWritable, Serializable {
    * @param step the step
    */
   private void addStep (StepDefinition step) {
-    for (StepDefinition s : this._steps) {
-      //Check the uniqueness of the step
-      if (s.id().equals(step.id())) {
-        throw new IllegalArgumentException("The pipeline " + this.id() + " already has the step " + step.id());
-      }
+    //Check the uniqueness of the step
+    if (this._stepsById.containsKey(step.id())) {
+      throw new IllegalArgumentException("The pipeline " + this.id() + " already has the step " + step.id());
     }
+    this._stepsById.put(step.id(), step);
     this._steps.add(step);
   }
 
@@ -228,10 +262,7 @@ public final class Pipeline implements XMLWritable, Serializable {
    * @return the corresponding step or <code>null</code>.
    */
   public StepDefinition getStep(String id) {
-    for (StepDefinition s : this._steps) {
-      if (s.id().equals(id)) { return s; }
-    }
-    return null;
+    return this._stepsById.get(id);
   }
 
   /**
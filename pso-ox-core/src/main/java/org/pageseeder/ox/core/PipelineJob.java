@@ -17,15 +17,18 @@ package org.pageseeder.ox.core;
 
 import org.pageseeder.ox.api.Result;
 import org.pageseeder.ox.core.JobStatus.STATUS;
+import org.pageseeder.ox.tool.DefaultResult;
+import org.pageseeder.ox.tool.ResultBase;
 import org.pageseeder.ox.util.ISO8601;
 import org.pageseeder.xmlwriter.XMLWritable;
 import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A simple java object to represent a Job for each Pipeline.
@@ -62,9 +65,26 @@ public final class PipelineJob implements XMLWritable, Serializable {
   /** The job result. */
   private List<Result> results;
 
+  /** When each step started and how long it took. */
+  private final List<StepTiming> timings = new CopyOnWriteArrayList<>();
+
   /** to indicate the job is in slow land. */
   private boolean isSlow = false;
 
+  /** The scheduling priority of the job, jobs with a higher priority are processed first. */
+  private int priority = 0;
+
+  /** The group this job belongs to when sharing the processors, the model by default. */
+  private String group;
+
+  /**
+   * The maximum number of characters of the error message in the summary of a result.
+   */
+  private static final int MAX_SUMMARY_MESSAGE = 1000;
+
+  /** The XML of the results when the job was restored from a job store. */
+  private String restoredResults;
+
   /**
    * Instantiates a new pipeline job.
    *
@@ -72,15 +92,28 @@ public final class PipelineJob implements XMLWritable, Serializable {
    * @param pack     The {@link PackageData }
    */
   public PipelineJob(Pipeline pipeline, PackageData pack) {
+    this("c" + System.nanoTime() + "f" + new Random(System.currentTimeMillis()).nextInt(100), System.currentTimeMillis(), pipeline, pack);
+  }
+
+  /**
+   * Instantiates a pipeline job which already exists, for example when it is restored from a job store.
+   *
+   * @param id        The id of the job
+   * @param startTime When the job was created
+   * @param pipeline  The {@link Pipeline }
+   * @param pack      The {@link PackageData }
+   */
+  public PipelineJob(String id, long startTime, Pipeline pipeline, PackageData pack) {
+    if (id == null) { throw new NullPointerException("id is null."); }
     if (pipeline == null) { throw new NullPointerException("pipeline is null."); }
     if (pack == null) { throw new NullPointerException("pack is null."); }
 
-    this._id = "c" + System.nanoTime() + "f" + new Random(System.currentTimeMillis()).nextInt(100);
-    this._startTime = System.currentTimeMillis();
+    this._id = id;
+    this._startTime = startTime;
     this._pipeline = pipeline;
     this._package = pack;
     this.status = new JobStatus();
-    this.results = new ArrayList<>();
+    this.results = new CopyOnWriteArrayList<>();
   }
 
   /**
@@ -92,6 +125,15 @@ public final class PipelineJob implements XMLWritable, Serializable {
     return this._id;
   }
 
+  /**
+   * Gets the start time.
+   *
+   * @return when the job was created (milliseconds)
+   */
+  public long getStartTime() {
+    return this._startTime;
+  }
+
   /**
    * Gets the pipeline.
    *
@@ -158,7 +200,16 @@ public final class PipelineJob implements XMLWritable, Serializable {
    * @return status of the job.
    */
   public boolean isInactive() {
-    return System.currentTimeMillis() - this._startTime > getMaxInactiveTimeAllowed() ? true : false;
+    return System.currentTimeMillis() > getExpiryTime();
+  }
+
+  /**
+   * Gets the time after which this job is considered inactive.
+   *
+   * @return the start time plus the max inactive time allowed (milliseconds)
+   */
+  public long getExpiryTime() {
+    return this._startTime + getMaxInactiveTimeAllowed();
   }
 
   /**
@@ -170,6 +221,46 @@ public final class PipelineJob implements XMLWritable, Serializable {
     return this.isSlow;
   }
 
+  /**
+   * Gets the priority.
+   *
+   * @return the scheduling priority of the job (0 by default)
+   */
+  public int getPriority() {
+    return this.priority;
+  }
+
+  /**
+   * Sets the priority.
+   *
+   * @param priority the scheduling priority, jobs with a higher priority are processed first.
+   */
+  public void setPriority(int priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * Gets the group.
+   *
+   * <p>If no group was specified, it is the value of the <code>model</code> parameter of the package.
+   *
+   * @return the group this job belongs to when sharing the processors
+   */
+  public String getGroup() {
+    if (this.group != null) return this.group;
+    String model = this._package.getParameter("model");
+    return model != null ? model : "default";
+  }
+
+  /**
+   * Sets the group.
+   *
+   * @param group the group this job belongs to when sharing the processors (for example the model or the user).
+   */
+  public void setGroup(String group) {
+    this.group = group;
+  }
+
   /**
    * Set the job to complete status.
    */
@@ -211,6 +302,15 @@ public final class PipelineJob implements XMLWritable, Serializable {
     this.isSlow = slow;
   }
 
+  /**
+   * Restores the results of a job which has completed before it was restored from a job store.
+   *
+   * @param results the XML of the results as written by {@link #writeResultSummaries(XMLWriter)}
+   */
+  public void restoreResults(String results) {
+    this.restoredResults = results;
+  }
+
   /**
    * Adds the step result.
    *
@@ -220,6 +320,22 @@ public final class PipelineJob implements XMLWritable, Serializable {
     if (result != null) this.results.add(result);
   }
 
+  /**
+   * Adds when a step started and how long it took.
+   *
+   * @param timing the timing of the step
+   */
+  public void addStepTiming(StepTiming timing) {
+    if (timing != null) this.timings.add(timing);
+  }
+
+  /**
+   * @return when each step started and how long it took, in the order the steps completed.
+   */
+  public List<StepTiming> getStepTimings() {
+    return Collections.unmodifiableList(this.timings);
+  }
+
   /* (non-Javadoc)
    * @see org.pageseeder.xmlwriter.XMLWritable#toXML(org.pageseeder.xmlwriter.XMLWriter)
    */
@@ -235,17 +351,88 @@ public final class PipelineJob implements XMLWritable, Serializable {
       xml.attribute("input", "no-file");
     }
     xml.attribute("mode", this.isSlow ? "slow" : "normal");
+    xml.attribute("priority", this.priority);
+    xml.attribute("group", getGroup());
     if (this.download != null) {
       xml.attribute("path", this.download);
     }
 
     xml.openElement("results");
-      for (Result result:results) {
-        result.toXML(xml);
-      }
+    writeResults(xml);
     xml.closeElement();//results
 
+    if (!this.timings.isEmpty()) {
+      xml.openElement("timings");
+      for (StepTiming timing : this.timings) {
+        timing.toXML(xml);
+      }
+      xml.closeElement();//timings
+    }
+
     xml.closeElement();
   }
 
+  /**
+   * Writes the XML of the results of the steps.
+   *
+   * @param xml the XML writer
+   * @throws IOException if thrown by the writer
+   */
+  public void writeResults(XMLWriter xml) throws IOException {
+    if (this.restoredResults != null) {
+      xml.writeXML(this.restoredResults);
+    }
+    for (Result result:results) {
+      result.toXML(xml);
+    }
+  }
+
+  /**
+   * Writes a summary of the results of the steps.
+   *
+   * <p>Unlike {@link #writeResults(XMLWriter)}, the summary does not include the content of the results, such as
+   * the output files displayed by some steps, only their status, time, output path and error message.
+   *
+   * @param xml the XML writer
+   * @throws IOException if thrown by the writer
+   */
+  public void writeResultSummaries(XMLWriter xml) throws IOException {
+    if (this.restoredResults != null) {
+      xml.writeXML(this.restoredResults);
+    }
+    for (Result result : this.results) {
+      xml.openElement("result");
+      if (result instanceof DefaultResult) {
+        DefaultResult r = (DefaultResult) result;
+        if (r.info() != null) {
+          xml.attribute("step", r.info().id());
+          xml.attribute("name", r.info().name());
+        }
+      }
+      if (result instanceof ResultBase) {
+        ResultBase r = (ResultBase) result;
+        if (r.model() != null) xml.attribute("model", r.model().name());
+        xml.attribute("id", r.data().id());
+      }
+      xml.attribute("status", result.status().toString().toLowerCase());
+      xml.attribute("time", Long.toString(result.time()));
+      if (result instanceof ResultBase) {
+        xml.attribute("downloadable", String.valueOf(((ResultBase) result).isDownloadable()));
+      }
+      if (result instanceof DefaultResult) {
+        xml.attribute("path", ((DefaultResult) result).downloadPath());
+      }
+      Exception error = result.error();
+      if (error != null) {
+        String message = error.getMessage() != null ? error.getMessage() : "";
+        if (message.length() > MAX_SUMMARY_MESSAGE) message = message.substring(0, MAX_SUMMARY_MESSAGE) + "...";
+        xml.openElement("exception");
+        xml.attribute("class", error.getClass().getName());
+        xml.element("message", message);
+        xml.closeElement();
+      }
+      xml.closeElement();
+    }
+  }
+
 }
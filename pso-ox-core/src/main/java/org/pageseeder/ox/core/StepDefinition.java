@@ -20,6 +20,9 @@ import org.pageseeder.ox.api.CallbackStep;
 import org.pageseeder.ox.api.Measurable;
 import org.pageseeder.ox.api.Result;
 import org.pageseeder.ox.api.Step;
+import org.pageseeder.ox.metrics.Metric;
+import org.pageseeder.ox.metrics.MetricTags;
+import org.pageseeder.ox.metrics.Metrics;
 import org.pageseeder.ox.step.NOPStep;
 import org.pageseeder.ox.tool.InvalidResult;
 import org.pageseeder.ox.util.StringUtils;
@@ -99,6 +102,9 @@ public final class StepDefinition implements XMLWritable, Serializable {
   /** Position of step in pipeline lazily initialized */
   private transient int _position = -1;
 
+  /** The tags to record the metrics of this step, lazily initialized. */
+  private transient volatile MetricTags _metricTags;
+
   /**
    * Creates a new abstract step.
    *
@@ -254,6 +260,30 @@ public final class StepDefinition implements XMLWritable, Serializable {
     return Collections.unmodifiableMap(this._parameters);
   }
 
+  /**
+   * Attributes of the step which are not part of the step definition, for example <code>depends-on</code>.
+   *
+   * @return the extra attributes (never <code>null</code>)
+   */
+  public Map<String, String> extraAttributes() {
+    return this._extraAttributes != null ? Collections.unmodifiableMap(this._extraAttributes) : Collections.<String, String>emptyMap();
+  }
+
+  /**
+   * Metric tags.
+   *
+   * @return the tags to record the metrics of this step (model, pipeline and step id).
+   */
+  public MetricTags metricTags() {
+    MetricTags tags = this._metricTags;
+    if (tags == null) {
+      tags = Metrics.get().tags(this._model != null ? this._model.name() : null,
+          this._pipeline != null ? this._pipeline.id() : null, this._id);
+      this._metricTags = tags;
+    }
+    return tags;
+  }
+
 
   /**
    * Previous step definition.
@@ -306,6 +336,10 @@ public final class StepDefinition implements XMLWritable, Serializable {
   public Result exec(PackageData data) {
     //TODO Maybe it will need to receive the session in order to allow the steps to get user logged
     Result result;
+    MetricTags tags = metricTags();
+    // the utilities used by the step record their metrics against it
+    MetricTags previous = Metrics.get().enter(tags);
+    long start = System.nanoTime();
     try {
       // TODO replace tokens in output and parameters
       String input = getInput(data);
@@ -314,8 +348,13 @@ public final class StepDefinition implements XMLWritable, Serializable {
       Map<String, String> parameters = this.parameters();
       // step info
       StepInfoImpl info = new StepInfoImpl(this._id, this._name, input, output, parameters);
-      // process the step
-      result = this._step.process(this._model, data, info);
+      // process the step, unless its result is cached
+      StepResultCache cache = StepResultCache.get();
+      if (cache.isCached(this)) {
+        result = cache.exec(this, data, info, () -> this._step.process(this._model, data, info));
+      } else {
+        result = this._step.process(this._model, data, info);
+      }
       // process the callback step
       if (this._callbackStep != null) {
         try {
@@ -332,7 +371,10 @@ public final class StepDefinition implements XMLWritable, Serializable {
       invalidResult.error(ex);
       invalidResult.setStatus(ResultStatus.ERROR);
       result = invalidResult;
+    } finally {
+      Metrics.get().exit(previous);
     }
+    tags.record(Metric.STEP, System.nanoTime() - start, result.status() == ResultStatus.ERROR);
 
     return result;
   }
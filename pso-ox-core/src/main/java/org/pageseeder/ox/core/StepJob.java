@@ -151,7 +151,16 @@ public final class StepJob implements XMLWritable, Serializable {
    * @return status of the job.
    */
   public boolean isInactive() {
-    return System.currentTimeMillis() - this._startTime > this.getMaxInactiveTime() ? true : false;
+    return System.currentTimeMillis() > getExpiryTime();
+  }
+
+  /**
+   * Gets the time after which this job is considered inactive.
+   *
+   * @return the start time plus the max inactive time (milliseconds)
+   */
+  public long getExpiryTime() {
+    return this._startTime + this.getMaxInactiveTime();
   }
 
   /**
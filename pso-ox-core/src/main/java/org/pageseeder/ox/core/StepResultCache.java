@@ -0,0 +1,651 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.pageseeder.ox.api.Downloadable;
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.ox.api.StepInfo;
+import org.pageseeder.ox.tool.ResultBase;
+import org.pageseeder.ox.util.FileUtils;
+import org.pageseeder.ox.util.StepUtils;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the output of the steps so that a step is not executed again for the same input.
+ *
+ * <p>The callback of the step is always invoked, with the cached result if it was found.
+ *
+ * <p>Only the steps with the attribute <code>cache="true"</code> are cached and only when the cache has a directory
+ * (see {@link #setDirectory(File)}). The key of a result is a SHA-256 hash of:
+ * <ul>
+ *   <li>the class of the step;</li>
+ *   <li>the input, output and parameters of the step, with the parameters of the package they refer to
+ *   (<code>{name}</code>) replaced;</li>
+ *   <li>the content of the input files;</li>
+ *   <li>the content of the files of the model or of the package referenced by the parameters (stylesheets,
+ *   schemas, etc...), except the output.</li>
+ * </ul>
+ *
+ * <p>The other parameters of the package are not part of the key, so that the same input in another package can use
+ * the same result: a step which reads parameters of the package that are not in its definition should not be cached.
+ * Files imported by a stylesheet or a schema are not part of the key either, so the cache should be cleared when they
+ * change.
+ *
+ * <p>A step is only cached when its output (the <code>output</code> parameter or the output of the step) is
+ * different from its input and exists after the step. When the result is found, the output is copied into the package
+ * directory, so that later steps can modify it without changing the cache, and the XML of the result is the XML of
+ * the cached result.
+ *
+ * <p>The total size of the outputs stored is bounded, the least recently used outputs are deleted first.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class StepResultCache implements XMLWritable {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(StepResultCache.class);
+
+  /** The default maximum size of the cache (1GB). */
+  public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+  /** The name of the attribute of the step to enable the cache. */
+  public static final String STEP_ATTRIBUTE = "cache";
+
+  /** Changes when the key or the way results are stored changes. */
+  private static final String VERSION = "3";
+
+  private static final String OUTPUT = "output";
+
+  private static final String RESULT = "result.xml";
+
+  private static final String METADATA = "entry.properties";
+
+  /** The sole instance. */
+  private static final StepResultCache INSTANCE = new StepResultCache();
+
+  /** Where the results are stored, <code>null</code> when the cache is disabled. */
+  private volatile File directory = null;
+
+  /** The maximum size of the outputs stored. */
+  private volatile long maxSize = DEFAULT_MAX_SIZE;
+
+  /** The entries stored by key, loaded from the directory when first needed. */
+  private Map<String, Entry> entries = null;
+
+  /** The total size of the outputs stored. */
+  private long size = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong stores = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private StepResultCache() {
+  }
+
+  /**
+   * @return the step result cache.
+   */
+  public static StepResultCache get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Sets the directory where the results are stored.
+   *
+   * @param directory the directory or <code>null</code> to disable the cache
+   */
+  public synchronized void setDirectory(File directory) {
+    this.directory = directory;
+    this.entries = null;
+    this.size = 0;
+  }
+
+  /**
+   * Sets the maximum size of the outputs stored, the least recently used outputs are deleted if needed.
+   *
+   * @param maxSize the maximum size in bytes
+   */
+  public void setMaxSize(long maxSize) {
+    if (maxSize <= 0) throw new IllegalArgumentException("The maximum size must be positive");
+    this.maxSize = maxSize;
+    synchronized (this) {
+      if (this.entries != null) evict();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the cache has a directory.
+   */
+  public boolean isEnabled() {
+    return this.directory != null;
+  }
+
+  /**
+   * Indicates whether the result of the specified step can be cached.
+   *
+   * @param step the step definition
+   * @return <code>true</code> if the cache is enabled and the step has the attribute <code>cache="true"</code>
+   */
+  public boolean isCached(StepDefinition step) {
+    return isEnabled() && "true".equals(step.extraAttributes().get(STEP_ATTRIBUTE));
+  }
+
+  /**
+   * Executes the step unless its result has been stored, in which case the stored output is added to the package.
+   *
+   * @param step   the step definition
+   * @param data   the package data
+   * @param info   the step info
+   * @param action executes the step
+   * @return the result of the step
+   * @throws Exception if thrown by the step
+   */
+  Result exec(StepDefinition step, PackageData data, StepInfo info, Action action) throws Exception {
+    File root = this.directory;
+    String output = StepUtils.getParameterWithoutDynamicLogic(data, info, "output", info.output());
+    if (root == null || output == null || output.equals(info.input())) {
+      return action.exec();
+    }
+    String key;
+    try {
+      key = key(step, data, info);
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to compute the cache key of step {}", step.id(), ex);
+      return action.exec();
+    }
+
+    Result result = load(root, key, step.model(), data, output);
+    if (result != null) {
+      this.hits.incrementAndGet();
+      LOGGER.debug("Step {} found in cache {}", step.id(), key);
+      return result;
+    }
+    this.misses.incrementAndGet();
+    result = action.exec();
+    if (result.status() == ResultStatus.OK) {
+      try {
+        store(root, key, data, output, result);
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to store the result of step {} in cache", step.id(), ex);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Deletes all the results stored.
+   *
+   * @throws IOException If the files could not be deleted
+   */
+  public synchronized void clear() throws IOException {
+    File root = this.directory;
+    if (root == null) return;
+    for (String key : new ArrayList<>(entries(root).keySet())) {
+      remove(root, key);
+    }
+  }
+
+  /**
+   * @return the number of times a result was found.
+   */
+  public long hits() {
+    return this.hits.get();
+  }
+
+  /**
+   * @return the number of times a step had to be executed.
+   */
+  public long misses() {
+    return this.misses.get();
+  }
+
+  /**
+   * @return the number of results stored.
+   */
+  public long stores() {
+    return this.stores.get();
+  }
+
+  /**
+   * @return the number of results deleted to keep the size of the cache under the maximum.
+   */
+  public long evictions() {
+    return this.evictions.get();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    long hits = this.hits.get();
+    long misses = this.misses.get();
+    int count;
+    long total;
+    synchronized (this) {
+      count = this.entries != null ? this.entries.size() : 0;
+      total = this.size;
+    }
+    xml.openElement("step-cache");
+    xml.attribute("enabled", Boolean.toString(isEnabled()));
+    xml.attribute("entries", count);
+    xml.attribute("size", Long.toString(total));
+    xml.attribute("max-size", Long.toString(this.maxSize));
+    xml.attribute("hits", Long.toString(hits));
+    xml.attribute("misses", Long.toString(misses));
+    xml.attribute("stores", Long.toString(this.stores.get()));
+    xml.attribute("evictions", Long.toString(this.evictions.get()));
+    if (hits + misses > 0) {
+      xml.attribute("hit-rate", String.format(Locale.ROOT, "%.3f", (double) hits / (hits + misses)));
+    }
+    xml.closeElement();
+  }
+
+  // Key
+  // ----------------------------------------------------------------------------------------------
+
+  /**
+   * Computes the key of the result of the step.
+   */
+  static String key(StepDefinition step, PackageData data, StepInfo info) throws IOException {
+    MessageDigest digest = sha256();
+    update(digest, VERSION);
+    update(digest, step.getStep().getClass().getName());
+    update(digest, info.input());
+    update(digest, info.output());
+    Map<String, String> parameters = new TreeMap<>();
+    for (Map.Entry<String, String> p : info.parameters().entrySet()) {
+      parameters.put(p.getKey(), StepUtils.applyDynamicParameterLogic(data, info, p.getValue()));
+    }
+    for (Map.Entry<String, String> p : parameters.entrySet()) {
+      update(digest, p.getKey());
+      update(digest, p.getValue());
+    }
+    // The input files
+    for (File input : data.getFiles(info.input())) {
+      update(digest, data.getPath(input));
+      updateContent(digest, input);
+    }
+    // The files of the model or of the package referenced by the parameters
+    for (Map.Entry<String, String> p : parameters.entrySet()) {
+      String value = p.getValue();
+      if (value == null || value.isEmpty() || "output".equals(p.getKey()) || value.equals(info.output())) continue;
+      File file = step.model() != null ? step.model().getFile(value) : null;
+      if (file != null && file.isFile()) {
+        update(digest, value);
+        updateContent(digest, file);
+      }
+      for (File f : data.getFiles(value)) {
+        if (!f.exists()) continue;
+        update(digest, data.getPath(f));
+        updateContent(digest, f);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 is not supported", ex);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    if (value == null) {
+      digest.update((byte) 0);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      digest.update((byte) 1);
+      digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+      digest.update((byte) ':');
+      digest.update(bytes);
+    }
+  }
+
+  /**
+   * Adds the content of the file, or the names and contents of the files in the directory.
+   */
+  private static void updateContent(final MessageDigest digest, File file) throws IOException {
+    if (file.isFile()) {
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream in = Files.newInputStream(file.toPath())) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+      }
+    } else if (file.isDirectory()) {
+      // Sorted so that the key does not depend on the order of the listing
+      File[] children = file.listFiles();
+      if (children == null) return;
+      java.util.Arrays.sort(children);
+      for (File child : children) {
+        update(digest, child.getName());
+        updateContent(digest, child);
+      }
+    } else {
+      update(digest, null);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  // Storage
+  // ----------------------------------------------------------------------------------------------
+
+  private static File entryDirectory(File root, String key) {
+    return new File(new File(root, key.substring(0, 2)), key);
+  }
+
+  /**
+   * Adds the stored output to the package and returns the stored result.
+   *
+   * @return the result or <code>null</code> if it was not found
+   */
+  private Result load(File root, String key, Model model, PackageData data, String output) {
+    File entry = entryDirectory(root, key);
+    synchronized (this) {
+      Entry e = entries(root).get(key);
+      if (e == null) return null;
+      e._used = System.currentTimeMillis();
+    }
+    try {
+      Properties metadata = new Properties();
+      try (Reader reader = Files.newBufferedReader(new File(entry, METADATA).toPath(), StandardCharsets.UTF_8)) {
+        metadata.load(reader);
+      }
+      File target = new File(data.directory(), output);
+      copyOutput(new File(entry, OUTPUT), target);
+      String xml = new String(Files.readAllBytes(new File(entry, RESULT).toPath()), StandardCharsets.UTF_8);
+      // The result refers to the package which was processed
+      String id = metadata.getProperty("package");
+      if (id != null && !id.isEmpty()) xml = xml.replace(id, data.id());
+      String download = metadata.getProperty("download");
+      entry.setLastModified(System.currentTimeMillis());
+      return new CachedResult(model, data, xml, download != null ? new File(data.directory(), download) : null);
+    } catch (IOException ex) {
+      // For example, if it was evicted
+      LOGGER.warn("Unable to use cached result {}", key, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the output and the XML of the result.
+   */
+  private void store(File root, String key, PackageData data, String output, Result result) throws IOException {
+    File source = new File(data.directory(), output);
+    if (!source.exists()) return;
+    File entry = entryDirectory(root, key);
+    File temp = new File(entry.getParentFile(), key + ".tmp" + System.nanoTime());
+    temp.mkdirs();
+    try {
+      copy(source, new File(temp, OUTPUT));
+      XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+      result.toXML(xml);
+      xml.flush();
+      Files.write(new File(temp, RESULT).toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+      Properties metadata = new Properties();
+      metadata.setProperty("package", data.id());
+      metadata.setProperty("output", output);
+      File downloadPath = downloadPath(result);
+      if (downloadPath != null) {
+        String download = data.getPath(downloadPath);
+        if (download != null) metadata.setProperty("download", download);
+      }
+      try (Writer writer = Files.newBufferedWriter(new File(temp, METADATA).toPath(), StandardCharsets.UTF_8)) {
+        metadata.store(writer, "Step result " + key);
+      }
+      long entrySize = sizeOf(temp);
+      synchronized (this) {
+        Map<String, Entry> entries = entries(root);
+        if (entries.containsKey(key)) return;
+        try {
+          Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+          return;
+        }
+        entries.put(key, new Entry(entrySize, System.currentTimeMillis()));
+        this.size += entrySize;
+        this.stores.incrementAndGet();
+        evict();
+      }
+    } finally {
+      if (temp.exists()) FileUtils.delete(temp);
+    }
+  }
+
+  /**
+   * @return the file to download of the result if any.
+   */
+  // The pipeline processor only sets the download of the job for Downloadable results
+  @SuppressWarnings("deprecation")
+  private static File downloadPath(Result result) {
+    return result instanceof Downloadable ? ((Downloadable) result).downloadPath() : null;
+  }
+
+  /**
+   * Deletes the least recently used results until the size is under the maximum.
+   */
+  private void evict() {
+    File root = this.directory;
+    while (this.size > this.maxSize && !this.entries.isEmpty()) {
+      String oldest = null;
+      long used = Long.MAX_VALUE;
+      for (Map.Entry<String, Entry> e : this.entries.entrySet()) {
+        if (e.getValue()._used < used) {
+          oldest = e.getKey();
+          used = e.getValue()._used;
+        }
+      }
+      try {
+        remove(root, oldest);
+        this.evictions.incrementAndGet();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to delete cached result {}", oldest, ex);
+        return;
+      }
+    }
+  }
+
+  private void remove(File root, String key) throws IOException {
+    Entry e = this.entries.remove(key);
+    if (e != null) this.size -= e._size;
+    FileUtils.delete(entryDirectory(root, key));
+  }
+
+  /**
+   * @return the entries, loaded from the directory the first time.
+   */
+  private Map<String, Entry> entries(File root) {
+    if (this.entries == null) {
+      Map<String, Entry> entries = new HashMap<>();
+      long total = 0;
+      File[] prefixes = root.listFiles();
+      if (prefixes != null) {
+        for (File prefix : prefixes) {
+          File[] keys = prefix.listFiles();
+          if (keys == null) continue;
+          for (File key : keys) {
+            if (key.getName().contains(".tmp")) continue;
+            try {
+              long s = sizeOf(key);
+              entries.put(key.getName(), new Entry(s, key.lastModified()));
+              total += s;
+            } catch (IOException ex) {
+              LOGGER.warn("Unable to read cached result {}", key, ex);
+            }
+          }
+        }
+      }
+      this.entries = entries;
+      this.size = total;
+      LOGGER.info("Step result cache {} has {} entries ({} bytes)", root, entries.size(), total);
+    }
+    return this.entries;
+  }
+
+  /**
+   * Copies the stored output to the package, replacing the existing files.
+   *
+   * <p>The files are not linked since the steps which follow could modify them in place.
+   */
+  private static void copyOutput(File source, File target) throws IOException {
+    if (source.isDirectory()) {
+      final Path from = source.toPath();
+      final Path to = target.toPath();
+      Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } else if (source.isFile()) {
+      if (target.getParentFile() != null) target.getParentFile().mkdirs();
+      Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      throw new IOException("Cached output not found " + source);
+    }
+  }
+
+  private static void copy(File source, File target) throws IOException {
+    if (source.isDirectory()) {
+      FileUtils.copy(source, target);
+    } else {
+      Files.copy(source.toPath(), target.toPath());
+    }
+  }
+
+  private static long sizeOf(File file) throws IOException {
+    final long[] total = {0};
+    Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+        total[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return total[0];
+  }
+
+  /**
+   * Executes a step.
+   */
+  interface Action {
+
+    /**
+     * @return the result of the step
+     * @throws Exception if thrown by the step
+     */
+    Result exec() throws Exception;
+  }
+
+  /**
+   * A result stored.
+   */
+  private static final class Entry {
+
+    private final long _size;
+
+    private volatile long _used;
+
+    private Entry(long size, long used) {
+      this._size = size;
+      this._used = used;
+    }
+  }
+
+  /**
+   * The result of a step found in the cache.
+   *
+   * <p>It implements the deprecated {@link Downloadable} interface because the pipeline processor only sets the
+   * download of the job for results implementing it.
+   */
+  @SuppressWarnings("deprecation")
+  static final class CachedResult extends ResultBase implements Downloadable {
+
+    private final String _xml;
+
+    private final File _download;
+
+    CachedResult(Model model, PackageData data, String xml, File download) {
+      super(model, data);
+      this._xml = xml;
+      this._download = download;
+      done();
+    }
+
+    @Override
+    public boolean isDownloadable() {
+      return this._download != null;
+    }
+
+    @Override
+    public File downloadPath() {
+      return this._download;
+    }
+
+    @Override
+    public void toXML(XMLWriter xml) throws IOException {
+      xml.writeXML(this._xml);
+    }
+  }
+}
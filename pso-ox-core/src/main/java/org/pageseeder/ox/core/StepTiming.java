@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * When a step of a pipeline job started and how long it took.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class StepTiming implements XMLWritable, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String _step;
+
+  private final long _start;
+
+  private final long _duration;
+
+  private final String _thread;
+
+  /**
+   * @param step     the id of the step
+   * @param start    when the step started in milliseconds since the job started
+   * @param duration how long the step took in milliseconds
+   * @param thread   the name of the thread which processed the step
+   */
+  public StepTiming(String step, long start, long duration, String thread) {
+    this._step = step;
+    this._start = start;
+    this._duration = duration;
+    this._thread = thread;
+  }
+
+  /**
+   * @return the id of the step
+   */
+  public String step() {
+    return this._step;
+  }
+
+  /**
+   * @return when the step started in milliseconds since the job started
+   */
+  public long start() {
+    return this._start;
+  }
+
+  /**
+   * @return how long the step took in milliseconds
+   */
+  public long duration() {
+    return this._duration;
+  }
+
+  @Override
+  public String toString() {
+    return this._step + " [" + this._start + "ms +" + this._duration + "ms]";
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("timing");
+    xml.attribute("step", this._step);
+    xml.attribute("start-ms", Long.toString(this._start));
+    xml.attribute("duration-ms", Long.toString(this._duration));
+    xml.attribute("thread", this._thread);
+    xml.closeElement();
+  }
+}
@@ -38,7 +38,6 @@ import org.w3c.tidy.Tidy;
 import org.w3c.tidy.TidyMessage;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -51,7 +50,9 @@ import java.util.Properties;
  *  <li><var>input</var> the html file(s) that needs to be tidy up.</li>
  *  <li><var>output</var> the output file, where is a relative path of package data (optional)</li>
  *  <li><var>input-extensions</var> If the input is a zip, the caller can specify which files it want to be transformed.</li>
- *  <li><var>display-result</var> whether to display the result xml into Result XML (default: false)</li>
+ *  <li><var>display-result</var> whether to display the result xml into Result XML: "true", "false" or "link"
+ *  to only display the path to the content (default: false)</li>
+ *  <li><var>display-result-max-size</var> the maximum number of bytes displayed for each file (default: no limit)</li>
  *  <li><var>charset</var> default utf-8</li>
  * </ul>
  *
@@ -341,8 +342,8 @@ public final class TidyHTML implements Step {
    */
   private class TidyHTMLResult extends MultipleFilesResult<TidyFileResultInfo> implements Result {
 
-    /** The template. */
-    private final boolean _displayOutputResult;
+    /** How the content of the output files is displayed. */
+    private final ContentMode _contentMode;
 
     /**
      * Instantiates a new transform result.
@@ -356,7 +357,7 @@ public final class TidyHTML implements Step {
     public TidyHTMLResult(@NotNull Model model, @NotNull PackageData data, @NotNull StepInfo info,
         @Nullable File output, @NotNull List<TidyFileResultInfo> fileResultInfos) {
       super(model, data, info, output, fileResultInfos);
-      this._displayOutputResult = "true".equals(super.info().getParameter("display-result")) ? true : false;
+      this._contentMode = contentMode(ContentMode.NONE);
     }
 
     /**
@@ -372,11 +373,7 @@ public final class TidyHTML implements Step {
         xml.attribute("output", data().getPath(fileResultInfo.getOutput()));
         xml.attribute("status", fileResultInfo.getStatus().toString());
         // Include the generated content
-        if (_displayOutputResult) {
-          xml.openElement("content");
-          xml.writeCDATA(new String(Files.readAllBytes(fileResultInfo.getOutput().toPath()), "UTF-8"));
-          xml.closeElement();
-        }
+        writeContent(xml, fileResultInfo.getOutput(), this._contentMode);
         xml.openElement("messages");
         for (TidyMessage message:fileResultInfo.getMessages()) {
           xml.openElement("message");
@@ -18,6 +18,7 @@ package org.pageseeder.ox.inspector;
 import org.pageseeder.ox.api.PackageInspector;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.util.CharsetDetector;
+import org.pageseeder.ox.util.WellformednessChecker;
 import org.pageseeder.ox.util.XMLUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,9 +27,6 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -99,14 +97,9 @@ public class PSMLInspector implements PackageInspector {
   private static boolean isWellformedness(File xml) {
     boolean isValid = false;
     if (xml != null && xml.exists()) {
-      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-      factory.setValidating(false);
-      factory.setNamespaceAware(true);
       try {
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        builder.parse(new FileInputStream(xml));
-        isValid = true;
-      } catch (ParserConfigurationException | SAXException | IOException ex) {
+        isValid = WellformednessChecker.check(xml, 1).isWellformed();
+      } catch (IOException ex) {
         isValid = false;
       }
     }
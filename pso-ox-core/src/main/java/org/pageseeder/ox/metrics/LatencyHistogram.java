@@ -0,0 +1,225 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the latencies of an operation in logarithmic buckets.
+ *
+ * <p>Recording a sample is lock-free and does not allocate: each power of two is split into 4 buckets, so the
+ * percentiles are accurate within 25% whatever the latency, using a fixed array of counters.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean, XMLWritable {
+
+  /** Latencies under this value have their own bucket. */
+  private static final int LINEAR = 8;
+
+  /** Number of buckets for each power of two. */
+  private static final int SUB_BUCKETS = 4;
+
+  /** Enough buckets for any positive long. */
+  private static final int BUCKETS = LINEAR + (63 - 3) * SUB_BUCKETS;
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  /** The metric recorded. */
+  private final Metric _metric;
+
+  /** The tags of the metric. */
+  private final MetricTags _tags;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
+  private final LongAdder total = new LongAdder();
+
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param metric the metric recorded
+   * @param tags   the tags of the metric
+   */
+  LatencyHistogram(Metric metric, MetricTags tags) {
+    this._metric = metric;
+    this._tags = tags;
+  }
+
+  /**
+   * @return the metric recorded.
+   */
+  public Metric metric() {
+    return this._metric;
+  }
+
+  /**
+   * @return the tags of the metric.
+   */
+  public MetricTags tags() {
+    return this._tags;
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    record(nanos, false);
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   * @param error whether the operation failed
+   */
+  public void record(long nanos, boolean error) {
+    long value = Math.max(0, nanos);
+    this.buckets.incrementAndGet(index(value));
+    this.count.increment();
+    this.total.add(value);
+    if (error) this.errors.increment();
+    long current = this.max.get();
+    while (value > current && !this.max.compareAndSet(current, value)) {
+      current = this.max.get();
+    }
+  }
+
+  @Override
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  @Override
+  public long getErrors() {
+    return this.errors.sum();
+  }
+
+  @Override
+  public double getMeanMillis() {
+    long count = this.count.sum();
+    return count > 0 ? this.total.sum() / NANOS_PER_MILLI / count : 0;
+  }
+
+  @Override
+  public double getP50Millis() {
+    return percentile(0.50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getP95Millis() {
+    return percentile(0.95) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getP99Millis() {
+    return percentile(0.99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMaxMillis() {
+    return this.max.get() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets.set(i, 0);
+    }
+    this.count.reset();
+    this.errors.reset();
+    this.total.reset();
+    this.max.set(0);
+  }
+
+  /**
+   * Returns the latency under which the specified fraction of the samples are.
+   *
+   * <p>The value is the upper bound of the bucket containing the percentile, bounded by the highest latency.
+   *
+   * @param fraction between 0 and 1, for example 0.95 for the 95th percentile
+   * @return the latency in nanoseconds or 0 if there are no samples
+   */
+  public long percentile(double fraction) {
+    long[] counts = new long[BUCKETS];
+    long samples = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets.get(i);
+      samples += counts[i];
+    }
+    if (samples == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(fraction * samples));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) return Math.min(upperBound(i), this.max.get());
+    }
+    return this.max.get();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("metric");
+    xml.attribute("name", this._metric.metricName());
+    this._tags.toXMLAttributes(xml);
+    xml.attribute("count", Long.toString(getCount()));
+    xml.attribute("errors", Long.toString(getErrors()));
+    xml.attribute("mean-ms", format(getMeanMillis()));
+    xml.attribute("p50-ms", format(getP50Millis()));
+    xml.attribute("p95-ms", format(getP95Millis()));
+    xml.attribute("p99-ms", format(getP99Millis()));
+    xml.attribute("max-ms", format(getMaxMillis()));
+    xml.closeElement();
+  }
+
+  private static String format(double millis) {
+    return String.format("%.3f", millis);
+  }
+
+  /**
+   * @return the index of the bucket for the specified value
+   */
+  static int index(long value) {
+    if (value < LINEAR) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+    return LINEAR + (exponent - 3) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @return the highest value in the specified bucket
+   */
+  static long upperBound(int index) {
+    if (index < LINEAR) return index;
+    int exponent = (index - LINEAR) / SUB_BUCKETS + 3;
+    int sub = (index - LINEAR) % SUB_BUCKETS;
+    long upper = ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    return upper < 0 ? Long.MAX_VALUE : upper;
+  }
+}
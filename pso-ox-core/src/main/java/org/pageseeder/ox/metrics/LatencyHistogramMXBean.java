@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+/**
+ * The statistics of a latency histogram exposed through JMX.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public interface LatencyHistogramMXBean {
+
+  /**
+   * @return the number of samples recorded
+   */
+  long getCount();
+
+  /**
+   * @return the number of samples recorded as errors
+   */
+  long getErrors();
+
+  /**
+   * @return the average latency in milliseconds
+   */
+  double getMeanMillis();
+
+  /**
+   * @return the median latency in milliseconds
+   */
+  double getP50Millis();
+
+  /**
+   * @return the 95th percentile of the latencies in milliseconds
+   */
+  double getP95Millis();
+
+  /**
+   * @return the 99th percentile of the latencies in milliseconds
+   */
+  double getP99Millis();
+
+  /**
+   * @return the highest latency in milliseconds
+   */
+  double getMaxMillis();
+
+  /**
+   * Sets all the counts to zero.
+   */
+  void reset();
+}
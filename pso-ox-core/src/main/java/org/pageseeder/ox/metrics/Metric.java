@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+/**
+ * The latencies recorded by OX.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public enum Metric {
+
+  /** Time a pipeline job waits in the queue before being processed. */
+  QUEUE_WAIT("queue-wait"),
+
+  /** Time to process all the steps of a pipeline job. */
+  PIPELINE("pipeline"),
+
+  /** Time to execute a step, including its callback. */
+  STEP("step"),
+
+  /** Time to compile a stylesheet (only when it is not already cached). */
+  XSLT_COMPILE("xslt-compile"),
+
+  /** Time to transform a file with a compiled stylesheet. */
+  XSLT_TRANSFORM("xslt-transform"),
+
+  /** Time to copy or zip the output of a step so that it can be downloaded. */
+  DOWNLOAD("download");
+
+  private final String _name;
+
+  Metric(String name) {
+    this._name = name;
+  }
+
+  /**
+   * @return the name of the metric as displayed in the XML and JMX
+   */
+  public String metricName() {
+    return this._name;
+  }
+}
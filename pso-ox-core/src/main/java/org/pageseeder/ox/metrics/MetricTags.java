@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The model, pipeline and step the latencies are recorded for, with a histogram for each metric.
+ *
+ * <p>Tags are obtained once from {@link Metrics#tags(String, String, String)} and kept by the objects they
+ * describe (for example the step definition), so that recording a sample does not need any lookup.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class MetricTags {
+
+  private final String _model;
+
+  private final String _pipeline;
+
+  private final String _step;
+
+  /** The histograms by metric, created when first needed. */
+  private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(Metric.values().length);
+
+  MetricTags(String model, String pipeline, String step) {
+    this._model = model;
+    this._pipeline = pipeline;
+    this._step = step;
+  }
+
+  /**
+   * @return the name of the model or an empty string
+   */
+  public String model() {
+    return this._model;
+  }
+
+  /**
+   * @return the id of the pipeline or an empty string
+   */
+  public String pipeline() {
+    return this._pipeline;
+  }
+
+  /**
+   * @return the id of the step or an empty string
+   */
+  public String step() {
+    return this._step;
+  }
+
+  /**
+   * Records a latency for the specified metric, unless the metrics are disabled.
+   *
+   * @param metric the metric
+   * @param nanos  the latency in nanoseconds
+   */
+  public void record(Metric metric, long nanos) {
+    record(metric, nanos, false);
+  }
+
+  /**
+   * Records a latency for the specified metric, unless the metrics are disabled.
+   *
+   * @param metric the metric
+   * @param nanos  the latency in nanoseconds
+   * @param error  whether the operation failed
+   */
+  public void record(Metric metric, long nanos, boolean error) {
+    if (Metrics.get().isEnabled()) {
+      histogram(metric).record(nanos, error);
+    }
+  }
+
+  /**
+   * @param metric the metric
+   * @return the histogram for the specified metric, created if needed
+   */
+  public LatencyHistogram histogram(Metric metric) {
+    LatencyHistogram histogram = this.histograms.get(metric.ordinal());
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram(metric, this);
+      if (this.histograms.compareAndSet(metric.ordinal(), null, created)) {
+        Metrics.get().created(created);
+        histogram = created;
+      } else {
+        histogram = this.histograms.get(metric.ordinal());
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * @param metric the metric
+   * @return the histogram for the specified metric or <code>null</code> if nothing was recorded
+   */
+  LatencyHistogram find(Metric metric) {
+    return this.histograms.get(metric.ordinal());
+  }
+
+  /**
+   * Writes the non-empty tags as attributes.
+   *
+   * @param xml the XML writer
+   * @throws IOException if thrown by the writer
+   */
+  void toXMLAttributes(XMLWriter xml) throws IOException {
+    if (!this._model.isEmpty()) xml.attribute("model", this._model);
+    if (!this._pipeline.isEmpty()) xml.attribute("pipeline", this._pipeline);
+    if (!this._step.isEmpty()) xml.attribute("step", this._step);
+  }
+
+  @Override
+  public String toString() {
+    return this._model + '/' + this._pipeline + '/' + this._step;
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latency metrics of OX, tagged by model, pipeline and step.
+ *
+ * <p>The metrics are recorded using the {@link MetricTags} kept by the pipelines and step definitions,
+ * see {@link Metric} for the list of metrics. While a step is executed, its tags are the current tags of the
+ * thread so that the utilities it uses (for example XSLT) can record their latencies against the step.
+ *
+ * <p>The histograms can be displayed as XML or registered as MBeans under the domain
+ * <code>org.pageseeder.ox</code>.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class Metrics implements XMLWritable {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+  /** The JMX domain of the metrics. */
+  public static final String JMX_DOMAIN = "org.pageseeder.ox";
+
+  /** The sole instance. */
+  private static final Metrics INSTANCE = new Metrics();
+
+  /** The tags by model, pipeline and step. */
+  private final ConcurrentHashMap<String, MetricTags> tags = new ConcurrentHashMap<>();
+
+  /** The tags of the step being executed by each thread. */
+  private final ThreadLocal<MetricTags> current = new ThreadLocal<>();
+
+  /** The tags of the operations which are not part of a step. */
+  private final MetricTags global = tags("", "", "");
+
+  /** Whether latencies are recorded. */
+  private volatile boolean enabled = true;
+
+  /** Whether the histograms are registered as MBeans. */
+  private volatile boolean jmx = false;
+
+  private Metrics() {
+  }
+
+  /**
+   * @return the metrics.
+   */
+  public static Metrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return <code>true</code> if the latencies are recorded (default).
+   */
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * @param enabled whether the latencies are recorded
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the tags for the specified model, pipeline and step, the same instance is always returned for the
+   * same values so it should be kept rather than looked up for each sample.
+   *
+   * @param model    the name of the model (may be <code>null</code>)
+   * @param pipeline the id of the pipeline (may be <code>null</code>)
+   * @param step     the id of the step (may be <code>null</code>)
+   * @return the tags
+   */
+  public MetricTags tags(String model, String pipeline, String step) {
+    String m = model != null ? model : "";
+    String p = pipeline != null ? pipeline : "";
+    String s = step != null ? step : "";
+    return this.tags.computeIfAbsent(m + '\u0000' + p + '\u0000' + s, key -> new MetricTags(m, p, s));
+  }
+
+  /**
+   * @return the tags of the operations which are not part of a step.
+   */
+  public MetricTags global() {
+    return this.global;
+  }
+
+  /**
+   * @return the tags of the step executed by the current thread or the global tags.
+   */
+  public MetricTags current() {
+    MetricTags tags = this.current.get();
+    return tags != null ? tags : this.global;
+  }
+
+  /**
+   * Sets the tags of the step executed by the current thread.
+   *
+   * @param tags the tags of the step
+   * @return the previous tags to restore with {@link #exit(MetricTags)}
+   */
+  public MetricTags enter(MetricTags tags) {
+    MetricTags previous = this.current.get();
+    this.current.set(tags);
+    return previous;
+  }
+
+  /**
+   * Restores the tags of the current thread.
+   *
+   * @param previous the tags returned by {@link #enter(MetricTags)}
+   */
+  public void exit(MetricTags previous) {
+    if (previous != null) {
+      this.current.set(previous);
+    } else {
+      this.current.remove();
+    }
+  }
+
+  /**
+   * @return all the histograms with at least one sample.
+   */
+  public List<LatencyHistogram> histograms() {
+    List<LatencyHistogram> histograms = new ArrayList<>();
+    for (MetricTags t : this.tags.values()) {
+      for (Metric metric : Metric.values()) {
+        LatencyHistogram histogram = t.find(metric);
+        if (histogram != null && histogram.getCount() > 0) histograms.add(histogram);
+      }
+    }
+    histograms.sort((a, b) -> {
+      int compare = a.metric().compareTo(b.metric());
+      return compare != 0 ? compare : a.tags().toString().compareTo(b.tags().toString());
+    });
+    return histograms;
+  }
+
+  /**
+   * Sets all the counts to zero.
+   */
+  public void reset() {
+    for (MetricTags t : this.tags.values()) {
+      for (Metric metric : Metric.values()) {
+        LatencyHistogram histogram = t.find(metric);
+        if (histogram != null) histogram.reset();
+      }
+    }
+  }
+
+  /**
+   * Registers all the histograms as MBeans, including the ones created later.
+   */
+  public synchronized void registerMBeans() {
+    if (this.jmx) return;
+    this.jmx = true;
+    for (MetricTags t : this.tags.values()) {
+      for (Metric metric : Metric.values()) {
+        LatencyHistogram histogram = t.find(metric);
+        if (histogram != null) register(histogram);
+      }
+    }
+  }
+
+  /**
+   * Unregisters all the MBeans of the metrics.
+   */
+  public synchronized void unregisterMBeans() {
+    if (!this.jmx) return;
+    this.jmx = false;
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      for (ObjectName name : server.queryNames(new ObjectName(JMX_DOMAIN + ":type=Metrics,*"), null)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException ex) {
+      LOGGER.warn("Unable to unregister the metrics", ex);
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the histograms are registered as MBeans.
+   */
+  public boolean isRegistered() {
+    return this.jmx;
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    toXML(xml, null);
+  }
+
+  /**
+   * Writes the histograms for the specified model.
+   *
+   * @param xml   the XML writer
+   * @param model the name of the model or <code>null</code> for all the histograms
+   * @throws IOException if thrown by the writer
+   */
+  public void toXML(XMLWriter xml, String model) throws IOException {
+    xml.openElement("metrics");
+    xml.attribute("enabled", Boolean.toString(this.enabled));
+    for (LatencyHistogram histogram : histograms()) {
+      if (model == null || model.equals(histogram.tags().model())) {
+        histogram.toXML(xml);
+      }
+    }
+    xml.closeElement();
+  }
+
+  /**
+   * Called when a histogram is created.
+   */
+  void created(LatencyHistogram histogram) {
+    if (this.jmx) {
+      synchronized (this) {
+        if (this.jmx) register(histogram);
+      }
+    }
+  }
+
+  private static void register(LatencyHistogram histogram) {
+    try {
+      ObjectName name = objectName(histogram);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (!server.isRegistered(name)) server.registerMBean(histogram, name);
+    } catch (JMException ex) {
+      LOGGER.warn("Unable to register metric {} {}", histogram.metric().metricName(), histogram.tags(), ex);
+    }
+  }
+
+  /**
+   * @return the JMX name of the histogram, for example
+   *   <code>org.pageseeder.ox:type=Metrics,metric=step,model="m1",pipeline="p1",step="s1"</code>
+   */
+  static ObjectName objectName(LatencyHistogram histogram) throws JMException {
+    MetricTags tags = histogram.tags();
+    StringBuilder name = new StringBuilder(JMX_DOMAIN).append(":type=Metrics,metric=").append(histogram.metric().metricName());
+    if (!tags.model().isEmpty()) name.append(",model=").append(ObjectName.quote(tags.model()));
+    if (!tags.pipeline().isEmpty()) name.append(",pipeline=").append(ObjectName.quote(tags.pipeline()));
+    if (!tags.step().isEmpty()) name.append(",step=").append(ObjectName.quote(tags.step()));
+    return new ObjectName(name.toString());
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.core.PipelineJob;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the processors between the groups of jobs (see {@link PipelineJob#getGroup()}) and uses the
+ * priority of the jobs within a group.
+ *
+ * <ul>
+ *   <li>The next job comes from the group with the fewest running jobs, so a group with hundreds of waiting
+ *   jobs cannot hold all the processors while other groups are waiting.</li>
+ *   <li>Within a group, the job with the highest priority is processed first, and jobs with the same
+ *   priority are processed in the order they were added.</li>
+ *   <li>The priority of a waiting job increases by one for every aging interval it waits, so jobs with a
+ *   low priority are not starved.</li>
+ *   <li>Between groups with the same number of running jobs, the job with the highest priority after aging
+ *   is processed first.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class FairShareJobScheduler extends JobSchedulerBase {
+
+  /** Default aging interval: a waiting job gains one priority level every minute. */
+  public static final long DEFAULT_AGING_MS = 60 * 1000;
+
+  /** Priorities are bounded so that their rank cannot overflow. */
+  private static final int MAX_PRIORITY = 10000;
+
+  /**
+   * Highest rank first, then first added.
+   */
+  private static final Comparator<Ranked> ORDER = new Comparator<Ranked>() {
+    @Override
+    public int compare(Ranked a, Ranked b) {
+      int compare = Long.compare(b._rank, a._rank);
+      return compare != 0 ? compare : Long.compare(a._entry.sequence(), b._entry.sequence());
+    }
+  };
+
+  /** Aging interval in nanoseconds */
+  private final long _agingNanos;
+
+  /** The times are relative to the creation of the scheduler so that the ranks cannot overflow. */
+  private final long _origin = System.nanoTime();
+
+  /** The waiting jobs by group. */
+  private final Map<String, PriorityQueue<Ranked>> groups = new HashMap<>();
+
+  /**
+   * Creates a new scheduler using the default aging interval.
+   */
+  public FairShareJobScheduler() {
+    this(DEFAULT_AGING_MS);
+  }
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param agingMillis the time in milliseconds a job must wait to gain one priority level.
+   */
+  public FairShareJobScheduler(long agingMillis) {
+    if (agingMillis <= 0) throw new IllegalArgumentException("The aging interval must be positive");
+    this._agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+  }
+
+  @Override
+  protected String type() {
+    return "fair-share";
+  }
+
+  @Override
+  protected void enqueue(Entry entry) {
+    PriorityQueue<Ranked> queue = this.groups.get(entry.group());
+    if (queue == null) {
+      queue = new PriorityQueue<>(ORDER);
+      this.groups.put(entry.group(), queue);
+    }
+    queue.add(new Ranked(entry, rank(entry)));
+  }
+
+  @Override
+  protected Entry dequeue() {
+    String selected = null;
+    Ranked best = null;
+    int bestRunning = Integer.MAX_VALUE;
+    for (Map.Entry<String, PriorityQueue<Ranked>> group : this.groups.entrySet()) {
+      Ranked head = group.getValue().peek();
+      int running = running(group.getKey());
+      if (running < bestRunning || (running == bestRunning && ORDER.compare(head, best) < 0)) {
+        selected = group.getKey();
+        best = head;
+        bestRunning = running;
+      }
+    }
+    PriorityQueue<Ranked> queue = this.groups.get(selected);
+    queue.poll();
+    if (queue.isEmpty()) {
+      this.groups.remove(selected);
+    }
+    return best._entry;
+  }
+
+  @Override
+  protected Collection<Entry> entries() {
+    List<Entry> entries = new ArrayList<>();
+    for (PriorityQueue<Ranked> queue : this.groups.values()) {
+      for (Ranked ranked : queue) {
+        entries.add(ranked._entry);
+      }
+    }
+    return entries;
+  }
+
+  @Override
+  protected void clearEntries() {
+    this.groups.clear();
+  }
+
+  /**
+   * The effective priority of a job is <code>priority + (now - queued) / aging</code>. Since all the jobs age at
+   * the same rate, ordering by <code>priority * aging - queued</code> gives the same order at any time.
+   */
+  private long rank(Entry entry) {
+    long priority = Math.max(-MAX_PRIORITY, Math.min(MAX_PRIORITY, entry.job().getPriority()));
+    return priority * this._agingNanos - (entry.queued() - this._origin);
+  }
+
+  /**
+   * An entry with its rank.
+   */
+  private static final class Ranked {
+
+    private final Entry _entry;
+
+    private final long _rank;
+
+    private Ranked(Entry entry, long rank) {
+      this._entry = entry;
+      this._rank = rank;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Processes the jobs in the order they were added, ignoring priorities and groups (default).
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class FifoJobScheduler extends JobSchedulerBase {
+
+  /** The waiting jobs */
+  private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+  @Override
+  protected String type() {
+    return "fifo";
+  }
+
+  @Override
+  protected void enqueue(Entry entry) {
+    this.entries.addLast(entry);
+  }
+
+  @Override
+  protected Entry dequeue() {
+    return this.entries.pollFirst();
+  }
+
+  @Override
+  protected Collection<Entry> entries() {
+    return this.entries;
+  }
+
+  @Override
+  protected void clearEntries() {
+    this.entries.clear();
+  }
+}
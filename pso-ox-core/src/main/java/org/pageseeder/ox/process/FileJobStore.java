@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A job store saving each job as a properties file in the directory of its package data.
+ *
+ * <p>Since the records are stored with the packages, they are deleted with the packages by the clean up manager,
+ * and several nodes sharing the same OX temporary folder see the same jobs.
+ *
+ * <p>Files are replaced atomically so that a crash while saving cannot leave a partial record.
+ *
+ * <p>A job is claimed by creating a lock file next to its record: the file is created only if it does not
+ * exist, so only one node can claim the job. The lock file contains the name of the node, by default the host
+ * name, so that a node which restarts can process again the jobs it had claimed. Nodes sharing the same folder
+ * must therefore have different names.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class FileJobStore implements JobStore {
+
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileJobStore.class);
+
+  /** The prefix of the job files. */
+  private static final String PREFIX = "job-";
+
+  /** The extension of the job files. */
+  private static final String EXTENSION = ".properties";
+
+  /** The extension of the lock files. */
+  private static final String LOCK = ".lock";
+
+  /** The folder containing the package directories. */
+  private final File _root;
+
+  /** The name of the node claiming the jobs. */
+  private final String _node;
+
+  /**
+   * Creates a new job store.
+   *
+   * @param root the folder containing the package directories (usually the OX temporary folder)
+   */
+  public FileJobStore(File root) {
+    this(root, hostName());
+  }
+
+  /**
+   * Creates a new job store.
+   *
+   * @param root the folder containing the package directories (usually the OX temporary folder)
+   * @param node the name of this node, which must be different for each node sharing the folder
+   */
+  public FileJobStore(File root, String node) {
+    if (root == null) throw new NullPointerException("root is null.");
+    if (node == null) throw new NullPointerException("node is null.");
+    this._root = root;
+    this._node = node;
+  }
+
+  @Override
+  public void save(JobRecord record) throws IOException {
+    File dir = new File(this._root, record.packageId());
+    if (!dir.isDirectory()) {
+      throw new IOException("Package directory does not exist " + dir);
+    }
+    Path target = file(record.packageId(), record.id()).toPath();
+    Path temp = Files.createTempFile(dir.toPath(), PREFIX, ".tmp");
+    try {
+      try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8)) {
+        record.toProperties().store(writer, "OX pipeline job");
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  @Override
+  public void remove(String packageId, String id) throws IOException {
+    Files.deleteIfExists(file(packageId, id).toPath());
+    release(packageId, id);
+  }
+
+  @Override
+  public boolean claim(String packageId, String id) throws IOException {
+    Path lock = lock(packageId, id).toPath();
+    try {
+      Files.write(lock, this._node.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+      return true;
+    } catch (FileAlreadyExistsException ex) {
+      String owner = new String(Files.readAllBytes(lock), StandardCharsets.UTF_8);
+      return this._node.equals(owner);
+    }
+  }
+
+  @Override
+  public void release(String packageId, String id) throws IOException {
+    Files.deleteIfExists(lock(packageId, id).toPath());
+  }
+
+  @Override
+  public List<JobRecord> load() throws IOException {
+    List<JobRecord> records = new ArrayList<>();
+    File[] packages = this._root.listFiles(File::isDirectory);
+    if (packages == null) return records;
+    for (File dir : packages) {
+      File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(EXTENSION));
+      if (files == null) continue;
+      for (File f : files) {
+        Properties p = new Properties();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(f.toPath()), StandardCharsets.UTF_8)) {
+          p.load(reader);
+          records.add(JobRecord.fromProperties(p));
+        } catch (IOException | IllegalArgumentException ex) {
+          LOGGER.warn("Ignoring invalid job file {}", f, ex);
+        }
+      }
+    }
+    records.sort(Comparator.comparingLong(JobRecord::start));
+    return records;
+  }
+
+  private File file(String packageId, String id) {
+    return new File(new File(this._root, packageId), PREFIX + id + EXTENSION);
+  }
+
+  private File lock(String packageId, String id) {
+    return new File(new File(this._root, packageId), PREFIX + id + LOCK);
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException ex) {
+      LOGGER.warn("Unable to get the host name, using localhost", ex);
+      return "localhost";
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue depth and wait time of a class of jobs in a scheduler.
+ *
+ * <p>This class is not thread-safe, the scheduler must guard it.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+final class JobClassStats {
+
+  /** The name of the class of jobs. */
+  private final String _name;
+
+  /** Number of jobs waiting. */
+  private int waiting;
+
+  /** Number of jobs taken but not completed yet. */
+  private int running;
+
+  /** Total number of jobs taken. */
+  private long dispatched;
+
+  /** Total time waited by the jobs taken. */
+  private long totalWaitNanos;
+
+  /** Longest time waited by a job taken. */
+  private long maxWaitNanos;
+
+  /** When a job of this class was last added, taken or completed (see {@link System#nanoTime()}). */
+  private long lastActive = System.nanoTime();
+
+  JobClassStats(String name) {
+    this._name = name;
+  }
+
+  /**
+   * A job of this class was added.
+   */
+  void queued() {
+    this.waiting++;
+    this.lastActive = System.nanoTime();
+  }
+
+  /**
+   * A job of this class was taken.
+   *
+   * @param waitNanos how long it was waiting
+   */
+  void dispatched(long waitNanos) {
+    this.waiting--;
+    this.running++;
+    this.dispatched++;
+    this.totalWaitNanos += waitNanos;
+    this.maxWaitNanos = Math.max(this.maxWaitNanos, waitNanos);
+    this.lastActive = System.nanoTime();
+  }
+
+  /**
+   * A job of this class has completed.
+   */
+  void completed() {
+    if (this.running > 0) this.running--;
+    this.lastActive = System.nanoTime();
+  }
+
+  /**
+   * @return the number of jobs taken but not completed yet.
+   */
+  int running() {
+    return this.running;
+  }
+
+  /**
+   * Returns whether this class has no job waiting or running since the specified time.
+   *
+   * @param since the time in nanoseconds (see {@link System#nanoTime()})
+   * @return <code>true</code> if the class is idle since that time.
+   */
+  boolean isIdleSince(long since) {
+    return this.waiting == 0 && this.running == 0 && this.lastActive - since <= 0;
+  }
+
+  /**
+   * @return a copy of these statistics.
+   */
+  JobClassStats copy() {
+    JobClassStats copy = new JobClassStats(this._name);
+    copy.waiting = this.waiting;
+    copy.running = this.running;
+    copy.dispatched = this.dispatched;
+    copy.totalWaitNanos = this.totalWaitNanos;
+    copy.maxWaitNanos = this.maxWaitNanos;
+    copy.lastActive = this.lastActive;
+    return copy;
+  }
+
+  /**
+   * Write these statistics as a <code>class</code> element.
+   *
+   * @param xml the XML writer
+   * @throws IOException if thrown by the XML writer
+   */
+  void toXML(XMLWriter xml) throws IOException {
+    xml.openElement("class");
+    xml.attribute("name", this._name);
+    xml.attribute("waiting", this.waiting);
+    xml.attribute("running", this.running);
+    xml.attribute("dispatched", Long.toString(this.dispatched));
+    long average = this.dispatched > 0 ? this.totalWaitNanos / this.dispatched : 0;
+    xml.attribute("average-wait-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(average)));
+    xml.attribute("max-wait-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos)));
+    xml.closeElement();
+  }
+}
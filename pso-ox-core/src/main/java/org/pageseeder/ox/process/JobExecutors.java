@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used to run one job per thread.
+ *
+ * <p>OX is compiled for Java 11, so the virtual thread API (Java 21) is looked up at runtime.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+final class JobExecutors {
+
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobExecutors.class);
+
+  private JobExecutors() {
+  }
+
+  /**
+   * Returns an executor starting a new virtual thread for each task.
+   *
+   * <p>If virtual threads are not supported by the current JVM, a new platform thread is started for
+   * each task instead. Like virtual threads, these threads are daemon threads so that they do not prevent the
+   * JVM from exiting.
+   *
+   * @param name the prefix of the thread names
+   * @return the executor
+   */
+  static ExecutorService newPerJobExecutor(final String name) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 1L);
+      ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      LOGGER.info("Using virtual threads for {}", name);
+      return (ExecutorService) perTask.invoke(null, factory);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      LOGGER.warn("Virtual threads are not available ({}), using a new platform thread for each job.", ex.toString());
+    }
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger no = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name + this.no.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.core.JobStatus;
+import org.pageseeder.ox.core.ModelRegistry;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * The state of a pipeline job as saved by a {@link JobStore}.
+ *
+ * <p>A record only contains what is needed to create the job again: the package data and the pipeline are
+ * loaded again from the package directory and the model. The results of a completed job are only saved as a
+ * summary (see {@link PipelineJob#writeResultSummaries(org.pageseeder.xmlwriter.XMLWriter)}), so that the size of
+ * a record does not depend on the output of the steps.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class JobRecord {
+
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobRecord.class);
+
+  /** The properties of the job. */
+  private final Properties _properties;
+
+  private JobRecord(Properties properties) {
+    this._properties = properties;
+  }
+
+  /**
+   * Creates a record from the current state of a job.
+   *
+   * @param job the job
+   * @return the corresponding record
+   */
+  public static JobRecord of(PipelineJob job) {
+    Properties p = new Properties();
+    p.setProperty("id", job.getId());
+    p.setProperty("package", job.getPackageData().id());
+    String model = model(job);
+    if (model != null) p.setProperty("model", model);
+    p.setProperty("pipeline", job.getPipeline().id());
+    p.setProperty("status", job.getStatus().toString());
+    p.setProperty("percentage", Integer.toString(job.getStatus().getPercentage()));
+    p.setProperty("start", Long.toString(job.getStartTime()));
+    p.setProperty("priority", Integer.toString(job.getPriority()));
+    p.setProperty("group", job.getGroup());
+    p.setProperty("slow", Boolean.toString(job.isSlowJob()));
+    p.setProperty("max-inactive", Long.toString(job.getMaxInactiveTimeAllowed()));
+    if (job.getDownload() != null) p.setProperty("download", job.getDownload());
+    if (job.getStatus().hasCompleted()) {
+      try {
+        XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+        job.writeResultSummaries(xml);
+        xml.flush();
+        p.setProperty("results", xml.toString());
+      } catch (IOException | RuntimeException ex) {
+        LOGGER.warn("Unable to save the results of job {}", job.getId(), ex);
+      }
+    }
+    return new JobRecord(p);
+  }
+
+  /**
+   * Creates a record from properties.
+   *
+   * @param properties the properties returned by {@link #toProperties()}
+   * @return the corresponding record
+   * @throws IllegalArgumentException if the id, package or pipeline is missing
+   */
+  public static JobRecord fromProperties(Properties properties) {
+    for (String required : new String[]{"id", "package", "pipeline"}) {
+      if (properties.getProperty(required) == null) throw new IllegalArgumentException("Missing job property " + required);
+    }
+    Properties p = new Properties();
+    p.putAll(properties);
+    return new JobRecord(p);
+  }
+
+  /**
+   * @return a copy of the properties of this record.
+   */
+  public Properties toProperties() {
+    Properties p = new Properties();
+    p.putAll(this._properties);
+    return p;
+  }
+
+  /**
+   * @return the id of the job
+   */
+  public String id() {
+    return this._properties.getProperty("id");
+  }
+
+  /**
+   * @return the id of the package data
+   */
+  public String packageId() {
+    return this._properties.getProperty("package");
+  }
+
+  /**
+   * @return the status of the job when it was saved
+   */
+  public JobStatus.STATUS status() {
+    try {
+      return JobStatus.STATUS.valueOf(this._properties.getProperty("status", "STOPPED"));
+    } catch (IllegalArgumentException ex) {
+      return JobStatus.STATUS.STOPPED;
+    }
+  }
+
+  /**
+   * @return when the job was created
+   */
+  public long start() {
+    return toLong(this._properties.getProperty("start"), System.currentTimeMillis());
+  }
+
+  /**
+   * Creates the job again.
+   *
+   * <p>Jobs which had not completed are reset so that they are processed again from the first step.
+   *
+   * @return the job or <code>null</code> if the package data or the pipeline no longer exists
+   */
+  public PipelineJob toJob() {
+    PackageData data = PackageData.getPackageData(packageId());
+    if (data == null) return null;
+    String model = this._properties.getProperty("model", data.getParameter("model"));
+    if (model == null) return null;
+    Pipeline pipeline = ModelRegistry.get().getPipeline(model, this._properties.getProperty("pipeline"));
+    if (pipeline == null) return null;
+
+    PipelineJob job = new PipelineJob(id(), start(), pipeline, data);
+    job.setPriority((int) toLong(this._properties.getProperty("priority"), 0));
+    job.setGroup(this._properties.getProperty("group"));
+    job.setSlowMode(Boolean.parseBoolean(this._properties.getProperty("slow")));
+    job.setMaxInactiveTimeAllowed(toLong(this._properties.getProperty("max-inactive"), -1));
+    JobStatus.STATUS status = status();
+    if (status == JobStatus.STATUS.COMPLETED || status == JobStatus.STATUS.ERROR) {
+      job.setDownload(this._properties.getProperty("download"));
+      job.restoreResults(this._properties.getProperty("results"));
+      job.getStatus().setJobStatus(status);
+      job.getStatus().setPercentage((int) toLong(this._properties.getProperty("percentage"), 100));
+    }
+    return job;
+  }
+
+  /**
+   * @return the name of the model of the job
+   */
+  private static String model(PipelineJob job) {
+    String model = job.getPackageData().getParameter("model");
+    if (model == null && job.getPipeline().size() > 0 && job.getPipeline().getStep(0).model() != null) {
+      model = job.getPipeline().getStep(0).model().name();
+    }
+    return model;
+  }
+
+  private static long toLong(String value, long fallback) {
+    if (value == null) return fallback;
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException ex) {
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base class for the schedulers, it handles the locking, the waiting and the statistics by group.
+ *
+ * <p>The statistics of a group are removed once the group has had no job waiting or running for the idle
+ * retention time (see {@link #DEFAULT_IDLE_RETENTION_MS}), so that groups such as users do not accumulate.
+ *
+ * <p>Implementations only need to decide where to store a new entry and which entry to remove next;
+ * these methods are always called while holding the lock.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public abstract class JobSchedulerBase implements PipelineJobScheduler {
+
+  /** Default time the statistics of an idle group are kept: ten minutes. */
+  public static final long DEFAULT_IDLE_RETENTION_MS = 10 * 60 * 1000;
+
+  /** Guards all the entries and statistics. */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Signalled when a job is added. */
+  private final Condition notEmpty = this.lock.newCondition();
+
+  /** The statistics by group. */
+  private final Map<String, JobClassStats> stats = new TreeMap<>();
+
+  /** The number of waiting jobs. */
+  private int size = 0;
+
+  /** Sequence number to keep the order of insertion. */
+  private long sequence = 0;
+
+  /** How long the statistics of an idle group are kept in nanoseconds. */
+  private long idleRetentionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_RETENTION_MS);
+
+  /** When the idle groups were last removed. */
+  private long lastPrune = System.nanoTime();
+
+  /**
+   * @return the name of this type of scheduler
+   */
+  protected abstract String type();
+
+  /**
+   * Store a new entry.
+   *
+   * @param entry the entry to store
+   */
+  protected abstract void enqueue(Entry entry);
+
+  /**
+   * Remove the next entry, there is always at least one.
+   *
+   * @return the next entry to process
+   */
+  protected abstract Entry dequeue();
+
+  /**
+   * @return all the entries stored
+   */
+  protected abstract Collection<Entry> entries();
+
+  /**
+   * Remove all the entries stored.
+   */
+  protected abstract void clearEntries();
+
+  /**
+   * Sets how long the statistics of a group are kept once it has no job waiting or running.
+   *
+   * @param millis the idle retention time in milliseconds
+   */
+  public final void setIdleRetention(long millis) {
+    if (millis < 0) throw new IllegalArgumentException("The idle retention time must not be negative");
+    this.lock.lock();
+    try {
+      this.idleRetentionNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of jobs of the specified group which have been taken and not completed.
+   *
+   * @param group the group
+   * @return the number of running jobs
+   */
+  protected final int running(String group) {
+    JobClassStats s = this.stats.get(group);
+    return s != null ? s.running() : 0;
+  }
+
+  @Override
+  public final void add(PipelineJob job) {
+    this.lock.lock();
+    try {
+      Entry entry = new Entry(job, System.nanoTime(), this.sequence++);
+      enqueue(entry);
+      stats(entry.group()).queued();
+      this.size++;
+      this.notEmpty.signal();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public final PipelineJob take() throws InterruptedException {
+    this.lock.lockInterruptibly();
+    try {
+      while (this.size == 0) {
+        this.notEmpty.await();
+      }
+      Entry entry = dequeue();
+      this.size--;
+      stats(entry.group()).dispatched(System.nanoTime() - entry.queued());
+      return entry.job();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public final void completed(PipelineJob job) {
+    this.lock.lock();
+    try {
+      JobClassStats s = this.stats.get(job.getGroup());
+      if (s != null) s.completed();
+      pruneIdle();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public final int size() {
+    this.lock.lock();
+    try {
+      return this.size;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public final List<PipelineJob> jobs() {
+    this.lock.lock();
+    try {
+      List<PipelineJob> jobs = new ArrayList<>(this.size);
+      for (Entry entry : entries()) {
+        jobs.add(entry.job());
+      }
+      return jobs;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public final void clear() {
+    this.lock.lock();
+    try {
+      clearEntries();
+      this.stats.clear();
+      this.size = 0;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    List<JobClassStats> copy = new ArrayList<>();
+    int waiting;
+    this.lock.lock();
+    try {
+      waiting = this.size;
+      for (JobClassStats s : this.stats.values()) {
+        copy.add(s.copy());
+      }
+    } finally {
+      this.lock.unlock();
+    }
+    xml.openElement("scheduler");
+    xml.attribute("type", type());
+    xml.attribute("waiting", waiting);
+    for (JobClassStats s : copy) {
+      s.toXML(xml);
+    }
+    xml.closeElement();
+  }
+
+  /**
+   * Removes the statistics of the groups idle for longer than the retention time.
+   *
+   * <p>The groups are only checked once per eighth of the retention time.
+   */
+  private void pruneIdle() {
+    long now = System.nanoTime();
+    if (now - this.lastPrune < this.idleRetentionNanos / 8) return;
+    this.lastPrune = now;
+    long since = now - this.idleRetentionNanos;
+    Iterator<JobClassStats> it = this.stats.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().isIdleSince(since)) it.remove();
+    }
+  }
+
+  private JobClassStats stats(String group) {
+    JobClassStats s = this.stats.get(group);
+    if (s == null) {
+      s = new JobClassStats(group);
+      this.stats.put(group, s);
+    }
+    return s;
+  }
+
+  /**
+   * A job waiting in the scheduler.
+   */
+  protected static final class Entry {
+
+    private final PipelineJob _job;
+
+    private final String _group;
+
+    private final long _queued;
+
+    private final long _sequence;
+
+    private Entry(PipelineJob job, long queued, long sequence) {
+      this._job = job;
+      this._group = job.getGroup();
+      this._queued = queued;
+      this._sequence = sequence;
+    }
+
+    /**
+     * @return the job
+     */
+    public PipelineJob job() {
+      return this._job;
+    }
+
+    /**
+     * @return the group of the job when it was added
+     */
+    public String group() {
+      return this._group;
+    }
+
+    /**
+     * @return when the job was added in nanoseconds (see {@link System#nanoTime()})
+     */
+    public long queued() {
+      return this._queued;
+    }
+
+    /**
+     * @return the order in which the job was added
+     */
+    public long sequence() {
+      return this._sequence;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persists the state of the pipeline jobs so that they survive a restart.
+ *
+ * <p>The job queue saves a record each time a job is added, started or completed and removes it when the
+ * completed job is evicted. When the queue is created, the waiting and running jobs are added again and the
+ * completed jobs are restored with their results.
+ *
+ * <p>When several nodes share the same store, a job must be claimed before it is processed so that it is
+ * processed by one node only.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public interface JobStore {
+
+  /**
+   * Saves or replaces the record of a job.
+   *
+   * @param record the state of the job
+   * @throws IOException if the record could not be saved
+   */
+  void save(JobRecord record) throws IOException;
+
+  /**
+   * Removes the record of a job.
+   *
+   * @param packageId the id of the package data of the job
+   * @param id        the id of the job
+   * @throws IOException if the record could not be removed
+   */
+  void remove(String packageId, String id) throws IOException;
+
+  /**
+   * Loads all the records.
+   *
+   * @return the records in the order the jobs were created
+   * @throws IOException if the records could not be loaded
+   */
+  List<JobRecord> load() throws IOException;
+
+  /**
+   * Claims a job before it is processed.
+   *
+   * <p>The claim must be atomic: when several nodes claim the same job, only one of them succeeds. A node which
+   * has already claimed the job succeeds again, for example after a restart.
+   *
+   * <p>By default, the store is used by a single node and the claim always succeeds.
+   *
+   * @param packageId the id of the package data of the job
+   * @param id        the id of the job
+   * @return <code>true</code> if the job can be processed by this node;
+   *         <code>false</code> if it has been claimed by another node
+   * @throws IOException if the job could not be claimed
+   */
+  default boolean claim(String packageId, String id) throws IOException {
+    return true;
+  }
+
+  /**
+   * Releases the claim on a job once it has completed.
+   *
+   * @param packageId the id of the package data of the job
+   * @param id        the id of the job
+   * @throws IOException if the claim could not be released
+   */
+  default void release(String packageId, String id) throws IOException {
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.pageseeder.ox.process;
 
+import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.core.JobStatus;
 import org.pageseeder.ox.core.PipelineJob;
 import org.pageseeder.xmlwriter.XMLWritable;
@@ -44,6 +45,18 @@ public class PipelineJobManager implements XMLWritable{
   /** a thread executor */
   private static ExecutorService SLOW_EXECUTOR = null;
 
+  /** the executor running each job on its own thread in virtual mode */
+  private static ExecutorService JOB_EXECUTOR = null;
+
+  /** the executor running the steps of the pipelines processed as a graph, created when first needed */
+  private static ExecutorService STEP_EXECUTOR = null;
+
+  /** the class of scheduler used to order the waiting jobs */
+  private static volatile Class<? extends PipelineJobScheduler> JOB_SCHEDULER = FifoJobScheduler.class;
+
+  /** where the jobs are persisted, null to keep them in memory only */
+  private static volatile JobStore JOB_STORE = null;
+
   /** the job queue */
   private PipelineJobQueue queue;
 
@@ -74,11 +87,61 @@ public class PipelineJobManager implements XMLWritable{
 
   }
 
+  /**
+   * Gets the job scheduler.
+   *
+   * @return the class of scheduler used to order the waiting pipeline jobs
+   */
+  public static Class<? extends PipelineJobScheduler> getJobScheduler() {
+    return JOB_SCHEDULER;
+  }
+
+  /**
+   * Sets the job scheduler, for example {@link FairShareJobScheduler}.
+   *
+   * <p>The scheduler must be set before the first job manager is created.
+   *
+   * @param jobScheduler the class of scheduler used to order the waiting pipeline jobs
+   */
+  public static void setJobScheduler(Class<? extends PipelineJobScheduler> jobScheduler) {
+    JOB_SCHEDULER = jobScheduler != null ? jobScheduler : FifoJobScheduler.class;
+  }
+
+  /**
+   * Gets the job store.
+   *
+   * @return where the pipeline jobs are persisted or <code>null</code> if they are only kept in memory
+   */
+  public static JobStore getJobStore() {
+    return JOB_STORE;
+  }
+
+  /**
+   * Sets the job store, for example a {@link FileJobStore}.
+   *
+   * <p>The store must be set before the first job manager is created, the jobs it contains are then recovered.
+   *
+   * @param jobStore where the pipeline jobs are persisted or <code>null</code> to keep them in memory only
+   */
+  public static void setJobStore(JobStore jobStore) {
+    JOB_STORE = jobStore;
+  }
+
   /**
    * Start the Pipeline job.
+   *
+   * <p>A fixed number of processors is started once and each of them keeps taking jobs from the queue,
+   * waiting on the queue while there is nothing to process.
+   *
+   * <p>In {@link OXConfig.ExecutorMode#VIRTUAL} mode, a single processor takes the jobs from the queue
+   * and runs each of them on a new virtual thread, as long as there are less than
+   * {@link OXConfig#getMaxConcurrentJobs()} jobs running.
    */
   private void start() {
-    DEFAULT_EXECUTOR = Executors.newFixedThreadPool(this._noThreads, new ThreadFactory() {
+    OXConfig config = OXConfig.get();
+    boolean virtual = config.getExecutorMode() == OXConfig.ExecutorMode.VIRTUAL;
+    final int noProcessors = virtual ? 1 : this._noThreads;
+    DEFAULT_EXECUTOR = Executors.newFixedThreadPool(noProcessors, new ThreadFactory() {
       private int no = 1;
 
       @Override
@@ -96,6 +159,16 @@ public class PipelineJobManager implements XMLWritable{
         return new Thread(r, "Pipeline Processor - Slow Land.");
       }
     });
+
+    if (virtual) {
+      JOB_EXECUTOR = JobExecutors.newPerJobExecutor("Pipeline Job - ");
+      DEFAULT_EXECUTOR.execute(new PipelineProcessor(this.queue, JOB_EXECUTOR, config.getMaxConcurrentJobs()));
+    } else {
+      for (int i = 0; i < noProcessors; i++) {
+        DEFAULT_EXECUTOR.execute(new PipelineProcessor(this.queue, false));
+      }
+    }
+    SLOW_EXECUTOR.execute(new PipelineProcessor(this.queue, true));
   }
 
   /**
@@ -103,16 +176,7 @@ public class PipelineJobManager implements XMLWritable{
    */
   public void stop() {
     LOGGER.debug("Stopping the Pipeline Processor.");
-    if (DEFAULT_EXECUTOR != null) {
-      DEFAULT_EXECUTOR.shutdown();
-      DEFAULT_EXECUTOR = null;
-    }
-
-    if (SLOW_EXECUTOR != null) {
-      SLOW_EXECUTOR.shutdown();
-      SLOW_EXECUTOR = null;
-    }
-
+    shutdown();
     if (this.queue != null) {
       this.queue.clear();
       this.queue = null;
@@ -120,21 +184,56 @@ public class PipelineJobManager implements XMLWritable{
     LOGGER.debug("Stopped.");
   }
 
+  /**
+   * Stops the processors and the threads running the jobs and their steps, the jobs are not removed from the queue.
+   *
+   * <p>This should be called when OX is stopped, the processors are started again by the next manager created.
+   */
+  public static void shutdown() {
+    synchronized (PipelineJobManager.class) {
+      // The processors are waiting on the queue, they need to be interrupted
+      if (DEFAULT_EXECUTOR != null) {
+        DEFAULT_EXECUTOR.shutdownNow();
+        DEFAULT_EXECUTOR = null;
+      }
+
+      if (SLOW_EXECUTOR != null) {
+        SLOW_EXECUTOR.shutdownNow();
+        SLOW_EXECUTOR = null;
+      }
+
+      if (JOB_EXECUTOR != null) {
+        JOB_EXECUTOR.shutdownNow();
+        JOB_EXECUTOR = null;
+      }
+
+      if (STEP_EXECUTOR != null) {
+        STEP_EXECUTOR.shutdownNow();
+        STEP_EXECUTOR = null;
+      }
+    }
+  }
+
+  /**
+   * @return the executor running the steps of the pipelines processed as a graph.
+   */
+  static ExecutorService stepExecutor() {
+    synchronized (PipelineJobManager.class) {
+      if (STEP_EXECUTOR == null) {
+        STEP_EXECUTOR = JobExecutors.newPerJobExecutor("Pipeline Step - ");
+      }
+      return STEP_EXECUTOR;
+    }
+  }
+
   /**
    * Add a job to process.
    *
    * @param job the PipelineJob
    */
   public void addJob(PipelineJob job) {
-    // add job to queue
+    // add job to queue, the next available processor will pick it up
     this.queue.add(job);
-    if (job.isSlowJob()) {
-      SLOW_EXECUTOR.execute(new PipelineProcessor(this.queue, true));
-    } else {
-      // start  thread or use the existing thread in the pool
-      DEFAULT_EXECUTOR.execute(new PipelineProcessor(this.queue, false));
-    }
-
   }
 
   /**
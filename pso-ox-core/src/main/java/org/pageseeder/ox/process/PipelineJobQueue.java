@@ -16,26 +16,48 @@
 package org.pageseeder.ox.process;
 
 import org.pageseeder.ox.OXException;
+import org.pageseeder.ox.cleanup.PackageExpiryIndex;
 import org.pageseeder.ox.core.JobStatus;
 import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.ox.metrics.Metric;
 import org.pageseeder.xmlwriter.XMLWritable;
 import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A job queue to store the jobs.
  *
+ * <p>Every job added to the queue is also registered in an index by job id, so that looking up a job or its
+ * status does not depend on the number of jobs stored. Completed jobs are kept in the order they become
+ * inactive, so only the expired jobs at the head of that queue are looked at when they are evicted.</p>
+ *
+ * <p>The order in which waiting jobs are processed is decided by a {@link PipelineJobScheduler} for each
+ * lane (normal and slow), see {@link PipelineJobManager#setJobScheduler(Class)}.</p>
+ *
+ * <p>If a {@link JobStore} is configured (see {@link PipelineJobManager#setJobStore(JobStore)}), each job is saved when it
+ * is added, started and completed. When the queue is created, the jobs which had not completed are added again
+ * and the completed jobs are restored with their results.</p>
+ *
  * @author Ciber Cai
  * @since 4 April 2016
  */
 public class PipelineJobQueue implements XMLWritable {
 
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PipelineJobQueue.class);
+
   /**  the total number of completed jobs to store in memory. */
 
   private final int _maxStoredCompletedJob;
@@ -47,31 +69,39 @@ public class PipelineJobQueue implements XMLWritable {
   private static volatile AtomicBoolean LOCKED = new AtomicBoolean(false);
 
   /**  The list of imported jobs. */
-  private BlockingQueue<PipelineJob> waiting;
+  private PipelineJobScheduler waiting;
 
   /**  the list of slow jobs. */
-  private BlockingQueue<PipelineJob> slow;
+  private PipelineJobScheduler slow;
 
-  /**  The list of completed jobs. */
+  /**  The list of completed jobs ordered by expiry time. */
   private BlockingQueue<PipelineJob> completed;
 
   /**  The current running import job *. */
-  private BlockingQueue<PipelineJob> running;
+  private Set<PipelineJob> running;
+
+  /** All the jobs in this queue indexed by job id. */
+  private ConcurrentHashMap<String, PipelineJob> jobs;
 
   /** The key will be the package and the value the job id. */
   private ConcurrentHashMap<String, String> packageAndJobMap;
 
+  /** Where the jobs are persisted (may be null). */
+  private final JobStore _store;
+
   /**
    * the private constructor.
    */
   private PipelineJobQueue(int maxStoredCompletedJob) {
-    this.waiting = new LinkedBlockingQueue<PipelineJob>();
-    this.slow = new LinkedBlockingQueue<PipelineJob>();
-    this.completed = new LinkedBlockingQueue<PipelineJob>();
-    this.running = new LinkedBlockingQueue<PipelineJob>();
+    this.waiting = newScheduler();
+    this.slow = newScheduler();
+    this.completed = new PriorityBlockingQueue<>(11, Comparator.comparingLong(PipelineJob::getExpiryTime));
+    this.running = ConcurrentHashMap.newKeySet();
+    this.jobs = new ConcurrentHashMap<>();
     this._maxStoredCompletedJob = maxStoredCompletedJob;
     this.packageAndJobMap = new ConcurrentHashMap<>();
-
+    this._store = PipelineJobManager.getJobStore();
+    recover();
   }
 
   /**
@@ -88,12 +118,40 @@ public class PipelineJobQueue implements XMLWritable {
     return INSTANCE;
   }
 
+  /**
+   * Creates the scheduler defined for the job manager.
+   *
+   * @return a new scheduler or the FIFO scheduler if it could not be created.
+   */
+  private static PipelineJobScheduler newScheduler() {
+    Class<? extends PipelineJobScheduler> type = PipelineJobManager.getJobScheduler();
+    try {
+      return type.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException ex) {
+      LOGGER.error("Unable to create job scheduler {}, using FIFO", type.getName(), ex);
+      return new FifoJobScheduler();
+    }
+  }
+
   /**
    * Adds the.
    *
    * @param job the job
    */
   protected void add(PipelineJob job) {
+    save(job);
+    enqueue(job);
+    //clear completed job when new job comes in.
+    clearCompletedJob();
+  }
+
+  /**
+   * Adds the job to the index and to the scheduler of its lane.
+   *
+   * @param job the job
+   */
+  private void enqueue(PipelineJob job) {
+    this.jobs.put(job.getId(), job);
     if (job.isSlowJob()) {
       this.slow.add(job);
     } else {
@@ -101,21 +159,34 @@ public class PipelineJobQueue implements XMLWritable {
     }
 
     this.packageAndJobMap.put(job.getPackageData().id(), job.getId());
-    //clear completed job when new job comes in.
-    clearCompletedJob();
   }
 
   /**
    * Next.
    *
+   * <p>The order of the jobs is decided by the scheduler of the lane. The jobs claimed by another node sharing
+   * the job store are removed from this queue and skipped.
+   *
    * @param slowMode the slow mode
    * @return the next processing job
    * @throws InterruptedException the interrupted exception
    */
   protected PipelineJob next(boolean slowMode) throws InterruptedException {
-    PipelineJob job = slowMode ? this.slow.take() : this.waiting.take();
+    PipelineJobScheduler lane = slowMode ? this.slow : this.waiting;
+    PipelineJob job = lane.take();
+    while (job != null && !claim(job)) {
+      LOGGER.info("Skipping job {}, it has been claimed by another node", job.getId());
+      lane.completed(job);
+      this.jobs.remove(job.getId());
+      this.packageAndJobMap.remove(job.getPackageData().id(), job.getId());
+      job = lane.take();
+    }
     if (job != null) {
+      long waited = System.currentTimeMillis() - job.getStartTime();
+      job.getPipeline().metricTags().record(Metric.QUEUE_WAIT, TimeUnit.MILLISECONDS.toNanos(waited));
       this.running.add(job);
+      job.started();
+      save(job);
     }
     return job;
   }
@@ -137,28 +208,7 @@ public class PipelineJobQueue implements XMLWritable {
    */
   protected PipelineJob get(String id) {
     if (id == null) { throw new NullPointerException("job id cannot be null"); }
-
-    // check running job
-    for (PipelineJob job : this.running) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    // check completed queue
-    for (PipelineJob job : this.completed) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    // check the waiting queue
-    for (PipelineJob job : this.waiting) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    // check the slow queue
-    for (PipelineJob job : this.slow) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    return null;
+    return this.jobs.get(id);
   }
 
   /**
@@ -194,22 +244,131 @@ public class PipelineJobQueue implements XMLWritable {
    * @param job set the job to completed queue
    */
   protected void completed(PipelineJob job) {
+    if (job.isSlowJob()) {
+      this.slow.completed(job);
+    } else {
+      this.waiting.completed(job);
+    }
     this.completed.add(job);
     this.running.remove(job);
+    save(job);
+    if (this._store != null) {
+      try {
+        this._store.release(job.getPackageData().id(), job.getId());
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to release job {} in the job store", job.getId(), ex);
+      }
+    }
+    PackageExpiryIndex.get().touch(job.getPackageData().id());
   }
 
   /**
    * clear the completed job.
+   *
+   * <p>The completed queue is ordered by expiry time, so the inactive jobs are at its head and the first job
+   * which is still active means that all the jobs behind it are still active.</p>
    */
-  private void clearCompletedJob() {
-    for (PipelineJob job : this.completed) {
-      if (this.completed.size() >= this._maxStoredCompletedJob && job.isInactive()) {
-        this.completed.remove(job);
-        this.packageAndJobMap.remove(job.getPackageData().id());
+  private synchronized void clearCompletedJob() {
+    while (this.completed.size() >= this._maxStoredCompletedJob) {
+      // The head expires first: if it is still active, so are the others
+      PipelineJob job = this.completed.poll();
+      if (job == null) break;
+      if (!job.isInactive()) {
+        this.completed.add(job);
+        break;
       }
+      this.jobs.remove(job.getId());
+      this.packageAndJobMap.remove(job.getPackageData().id());
+      if (this._store != null) {
+        try {
+          this._store.remove(job.getPackageData().id(), job.getId());
+        } catch (IOException ex) {
+          LOGGER.warn("Unable to remove job {} from the job store", job.getId(), ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Saves the current state of the job in the job store if any.
+   *
+   * <p>A failure is logged but does not prevent the job from being processed.
+   *
+   * @param job the job
+   */
+  private void save(PipelineJob job) {
+    if (this._store == null) return;
+    try {
+      this._store.save(JobRecord.of(job));
+    } catch (IOException | RuntimeException ex) {
+      LOGGER.warn("Unable to save job {} in the job store", job.getId(), ex);
     }
   }
 
+  /**
+   * Claims the job in the job store if any.
+   *
+   * <p>If the job cannot be claimed because of an error, it is processed anyway.
+   *
+   * @param job the job
+   * @return <code>false</code> if the job has been claimed by another node
+   */
+  private boolean claim(PipelineJob job) {
+    if (this._store == null) return true;
+    try {
+      return this._store.claim(job.getPackageData().id(), job.getId());
+    } catch (IOException | RuntimeException ex) {
+      LOGGER.warn("Unable to claim job {} in the job store", job.getId(), ex);
+      return true;
+    }
+  }
+
+  /**
+   * Loads the jobs from the job store if any.
+   *
+   * <p>The jobs which were waiting or running are added again, since their steps are processed again from the
+   * start. The completed jobs are only restored so that their status and results are still available.
+   */
+  private void recover() {
+    if (this._store == null) return;
+    List<JobRecord> records;
+    try {
+      records = this._store.load();
+    } catch (IOException | RuntimeException ex) {
+      LOGGER.error("Unable to load the jobs from the job store", ex);
+      return;
+    }
+    int waiting = 0;
+    int completed = 0;
+    for (JobRecord record : records) {
+      PipelineJob job;
+      try {
+        job = record.toJob();
+      } catch (RuntimeException ex) {
+        LOGGER.warn("Unable to recover job {}", record.id(), ex);
+        job = null;
+      }
+      if (job == null) {
+        LOGGER.info("Discarding job {}, its package data or pipeline no longer exists", record.id());
+        try {
+          this._store.remove(record.packageId(), record.id());
+        } catch (IOException ex) {
+          LOGGER.warn("Unable to remove job {} from the job store", record.id(), ex);
+        }
+      } else if (job.getStatus().hasCompleted()) {
+        this.jobs.put(job.getId(), job);
+        this.packageAndJobMap.put(job.getPackageData().id(), job.getId());
+        this.completed.add(job);
+        completed++;
+      } else {
+        enqueue(job);
+        save(job);
+        waiting++;
+      }
+    }
+    LOGGER.info("Recovered {} waiting and {} completed jobs from the job store", waiting, completed);
+  }
+
   /* (non-Javadoc)
    * @see org.pageseeder.xmlwriter.XMLWritable#toXML(org.pageseeder.xmlwriter.XMLWriter)
    */
@@ -218,16 +377,22 @@ public class PipelineJobQueue implements XMLWritable {
     xml.openElement("jobs");
     toXML(xml, this.completed, "completed");
     toXML(xml, this.running, "running");
-    toXML(xml, this.slow, "slow");
-    toXML(xml, this.waiting, "waiting");
+    toXML(xml, this.slow.jobs(), "slow");
+    toXML(xml, this.waiting.jobs(), "waiting");
+    xml.openElement("lane");
+    xml.attribute("name", "normal");
+    this.waiting.toXML(xml);
+    xml.closeElement();
+    xml.openElement("lane");
+    xml.attribute("name", "slow");
+    this.slow.toXML(xml);
+    xml.closeElement();
     xml.closeElement();
   }
 
-  private void toXML(XMLWriter xml, BlockingQueue<PipelineJob> queue, String name) throws IOException {
+  private void toXML(XMLWriter xml, Collection<PipelineJob> queue, String name) throws IOException {
     xml.openElement(name);
-    Iterator<PipelineJob> it = queue.iterator();
-    while (it.hasNext()) {
-      PipelineJob job = it.next();
+    for (PipelineJob job : queue) {
       job.toXML(xml);
     }
     xml.closeElement();
@@ -257,6 +422,11 @@ public class PipelineJobQueue implements XMLWritable {
       this.running = null;
     }
 
+    if (this.jobs != null) {
+      this.jobs.clear();
+      this.jobs = null;
+    }
+
     if (this.packageAndJobMap != null) {
       this.packageAndJobMap.clear();
       this.packageAndJobMap = null;
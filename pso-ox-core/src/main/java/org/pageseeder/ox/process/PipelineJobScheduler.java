@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.xmlwriter.XMLWritable;
+
+import java.util.List;
+
+/**
+ * Decides in which order the waiting pipeline jobs are processed.
+ *
+ * <p>The {@link PipelineJobQueue} uses one scheduler for the normal lane and one for the slow lane.
+ * The implementation is defined by {@link PipelineJobManager#getJobScheduler()} and must have
+ * a public constructor with no argument.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public interface PipelineJobScheduler extends XMLWritable {
+
+  /**
+   * Add a job waiting to be processed.
+   *
+   * @param job the job
+   */
+  void add(PipelineJob job);
+
+  /**
+   * Remove the next job to process, waiting until one is available.
+   *
+   * @return the next job to process
+   * @throws InterruptedException if interrupted while waiting
+   */
+  PipelineJob take() throws InterruptedException;
+
+  /**
+   * Notify the scheduler that a job returned by {@link #take()} has completed.
+   *
+   * @param job the job
+   */
+  void completed(PipelineJob job);
+
+  /**
+   * @return the number of waiting jobs.
+   */
+  int size();
+
+  /**
+   * @return a copy of the list of waiting jobs in no particular order.
+   */
+  List<PipelineJob> jobs();
+
+  /**
+   * Remove all the waiting jobs.
+   */
+  void clear();
+
+}
@@ -19,6 +19,8 @@ import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.api.Downloadable;
 import org.pageseeder.ox.api.Result;
 import org.pageseeder.ox.core.*;
+import org.pageseeder.ox.metrics.Metric;
+import org.pageseeder.ox.metrics.MetricTags;
 import org.pageseeder.ox.util.FileUtils;
 import org.pageseeder.ox.util.ZipUtils;
 import org.slf4j.Logger;
@@ -26,6 +28,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>A thread for processing step jobs from pipeline.</p>
@@ -38,18 +48,26 @@ class PipelineProcessor implements Runnable {
   /** The logger */
   private static final Logger LOGGER = LoggerFactory.getLogger(PipelineProcessor.class);
 
+  /** The value of the pipeline <code>execution</code> attribute to process the steps as a graph. */
+  static final String GRAPH_EXECUTION = "graph";
+
   private final PipelineJobQueue _queue;
 
   private final boolean _slowMode;
 
+  /** When not null, each job is executed on its own thread from this executor. */
+  private final Executor _jobExecutor;
+
+  /** Limits the number of jobs running on the job executor. */
+  private final Semaphore _permits;
+
   /**
    * Instantiates a new Pipeline processor.
    *
    * @param queue the queue
    */
   PipelineProcessor(PipelineJobQueue queue) {
-    this._queue = queue;
-    this._slowMode = false;
+    this(queue, false);
   }
 
   /**
@@ -61,112 +79,322 @@ class PipelineProcessor implements Runnable {
   PipelineProcessor(PipelineJobQueue queue, boolean slowMode) {
     this._queue = queue;
     this._slowMode = slowMode;
+    this._jobExecutor = null;
+    this._permits = null;
+  }
+
+  /**
+   * Instantiates a new Pipeline processor dispatching each job to the specified executor.
+   *
+   * @param queue       the job queue.
+   * @param jobExecutor the executor running the jobs.
+   * @param permits     the maximum number of jobs running at the same time.
+   */
+  PipelineProcessor(PipelineJobQueue queue, Executor jobExecutor, int permits) {
+    this._queue = queue;
+    this._slowMode = false;
+    this._jobExecutor = jobExecutor;
+    this._permits = new Semaphore(permits);
   }
 
   @Override
   public void run() {
-    while (true) {
+    while (!Thread.currentThread().isInterrupted()) {
+      // get the first waiting job from queue, waiting until one is available
+      PipelineJob job;
       try {
-        // get the first waiting job from queue
-        PipelineJob job = this._queue.next(this._slowMode);
-
-        // process the job
-        LOGGER.debug("start job {}", job.getId());
-        process(job);
+        if (this._permits != null) {
+          this._permits.acquire();
+        }
+        job = this._queue.next(this._slowMode);
+      } catch (InterruptedException ex) {
+        LOGGER.debug("Pipeline processor interrupted, stopping.");
+        Thread.currentThread().interrupt();
+        break;
+      }
 
-        // put it to completed list
-        if (job.getStatus().hasCompleted()) {
-          this._queue.completed(job);
+      if (this._jobExecutor != null) {
+        try {
+          this._jobExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                handle(job);
+              } finally {
+                PipelineProcessor.this._permits.release();
+              }
+            }
+          });
+        } catch (RejectedExecutionException ex) {
+          LOGGER.warn("Unable to execute job {}, the executor is shutting down.", job.getId());
+          this._permits.release();
+          break;
         }
+      } else {
+        handle(job);
+      }
+    }
 
-        LOGGER.debug("job completed ? {}", job.getStatus());
+  }
 
-        Thread.sleep(1000);
+  /**
+   * Process the job and put it in the completed list.
+   *
+   * @param job the job to process.
+   */
+  void handle(PipelineJob job) {
+    LOGGER.debug("start job {}", job.getId());
+    try {
+      process(job);
+    } catch (RuntimeException ex) {
+      // Do not let a single job stop this processor
+      LOGGER.error("Unable to process job {}", job.getId(), ex);
+      job.failed();
+    }
 
-      } catch (InterruptedException ex) {
-        LOGGER.warn("Pipeline process thread error {}.", ex);
-      }
+    // put it to completed list
+    if (job.getStatus().hasCompleted()) {
+      this._queue.completed(job);
     }
 
+    LOGGER.debug("job completed ? {}", job.getStatus());
   }
 
   /**
    * Process the pipeline.
    *
    * @param job the job needs to process.
-   * @throws IOException when I/O error occur.
    */
   private static void process(PipelineJob job) {
     Pipeline pipeline = job.getPipeline();
-    PackageData data = job.getPackageData();
+    //Change the status from stopped to processing.
+    job.started();
+    LOGGER.debug("total number of step {} ", pipeline.size());
+    long start = System.nanoTime();
+    boolean failed = isGraph(pipeline) ? processGraph(job) : processSequence(job);
+    pipeline.metricTags().record(Metric.PIPELINE, System.nanoTime() - start, failed);
+    // set the status to completed.
+    if (!failed) {
+      job.completed();
+    }
+  }
+
+  /**
+   * Indicates whether the independent steps of the pipeline can be processed at the same time, that is when the
+   * pipeline has the attribute <code>execution="graph"</code> (see {@link StepGraph}).
+   *
+   * @param pipeline the pipeline
+   * @return <code>true</code> to use a graph of steps, <code>false</code> to process the steps in order.
+   */
+  static boolean isGraph(Pipeline pipeline) {
+    return GRAPH_EXECUTION.equals(pipeline.extraAttributes().get("execution"));
+  }
+
+  /**
+   * Process the steps of the pipeline in order.
+   *
+   * @param job the job needs to process.
+   * @return <code>true</code> if the job failed.
+   */
+  private static boolean processSequence(PipelineJob job) {
+    Pipeline pipeline = job.getPipeline();
     JobStatus status = job.getStatus();
     int perc = 100 / pipeline.size();
     int buffer = 5;
     boolean failed = false;
-    //Change the status from stopped to processing.
-    job.started();
-    LOGGER.debug("total number of step {} ", pipeline.size());
+    long started = System.nanoTime();
     for (int i = 0; i < pipeline.size(); i++) {
       LOGGER.debug("processing the [{}] step ", i + 1);
       status.setPercentage(status.getPercentage() + buffer);
       StepDefinition stepDef = pipeline.getStep(i);
       // execute the step
-      Result result = stepDef.exec(data);
-      job.addStepResult(result);
+      Result result = exec(job, stepDef, started);
 
       status.setPercentage(status.getPercentage() + perc - buffer);
 
-      // set the download path if the result object is {@link Downloadable}
-      if (result.status() == ResultStatus.OK && result instanceof Downloadable) {
-        File output = ((Downloadable) result).downloadPath();
+      failed |= handle(job, stepDef, result);
 
-        if (output != null && output.isFile()) {
-          String filename = data.id() + File.separator + output.getName();
-          File destFile = new File(OXConfig.getOXTempFolder(), filename);
-          if (!destFile.getParentFile().exists()) {
-            destFile.mkdirs();
-          }
-          LOGGER.debug("store file to {}", destFile.getAbsoluteFile());
-          try {
-            FileUtils.copy(output, destFile);
-          } catch (IOException ex) {
-            LOGGER.debug("Cannot copy file from  {} to {}", output, destFile, ex);
-            failed = true;
+      // catch the error
+      if (result.status() == ResultStatus.ERROR && stepDef.failOnError()) {
+        //If true stop, if false continues
+        break;
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Process the steps of the pipeline as soon as the steps they depend on have completed, the steps which do not
+   * depend on each other are processed at the same time.
+   *
+   * <p>When a step fails and its definition is <code>fail-on-error</code>, no other step is started and the
+   * steps already started are completed.
+   *
+   * @param job the job needs to process.
+   * @return <code>true</code> if the job failed.
+   */
+  private static boolean processGraph(PipelineJob job) {
+    final Pipeline pipeline = job.getPipeline();
+    JobStatus status = job.getStatus();
+    StepGraph graph = StepGraph.of(pipeline);
+    int size = graph.size();
+    int perc = 100 / size;
+    int[][] dependents = graph.dependents();
+    int[] waiting = new int[size];
+    final long started = System.nanoTime();
+    CompletionService<Integer> completion = new ExecutorCompletionService<>(PipelineJobManager.stepExecutor());
+    Result[] results = new Result[size];
+    int running = 0;
+    for (int i = 0; i < size; i++) {
+      waiting[i] = graph.dependencies(i).length;
+      if (waiting[i] == 0) {
+        running += submit(completion, job, pipeline.getStep(i), i, results, started);
+      }
+    }
+
+    boolean failed = false;
+    boolean stopped = false;
+    int downloadFrom = -1;
+    try {
+      while (running > 0) {
+        int i = completion.take().get();
+        running--;
+        StepDefinition stepDef = pipeline.getStep(i);
+        Result result = results[i];
+        status.setPercentage(status.getPercentage() + perc);
+
+        // Only keep the download of the last step in the pipeline
+        String download = job.getDownload();
+        if (i >= downloadFrom) {
+          failed |= handle(job, stepDef, result);
+          if (job.getDownload() != null && !job.getDownload().equals(download)) downloadFrom = i;
+        } else if (result.status() == ResultStatus.ERROR) {
+          // The step completed after a later step set the download, only mark the job as failed
+          LOGGER.debug("result {} for step {}", result.status(), stepDef.id());
+          job.failed();
+          failed = true;
+        }
+
+        if (result.status() == ResultStatus.ERROR && stepDef.failOnError()) {
+          stopped = true;
+        }
+        if (!stopped) {
+          for (int d : dependents[i]) {
+            if (--waiting[d] == 0) {
+              running += submit(completion, job, pipeline.getStep(d), d, results, started);
+            }
           }
+        }
+      }
+    } catch (InterruptedException ex) {
+      LOGGER.warn("Interrupted while processing job {}", job.getId());
+      Thread.currentThread().interrupt();
+      job.failed();
+      failed = true;
+    } catch (ExecutionException ex) {
+      // Steps catch their own exceptions, so this is unexpected
+      throw new IllegalStateException("Unable to process a step of job " + job.getId(), ex.getCause());
+    }
+    return failed;
+  }
+
+  /**
+   * Submit the step to the step executor.
+   *
+   * @return the number of steps submitted
+   */
+  private static int submit(CompletionService<Integer> completion, final PipelineJob job, final StepDefinition stepDef,
+                            final int index, final Result[] results, final long started) {
+    LOGGER.debug("processing the step {} of job {}", stepDef.id(), job.getId());
+    completion.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        results[index] = exec(job, stepDef, started);
+        return index;
+      }
+    });
+    return 1;
+  }
+
+  /**
+   * Execute the step and add its result and timing to the job.
+   *
+   * @param job     the job
+   * @param stepDef the step to execute
+   * @param started when the job started processing in nanoseconds
+   * @return the result of the step
+   */
+  private static Result exec(PipelineJob job, StepDefinition stepDef, long started) {
+    long start = System.nanoTime();
+    Result result = stepDef.exec(job.getPackageData());
+    long end = System.nanoTime();
+    job.addStepResult(result);
+    job.addStepTiming(new StepTiming(stepDef.id(), TimeUnit.NANOSECONDS.toMillis(start - started),
+        TimeUnit.NANOSECONDS.toMillis(end - start), Thread.currentThread().getName()));
+    return result;
+  }
+
+  /**
+   * Set the download path if the result object is {@link Downloadable} and mark the job as failed if the step failed
+   * or its output could not be stored for download.
+   *
+   * @param job     the job
+   * @param stepDef the step which was executed
+   * @param result  the result of the step
+   * @return <code>true</code> if the job failed.
+   */
+  private static boolean handle(PipelineJob job, StepDefinition stepDef, Result result) {
+    PackageData data = job.getPackageData();
+    boolean failed = false;
+    // set the download path if the result object is {@link Downloadable}
+    if (result.status() == ResultStatus.OK && result instanceof Downloadable) {
+      File output = ((Downloadable) result).downloadPath();
+      MetricTags tags = stepDef.metricTags();
+      long start = System.nanoTime();
+
+      if (output != null && output.isFile()) {
+        String filename = data.id() + File.separator + output.getName();
+        File destFile = new File(OXConfig.getOXTempFolder(), filename);
+        if (!destFile.getParentFile().exists()) {
+          destFile.getParentFile().mkdirs();
+        }
+        LOGGER.debug("store file to {}", destFile.getAbsoluteFile());
+        try {
+          FileUtils.copy(output, destFile);
           job.setDownload(filename);
-        } else if (output != null && output.isDirectory()) {
-          String filename = data.id() + "/" + System.nanoTime() + "-" + output.getName() + ".zip";
-          File destFile = new File(OXConfig.getOXTempFolder(), filename);
+        } catch (IOException ex) {
+          LOGGER.error("Cannot copy file from {} to {}", output, destFile, ex);
+          failed = true;
+        }
+        tags.record(Metric.DOWNLOAD, System.nanoTime() - start, failed);
+      } else if (output != null && output.isDirectory()) {
+        String filename = data.id() + "/" + System.nanoTime() + "-" + output.getName() + ".zip";
+        File destFile = new File(OXConfig.getOXTempFolder(), filename);
 
-          if (!destFile.getParentFile().exists()) {
-            destFile.getParentFile().mkdirs();
-          }
-          try {
-            ZipUtils.zip(output, destFile);
-          } catch (IOException ex) {
-            LOGGER.error("Cannot compress folder {} to file {}", output, destFile, ex);
-          }
+        if (!destFile.getParentFile().exists()) {
+          destFile.getParentFile().mkdirs();
+        }
+        try {
+          ZipUtils.zip(output, destFile);
           LOGGER.debug("store dir to {}", destFile.getAbsoluteFile());
-          // FileUtils.copyFile(output, destFile);
           job.setDownload(filename);
+        } catch (IOException ex) {
+          LOGGER.error("Cannot compress folder {} to file {}", output, destFile, ex);
+          failed = true;
         }
+        tags.record(Metric.DOWNLOAD, System.nanoTime() - start, failed);
       }
+    }
 
-      // catch the error
-      if (result.status() == ResultStatus.ERROR) {
-        LOGGER.debug("result {}", result.status());
-        job.failed();
-        failed = true;
-        //If true stop, if false continues
-        if (stepDef.failOnError()) {
-          break;
-        }
-      }
+    // catch the error
+    if (result.status() == ResultStatus.ERROR) {
+      LOGGER.debug("result {} for step {}", result.status(), stepDef.id());
+      failed = true;
     }
-    // set the status to completed.
-    if (!failed) {
-      job.completed();
+    if (failed) {
+      job.failed();
     }
+    return failed;
   }
 
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.StepDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The dependencies between the steps of a pipeline, used to run the independent steps at the same time.
+ *
+ * <p>A step only depends on steps defined before it, so the graph never has cycles. The dependencies of a step are:
+ * <ul>
+ *   <li>the steps listed in its <code>depends-on</code> attribute (ids separated by commas or spaces), if specified;</li>
+ *   <li>otherwise, if the step is not <code>async</code>, all the steps before it and all the steps after it
+ *   depend on it as well, so that the pipelines which do not use <code>async</code> are processed in order;</li>
+ *   <li>otherwise, the steps which write its input (the <code>input</code> parameter or the output of the previous
+ *   step) or a path used by its parameters, and the steps which read or write its output.</li>
+ * </ul>
+ *
+ * <p>Paths are compared after normalising the separators, a path depends on another if it is the same or one
+ * is inside the other.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+final class StepGraph {
+
+  /** The logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(StepGraph.class);
+
+  /** The indexes of the steps each step depends on. */
+  private final int[][] _dependencies;
+
+  private StepGraph(int[][] dependencies) {
+    this._dependencies = dependencies;
+  }
+
+  /**
+   * Builds the dependencies between the steps of the specified pipeline.
+   *
+   * @param pipeline the pipeline
+   * @return the corresponding graph
+   */
+  static StepGraph of(Pipeline pipeline) {
+    int size = pipeline.size();
+    int[][] dependencies = new int[size][];
+    Map<String, Integer> positions = new HashMap<>();
+    List<List<String>> reads = new ArrayList<>(size);
+    List<List<String>> writes = new ArrayList<>(size);
+    int barrier = -1;
+    String previousOutput = null;
+    for (int i = 0; i < size; i++) {
+      StepDefinition step = pipeline.getStep(i);
+      TreeSet<Integer> depends = new TreeSet<>();
+
+      // What the step reads and writes
+      List<String> read = new ArrayList<>();
+      List<String> write = new ArrayList<>();
+      String input = step.parameters().get("input");
+      read.add(normalise(input != null ? input : previousOutput));
+      for (Map.Entry<String, String> p : step.parameters().entrySet()) {
+        if (p.getKey().endsWith("output")) write.add(normalise(p.getValue()));
+        else read.add(normalise(p.getValue()));
+      }
+      if (step.output() != null) {
+        write.add(normalise(step.output()));
+        previousOutput = step.output();
+      }
+
+      String explicit = step.extraAttributes().get("depends-on");
+      if (explicit != null) {
+        for (String id : explicit.split("[,\\s]+")) {
+          if (id.isEmpty()) continue;
+          Integer position = positions.get(id);
+          if (position != null) {
+            depends.add(position);
+          } else {
+            LOGGER.warn("Step {} of pipeline {} depends on {} which is not defined before it", step.id(), pipeline.id(), id);
+          }
+        }
+      } else if (!step.async()) {
+        for (int j = 0; j < i; j++) depends.add(j);
+        barrier = i;
+      } else {
+        if (barrier >= 0) depends.add(barrier);
+        for (int j = barrier + 1; j < i; j++) {
+          if (overlaps(read, writes.get(j)) || overlaps(write, writes.get(j)) || overlaps(write, reads.get(j))) {
+            depends.add(j);
+          }
+        }
+      }
+
+      dependencies[i] = new int[depends.size()];
+      int k = 0;
+      for (Integer d : depends) dependencies[i][k++] = d;
+      positions.put(step.id(), i);
+      reads.add(read);
+      writes.add(write);
+    }
+    return new StepGraph(dependencies);
+  }
+
+  /**
+   * @return the number of steps
+   */
+  int size() {
+    return this._dependencies.length;
+  }
+
+  /**
+   * @param step the index of a step
+   * @return the indexes of the steps it depends on in ascending order
+   */
+  int[] dependencies(int step) {
+    return this._dependencies[step].clone();
+  }
+
+  /**
+   * @return the indexes of the steps which depend on each step
+   */
+  int[][] dependents() {
+    List<List<Integer>> lists = new ArrayList<>();
+    for (int i = 0; i < size(); i++) lists.add(new ArrayList<Integer>());
+    for (int i = 0; i < size(); i++) {
+      for (int d : this._dependencies[i]) lists.get(d).add(i);
+    }
+    int[][] dependents = new int[size()][];
+    for (int i = 0; i < size(); i++) {
+      List<Integer> list = lists.get(i);
+      dependents[i] = new int[list.size()];
+      for (int k = 0; k < list.size(); k++) dependents[i][k] = list.get(k);
+    }
+    return dependents;
+  }
+
+  private static String normalise(String path) {
+    if (path == null) return null;
+    String p = path.trim().replace('\\', '/');
+    while (p.startsWith("./")) p = p.substring(2);
+    while (p.endsWith("/")) p = p.substring(0, p.length() - 1);
+    return p.isEmpty() ? null : p;
+  }
+
+  private static boolean overlaps(List<String> a, List<String> b) {
+    for (String x : a) {
+      if (x == null) continue;
+      for (String y : b) {
+        if (y != null && (x.equals(y) || x.startsWith(y + '/') || y.startsWith(x + '/'))) return true;
+      }
+    }
+    return false;
+  }
+}
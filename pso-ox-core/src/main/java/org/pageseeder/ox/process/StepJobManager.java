@@ -15,6 +15,7 @@
  */
 package org.pageseeder.ox.process;
 
+import org.pageseeder.ox.OXConfig;
 import org.pageseeder.ox.core.JobStatus;
 import org.pageseeder.ox.core.StepJob;
 import org.slf4j.Logger;
@@ -43,6 +44,9 @@ public class StepJobManager {
   /** a thread executor */
   private static ExecutorService DEFAULT_EXECUTOR = null;
 
+  /** the executor running each job on its own thread in virtual mode */
+  private static ExecutorService JOB_EXECUTOR = null;
+
   /** the job queue */
   private StepJobQueue queue;
 
@@ -75,9 +79,17 @@ public class StepJobManager {
 
   /**
    * Start the Step job manager.
+   *
+   * <p>The processors are started once and wait on the queue for the next job.
+   *
+   * <p>In {@link OXConfig.ExecutorMode#VIRTUAL} mode, a single processor runs each job on a new virtual thread
+   * (see {@link PipelineJobManager}).
    */
   private void start() {
-    DEFAULT_EXECUTOR = Executors.newFixedThreadPool(this._noThreads, new ThreadFactory() {
+    OXConfig config = OXConfig.get();
+    boolean virtual = config.getExecutorMode() == OXConfig.ExecutorMode.VIRTUAL;
+    final int noProcessors = virtual ? 1 : this._noThreads;
+    DEFAULT_EXECUTOR = Executors.newFixedThreadPool(noProcessors, new ThreadFactory() {
       private int no = 1;
 
       @Override
@@ -87,6 +99,15 @@ public class StepJobManager {
         return t;
       }
     });
+
+    if (virtual) {
+      JOB_EXECUTOR = JobExecutors.newPerJobExecutor("Step Job - ");
+      DEFAULT_EXECUTOR.execute(new StepJobProcessor(this.queue, JOB_EXECUTOR, config.getMaxConcurrentJobs()));
+    } else {
+      for (int i = 0; i < noProcessors; i++) {
+        DEFAULT_EXECUTOR.execute(new StepJobProcessor(this.queue));
+      }
+    }
   }
 
   /**
@@ -94,10 +115,7 @@ public class StepJobManager {
    */
   public void stop() {
     LOGGER.debug("Stopping the Step job manager.");
-    if (DEFAULT_EXECUTOR != null) {
-      DEFAULT_EXECUTOR.shutdown();
-      DEFAULT_EXECUTOR = null;
-    }
+    shutdown();
     if (this.queue != null) {
       this.queue.clear();
       this.queue = null;
@@ -105,16 +123,33 @@ public class StepJobManager {
     LOGGER.debug("Stopped.");
   }
 
+  /**
+   * Stops the processors and the threads running the jobs, the jobs are not removed from the queue.
+   *
+   * <p>This should be called when OX is stopped, the processors are started again by the next manager created.
+   */
+  public static void shutdown() {
+    synchronized (StepJobManager.class) {
+      // The processors are waiting on the queue, they need to be interrupted
+      if (DEFAULT_EXECUTOR != null) {
+        DEFAULT_EXECUTOR.shutdownNow();
+        DEFAULT_EXECUTOR = null;
+      }
+      if (JOB_EXECUTOR != null) {
+        JOB_EXECUTOR.shutdownNow();
+        JOB_EXECUTOR = null;
+      }
+    }
+  }
+
   /**
    * Add a job to process.
    *
    * @param job the StepJob
    */
   public void addJob(StepJob job) {
-    // add job to queue
+    // add job to queue, the next available processor will pick it up
     this.queue.add(job);
-    // start  thread or use the existing thread in the pool
-    DEFAULT_EXECUTOR.execute(new StepJobProcessor(this.queue));
   }
 
   /**
@@ -23,6 +23,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * <p>A thread for processing step jobs.</p>
@@ -37,6 +40,12 @@ class StepJobProcessor implements Runnable {
 
   private final StepJobQueue _queue;
 
+  /** When not null, each job is executed on its own thread from this executor. */
+  private final Executor _jobExecutor;
+
+  /** Limits the number of jobs running on the job executor. */
+  private final Semaphore _permits;
+
   /**
    * Instantiates a new Step job processor.
    *
@@ -44,33 +53,84 @@ class StepJobProcessor implements Runnable {
    */
   StepJobProcessor(StepJobQueue queue) {
     this._queue = queue;
+    this._jobExecutor = null;
+    this._permits = null;
+  }
+
+  /**
+   * Instantiates a new Step job processor dispatching each job to the specified executor.
+   *
+   * @param queue       the job queue.
+   * @param jobExecutor the executor running the jobs.
+   * @param permits     the maximum number of jobs running at the same time.
+   */
+  StepJobProcessor(StepJobQueue queue, Executor jobExecutor, int permits) {
+    this._queue = queue;
+    this._jobExecutor = jobExecutor;
+    this._permits = new Semaphore(permits);
   }
 
   @Override
   public void run() {
-    while (true) {
+    while (!Thread.currentThread().isInterrupted()) {
+      // get the first waiting job from queue, waiting until one is available
+      StepJob job;
       try {
-        // get the first waiting job from queue
-        StepJob job = this._queue.next();
-
-        // process the job
-        LOGGER.debug("start job {}", job.getId());
-        process(job);
+        if (this._permits != null) {
+          this._permits.acquire();
+        }
+        job = this._queue.next();
+      } catch (InterruptedException ex) {
+        LOGGER.debug("Step job processor interrupted, stopping.");
+        Thread.currentThread().interrupt();
+        break;
+      }
 
-        // put it to completed list
-        if (job.getStatus().hasCompleted()) {
-          this._queue.completed(job);
+      if (this._jobExecutor != null) {
+        try {
+          this._jobExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                handle(job);
+              } finally {
+                StepJobProcessor.this._permits.release();
+              }
+            }
+          });
+        } catch (RejectedExecutionException ex) {
+          LOGGER.warn("Unable to execute job {}, the executor is shutting down.", job.getId());
+          this._permits.release();
+          break;
         }
+      } else {
+        handle(job);
+      }
+    }
 
-        LOGGER.debug("job completed ? {}", job.getStatus());
+  }
 
-        Thread.sleep(1000);
+  /**
+   * Process the job and put it in the completed list.
+   *
+   * @param job the job to process.
+   */
+  private void handle(StepJob job) {
+    LOGGER.debug("start job {}", job.getId());
+    try {
+      process(job);
+    } catch (RuntimeException ex) {
+      // Do not let a single job stop this processor
+      LOGGER.error("Unable to process job {}", job.getId(), ex);
+      job.failed();
+    }
 
-      } catch (InterruptedException ex) {
-        LOGGER.warn("Pipeline process thread error {}.", ex);
-      }
+    // put it to completed list
+    if (job.getStatus().hasCompleted()) {
+      this._queue.completed(job);
     }
 
+    LOGGER.debug("job completed ? {}", job.getStatus());
   }
 
   /**
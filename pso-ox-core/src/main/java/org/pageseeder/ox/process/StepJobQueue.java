@@ -19,13 +19,24 @@ import org.pageseeder.ox.OXException;
 import org.pageseeder.ox.core.JobStatus;
 import org.pageseeder.ox.core.StepJob;
 
+import java.util.Comparator;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A job queue to store the jobs.
  *
+ * <p>Jobs are indexed by id and completed jobs are evicted in the order they become inactive
+ * (see {@link PipelineJobQueue}).</p>
+ *
+ * <p>Unlike the pipeline jobs, the step jobs are not saved in the {@link JobStore}: a step job runs a single step
+ * for a client which waits for it, so after a restart the client gets an unknown job and submits the step again.
+ * Recovering the job as well would run the step twice.</p>
+ *
  * @author Carlos Cabral
  * @since 27 February 2017
  */
@@ -45,11 +56,14 @@ public class StepJobQueue {
   /** The list of waiting job. */
   private BlockingQueue<StepJob> waiting;
 
-  /** The list of completed jobs. */
+  /** The list of completed jobs ordered by expiry time. */
   private BlockingQueue<StepJob> completed;
 
   /** The current running job. **/
-  private BlockingQueue<StepJob> running;
+  private Set<StepJob> running;
+
+  /** All the jobs in this queue indexed by job id. */
+  private ConcurrentHashMap<String, StepJob> jobs;
 
   /** Max number of completed job stored in memory. */
   private int _maxStoredCompletedJob;
@@ -61,8 +75,9 @@ public class StepJobQueue {
    */
   private StepJobQueue(int maxStoredCompletedJob) {
     this.waiting = new LinkedBlockingQueue<StepJob>();
-    this.completed = new LinkedBlockingQueue<StepJob>();
-    this.running = new LinkedBlockingQueue<StepJob>();
+    this.completed = new PriorityBlockingQueue<>(11, Comparator.comparingLong(StepJob::getExpiryTime));
+    this.running = ConcurrentHashMap.newKeySet();
+    this.jobs = new ConcurrentHashMap<>();
     if (maxStoredCompletedJob > 0 ) {
      this._maxStoredCompletedJob = maxStoredCompletedJob;
     } else {
@@ -99,6 +114,7 @@ public class StepJobQueue {
    * @param job the job
    */
   protected void add(StepJob job) {
+    this.jobs.put(job.getId(), job);
     this.waiting.add(job);
 
     //clear completed job when new job comes in.
@@ -136,23 +152,7 @@ public class StepJobQueue {
    */
   protected StepJob get(String id) {
     if (id == null) { throw new NullPointerException("job id cannot be null"); }
-
-    // check running job
-    for (StepJob job : this.running) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    // check completed queue
-    for (StepJob job : this.completed) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    // check the waiting queue
-    for (StepJob job : this.waiting) {
-      if (id.equals(job.getId())) { return job; }
-    }
-
-    return null;
+    return this.jobs.get(id);
   }
 
   /**
@@ -179,13 +179,18 @@ public class StepJobQueue {
   }
 
   /**
-   * clear the completed job.
+   * clear the completed job, starting from the first one to expire.
    */
-  private void clearCompletedJob() {
-    for (StepJob job : this.completed) {
-      if (this.completed.size() >= this._maxStoredCompletedJob && job.isInactive()) {
-        this.completed.remove(job);
+  private synchronized void clearCompletedJob() {
+    while (this.completed.size() >= this._maxStoredCompletedJob) {
+      // The head expires first: if it is still active, so are the others
+      StepJob job = this.completed.poll();
+      if (job == null) break;
+      if (!job.isInactive()) {
+        this.completed.add(job);
+        break;
       }
+      this.jobs.remove(job.getId());
     }
   }
 
@@ -207,6 +212,11 @@ public class StepJobQueue {
       this.running.clear();
       this.running = null;
     }
+
+    if (this.jobs != null) {
+      this.jobs.clear();
+      this.jobs = null;
+    }
     LOCKED.set(true);
     INSTANCE = null;
   }
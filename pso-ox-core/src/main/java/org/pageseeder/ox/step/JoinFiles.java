@@ -22,20 +22,37 @@ import org.pageseeder.ox.api.StepInfo;
 import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.tool.ResultBase;
-import org.pageseeder.ox.util.FileUtils;
+import org.pageseeder.ox.util.StepUtils;
 import org.pageseeder.ox.util.StringUtils;
-import org.pageseeder.xmlwriter.XML.NamespaceAware;
-import org.pageseeder.xmlwriter.XMLStringWriter;
+import org.pageseeder.ox.xml.XMLCopy;
 import org.pageseeder.xmlwriter.XMLWriter;
+import org.pageseeder.xmlwriter.XMLWriterImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * <p>A step to join XML files under a <code>root</code> element.</p>
+ *
+ * <p>The content of each input is parsed and copied to the output file as it is read, without the XML declaration
+ * and document type declaration, so the memory used does not depend on the size of the inputs.</p>
+ *
  * <h3>Step Parameters</h3>
  * <ul>
  * <li><var>input</var> the PackageData property which represents the inputs
@@ -43,6 +60,9 @@ import java.util.List;
  * <li><var>output</var> the PackageData property which represents the output
  *     file where the images result files will be saved, which is a relative path
  *     in {@link PackageData}. </li>
+ * <li><var>parallel</var> the number of inputs checked at the same time before they are joined, so that the output
+ *     is not written if any input is not well-formed; "true" to use one thread per processor
+ *     (default: 1, the inputs are not checked before).</li>
  * </ul>
  *
  * @author Carlos Cabral
@@ -85,18 +105,18 @@ public class JoinFiles implements Step {
           foutput = data.getFile(output);
         }
 
-        XMLStringWriter writer = new XMLStringWriter(NamespaceAware.No);
-        writer.openElement("root");
-        List<File> files = data.getFiles(input);
-        for (File inputFile:files) {
+        List<File> files = new ArrayList<>();
+        for (File inputFile : data.getFiles(input)) {
           if (inputFile.exists()) {
-            writer.writeXML(FileUtils.read(inputFile));
+            files.add(inputFile);
           }
         }
 
-        writer.closeElement();//root
-        writer.close();
-        FileUtils.write(writer.toString(), foutput);
+        int threads = Math.min(StepUtils.getParallelThreads(data, info), files.size());
+        if (threads > 1) {
+          check(files, threads);
+        }
+        join(files, foutput);
 
       } else {
         LOGGER.warn("Cannot find file {} or output {}.", input, output);
@@ -109,6 +129,109 @@ public class JoinFiles implements Step {
     return result;
   }
 
+  /**
+   * Copy the content of the files under a <code>root</code> element in the output.
+   *
+   * <p>The output is deleted if any file cannot be parsed.
+   *
+   * @param files the files to join
+   * @param output the output file
+   * @throws IOException if a file cannot be read or parsed or the output cannot be written
+   */
+  private static void join(List<File> files, File output) throws IOException {
+    if (output.getParentFile() != null) output.getParentFile().mkdirs();
+    boolean joined = false;
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output.toPath()), StandardCharsets.UTF_8))) {
+      XMLWriter writer = new XMLWriterImpl(out);
+      XMLCopy copy = new XMLCopy(writer);
+      XMLReader reader = newReader(copy);
+      writer.openElement("root");
+      for (File file : files) {
+        parse(reader, file);
+      }
+      writer.closeElement();//root
+      writer.flush();
+      joined = true;
+    } finally {
+      if (!joined) Files.deleteIfExists(output.toPath());
+    }
+  }
+
+  /**
+   * Parse the specified file.
+   *
+   * @param reader the XML reader
+   * @param file the file to parse
+   * @throws IOException if the file cannot be read or parsed
+   */
+  private static void parse(XMLReader reader, File file) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      InputSource source = new InputSource(in);
+      source.setSystemId(file.toURI().toString());
+      reader.parse(source);
+    } catch (SAXException ex) {
+      throw new IOException("Unable to join " + file.getName() + ": " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Check that all the files are well-formed before joining them.
+   *
+   * <p>The files are parsed with the same configuration as when they are joined.
+   *
+   * @param files the files to check
+   * @param threads the number of files checked at the same time
+   * @throws IOException if a file is not well-formed or cannot be read
+   */
+  private static void check(List<File> files, int threads) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = new ArrayList<>(files.size());
+      for (final File file : files) {
+        futures.add(executor.submit(() -> {
+          parse(newReader(new DefaultHandler()), file);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while checking the files to join");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns a non-validating reader which sends its events to the specified handler, the external DTDs are not loaded.
+   *
+   * @param handler the handler receiving the events
+   * @return the XML reader
+   * @throws IOException if the parser cannot be configured
+   */
+  private static XMLReader newReader(DefaultHandler handler) throws IOException {
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setValidating(false);
+      factory.setNamespaceAware(false);
+      factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setContentHandler(handler);
+      reader.setErrorHandler(handler);
+      if (handler instanceof LexicalHandler) {
+        reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+      }
+      return reader;
+    } catch (ParserConfigurationException | SAXException ex) {
+      throw new IOException("Unable to create the XML parser", ex);
+    }
+  }
+
 
   /* *********************************************************************
    * Result inner Class
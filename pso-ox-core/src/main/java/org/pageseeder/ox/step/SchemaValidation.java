@@ -23,6 +23,8 @@ import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.tool.ResultBase;
+import org.pageseeder.ox.util.BoundedCache;
+import org.pageseeder.ox.util.StepUtils;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,22 +32,43 @@ import org.w3c.dom.ls.LSInput;
 import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.SAXException;
 
-import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>A step for validate the original file by schema. It can be internal (defined within XML file)
  * or can be external (specified in configuration file).  </p>
  *
+ * <p>The compiled schemas are cached until one of the schema files or the schemas they include is modified, and
+ * the validators created from a compiled schema are kept with it to be reused, so the schemas are not compiled
+ * again for each file or package.</p>
+ *
  * <h3>Step Parameters</h3>
  * <ul>
  *  <li><var>input</var> the xml file needs to be transformed, where is a relative path of package data.
- *  (if not specified, use upper step output as input.)</li>
- *  <li><var>schema</var> the schema file or folder, which is a relative path to model folder.</li>
+ *  (if not specified, use upper step output as input.) It accepts a glob pattern or a zip file to validate
+ *  several files.</li>
+ *  <li><var>schema</var> the schema file or folder, which is a relative path to model folder. The schemas
+ *  included or imported are also resolved from the model folder first.</li>
+ *  <li><var>input-extensions</var> If the input is a zip, the extensions of the files to validate
+ *  (default: xml, html, htm, psml).</li>
+ *  <li><var>parallel</var> the number of files validated at the same time when there are several input files,
+ *  "true" to use one thread per processor (default: 1).</li>
  * </ul>
  *
  * <h3>Return</h3>
@@ -61,12 +84,15 @@ public final class SchemaValidation implements Step {
   /** The Constant LOGGER. */
   private static final Logger LOGGER = LoggerFactory.getLogger(SchemaValidation.class);
 
+  /** The compiled schemas by schema files. */
+  private static final BoundedCache<CompiledSchema> SCHEMAS = new BoundedCache<>("xsd", 64);
+
   /* (non-Javadoc)
    * @see org.pageseeder.ox.api.Step#process(org.pageseeder.ox.core.Model, org.pageseeder.ox.core.PackageData, org.pageseeder.ox.api.StepInfo)
    */
   @Override
   public Result process(Model model, PackageData data, StepInfo info) {
-    File xml = data.getFile(info.getParameter("input", info.input()));
+    String input = info.getParameter("input", info.input());
     String schema = info.getParameter("schema");
     File[] schemaFiles = getSchemas(model, schema);
 
@@ -76,14 +102,25 @@ public final class SchemaValidation implements Step {
       return result;
     }
 
-    LOGGER.debug("The validate file {} ", xml);
+    LOGGER.debug("The validate file {} ", input);
     // validate the xsd schema
     SchemaResult result = new SchemaResult(model, data, schemaFiles);
-    if (xml != null && xml.exists()) {
-      File schemaRoot = data.directory();
-      result = validateXSDSchema(model, data, xml, new CustomSchemaResolver(schemaRoot), schemaFiles);
-    } else {
-      result.setError(new FileNotFoundException("Cannot find the xml file " + xml + "."));
+    try {
+      List<File> inputs = StepUtils.getInputFiles(data, info, input);
+      if (inputs.isEmpty()) {
+        result.setError(new FileNotFoundException("Cannot find the xml file " + data.getFile(input) + "."));
+      } else {
+        CompiledSchema sch = getSchema(model.getRoot(), schemaFiles);
+        if (inputs.size() == 1) {
+          result = validateXSDSchema(model, data, inputs.get(0), sch, schemaFiles);
+        } else {
+          int threads = Math.min(StepUtils.getParallelThreads(data, info), inputs.size());
+          result.setValidations(validateXSDSchema(data, inputs, sch, threads));
+        }
+      }
+    } catch (SAXException | IOException ex) {
+      result.setStatus(ResultStatus.ERROR);
+      result.setError(ex);
     }
     result.done();
     return result;
@@ -114,42 +151,90 @@ public final class SchemaValidation implements Step {
     return schemas;
   }
 
+  /**
+   * Returns the compiled schema for the specified files from the cache, the schema is compiled again when one of
+   * the files or one of the schemas they include is modified.
+   *
+   * <p>The schemas are cached by location and do not depend on the package, so the compiled schema is shared
+   * by the jobs of the model. Compilation errors are not cached.
+   *
+   * @param schemaRoot the folder used by the resolver
+   * @param schemaFiles the list of schema files
+   * @return the compiled schema
+   * @throws SAXException if the schema cannot be compiled
+   * @throws IOException if the schema files cannot be read
+   */
+  private static CompiledSchema getSchema(final File schemaRoot, final File... schemaFiles) throws SAXException, IOException {
+    File[] sorted = schemaFiles.clone();
+    Arrays.sort(sorted);
+    StringBuilder key = new StringBuilder(schemaRoot.getAbsolutePath());
+    long version = 0;
+    for (File f : sorted) {
+      key.append(File.pathSeparatorChar);
+      key.append(f.getAbsolutePath());
+      version = version * 31 + version(f);
+    }
+    try {
+      CompiledSchema schema = SCHEMAS.get(key.toString(), version, () -> compile(schemaRoot, sorted));
+      if (schema.isModified()) {
+        SCHEMAS.remove(key.toString());
+        schema = SCHEMAS.get(key.toString(), version, () -> compile(schemaRoot, sorted));
+      }
+      return schema;
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof SAXException) throw (SAXException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new SAXException(cause.getMessage(), cause instanceof Exception ? (Exception) cause : null);
+    }
+  }
+
+  /**
+   * Compiles the specified schema files.
+   *
+   * @param schemaRoot the folder used by the resolver
+   * @param schemaFiles the list of schema files
+   * @return the compiled schema and the schemas it includes
+   * @throws SAXException if the schema cannot be compiled
+   */
+  private static CompiledSchema compile(File schemaRoot, File[] schemaFiles) throws SAXException {
+    StreamSource[] sources = new StreamSource[schemaFiles.length];
+    for (int i = 0; i < schemaFiles.length; i++) {
+      sources[i] = new StreamSource(schemaFiles[i]);
+    }
+    SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
+    // set resource resolver
+    CustomSchemaResolver resolver = new CustomSchemaResolver(schemaRoot);
+    factory.setResourceResolver(resolver);
+    LOGGER.debug("Compiling schema {}", Arrays.toString(schemaFiles));
+    return new CompiledSchema(factory.newSchema(sources), resolver._resolved);
+  }
+
+  /**
+   * @param file the schema file
+   * @return the version of the file from its last modified date and size
+   */
+  private static long version(File file) {
+    return file.lastModified() * 31 + file.length();
+  }
+
   /**
    * Validate XSD schema.
    *
    * @param model the Model to use
    * @param data the PackageData
    * @param xml  the xml file request to validate
-   * @param resolver the resolver
+   * @param schema the compiled schema
    * @param schemaFiles the list of schema file.
    * @return the SchemaResult
    */
-  private static SchemaResult validateXSDSchema(Model model, PackageData data, File xml, LSResourceResolver resolver, File... schemaFiles) {
+  private static SchemaResult validateXSDSchema(Model model, PackageData data, File xml, CompiledSchema schema, File... schemaFiles) {
     if (xml == null) { throw new NullPointerException("Cannot validate a null file"); }
 
     SchemaResult result = new SchemaResult(model, data, schemaFiles);
-    StreamSource[] sources = null;
-    int i = 0;
-    if (schemaFiles != null) {
-      sources = new StreamSource[schemaFiles.length];
-      for (File f : schemaFiles) {
-        sources[i] = new StreamSource(f);
-        i++;
-      }
-    }
-
-
-    try (StringWriter out = new StringWriter()) {
-      SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
-      // set resource resolver
-      if (resolver != null) {
-        factory.setResourceResolver(resolver);
-      }
-      Schema sch = (sources != null) ? factory.newSchema(sources) : factory.newSchema();
-      javax.xml.validation.Validator validator = sch.newValidator();
-      Source source = new StreamSource(xml);
-      javax.xml.transform.Result validateResult = new StreamResult(out);
-      validator.validate(source, validateResult);
+    try {
+      schema.validate(xml);
       LOGGER.debug("Valid schema for {}", xml);
     } catch (SAXException | IOException ex) {
       result.setStatus(ResultStatus.ERROR);
@@ -158,6 +243,63 @@ public final class SchemaValidation implements Step {
     return result;
   }
 
+  /**
+   * Validate several files against the same schema.
+   *
+   * @param data the PackageData
+   * @param inputs the files to validate
+   * @param schema the compiled schema
+   * @param threads the number of files validated at the same time
+   * @return the validation of each file in the same order as the inputs
+   * @throws IOException if the validation was interrupted
+   */
+  private static List<FileValidation> validateXSDSchema(final PackageData data, List<File> inputs, final CompiledSchema schema, int threads) throws IOException {
+    List<FileValidation> validations = new ArrayList<>(inputs.size());
+    if (threads <= 1) {
+      for (File input : inputs) {
+        validations.add(validate(data, input, schema));
+      }
+      return validations;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<FileValidation>> futures = new ArrayList<>(inputs.size());
+      for (final File input : inputs) {
+        futures.add(executor.submit(() -> validate(data, input, schema)));
+      }
+      for (Future<FileValidation> future : futures) {
+        validations.add(future.get());
+      }
+      return validations;
+    } catch (ExecutionException ex) {
+      throw new IOException(ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while validating the files");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Validate a single file.
+   *
+   * @param data the PackageData
+   * @param input the file to validate
+   * @param schema the compiled schema
+   * @return the validation of the file
+   */
+  private static FileValidation validate(PackageData data, File input, CompiledSchema schema) {
+    String path = data.getPath(input);
+    try {
+      schema.validate(input);
+      return new FileValidation(path, null);
+    } catch (SAXException | IOException ex) {
+      LOGGER.debug("Invalid file {}: {}", path, ex.getMessage());
+      return new FileValidation(path, ex);
+    }
+  }
+
   /**
    * A Custom schema Resolver.
    *
@@ -169,6 +311,9 @@ public final class SchemaValidation implements Step {
     /**  The schema directory. */
     private final File _schemaDir;
 
+    /** The version of the schemas resolved from the schema directory. */
+    private final Map<File, Long> _resolved = new HashMap<>();
+
     /**
      * Instantiates a new custom schema resolver.
      *
@@ -186,20 +331,14 @@ public final class SchemaValidation implements Step {
       LSInput input = null;
       if (systemId != null) {
         File schema = new File(this._schemaDir, systemId);
-        if (schema != null && !schema.exists()) {
+        if (schema.isFile()) {
+          this._resolved.put(schema, version(schema));
           input = new LSInputImpl();
-          try (FileInputStream is = new FileInputStream(schema);
-               Reader reader = new InputStreamReader(is)) {
-            input.setByteStream(is);
-            input.setPublicId(publicId);
-            input.setSystemId(systemId);
-            input.setBaseURI(baseURI);
-            input.setCharacterStream(reader);
-          } catch (IOException ex) {
-            LOGGER.warn("Cannot resolve schema.", ex);
-          }
+          input.setPublicId(publicId);
+          input.setSystemId(schema.toURI().toString());
+          input.setBaseURI(baseURI);
         } else {
-          LOGGER.error("Cannot find the internal schema " + schema + ".");
+          LOGGER.debug("Cannot find the internal schema {}, resolving {} from {}", schema, systemId, baseURI);
         }
       } else {
         LOGGER.error("systemID is null.");
@@ -377,6 +516,9 @@ public final class SchemaValidation implements Step {
     /**  the list of schema files. */
     private final File[] _schemaFiles;
 
+    /** The validation of each file when several files are validated. */
+    private List<FileValidation> validations = Collections.emptyList();
+
     /**
      * Instantiates a new schema result.
      *
@@ -400,6 +542,20 @@ public final class SchemaValidation implements Step {
       this._schemaFiles = schemaFiles;
     }
 
+    /**
+     * Sets the validation of each file, the status is error if any file is invalid.
+     *
+     * @param validations the validation of each file
+     */
+    private void setValidations(List<FileValidation> validations) {
+      this.validations = validations;
+      for (FileValidation validation : validations) {
+        if (validation._error != null) {
+          setStatus(ResultStatus.ERROR);
+        }
+      }
+    }
+
     /* (non-Javadoc)
      * @see org.pageseeder.xmlwriter.XMLWritable#toXML(org.pageseeder.xmlwriter.XMLWriter)
      */
@@ -434,6 +590,21 @@ public final class SchemaValidation implements Step {
       }
       xml.closeElement();// schemas
 
+      // print the validation of each file
+      if (!this.validations.isEmpty()) {
+        xml.openElement("files");
+        for (FileValidation validation : this.validations) {
+          xml.openElement("file");
+          xml.attribute("path", validation._path);
+          xml.attribute("status", validation._error == null ? "ok" : "error");
+          if (validation._error != null) {
+            OXErrors.toXML(validation._error, xml, true);
+          }
+          xml.closeElement();// file
+        }
+        xml.closeElement();// files
+      }
+
       xml.closeElement();
     }
 
@@ -445,4 +616,73 @@ public final class SchemaValidation implements Step {
       return false;
     }
   }
+
+  /**
+   * The validation of one of the input files.
+   */
+  private static final class FileValidation {
+
+    /** The path of the file in the package. */
+    private final String _path;
+
+    /** The validation error if the file is invalid. */
+    private final Exception _error;
+
+    private FileValidation(String path, Exception error) {
+      this._path = path;
+      this._error = error;
+    }
+  }
+
+  /**
+   * A compiled schema and the validators created from it.
+   *
+   * <p>Validators are not thread-safe, so each validation takes a validator which is not in use and returns it
+   * once done. The validators are discarded with the schema when it is evicted from the cache.
+   */
+  private static final class CompiledSchema {
+
+    private final Schema _schema;
+
+    /** The version of the schemas resolved when compiling. */
+    private final Map<File, Long> _resolved;
+
+    /** The validators which are not in use. */
+    private final Queue<Validator> _validators = new ConcurrentLinkedQueue<>();
+
+    private CompiledSchema(Schema schema, Map<File, Long> resolved) {
+      this._schema = schema;
+      this._resolved = resolved;
+    }
+
+    /**
+     * @return <code>true</code> if one of the resolved schemas was modified since it was compiled
+     */
+    private boolean isModified() {
+      for (Map.Entry<File, Long> resolved : this._resolved.entrySet()) {
+        if (version(resolved.getKey()) != resolved.getValue()) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Validates the specified file.
+     *
+     * @param xml the file to validate
+     * @throws SAXException if the file is invalid
+     * @throws IOException if the file cannot be read
+     */
+    private void validate(File xml) throws SAXException, IOException {
+      Validator validator = this._validators.poll();
+      if (validator == null) {
+        validator = this._schema.newValidator();
+      }
+      try {
+        validator.validate(new StreamSource(xml));
+      } finally {
+        validator.reset();
+        this._validators.offer(validator);
+      }
+    }
+  }
 }
@@ -23,6 +23,8 @@ import org.pageseeder.ox.api.StepInfo;
 import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
+import org.pageseeder.ox.metrics.MetricTags;
+import org.pageseeder.ox.metrics.Metrics;
 import org.pageseeder.ox.tool.FileResultInfo;
 import org.pageseeder.ox.tool.InvalidResult;
 import org.pageseeder.ox.tool.MultipleFilesResult;
@@ -39,10 +41,13 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>A step to transform the specified input by using provided stylesheet.</p>
@@ -55,9 +60,13 @@ import java.util.List;
  *  It accepts dynamic value.</li>
  *  <li><var>xsl</var> the stylesheet file to transform, which is a relative path of model folder.
  *  (This parameter will override the property <var>parameter-xsl</var>)</li>
- *  <li><var>display-result</var> whether to display the result xml into Result XML (default: true)</li>
+ *  <li><var>display-result</var> whether to display the result xml into Result XML: "true", "false" or "link"
+ *  to only display the path to the content (default: true)</li>
+ *  <li><var>display-result-max-size</var> the maximum number of bytes displayed for each file (default: no limit)</li>
  *  <li><var>_xslt-</var>Every parameter with the preffix "_xslt-" will be send to the xslt (without the preffix "_xslt-").</li>
  *  <li><var>input-extensions</var> If the input is a zip, the caller can specify which files it want to be transformed.</li>
+ *  <li><var>parallel</var> the number of files transformed at the same time when there are several input files,
+ *  "true" to use one thread per processor (default: 1). The results are listed in the same order as the inputs.</li>
  * </ul>
  *
  * <h3>Data Properties</h3>
@@ -128,9 +137,14 @@ public final class Transformation implements Step {
       result = new TransformResult(model, data, info, downloadableOuput, fileResultInfos, xsl);
 
       try {
-        Transformer transformer = XSLT.buildXSLTTransformer(xsl, data, info);
-        for(File extraInput:inputs) {
-          fileResultInfos.add(processFile(extraInput, output, transformer));
+        int threads = Math.min(StepUtils.getParallelThreads(data, info), inputs.size());
+        if (threads > 1) {
+          fileResultInfos.addAll(processFiles(inputs, output, xsl, data, info, threads));
+        } else {
+          Transformer transformer = XSLT.buildXSLTTransformer(xsl, data, info);
+          for(File extraInput:inputs) {
+            fileResultInfos.add(processFile(extraInput, output, transformer));
+          }
         }
 
         //If zip output is not null, then zip
@@ -150,6 +164,60 @@ public final class Transformation implements Step {
     return result;
   }
 
+  /**
+   * Process the files in parallel, each thread uses its own transformer built from the cached templates.
+   *
+   * @param inputs the inputs
+   * @param output the output
+   * @param xsl the xsl
+   * @param data the data
+   * @param info the info
+   * @param threads the number of threads
+   * @return the file result infos in the same order as the inputs
+   * @throws TransformerException if a transformer cannot be created
+   * @throws IOException if the stylesheet cannot be read
+   */
+  private List<FileResultInfo> processFiles(List<File> inputs, final File output, final File xsl, final PackageData data,
+                                            final StepInfo info, int threads) throws TransformerException, IOException {
+    final ThreadLocal<Transformer> transformers = new ThreadLocal<>();
+    // record the latencies against the step running the transformation
+    final MetricTags tags = Metrics.get().current();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<FileResultInfo>> futures = new ArrayList<>(inputs.size());
+      for (final File input : inputs) {
+        futures.add(executor.submit(() -> {
+          MetricTags previous = Metrics.get().enter(tags);
+          try {
+            Transformer transformer = transformers.get();
+            if (transformer == null) {
+              transformer = XSLT.buildXSLTTransformer(xsl, data, info);
+              transformers.set(transformer);
+            }
+            return processFile(input, output, transformer);
+          } finally {
+            Metrics.get().exit(previous);
+          }
+        }));
+      }
+      List<FileResultInfo> results = new ArrayList<>(inputs.size());
+      for (Future<FileResultInfo> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof TransformerException) throw (TransformerException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new TransformerException(cause);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new TransformerException("Interrupted while transforming the files", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Process file.
    *
@@ -174,8 +242,8 @@ public final class Transformation implements Step {
     }
 
     try {
-      transformer.transform(new StreamSource(input), new StreamResult(finalOutput));
-    } catch (TransformerException ex) {
+      XSLT.transform(new StreamSource(input), new StreamResult(finalOutput), transformer);
+    } catch (TransformerException | IOException ex) {
       LOGGER.error("Failed to trasnform the file {} because of '{}'", input.getAbsolutePath(), ex.getMessage());
       status = ResultStatus.ERROR;
     }
@@ -367,7 +435,7 @@ public final class Transformation implements Step {
 
     /** The template. */
     private final File _template;
-    private final boolean _displayOutputResult;
+    private final ContentMode _contentMode;
 
     /**
      * Instantiates a new transform result.
@@ -383,7 +451,7 @@ public final class Transformation implements Step {
         @Nullable File output, @NotNull List<FileResultInfo> fileResultInfos, @NotNull File template) {
       super(model, data, info, output, fileResultInfos);
       this._template = template;
-      this._displayOutputResult = "false".equals(super.info().getParameter("display-result")) ? false : true;
+      this._contentMode = contentMode(ContentMode.INLINE);
     }
 
     @Override
@@ -411,11 +479,7 @@ public final class Transformation implements Step {
         xml.attribute("output", data().getPath(fileResultInfo.getOutput()));
         xml.attribute("status", fileResultInfo.getStatus().toString());
         // Include the generated content
-        if (_displayOutputResult) {
-          xml.openElement("content");
-          xml.writeCDATA(new String(Files.readAllBytes(fileResultInfo.getOutput().toPath()), "UTF-8"));
-          xml.closeElement();
-        }
+        writeContent(xml, fileResultInfo.getOutput(), this._contentMode);
         xml.closeElement();//parameters
       } catch (IOException io) {
         LOGGER.error("Unable to generate file result info for {}-{}-{}", fileResultInfo.getInput(), fileResultInfo.getOutput(), fileResultInfo.getStatus());
@@ -24,22 +24,37 @@ import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.tool.InvalidResult;
 import org.pageseeder.ox.tool.ResultBase;
+import org.pageseeder.ox.util.StepUtils;
+import org.pageseeder.ox.util.WellformednessChecker;
+import org.pageseeder.ox.util.WellformednessChecker.Report;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>A step to validate the original input XML file is wellformedness </p>.
  *
+ * <p>The files are parsed with a streaming SAX parser, so the memory used does not depend on the size of the
+ * files.</p>
+ *
  * <h3>Step Parameters</h3>
  * <ul>
- * <li><var>input</var> the xml file needs to validate, which is a relative path in {@link PackageData} .</li>
+ * <li><var>input</var> the xml file needs to validate, which is a relative path in {@link PackageData}.
+ * It accepts a folder, a glob pattern or a zip file to check several files.</li>
+ * <li><var>input-extensions</var> the extensions of the files to check in a folder or zip file
+ * (default: xml, html, htm, psml).</li>
+ * <li><var>max-errors</var> the maximum number of errors reported for each file (default: 10).</li>
+ * <li><var>parallel</var> the number of files checked at the same time when there are several input files,
+ * "true" to use one thread per processor (default: 1).</li>
  * </ul>
  *
  * <h3>Return</h3>
@@ -57,38 +72,67 @@ public final class Wellformedness implements Step {
   public Result process(Model model, PackageData data, StepInfo info) {
 
     String xml = info.getParameter("input", info.input());
-    File source = data.getFile(xml);
+    List<File> sources;
+    try {
+      sources = StepUtils.getInputFiles(data, info, xml);
+    } catch (IOException ex) {
+      return new InvalidResult(model, data).error(ex);
+    }
 
     // throw the error
-    if (source == null || !source.exists()) { return new InvalidResult(model, data)
+    if (sources.isEmpty()) { return new InvalidResult(model, data)
         .error(new FileNotFoundException("Cannot find the source file " + xml + ".")); }
 
     LOGGER.debug("xml file {} ", xml);
-    WellformednessResult result = isWellformedness(model, data, source);
+    int maxErrors = StepUtils.getParameterInt(data, info, "max-errors", WellformednessChecker.DEFAULT_MAX_ERRORS);
+    int threads = Math.min(StepUtils.getParallelThreads(data, info), sources.size());
+    WellformednessResult result = isWellformedness(model, data, sources, maxErrors, threads);
     return result;
   }
 
   /**
    * @param model the Model
    * @param data the PackageData
-   * @param file the file require to validate
+   * @param files the files require to validate
+   * @param maxErrors the maximum number of errors reported for each file
+   * @param threads the number of files checked at the same time
    * @return the Result of the well-formedness process.
    */
-  private static WellformednessResult isWellformedness(Model model, PackageData data, File file) {
-    WellformednessResult result = new WellformednessResult(model, data);
-    if (file != null && file.exists()) {
-      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-      factory.setValidating(false);
-      factory.setNamespaceAware(true);
-      try (InputStream in = new FileInputStream(file)) {
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        builder.parse(in);
-      } catch (ParserConfigurationException | SAXException | IOException ex) {
-        result.setError(ex);
-        result.setStatus(ResultStatus.ERROR);
+  private static WellformednessResult isWellformedness(Model model, PackageData data, List<File> files, final int maxErrors, int threads) {
+    WellformednessResult result = new WellformednessResult(model, data, files.size() > 1);
+    List<Report> reports = new ArrayList<>(files.size());
+    try {
+      if (threads <= 1) {
+        for (File file : files) {
+          reports.add(WellformednessChecker.check(file, maxErrors));
+        }
+      } else {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+          List<Future<Report>> futures = new ArrayList<>(files.size());
+          for (final File file : files) {
+            futures.add(executor.submit(() -> WellformednessChecker.check(file, maxErrors)));
+          }
+          for (Future<Report> future : futures) {
+            reports.add(future.get());
+          }
+        } finally {
+          executor.shutdownNow();
+        }
       }
-      result.done();
+      result.setReports(reports);
+    } catch (IOException ex) {
+      result.setError(ex);
+      result.setStatus(ResultStatus.ERROR);
+    } catch (ExecutionException ex) {
+      result.setError(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+      result.setStatus(ResultStatus.ERROR);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      result.setError(ex);
+      result.setStatus(ResultStatus.ERROR);
     }
+    result.done();
     return result;
   }
 
@@ -99,8 +143,32 @@ public final class Wellformedness implements Step {
    */
   private static class WellformednessResult extends ResultBase implements Result {
 
-    private WellformednessResult(Model model, PackageData data) {
+    /** Whether several files were checked. */
+    private final boolean _multiple;
+
+    /** The report of each file. */
+    private List<Report> reports = Collections.emptyList();
+
+    private WellformednessResult(Model model, PackageData data, boolean multiple) {
       super(model, data);
+      this._multiple = multiple;
+    }
+
+    /**
+     * Sets the report of each file, the status is error if any file is not well-formed.
+     *
+     * <p>When a single file is checked, the first error is the error of the result.
+     *
+     * @param reports the report of each file
+     */
+    private void setReports(List<Report> reports) {
+      this.reports = reports;
+      for (Report report : reports) {
+        if (!report.isWellformed()) {
+          if (!this._multiple) setError(report.errors().get(0));
+          setStatus(ResultStatus.ERROR);
+        }
+      }
     }
 
     @Override
@@ -116,9 +184,25 @@ public final class Wellformedness implements Step {
       // Print the details of any error
       if (error() != null) {
         OXErrors.toXML(error(), xml, true);
-      } else {
+      } else if (status() != ResultStatus.ERROR) {
         xml.writeText("Well-form XML");
       }
+
+      if (this._multiple) {
+        xml.openElement("files");
+        for (Report report : this.reports) {
+          xml.openElement("file");
+          xml.attribute("path", data().getPath(report.file()));
+          xml.attribute("status", report.isWellformed() ? "ok" : "error");
+          if (!report.isWellformed()) {
+            report.toXML(xml);
+          }
+          xml.closeElement();// file
+        }
+        xml.closeElement();// files
+      } else if (this.reports.size() == 1 && this.reports.get(0).errors().size() > 1) {
+        this.reports.get(0).toXML(xml);
+      }
       xml.closeElement();// result
     }
 
@@ -21,12 +21,17 @@ import org.pageseeder.ox.api.Result;
 import org.pageseeder.ox.api.StepInfo;
 import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.util.CDATAUtils;
 import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 
 /**
@@ -35,6 +40,14 @@ import java.util.List;
  * It for steps when they receive multiple files as input (by using a folder, Glob pattern or zip) and for file there
  * is a separate process.
  *
+ * <p>The content of the output files can be included in the result with the step parameters:
+ * <ul>
+ *  <li><var>display-result</var> "true" to include the content, "link" to only include the path to fetch the
+ *  content on demand or "false".</li>
+ *  <li><var>display-result-max-size</var> the maximum number of bytes included for each file, the content
+ *  is marked as truncated if the file is larger (default: no limit).</li>
+ * </ul>
+ *
  * @param <T> the type parameter
  * @author Carlos Cabral
  * @since 08th August 2018
@@ -43,6 +56,38 @@ public class MultipleFilesResult<T extends FileResultInfo> extends DefaultResult
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MultipleFilesResult.class);
 
+  /**
+   * How the content of the output files is included in the result.
+   */
+  public enum ContentMode {
+
+    /** The content is streamed from the file into the result. */
+    INLINE,
+
+    /** Only the path to the content is included. */
+    LINK,
+
+    /** The content is not included. */
+    NONE;
+
+    /**
+     * Returns the content mode for the value of the <var>display-result</var> parameter.
+     *
+     * @param value    the value of the parameter
+     * @param fallback the mode to use if the value is blank
+     * @return the corresponding mode
+     */
+    public static ContentMode forParameter(String value, ContentMode fallback) {
+      if (value == null || value.trim().isEmpty()) return fallback;
+      switch (value.trim().toLowerCase()) {
+        case "true": return INLINE;
+        case "link": return LINK;
+        case "false": return NONE;
+        default: return fallback;
+      }
+    }
+  }
+
   /** The file result infos. */
   private final List<T> _fileResultInfos;
 
@@ -103,6 +148,67 @@ public class MultipleFilesResult<T extends FileResultInfo> extends DefaultResult
     }
   }
 
+  /**
+   * Returns how the content of the output files must be included from the <var>display-result</var> parameter.
+   *
+   * @param fallback the mode if the parameter is not specified
+   * @return the content mode
+   */
+  protected ContentMode contentMode(ContentMode fallback) {
+    return ContentMode.forParameter(info().getParameter("display-result"), fallback);
+  }
+
+  /**
+   * Writes the content of an output file.
+   *
+   * <p>In {@link ContentMode#INLINE} mode, the content is streamed from the file and limited to the number of bytes
+   * of the <var>display-result-max-size</var> parameter. When the content is truncated or in {@link ContentMode#LINK}
+   * mode, the <code>href</code> attribute is the path of the file relative to the OX temporary folder so that it can
+   * be fetched on demand (see <code>OXGetFile</code>).
+   *
+   * @param xml  the xml
+   * @param file the output file
+   * @param mode how the content is included
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected void writeContent(XMLWriter xml, File file, ContentMode mode) throws IOException {
+    if (mode == ContentMode.NONE || file == null || !file.isFile()) return;
+    long length = file.length();
+    long max = maxContentSize();
+    boolean truncated = mode == ContentMode.INLINE && max >= 0 && length > max;
+    xml.openElement("content");
+    if (mode == ContentMode.LINK || truncated) {
+      xml.attribute("size", Long.toString(length));
+      String path = data().getPath(file);
+      if (path != null) {
+        xml.attribute("href", data().id() + path);
+      }
+    }
+    if (mode == ContentMode.INLINE) {
+      if (truncated) {
+        xml.attribute("truncated", "true");
+      }
+      try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+        CDATAUtils.writeCDATA(xml, reader, max);
+      }
+    }
+    xml.closeElement();
+  }
+
+  /**
+   * @return the maximum number of bytes of content per file or -1 for no limit.
+   */
+  private long maxContentSize() {
+    String max = info().getParameter("display-result-max-size");
+    if (max == null || max.trim().isEmpty()) return -1;
+    try {
+      return Long.parseLong(max.trim());
+    } catch (NumberFormatException ex) {
+      LOGGER.warn("Invalid display-result-max-size {}", max);
+      return -1;
+    }
+  }
+
   /**
    * Gets the file result infos.
    *
@@ -25,7 +25,9 @@ import java.util.Map;
  * @param <T> the type parameter
  * @author Christophe Lauret
  * @since 28 October 2013
+ * @deprecated Not used anymore, use {@link BoundedCache} which is bounded and records its statistics
  */
+@Deprecated
 public class BasicCache<T> {
 
   /**
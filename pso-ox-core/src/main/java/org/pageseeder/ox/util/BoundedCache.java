@@ -0,0 +1,401 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache for objects which are expensive to build, such as compiled stylesheets.
+ *
+ * <ul>
+ *   <li>Each item is stored with a version (usually the last modified date of the file it was built from),
+ *   a different version replaces the item.</li>
+ *   <li>When several threads ask for the same missing item, it is only built once and the other threads
+ *   wait for the result.</li>
+ *   <li>The number of items is bounded, the least recently used item is evicted first. The items are kept in
+ *   the order they are used so that an eviction only looks at the least recently used items.</li>
+ *   <li>The total weight of the items can also be bounded (see {@link #setMaxWeight(long)}), the weight of an item
+ *   is an estimate of its memory given when it is requested, for example the size of the file it was built from.</li>
+ *   <li>The number of hits, misses, evictions and the time spent building items are recorded.</li>
+ * </ul>
+ *
+ * <p>All the caches created are listed by {@link #caches()} so that their statistics can be displayed.
+ *
+ * @param <T> the type of items
+ * @author agent
+ * @since 2.2.94
+ */
+public final class BoundedCache<T> implements XMLWritable {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(BoundedCache.class);
+
+  /** The default maximum number of items. */
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+
+  /** The name of the shared cache of the compiled schematron validators, used by the schematron and PSML modules. */
+  public static final String SCHEMATRON = "schematron";
+
+  /** All the caches created. */
+  private static final List<BoundedCache<?>> CACHES = new CopyOnWriteArrayList<>();
+
+  /** The caches shared by name (see {@link #shared(String)}). */
+  private static final ConcurrentHashMap<String, BoundedCache<?>> SHARED = new ConcurrentHashMap<>();
+
+  /** The name of this cache. */
+  private final String _name;
+
+  /** The items by key from the least to the most recently used, guarded by itself. */
+  private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The total weight of the items, guarded by the entries. */
+  private long weight = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  private final AtomicLong loadNanos = new AtomicLong();
+
+  /** The maximum number of items. */
+  private volatile int maxEntries;
+
+  /** The maximum total weight of the items. */
+  private volatile long maxWeight = Long.MAX_VALUE;
+
+  /**
+   * Creates a new cache with the default maximum number of items.
+   *
+   * @param name the name of the cache
+   */
+  public BoundedCache(String name) {
+    this(name, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param name       the name of the cache
+   * @param maxEntries the maximum number of items
+   */
+  public BoundedCache(String name, int maxEntries) {
+    this._name = name;
+    setMaxEntries(maxEntries);
+    CACHES.add(this);
+  }
+
+  /**
+   * Returns the cache shared by all the modules using the same name, it is created when first needed.
+   *
+   * <p>This lets modules which do not depend on each other keep the same items only once, for example the compiled
+   * schematrons. They must store the same type of items and build them the same way for the same key.
+   *
+   * @param name the name of the cache
+   * @param <T>  the type of items
+   * @return the shared cache
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BoundedCache<T> shared(String name) {
+    return (BoundedCache<T>) SHARED.computeIfAbsent(name, BoundedCache::new);
+  }
+
+  /**
+   * @return all the caches created.
+   */
+  public static List<BoundedCache<?>> caches() {
+    return Collections.unmodifiableList(CACHES);
+  }
+
+  /**
+   * @return the name of this cache
+   */
+  public String name() {
+    return this._name;
+  }
+
+  /**
+   * Sets the maximum number of items, the least recently used items are evicted if needed.
+   *
+   * @param maxEntries the maximum number of items (must be positive)
+   */
+  public void setMaxEntries(int maxEntries) {
+    if (maxEntries <= 0) throw new IllegalArgumentException("The maximum number of entries must be positive");
+    this.maxEntries = maxEntries;
+    evict();
+  }
+
+  /**
+   * Sets the maximum total weight of the items, the least recently used items are evicted if needed.
+   *
+   * <p>An item heavier than the maximum weight is returned but not kept.
+   *
+   * @param maxWeight the maximum total weight (must be positive)
+   */
+  public void setMaxWeight(long maxWeight) {
+    if (maxWeight <= 0) throw new IllegalArgumentException("The maximum weight must be positive");
+    this.maxWeight = maxWeight;
+    evict();
+  }
+
+  /**
+   * Returns the item for the specified key, building it with the loader if it is missing or if its
+   * version is different.
+   *
+   * <p>The item has no weight.
+   *
+   * @param key     the key
+   * @param version the version of the item, for example the last modified date of a file
+   * @param loader  builds the item
+   * @return the item
+   * @throws ExecutionException if the loader failed, the cause is the exception thrown by the loader
+   */
+  public T get(String key, long version, Callable<T> loader) throws ExecutionException {
+    return get(key, version, 0, loader);
+  }
+
+  /**
+   * Returns the item for the specified key, building it with the loader if it is missing or if its
+   * version is different.
+   *
+   * @param key     the key
+   * @param version the version of the item, for example the last modified date of a file
+   * @param weight  the weight of the item if it is built, for example the size of a file
+   * @param loader  builds the item
+   * @return the item
+   * @throws ExecutionException if the loader failed, the cause is the exception thrown by the loader
+   */
+  public T get(String key, long version, long weight, Callable<T> loader) throws ExecutionException {
+    Entry<T> found = null;
+    Entry<T> created = null;
+    synchronized (this.entries) {
+      // Marks the entry as the most recently used
+      Entry<T> entry = this.entries.get(key);
+      if (entry != null && entry._version == version) {
+        found = entry;
+      } else {
+        created = new Entry<>(version, weight, new FutureTask<>(loader));
+        Entry<T> previous = this.entries.put(key, created);
+        if (previous != null) this.weight -= previous._weight;
+        this.weight += weight;
+      }
+    }
+    if (found != null) {
+      if (found._task.isDone()) {
+        this.hits.incrementAndGet();
+      }
+      // Waits outside the lock if another thread is building the item
+      return result(found);
+    }
+
+    // This thread builds the item, the other threads wait for the task
+    this.misses.incrementAndGet();
+    long start = System.nanoTime();
+    created._task.run();
+    this.loadNanos.addAndGet(System.nanoTime() - start);
+    try {
+      T item = result(created);
+      if (weight > this.maxWeight) {
+        // Keeping it would evict all the other items
+        remove(key, created);
+      } else {
+        evict();
+      }
+      return item;
+    } catch (ExecutionException ex) {
+      this.failures.incrementAndGet();
+      remove(key, created);
+      throw ex;
+    }
+  }
+
+  /**
+   * Removes the item for the specified key.
+   *
+   * @param key the key
+   */
+  public void remove(String key) {
+    synchronized (this.entries) {
+      Entry<T> removed = this.entries.remove(key);
+      if (removed != null) this.weight -= removed._weight;
+    }
+  }
+
+  /**
+   * Removes all the items.
+   */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+      this.weight = 0;
+    }
+  }
+
+  /**
+   * @return the number of items.
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * @return the total weight of the items.
+   */
+  public long weight() {
+    synchronized (this.entries) {
+      return this.weight;
+    }
+  }
+
+  /**
+   * @return the number of times an item was found.
+   */
+  public long hits() {
+    return this.hits.get();
+  }
+
+  /**
+   * @return the number of times an item had to be built.
+   */
+  public long misses() {
+    return this.misses.get();
+  }
+
+  /**
+   * @return the number of items evicted.
+   */
+  public long evictions() {
+    return this.evictions.get();
+  }
+
+  /**
+   * @return the number of times an item could not be built.
+   */
+  public long failures() {
+    return this.failures.get();
+  }
+
+  @Override
+  public void toXML(XMLWriter xml) throws IOException {
+    long hits = this.hits.get();
+    long misses = this.misses.get();
+    xml.openElement("cache");
+    xml.attribute("name", this._name);
+    xml.attribute("size", size());
+    xml.attribute("max-size", this.maxEntries);
+    if (this.maxWeight < Long.MAX_VALUE) {
+      xml.attribute("weight", Long.toString(weight()));
+      xml.attribute("max-weight", Long.toString(this.maxWeight));
+    }
+    xml.attribute("hits", Long.toString(hits));
+    xml.attribute("misses", Long.toString(misses));
+    xml.attribute("evictions", Long.toString(this.evictions.get()));
+    xml.attribute("failures", Long.toString(this.failures.get()));
+    if (hits + misses > 0) {
+      xml.attribute("hit-rate", String.format(Locale.ROOT, "%.3f", (double) hits / (hits + misses)));
+    }
+    xml.attribute("load-time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.loadNanos.get())));
+    if (misses > 0) {
+      xml.attribute("average-load-time-ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(this.loadNanos.get() / misses)));
+    }
+    xml.closeElement();
+  }
+
+  /**
+   * Evicts the least recently used items until the cache is within the maximum number of items and weight.
+   */
+  private void evict() {
+    synchronized (this.entries) {
+      Iterator<Map.Entry<String, Entry<T>>> oldest = this.entries.entrySet().iterator();
+      while ((this.entries.size() > this.maxEntries || this.weight > this.maxWeight) && oldest.hasNext()) {
+        Map.Entry<String, Entry<T>> e = oldest.next();
+        // The items being built are kept
+        if (!e.getValue()._task.isDone()) continue;
+        oldest.remove();
+        this.weight -= e.getValue()._weight;
+        LOGGER.debug("Evicted {} from cache {}", e.getKey(), this._name);
+        this.evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Removes the item for the specified key if it is the specified entry.
+   */
+  private void remove(String key, Entry<T> entry) {
+    synchronized (this.entries) {
+      if (this.entries.remove(key, entry)) {
+        this.weight -= entry._weight;
+      }
+    }
+  }
+
+  private static <T> T result(Entry<T> entry) throws ExecutionException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return entry._task.get();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * An item being built or built.
+   */
+  private static final class Entry<T> {
+
+    private final long _version;
+
+    private final long _weight;
+
+    private final FutureTask<T> _task;
+
+    private Entry(long version, long weight, FutureTask<T> task) {
+      this._version = version;
+      this._weight = weight;
+      this._task = task;
+    }
+  }
+}
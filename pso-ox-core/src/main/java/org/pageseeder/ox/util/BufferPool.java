@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of direct buffers shared by the threads reading and writing files.
+ *
+ * <p>At most <code>max</code> direct buffers are allocated and they are reused by any thread, so that short-lived
+ * worker threads do not each allocate their own. When all of them are in use, a heap buffer is returned instead
+ * and it is not kept when released.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+final class BufferPool {
+
+  /** The buffers used by the zip utilities, two for each thread compressing or extracting. */
+  static final BufferPool ZIP = new BufferPool(256 * 1024, 2 * ZipUtils.DEFAULT_THREADS);
+
+  /** The size of the buffers. */
+  private final int _size;
+
+  /** The maximum number of direct buffers. */
+  private final int _max;
+
+  /** The direct buffers which are not in use. */
+  private final BlockingQueue<ByteBuffer> _available;
+
+  /** The number of direct buffers allocated. */
+  private final AtomicInteger _allocated = new AtomicInteger();
+
+  /**
+   * @param size the size of the buffers
+   * @param max  the maximum number of direct buffers
+   */
+  BufferPool(int size, int max) {
+    this._size = size;
+    this._max = Math.max(1, max);
+    this._available = new ArrayBlockingQueue<>(this._max);
+  }
+
+  /**
+   * Returns a cleared buffer, it must be released when no longer used.
+   *
+   * @return a direct buffer or a heap buffer if all the direct buffers are in use
+   */
+  ByteBuffer acquire() {
+    ByteBuffer buffer = this._available.poll();
+    if (buffer != null) return buffer;
+    if (this._allocated.incrementAndGet() <= this._max) return ByteBuffer.allocateDirect(this._size);
+    this._allocated.decrementAndGet();
+    return ByteBuffer.allocate(this._size);
+  }
+
+  /**
+   * Returns a buffer to the pool, heap buffers are discarded.
+   *
+   * @param buffer the buffer returned by {@link #acquire()}
+   */
+  void release(ByteBuffer buffer) {
+    if (buffer.isDirect()) {
+      buffer.clear();
+      this._available.offer(buffer);
+    }
+  }
+
+  /**
+   * @return the size of the buffers
+   */
+  int size() {
+    return this._size;
+  }
+
+  /**
+   * @return the number of direct buffers allocated
+   */
+  int allocated() {
+    return Math.min(this._allocated.get(), this._max);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Writes large text content as CDATA without loading it in memory.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class CDATAUtils {
+
+  /** The number of characters read at a time. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Utility class. */
+  private CDATAUtils() {}
+
+  /**
+   * Copies the content of the reader as CDATA sections.
+   *
+   * <p>The content is split in several consecutive CDATA sections, which is equivalent to a single one for any
+   * XML parser; <code>]]&gt;</code> is split between two sections so it can be included.
+   *
+   * @param xml      the XML writer
+   * @param reader   the content to copy
+   * @param maxBytes the maximum number of bytes (UTF-8) to copy or a negative number to copy everything
+   * @return <code>true</code> if all the content was copied, <code>false</code> if it was truncated
+   * @throws IOException if an error occurs while reading or writing
+   */
+  public static boolean writeCDATA(XMLWriter xml, Reader reader, long maxBytes) throws IOException {
+    char[] buffer = new char[BUFFER_SIZE + 1];
+    // a high surrogate kept for the next chunk so that a character is not split between two sections
+    int kept = 0;
+    long bytes = 0;
+    int read;
+    while ((read = reader.read(buffer, kept, BUFFER_SIZE)) != -1) {
+      int length = kept + read;
+      kept = 0;
+      if (length > 0 && Character.isHighSurrogate(buffer[length - 1])) {
+        kept = 1;
+        length--;
+      }
+      int end = 0;
+      while (end < length) {
+        int size = utf8Length(buffer, end, length);
+        if (maxBytes >= 0 && bytes + size > maxBytes) {
+          write(xml, buffer, end);
+          return false;
+        }
+        bytes += size;
+        end += Character.isHighSurrogate(buffer[end]) && end + 1 < length ? 2 : 1;
+      }
+      write(xml, buffer, length);
+      if (kept == 1) {
+        buffer[0] = buffer[length];
+      }
+    }
+    if (kept == 1) {
+      write(xml, buffer, 1);
+    }
+    return true;
+  }
+
+  /**
+   * Writes the characters as CDATA sections, splitting any <code>]]&gt;</code>.
+   */
+  private static void write(XMLWriter xml, char[] buffer, int length) throws IOException {
+    if (length == 0) return;
+    String chunk = new String(buffer, 0, length);
+    int from = 0;
+    int split;
+    while ((split = chunk.indexOf("]]>", from)) >= 0) {
+      xml.writeCDATA(chunk.substring(from, split + 2));
+      from = split + 2;
+    }
+    xml.writeCDATA(chunk.substring(from));
+  }
+
+  /**
+   * @return the number of bytes in UTF-8 of the character at the specified index.
+   */
+  private static int utf8Length(char[] buffer, int index, int length) {
+    char c = buffer[index];
+    if (c < 0x80) return 1;
+    if (c < 0x800) return 2;
+    if (Character.isHighSurrogate(c) && index + 1 < length) return 4;
+    return 3;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The response to a request to download a file, computed from the request headers so that it can be sent by
+ * any servlet.
+ *
+ * <ul>
+ *   <li>The <code>ETag</code> and <code>Last-Modified</code> headers are always sent and conditional requests
+ *   are answered with 304 (Not Modified).</li>
+ *   <li>A single byte range is answered with 206 (Partial Content), a range outside the file with 416
+ *   (see {@link HTTPRange}).</li>
+ *   <li>The content is copied with {@link FileUtils#transfer(File, long, long, OutputStream)} which only reads
+ *   the requested range of the file.</li>
+ * </ul>
+ *
+ * <p>The content type and disposition must be set by the caller.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class FileDownload {
+
+  /** The whole file is sent. */
+  public static final int SC_OK = 200;
+
+  /** The requested range is sent. */
+  public static final int SC_PARTIAL_CONTENT = 206;
+
+  /** The client already has the file. */
+  public static final int SC_NOT_MODIFIED = 304;
+
+  /** The requested range is outside the file. */
+  public static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+  /** The file to send. */
+  private final File _file;
+
+  /** The HTTP status. */
+  private final int _status;
+
+  /** The response headers in the order they should be sent. */
+  private final Map<String, String> _headers;
+
+  /** The first byte to send. */
+  private final long _start;
+
+  /** The number of bytes to send. */
+  private final long _length;
+
+  private FileDownload(File file, int status, Map<String, String> headers, long start, long length) {
+    this._file = file;
+    this._status = status;
+    this._headers = Collections.unmodifiableMap(headers);
+    this._start = start;
+    this._length = length;
+  }
+
+  /**
+   * Computes the response for the specified file.
+   *
+   * <p>For a servlet, the request headers are usually given as <code>req::getHeader</code>.
+   *
+   * @param file    the file to send
+   * @param headers returns the value of a request header or <code>null</code>
+   * @return the response to send
+   */
+  public static FileDownload of(File file, Function<String, String> headers) {
+    long size = file.length();
+    long lastModified = file.lastModified();
+    String etag = HTTPRange.etag(file);
+    Map<String, String> response = new LinkedHashMap<>();
+    response.put("ETag", etag);
+    response.put("Last-Modified", HTTPRange.formatDate(lastModified));
+    response.put("Accept-Ranges", "bytes");
+
+    long ifModifiedSince = HTTPRange.parseDate(headers.apply("If-Modified-Since"));
+    if (HTTPRange.isNotModified(headers.apply("If-None-Match"), ifModifiedSince, etag, lastModified)) {
+      return new FileDownload(file, SC_NOT_MODIFIED, response, 0, 0);
+    }
+
+    HTTPRange range = null;
+    if (HTTPRange.isRangeApplicable(headers.apply("If-Range"), etag, lastModified)) {
+      range = HTTPRange.parse(headers.apply("Range"), size);
+    }
+    if (range == null) {
+      response.put("Content-Length", Long.toString(size));
+      return new FileDownload(file, SC_OK, response, 0, size);
+    }
+    response.put("Content-Range", range.toContentRange());
+    if (!range.isSatisfiable()) {
+      return new FileDownload(file, SC_REQUESTED_RANGE_NOT_SATISFIABLE, response, 0, 0);
+    }
+    response.put("Content-Length", Long.toString(range.length()));
+    return new FileDownload(file, SC_PARTIAL_CONTENT, response, range.start(), range.length());
+  }
+
+  /**
+   * @return the HTTP status of the response
+   */
+  public int status() {
+    return this._status;
+  }
+
+  /**
+   * @return <code>true</code> if the status is an error and should be sent as such
+   */
+  public boolean isError() {
+    return this._status >= 400;
+  }
+
+  /**
+   * @return the response headers in the order they should be sent
+   */
+  public Map<String, String> headers() {
+    return this._headers;
+  }
+
+  /**
+   * @return the first byte to send
+   */
+  public long start() {
+    return this._start;
+  }
+
+  /**
+   * @return the number of bytes to send, 0 if there is no content
+   */
+  public long length() {
+    return this._length;
+  }
+
+  /**
+   * Copies the content of the response, nothing is copied if the status is not 200 or 206.
+   *
+   * @param out where the content is written
+   * @throws IOException if the file cannot be read or the content written
+   */
+  public void transfer(OutputStream out) throws IOException {
+    if (this._status == SC_OK || this._status == SC_PARTIAL_CONTENT) {
+      FileUtils.transfer(this._file, this._start, this._length, out);
+    }
+  }
+}
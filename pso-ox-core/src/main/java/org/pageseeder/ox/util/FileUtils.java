@@ -21,6 +21,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -266,6 +269,35 @@ public class FileUtils {
     return new String(encoded, encoding);
   }
 
+  /**
+   * Copies part of a file to an output stream.
+   *
+   * <p>Only the requested part of the file is read, starting at the specified position. Output streams such as
+   * a servlet response do not expose a channel, so the bytes are still copied through a small buffer: this is
+   * not a zero-copy transfer.
+   *
+   * @param source   the file to copy
+   * @param position the position of the first byte to copy
+   * @param count    the number of bytes to copy
+   * @param out      where the bytes are copied (not closed)
+   * @return the number of bytes copied, less than <code>count</code> if the end of the file was reached
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static long transfer(File source, long position, long count, OutputStream out) throws IOException {
+    try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+      WritableByteChannel target = Channels.newChannel(out);
+      long end = Math.min(position + count, channel.size());
+      long at = position;
+      while (at < end) {
+        long transferred = channel.transferTo(at, end - at, target);
+        // The file was truncated while copying
+        if (transferred <= 0) break;
+        at += transferred;
+      }
+      return at - position;
+    }
+  }
+
   /**
    * Compute the relative path between two files:
    * root             descendant            returned
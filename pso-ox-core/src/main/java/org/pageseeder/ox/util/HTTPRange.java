@@ -0,0 +1,210 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * A byte range requested with the HTTP <code>Range</code> header, with the helpers to answer conditional requests
+ * (<code>If-None-Match</code>, <code>If-Modified-Since</code> and <code>If-Range</code>) when serving files.
+ *
+ * <p>Only a single range is supported, a request for several ranges is answered with the whole file
+ * which is allowed by RFC 7233.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class HTTPRange {
+
+  /** The format of the HTTP dates, always in GMT with a two digit day. */
+  private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+  /** The first byte (inclusive), -1 if the range cannot be satisfied. */
+  private final long _start;
+
+  /** The last byte (inclusive), -1 if the range cannot be satisfied. */
+  private final long _end;
+
+  /** The size of the file. */
+  private final long _size;
+
+  private HTTPRange(long start, long end, long size) {
+    this._start = start;
+    this._end = end;
+    this._size = size;
+  }
+
+  /**
+   * Parses the value of a <code>Range</code> header.
+   *
+   * @param header the value of the header (may be <code>null</code>)
+   * @param size   the size of the file
+   * @return the range or <code>null</code> if the whole file should be sent
+   */
+  public static HTTPRange parse(String header, long size) {
+    if (header == null || !header.startsWith("bytes=")) return null;
+    String spec = header.substring(6).trim();
+    if (spec.isEmpty() || spec.indexOf(',') >= 0) return null;
+    int dash = spec.indexOf('-');
+    if (dash < 0) return null;
+    String first = spec.substring(0, dash).trim();
+    String last = spec.substring(dash + 1).trim();
+    try {
+      long start;
+      long end;
+      if (first.isEmpty()) {
+        // Suffix range: the last n bytes
+        if (last.isEmpty()) return null;
+        long suffix = Long.parseLong(last);
+        if (suffix < 0) return null;
+        if (suffix == 0 || size == 0) return new HTTPRange(-1, -1, size);
+        start = Math.max(0, size - suffix);
+        end = size - 1;
+      } else {
+        start = Long.parseLong(first);
+        end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+        if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) return null;
+        if (start >= size) return new HTTPRange(-1, -1, size);
+      }
+      return new HTTPRange(start, end, size);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the range is within the file, otherwise the status should be 416.
+   */
+  public boolean isSatisfiable() {
+    return this._start >= 0;
+  }
+
+  /**
+   * @return the first byte (inclusive)
+   */
+  public long start() {
+    return this._start;
+  }
+
+  /**
+   * @return the last byte (inclusive)
+   */
+  public long end() {
+    return this._end;
+  }
+
+  /**
+   * @return the number of bytes in the range
+   */
+  public long length() {
+    return isSatisfiable() ? this._end - this._start + 1 : 0;
+  }
+
+  /**
+   * @return the value of the <code>Content-Range</code> header
+   */
+  public String toContentRange() {
+    return isSatisfiable() ? "bytes " + this._start + '-' + this._end + '/' + this._size : "bytes */" + this._size;
+  }
+
+  @Override
+  public String toString() {
+    return toContentRange();
+  }
+
+  /**
+   * Returns a strong entity tag for the file computed from its size and last modified date.
+   *
+   * @param file the file
+   * @return the value of the <code>ETag</code> header (including the quotes)
+   */
+  public static String etag(File file) {
+    return "\"" + Long.toHexString(file.length()) + '-' + Long.toHexString(file.lastModified()) + '"';
+  }
+
+  /**
+   * Indicates whether the client already has the current version of the file.
+   *
+   * <p>As per RFC 7232, <code>If-Modified-Since</code> is ignored when <code>If-None-Match</code> is specified.
+   *
+   * @param ifNoneMatch     the value of the <code>If-None-Match</code> header (may be <code>null</code>)
+   * @param ifModifiedSince the value of the <code>If-Modified-Since</code> header in milliseconds or -1
+   * @param etag            the entity tag of the file
+   * @param lastModified    the last modified date of the file
+   * @return <code>true</code> if the status should be 304
+   */
+  public static boolean isNotModified(String ifNoneMatch, long ifModifiedSince, String etag, long lastModified) {
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        String t = tag.trim();
+        // Weak comparison
+        if (t.startsWith("W/")) t = t.substring(2);
+        if ("*".equals(t) || t.equals(etag)) return true;
+      }
+      return false;
+    }
+    // HTTP dates have a precision of one second
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Indicates whether the range can be used given the <code>If-Range</code> header.
+   *
+   * @param ifRange      the value of the <code>If-Range</code> header (may be <code>null</code>)
+   * @param etag         the entity tag of the file
+   * @param lastModified the last modified date of the file
+   * @return <code>true</code> if the range can be sent, <code>false</code> if the whole file must be sent
+   */
+  public static boolean isRangeApplicable(String ifRange, String etag, long lastModified) {
+    if (ifRange == null) return true;
+    String value = ifRange.trim();
+    // Strong comparison only, so a weak tag never matches
+    if (value.startsWith("\"") || value.startsWith("W/")) return value.equals(etag);
+    long date = parseDate(value);
+    return date >= 0 && lastModified / 1000 == date / 1000;
+  }
+
+  /**
+   * Parses an HTTP date.
+   *
+   * @param value the value of a date header (may be <code>null</code>)
+   * @return the date in milliseconds or -1 if the value is missing or invalid
+   */
+  public static long parseDate(String value) {
+    if (value == null) return -1;
+    try {
+      return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (DateTimeParseException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Formats an HTTP date, for example <code>Tue, 03 Jun 2008 11:05:30 GMT</code>.
+   *
+   * @param date the date in milliseconds
+   * @return the value of a date header
+   */
+  public static String formatDate(long date) {
+    return HTTP_DATE.format(Instant.ofEpochMilli(date));
+  }
+}
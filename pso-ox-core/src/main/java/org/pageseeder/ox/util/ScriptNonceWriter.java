@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer which adds a <code>nonce</code> attribute to every <code>&lt;script</code> start tag written to it,
+ * so that HTML can be sent with a Content Security Policy while it is being copied.
+ *
+ * <p>A tag is only recognised when <code>&lt;script</code> (in any case) is followed by a white space,
+ * <code>&gt;</code> or <code>/</code>. The characters which may be the start of a tag are held until the tag
+ * is recognised, so a tag split across several writes is handled and at most seven characters are kept in memory.
+ *
+ * <p>The held characters are written when the writer is closed, {@link #flush()} does not write them.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class ScriptNonceWriter extends FilterWriter {
+
+  /** What to look for (lower case). */
+  private static final String TAG = "<script";
+
+  /** The attribute to insert after the tag name. */
+  private final String _attribute;
+
+  /** The characters held while they match the start of the tag. */
+  private final char[] held = new char[TAG.length()];
+
+  /** The number of characters of the tag matched so far. */
+  private int matched = 0;
+
+  /** The buffer used to write the characters of strings. */
+  private final char[] chars = new char[1024];
+
+  /**
+   * @param out   the writer to write to
+   * @param nonce the nonce to add to the script tags
+   */
+  public ScriptNonceWriter(Writer out, String nonce) {
+    super(out);
+    this._attribute = " nonce=\"" + nonce + '"';
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    process((char) c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    int end = off + len;
+    int from = off;
+    for (int i = off; i < end; i++) {
+      char c = cbuf[i];
+      if (this.matched == 0 && c != '<') continue;
+      // Write the characters which cannot be part of a tag in one go
+      if (i > from) this.out.write(cbuf, from, i - from);
+      process(c);
+      from = i + 1;
+    }
+    if (end > from) this.out.write(cbuf, from, end - from);
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    int from = off;
+    int end = off + len;
+    while (from < end) {
+      int count = Math.min(end - from, this.chars.length);
+      str.getChars(from, from + count, this.chars, 0);
+      write(this.chars, 0, count);
+      from += count;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    release();
+    super.close();
+  }
+
+  private void process(char c) throws IOException {
+    if (this.matched == TAG.length()) {
+      if (Character.isWhitespace(c) || c == '>' || c == '/') {
+        this.out.write(this.held, 0, this.matched);
+        this.out.write(this._attribute);
+        this.matched = 0;
+        this.out.write(c);
+        return;
+      }
+      release();
+    } else if (Character.toLowerCase(c) == TAG.charAt(this.matched)) {
+      this.held[this.matched++] = c;
+      return;
+    } else {
+      release();
+    }
+    // Only the first character of the tag can start a new match
+    if (c == '<') {
+      this.held[this.matched++] = c;
+    } else {
+      this.out.write(c);
+    }
+  }
+
+  /**
+   * Writes the characters held.
+   */
+  private void release() throws IOException {
+    if (this.matched > 0) {
+      this.out.write(this.held, 0, this.matched);
+      this.matched = 0;
+    }
+  }
+}
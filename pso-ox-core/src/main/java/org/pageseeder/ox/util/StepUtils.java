@@ -20,7 +20,10 @@ import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.parameters.ParameterTemplate;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -50,6 +53,38 @@ public class StepUtils {
     return finput;
   }
 
+  /**
+   * Get all the files to process from the specified input, which can be a file, a folder, a list of files or a glob
+   * pattern. The files in a zip file are extracted in a folder next to it with the same name.
+   *
+   * <p>Only the files with the extensions of the parameter <var>input-extensions</var> are included from a folder
+   * or a zip file (default: xml, html, htm, psml).
+   *
+   * @param data  the data
+   * @param info  the info
+   * @param input the input
+   * @return the existing files to process
+   * @throws IOException if a zip file cannot be extracted
+   */
+  public static List<File> getInputFiles(PackageData data, StepInfo info, String input) throws IOException {
+    String extensionParameters = getParameter(data, info, "input-extensions", null);
+    List<String> extensions = StringUtils.isBlank(extensionParameters) ? FileUtils.getXMLExtensions() : StringUtils.convertToStringList(extensionParameters);
+    List<File> inputs = new ArrayList<>();
+    for (File file : data.getFiles(input)) {
+      if (file.isFile() && FileUtils.isZip(file)) {
+        File folder = new File(file.getParentFile(), FileUtils.getNameWithoutExtension(file));
+        folder.mkdirs();
+        ZipUtils.unzip(file, folder);
+        inputs.addAll(FileUtils.findFiles(folder, FileUtils.filter(extensions, true)));
+      } else if (file.isDirectory()) {
+        inputs.addAll(FileUtils.findFiles(file, FileUtils.filter(extensions, true)));
+      } else if (file.exists()) {
+        inputs.add(file);
+      }
+    }
+    return inputs;
+  }
+
   /**
    * Get the output from step definition. If does not find it, then it gets the parent folder of the input.
    * If the input is null then get the package folder.
@@ -145,6 +180,32 @@ public class StepUtils {
     }
   }
 
+  /**
+   * Get the number of files a step processes at the same time from the parameter <var>parallel</var>: a number,
+   * "true" to use one thread per processor or "false" (default: 1).
+   *
+   * <p>The parameter can come from the request, so the number of threads is never more than the number of
+   * processors.
+   *
+   * @param data PackageData
+   * @param info StepInfo
+   * @return the number of threads (between 1 and the number of processors)
+   */
+  public static int getParallelThreads(PackageData data, StepInfo info) {
+    String parallel = getParameter(data, info, "parallel", "1");
+    int processors = Runtime.getRuntime().availableProcessors();
+    if ("true".equalsIgnoreCase(parallel)) {
+      return processors;
+    } else if ("false".equalsIgnoreCase(parallel)) {
+      return 1;
+    }
+    try {
+      return Math.max(1, Math.min(processors, Integer.parseInt(parallel.trim())));
+    } catch (NumberFormatException ex) {
+      return 1;
+    }
+  }
+
   /**
    * Get the parameter from step definition, if it is not found then gets from the request parameter.
    * Otherwise returns the fallback.
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.pageseeder.xmlwriter.XMLWritable;
+import org.pageseeder.xmlwriter.XMLWriter;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks whether XML files are well-formed using a non-validating SAX parser.
+ *
+ * <p>Nothing is kept in memory while the file is parsed, so large files can be checked without building
+ * a DOM. The parser continues after the first error (when supported) so that up to the specified number of errors
+ * are reported with their line and column.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class WellformednessChecker {
+
+  /** The default maximum number of errors reported for each file. */
+  public static final int DEFAULT_MAX_ERRORS = 10;
+
+  /** Xerces feature to report the errors after the first fatal error. */
+  private static final String CONTINUE_AFTER_FATAL_ERROR = "http://apache.org/xml/features/continue-after-fatal-error";
+
+  private WellformednessChecker() {}
+
+  /**
+   * Check whether the specified file is well-formed.
+   *
+   * @param file      the file to check
+   * @param maxErrors the maximum number of errors to report (at least 1)
+   * @return the report listing the errors found
+   * @throws IOException if the file cannot be read
+   */
+  public static Report check(File file, int maxErrors) throws IOException {
+    ErrorCollector collector = new ErrorCollector(Math.max(1, maxErrors));
+    try {
+      SAXParser parser = newParser(maxErrors > 1);
+      parser.parse(file, collector);
+    } catch (SAXParseException ex) {
+      collector.add(ex);
+    } catch (SAXException | ParserConfigurationException ex) {
+      // thrown when the maximum number of errors is reached
+      if (collector.errors.isEmpty()) throw new IOException("Unable to check " + file.getName(), ex);
+    }
+    return new Report(file, collector.errors);
+  }
+
+  /**
+   * @param continueAfterFatalError whether to report the errors after the first one
+   * @return a new non-validating namespace aware parser
+   */
+  private static SAXParser newParser(boolean continueAfterFatalError) throws ParserConfigurationException, SAXException {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setValidating(false);
+    factory.setNamespaceAware(true);
+    if (continueAfterFatalError) {
+      try {
+        factory.setFeature(CONTINUE_AFTER_FATAL_ERROR, true);
+      } catch (SAXNotRecognizedException | SAXNotSupportedException ex) {
+        // only the first error is reported
+      }
+    }
+    return factory.newSAXParser();
+  }
+
+  /**
+   * Collects the errors, the parsing is stopped when the maximum number is reached.
+   */
+  private static final class ErrorCollector extends DefaultHandler {
+
+    private final int _max;
+
+    private final List<SAXParseException> errors = new ArrayList<>();
+
+    private ErrorCollector(int max) {
+      this._max = max;
+    }
+
+    @Override
+    public void error(SAXParseException ex) throws SAXException {
+      // Only reported when validating, not a well-formedness error
+    }
+
+    @Override
+    public void fatalError(SAXParseException ex) throws SAXException {
+      add(ex);
+      if (this.errors.size() >= this._max) throw new SAXException("Too many errors");
+    }
+
+    private void add(SAXParseException ex) {
+      // the same error may be reported to the handler and thrown by the parser
+      if (this.errors.size() < this._max && !this.errors.contains(ex)) {
+        this.errors.add(ex);
+      }
+    }
+  }
+
+  /**
+   * The errors found in a file.
+   */
+  public static final class Report implements XMLWritable {
+
+    private final File _file;
+
+    private final List<SAXParseException> _errors;
+
+    private Report(File file, List<SAXParseException> errors) {
+      this._file = file;
+      this._errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the file checked
+     */
+    public File file() {
+      return this._file;
+    }
+
+    /**
+     * @return <code>true</code> if no error was found
+     */
+    public boolean isWellformed() {
+      return this._errors.isEmpty();
+    }
+
+    /**
+     * @return the errors found, in the order they were found
+     */
+    public List<SAXParseException> errors() {
+      return this._errors;
+    }
+
+    /**
+     * Writes the errors as:
+     * <pre>{@code <errors><error line="[line]" column="[column]">[message]</error></errors>}</pre>
+     */
+    @Override
+    public void toXML(XMLWriter xml) throws IOException {
+      xml.openElement("errors");
+      for (SAXParseException ex : this._errors) {
+        xml.openElement("error");
+        xml.attribute("line", ex.getLineNumber());
+        xml.attribute("column", ex.getColumnNumber());
+        xml.writeText(ex.getMessage());
+        xml.closeElement();
+      }
+      xml.closeElement();
+    }
+  }
+}
@@ -17,6 +17,8 @@ package org.pageseeder.ox.util;
 
 import org.pageseeder.ox.api.StepInfo;
 import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.metrics.Metric;
+import org.pageseeder.ox.metrics.Metrics;
 import org.pageseeder.xmlwriter.XML;
 import org.pageseeder.xmlwriter.XMLStringWriter;
 import org.slf4j.Logger;
@@ -29,6 +31,7 @@ import java.io.*;
 import java.net.URI;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The type Xslt.
@@ -44,7 +47,7 @@ public class XSLT {
   /**
    * Maps XSLT templates to their URL as a string for easy retrieval.
    */
-  private static final BasicCache<Templates> CACHE = new BasicCache<Templates>();
+  private static final BoundedCache<Templates> CACHE = new BoundedCache<>("xslt");
 
   /** Utility class. */
   private XSLT() {}
@@ -66,7 +69,9 @@ public class XSLT {
       Source source = new StreamSource(in);
       source.setSystemId(url.toString());
       TransformerFactory factory = TransformerFactory.newInstance();
+      long start = System.nanoTime();
       templates = factory.newTemplates(source);
+      Metrics.get().current().record(Metric.XSLT_COMPILE, System.nanoTime() - start);
     }
     return templates;
   }
@@ -81,13 +86,7 @@ public class XSLT {
    */
   public static Templates getTemplates(File file) throws TransformerConfigurationException, IOException {
     URI uri = file.toURI();
-    long lastModified = file.lastModified();
-    Templates templates = CACHE.get(uri.toString(), lastModified);
-    if (templates == null) {
-      templates = getTemplates(uri.toURL());
-      CACHE.put(uri.toString(), templates);
-    }
-    return templates;
+    return getCachedTemplates(uri.toURL(), file.lastModified(), file.length());
   }
 
   /**
@@ -105,12 +104,52 @@ public class XSLT {
   public static Templates getTemplatesFromResource(String resource) throws TransformerConfigurationException, IOException {
     ClassLoader loader = XSLT.class.getClassLoader();
     URL url = loader.getResource(resource);
-    Templates templates = CACHE.get(url.toString(), 0);
-    if (templates == null) {
-      templates = getTemplates(url);
-      CACHE.put(url.toString(), templates);
+    // The stylesheets bundled with OX are a fixed set, they are not weighed
+    return getCachedTemplates(url, 0, 0);
+  }
+
+  /**
+   * Return the XSLT templates from the cache, the templates are compiled only once when several threads
+   * request the same stylesheet.
+   *
+   * @param url     A URL to a template.
+   * @param version The version of the template (last modified date), a different version is recompiled.
+   * @param size    The size of the template file, used to bound the memory used by the cache.
+   * @return the corresponding XSLT templates object.
+   * @throws TransformerConfigurationException If XSLT templates could not be loaded from the specified URL.
+   * @throws IOException                       If an IO error occur while reading the template
+   */
+  private static Templates getCachedTemplates(final URL url, long version, long size) throws TransformerConfigurationException, IOException {
+    try {
+      return CACHE.get(url.toString(), version, size, () -> getTemplates(url));
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof TransformerConfigurationException) throw (TransformerConfigurationException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new TransformerConfigurationException(cause);
     }
-    return templates;
+  }
+
+  /**
+   * Sets the maximum number of compiled stylesheets kept in the cache.
+   *
+   * @param maxEntries the maximum number of templates
+   */
+  public static void setCacheSize(int maxEntries) {
+    CACHE.setMaxEntries(maxEntries);
+  }
+
+  /**
+   * Sets the maximum total size of the stylesheet files whose compiled templates are kept in the cache.
+   *
+   * <p>The memory used by compiled templates grows with the size of their stylesheet, so this bounds the memory
+   * used by the cache when a few stylesheets are very large. Stylesheets imported by a stylesheet are not counted.
+   *
+   * @param maxBytes the maximum total size in bytes
+   */
+  public static void setCacheMaxSize(long maxBytes) {
+    CACHE.setMaxWeight(maxBytes);
   }
 
   /**
@@ -151,7 +190,14 @@ public class XSLT {
    * @throws TransformerException the transformation error occur.
    */
   public static void transform(Source source, Result output, Transformer transformer) throws IOException, TransformerException {
-    transformer.transform(source, output);
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      transformer.transform(source, output);
+      failed = false;
+    } finally {
+      Metrics.get().current().record(Metric.XSLT_TRANSFORM, System.nanoTime() - start, failed);
+    }
   }
 
   /**
@@ -16,14 +16,27 @@
 package org.pageseeder.ox.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 /**
  * A utility class for common Zip functions.
  *
+ * <p>The entries are compressed and extracted by several threads (see {@link #DEFAULT_THREADS}), files which are
+ * already compressed such as images or office documents are stored without compression.
+ *
  * @author Christophe Lauret
  * @author Ciber Cai
  * @since 18 December 2013
@@ -31,9 +44,9 @@ import java.util.zip.ZipOutputStream;
 public final class ZipUtils {
 
   /**
-   * Size of internal buffer.
+   * The default number of entries compressed or extracted at the same time.
    */
-  private static final int BUFFER = 2048;
+  public static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
 
   /** Utility class. */
   private ZipUtils() {}
@@ -46,40 +59,98 @@ public final class ZipUtils {
    * @throws IOException when IO error occur.
    */
   public static void unzip(File src, File dest) throws IOException {
-    dest.mkdirs();
+    unzip(src, dest, DEFAULT_THREADS);
+  }
 
-    try (ZipFile zip = new ZipFile(src)) {
-      ZipEntry entry;
+  /**
+   * Unzip the file at the specified location.
+   *
+   * @param src     The file to unzip
+   * @param dest    The destination folder
+   * @param threads The number of entries extracted at the same time
+   * @throws IOException when IO error occur or if an entry would be extracted outside the destination folder.
+   */
+  public static void unzip(File src, File dest, int threads) throws IOException {
+    dest.mkdirs();
+    String root = dest.getCanonicalPath() + File.separator;
 
+    try (final ZipFile zip = new ZipFile(src)) {
+      List<ZipEntry> entries = new ArrayList<>();
+      List<File> targets = new ArrayList<>();
       for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
-        entry = e.nextElement();
-        String name = entry.getName();
+        ZipEntry entry = e.nextElement();
+        File f = new File(dest, entry.getName());
+        if (!f.getCanonicalPath().startsWith(root)) {
+          throw new IOException("The entry " + entry.getName() + " is outside of the destination folder");
+        }
         // Ensure that the folder exists
-        if (name.indexOf('/') > 0) {
-          String folder = name.substring(0, name.lastIndexOf('/'));
-          File dir = new File(dest, folder);
-          if (!dir.exists()) {
-            dir.mkdirs();
-          }
+        if (entry.isDirectory()) {
+          f.mkdirs();
+        } else {
+          f.getParentFile().mkdirs();
+          entries.add(entry);
+          targets.add(f);
+        }
+      }
+
+      // Only process files
+      if (threads <= 1 || entries.size() <= 1) {
+        for (int i = 0; i < entries.size(); i++) {
+          extract(zip, entries.get(i), targets.get(i));
+        }
+        return;
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, entries.size()));
+      try {
+        List<Future<?>> futures = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+          final ZipEntry entry = entries.get(i);
+          final File target = targets.get(i);
+          futures.add(executor.submit(() -> {
+            extract(zip, entry, target);
+            return null;
+          }));
         }
-        // Only process files
-        if (!entry.isDirectory()) {
-          byte[] data = new byte[BUFFER];
-          File f = new File(dest, name);
-          try (BufferedInputStream is = new BufferedInputStream(zip.getInputStream(entry));
-               FileOutputStream fos = new FileOutputStream(f);
-               BufferedOutputStream out = new BufferedOutputStream(fos, BUFFER)) {
-            int count;
-            while ((count = is.read(data, 0, BUFFER)) != -1) {
-              out.write(data, 0, count);
-            }
-            out.flush();
-          }
+        for (Future<?> future : futures) {
+          future.get();
         }
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while extracting " + src.getName());
+      } finally {
+        executor.shutdownNow();
       }
     }
   }
 
+  /**
+   * Extract an entry to a file using a buffer from the shared pool.
+   *
+   * @param zip    The zip file
+   * @param entry  The entry to extract
+   * @param target The file to write
+   * @throws IOException when IO error occur.
+   */
+  private static void extract(ZipFile zip, ZipEntry entry, File target) throws IOException {
+    ByteBuffer buffer = BufferPool.ZIP.acquire();
+    try (ReadableByteChannel in = Channels.newChannel(zip.getInputStream(entry));
+         FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (in.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+        buffer.clear();
+      }
+    } finally {
+      BufferPool.ZIP.release(buffer);
+    }
+  }
+
   /**
    * Zip the specified file or folder.
    *
@@ -88,19 +159,19 @@ public final class ZipUtils {
    * @throws IOException when IO error occur.
    */
   public static void zip(File src, File dest) throws IOException {
-    try (FileOutputStream zip = new FileOutputStream(dest);
-         ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(zip))){
-      if (src.isFile()) {
-        // Source is a single file
-        addToZip(src, out, null);
+    zip(src, dest, DEFAULT_THREADS);
+  }
 
-      } else {
-        // Source is directory
-        for (File f : src.listFiles()) {
-          addToZip(f, out, null);
-        }
-      }
-    }
+  /**
+   * Zip the specified file or folder.
+   *
+   * @param src     The folder to zip
+   * @param dest    The destination zip
+   * @param threads The number of entries compressed at the same time
+   * @throws IOException when IO error occur.
+   */
+  public static void zip(File src, File dest, int threads) throws IOException {
+    zipFilesTo(dest, threads, src);
   }
 
   /**
@@ -111,52 +182,53 @@ public final class ZipUtils {
    * @throws IOException when IO error occur.
    */
   public static void zipFilesTo(File dest, File... sources) throws IOException {
-    try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(dest)))){
-      for (File src : sources) {
-        if (src.isFile()) {
-          // Source is a single file
-          addToZip(src, out, null);
-        } else {
-          // Source is directory
-          for (File f : src.listFiles()) {
-            addToZip(f, out, null);
-          }
+    zipFilesTo(dest, DEFAULT_THREADS, sources);
+  }
+
+  /**
+   * Zip a set of specified file or folder.
+   *
+   * @param dest    The destination zip
+   * @param threads The number of entries compressed at the same time
+   * @param sources The list of files
+   * @throws IOException when IO error occur.
+   */
+  public static void zipFilesTo(File dest, int threads, File... sources) throws IOException {
+    List<ZipWriter.Source> files = new ArrayList<>();
+    for (File src : sources) {
+      if (src.isFile()) {
+        // Source is a single file
+        addToZip(src, files, null);
+      } else {
+        // Source is directory
+        for (File f : src.listFiles()) {
+          addToZip(f, files, null);
         }
       }
     }
+    ZipWriter.write(files, dest, threads);
   }
 
   /**
-   * Zip the specified file or folder.
+   * Add the specified file or the files in the specified folder to the list of files to zip.
    *
    * @param file   The file or folder to zip
-   * @param out    The destination zip stream
+   * @param files  The files to zip
    * @param folder The current folder
-   *
-   * @throws IOException If an IO error occurs.
    */
-  private static void addToZip(File file, ZipOutputStream out, String folder) throws IOException {
+  private static void addToZip(File file, List<ZipWriter.Source> files, String folder) {
     // Directory
     if (file.isDirectory()) {
-      File[] files = file.listFiles();
-      if (files != null) {
-        for (File f : files) {
-          addToZip(f, out, (folder != null ? folder + file.getName() : file.getName()) + "/");
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File f : children) {
+          addToZip(f, files, (folder != null ? folder + file.getName() : file.getName()) + "/");
         }
       }
 
       // File
     } else {
-      byte[] data = new byte[BUFFER];
-      try (FileInputStream fi = new FileInputStream(file);
-           BufferedInputStream origin = new BufferedInputStream(fi, BUFFER)){
-        ZipEntry entry = new ZipEntry(folder != null ? folder + file.getName() : file.getName());
-        out.putNextEntry(entry);
-        int count;
-        while ((count = origin.read(data, 0, BUFFER)) != -1) {
-          out.write(data, 0, count);
-        }
-      }
+      files.add(new ZipWriter.Source(folder != null ? folder + file.getName() : file.getName(), file));
     }
   }
 
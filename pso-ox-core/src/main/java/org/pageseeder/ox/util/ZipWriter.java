@@ -0,0 +1,482 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a zip file, the entries are compressed in parallel and written in order.
+ *
+ * <ul>
+ *   <li>Each entry is deflated by a worker thread, in memory for small files and in a temporary file otherwise.
+ *   The number of entries prepared in advance is limited to bound the memory used.</li>
+ *   <li>Files which are already compressed (images, media, archives, office documents) are stored, their content
+ *   is transferred from the file channel without being copied in memory. An entry which does not get smaller
+ *   when deflated is stored as well.</li>
+ *   <li>Zip64 extensions are used when the sizes, offsets or number of entries require it.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+final class ZipWriter {
+
+  /** Size of the buffers used to read and compress. */
+  private static final int BUFFER = 256 * 1024;
+
+  /** Files up to this size are deflated in memory. */
+  private static final long MEMORY_LIMIT = 4 * 1024 * 1024;
+
+  /** Number of entries prepared in advance for each thread. */
+  private static final int WINDOW = 4;
+
+  private static final int STORED = 0;
+
+  private static final int DEFLATED = 8;
+
+  /** General purpose flag: file names are encoded in UTF-8. */
+  private static final int UTF8_FLAG = 0x0800;
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+  /** The extensions of files which are already compressed. */
+  private static final String[] COMPRESSED_EXTENSIONS = {
+      "png", "jpg", "jpeg", "gif", "webp", "tif", "tiff", "heic",
+      "mp3", "mp4", "m4a", "mov", "avi", "mkv", "ogg", "webm",
+      "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar", "war",
+      "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub"
+  };
+
+  /** The destination. */
+  private final FileChannel _out;
+
+  /** Where the large entries are deflated. */
+  private final File _tempDir;
+
+  /** The entries written, for the central directory. */
+  private final List<Entry> entries = new ArrayList<>();
+
+  /** The current offset in the zip file. */
+  private long offset = 0;
+
+  private ZipWriter(FileChannel out, File tempDir) {
+    this._out = out;
+    this._tempDir = tempDir;
+  }
+
+  /**
+   * Write the specified files to a new zip file.
+   *
+   * @param files   the files to add with their names in the zip
+   * @param dest    the zip file to create
+   * @param threads the number of files compressed at the same time
+   * @throws IOException if a file cannot be read or the zip cannot be written
+   */
+  static void write(List<Source> files, File dest, int threads) throws IOException {
+    try (FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ZipWriter writer = new ZipWriter(out, dest.getAbsoluteFile().getParentFile());
+      if (threads <= 1 || files.size() <= 1) {
+        for (Source file : files) {
+          writer.write(prepare(file, writer._tempDir));
+        }
+      } else {
+        writer.write(files, threads);
+      }
+      writer.finish();
+    }
+  }
+
+  /**
+   * @param name the name of the file
+   * @return <code>true</code> if the file is already compressed according to its extension
+   */
+  static boolean isCompressed(String name) {
+    int dot = name.lastIndexOf('.');
+    if (dot < 0) return false;
+    String extension = name.substring(dot + 1).toLowerCase();
+    for (String compressed : COMPRESSED_EXTENSIONS) {
+      if (compressed.equals(extension)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Prepare the entries in parallel and write them in order.
+   *
+   * <p>If an entry cannot be prepared or written, the entries which have not started are cancelled and the
+   * temporary files of the entries prepared but not written are removed once the workers have stopped.
+   */
+  private void write(List<Source> files, int threads) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    ArrayDeque<Future<Prepared>> pending = new ArrayDeque<>();
+    Set<Prepared> unwritten = ConcurrentHashMap.newKeySet();
+    int next = 0;
+    try {
+      while (next < files.size() || !pending.isEmpty()) {
+        while (next < files.size() && pending.size() < threads * WINDOW) {
+          final Source file = files.get(next++);
+          pending.add(executor.submit((Callable<Prepared>) () -> {
+            Prepared prepared = prepare(file, this._tempDir);
+            unwritten.add(prepared);
+            return prepared;
+          }));
+        }
+        Prepared prepared = pending.poll().get();
+        unwritten.remove(prepared);
+        write(prepared);
+      }
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing the zip file");
+    } finally {
+      for (Future<Prepared> future : pending) {
+        future.cancel(true);
+      }
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      // Remove the temporary files of the entries which have not been written
+      for (Prepared prepared : unwritten) {
+        prepared.discard();
+      }
+    }
+  }
+
+  /**
+   * Compute the CRC of a file and compress it unless it is already compressed.
+   */
+  private static Prepared prepare(Source source, File tempDir) throws IOException {
+    File file = source._file;
+    long size = file.length();
+    CRC32 crc = new CRC32();
+    if (isCompressed(source._name) || size == 0) {
+      ByteBuffer buffer = BufferPool.ZIP.acquire();
+      try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        while (in.read(buffer) != -1) {
+          buffer.flip();
+          crc.update(buffer);
+          buffer.clear();
+        }
+      } finally {
+        BufferPool.ZIP.release(buffer);
+      }
+      return new Prepared(source, STORED, crc.getValue(), size, size, null, null);
+    }
+
+    byte[] data = null;
+    File temp = null;
+    OutputStream target;
+    if (size <= MEMORY_LIMIT) {
+      target = new ByteArrayOutputStream((int) Math.max(size / 2, 64));
+    } else {
+      temp = File.createTempFile("zip", ".deflate", tempDir);
+      target = new FileOutputStream(temp);
+    }
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    long read = 0;
+    try (InputStream in = new FileInputStream(file);
+         DeflaterOutputStream out = new DeflaterOutputStream(target, deflater, BUFFER)) {
+      byte[] buffer = new byte[BUFFER];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, count);
+        out.write(buffer, 0, count);
+        read += count;
+      }
+      out.finish();
+    } catch (IOException ex) {
+      if (temp != null) Files.deleteIfExists(temp.toPath());
+      throw ex;
+    } finally {
+      deflater.end();
+    }
+    long compressed = temp != null ? temp.length() : ((ByteArrayOutputStream) target).size();
+    if (compressed >= read) {
+      // Not worth compressing
+      if (temp != null) Files.deleteIfExists(temp.toPath());
+      return new Prepared(source, STORED, crc.getValue(), read, read, null, null);
+    }
+    if (temp == null) data = ((ByteArrayOutputStream) target).toByteArray();
+    return new Prepared(source, DEFLATED, crc.getValue(), read, compressed, data, temp);
+  }
+
+  /**
+   * Write the local header and the data of an entry.
+   */
+  private void write(Prepared entry) throws IOException {
+    try {
+      byte[] name = entry._source._name.getBytes(StandardCharsets.UTF_8);
+      boolean zip64 = entry._size >= ZIP64_MAGIC || entry._compressed >= ZIP64_MAGIC;
+      int dosTime = dosTime(entry._source._file.lastModified());
+      Entry written = new Entry(name, entry._method, dosTime, entry._crc, entry._size, entry._compressed, this.offset);
+
+      ByteBuffer header = buffer(30 + name.length + (zip64 ? 20 : 0));
+      header.putInt(0x04034b50);
+      header.putShort((short) versionNeeded(entry._method, zip64));
+      header.putShort((short) UTF8_FLAG);
+      header.putShort((short) entry._method);
+      header.putInt(dosTime);
+      header.putInt((int) entry._crc);
+      header.putInt((int) (zip64 ? ZIP64_MAGIC : entry._compressed));
+      header.putInt((int) (zip64 ? ZIP64_MAGIC : entry._size));
+      header.putShort((short) name.length);
+      header.putShort((short) (zip64 ? 20 : 0));
+      header.put(name);
+      if (zip64) {
+        header.putShort((short) 0x0001);
+        header.putShort((short) 16);
+        header.putLong(entry._size);
+        header.putLong(entry._compressed);
+      }
+      writeFully(header.flip());
+
+      if (entry._data != null) {
+        writeFully(ByteBuffer.wrap(entry._data));
+      } else {
+        File file = entry._temp != null ? entry._temp : entry._source._file;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+          long position = 0;
+          while (position < entry._compressed) {
+            long count = in.transferTo(position, entry._compressed - position, this._out);
+            if (count <= 0) throw new EOFException("File " + file.getName() + " changed while zipping");
+            position += count;
+          }
+        }
+        this.offset += entry._compressed;
+      }
+      this.entries.add(written);
+    } finally {
+      entry.discard();
+    }
+  }
+
+  /**
+   * Write the central directory and its end record.
+   */
+  private void finish() throws IOException {
+    long start = this.offset;
+    for (Entry entry : this.entries) {
+      boolean zip64Size = entry._size >= ZIP64_MAGIC || entry._compressed >= ZIP64_MAGIC;
+      boolean zip64Offset = entry._offset >= ZIP64_MAGIC;
+      int extra = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+      int version = versionNeeded(entry._method, extra > 0);
+      ByteBuffer header = buffer(46 + entry._name.length + (extra > 0 ? extra + 4 : 0));
+      header.putInt(0x02014b50);
+      header.putShort((short) version);
+      header.putShort((short) version);
+      header.putShort((short) UTF8_FLAG);
+      header.putShort((short) entry._method);
+      header.putInt(entry._dosTime);
+      header.putInt((int) entry._crc);
+      header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry._compressed));
+      header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry._size));
+      header.putShort((short) entry._name.length);
+      header.putShort((short) (extra > 0 ? extra + 4 : 0));
+      header.putShort((short) 0); // comment
+      header.putShort((short) 0); // disk
+      header.putShort((short) 0); // internal attributes
+      header.putInt(0); // external attributes
+      header.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry._offset));
+      header.put(entry._name);
+      if (extra > 0) {
+        header.putShort((short) 0x0001);
+        header.putShort((short) extra);
+        if (zip64Size) {
+          header.putLong(entry._size);
+          header.putLong(entry._compressed);
+        }
+        if (zip64Offset) header.putLong(entry._offset);
+      }
+      writeFully(header.flip());
+    }
+    long size = this.offset - start;
+    int count = this.entries.size();
+
+    if (count >= ZIP64_MAGIC_COUNT || start >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+      long record = this.offset;
+      ByteBuffer zip64 = buffer(56 + 20);
+      zip64.putInt(0x06064b50);
+      zip64.putLong(44);
+      zip64.putShort((short) 45);
+      zip64.putShort((short) 45);
+      zip64.putInt(0);
+      zip64.putInt(0);
+      zip64.putLong(count);
+      zip64.putLong(count);
+      zip64.putLong(size);
+      zip64.putLong(start);
+      // Locator
+      zip64.putInt(0x07064b50);
+      zip64.putInt(0);
+      zip64.putLong(record);
+      zip64.putInt(1);
+      writeFully(zip64.flip());
+    }
+
+    ByteBuffer end = buffer(22);
+    end.putInt(0x06054b50);
+    end.putShort((short) 0);
+    end.putShort((short) 0);
+    end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+    end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+    end.putInt((int) Math.min(size, ZIP64_MAGIC));
+    end.putInt((int) Math.min(start, ZIP64_MAGIC));
+    end.putShort((short) 0);
+    writeFully(end.flip());
+  }
+
+  private static ByteBuffer buffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      this.offset += this._out.write(buffer);
+    }
+  }
+
+  private static int versionNeeded(int method, boolean zip64) {
+    return zip64 ? 45 : method == DEFLATED ? 20 : 10;
+  }
+
+  /**
+   * @param time the time in milliseconds
+   * @return the time in MS-DOS format (date in the high 16 bits)
+   */
+  private static int dosTime(long time) {
+    LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    if (date.getYear() < 1980) return (1 << 21) | (1 << 16);
+    return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+        | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+  }
+
+  /**
+   * A file to add to the zip.
+   */
+  static final class Source {
+
+    private final String _name;
+
+    private final File _file;
+
+    /**
+     * @param name the name of the entry
+     * @param file the file
+     */
+    Source(String name, File file) {
+      this._name = name;
+      this._file = file;
+    }
+  }
+
+  /**
+   * An entry ready to be written.
+   */
+  private static final class Prepared {
+
+    private final Source _source;
+
+    private final int _method;
+
+    private final long _crc;
+
+    private final long _size;
+
+    private final long _compressed;
+
+    /** The deflated data when kept in memory. */
+    private final byte[] _data;
+
+    /** The temporary file containing the deflated data. */
+    private final File _temp;
+
+    private Prepared(Source source, int method, long crc, long size, long compressed, byte[] data, File temp) {
+      this._source = source;
+      this._method = method;
+      this._crc = crc;
+      this._size = size;
+      this._compressed = compressed;
+      this._data = data;
+      this._temp = temp;
+    }
+
+    private void discard() throws IOException {
+      if (this._temp != null) Files.deleteIfExists(this._temp.toPath());
+    }
+  }
+
+  /**
+   * An entry written, for the central directory.
+   */
+  private static final class Entry {
+
+    private final byte[] _name;
+
+    private final int _method;
+
+    private final int _dosTime;
+
+    private final long _crc;
+
+    private final long _size;
+
+    private final long _compressed;
+
+    private final long _offset;
+
+    private Entry(byte[] name, int method, int dosTime, long crc, long size, long compressed, long offset) {
+      this._name = name;
+      this._method = method;
+      this._dosTime = dosTime;
+      this._crc = crc;
+      this._size = size;
+      this._compressed = compressed;
+      this._offset = offset;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.cleanup;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class PackageExpiryIndexTest {
+
+  private final PackageExpiryIndex index = PackageExpiryIndex.get();
+
+  @Before
+  public void setUp() {
+    this.index.setEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    this.index.setEnabled(false);
+  }
+
+  @Test
+  public void test_expired() {
+    this.index.touch("a", 100);
+    this.index.touch("b", 300);
+    this.index.touch("c", 200);
+    Assert.assertEquals(3, this.index.size());
+    Assert.assertEquals(Collections.emptyList(), this.index.expired(100));
+    Assert.assertEquals(Arrays.asList("a", "c"), this.index.expired(250));
+    Assert.assertEquals(1, this.index.size());
+  }
+
+  @Test
+  public void test_touch_again() {
+    this.index.touch("a", 100);
+    this.index.touch("a", 400);
+    // an older activity is ignored
+    this.index.touch("a", 50);
+    Assert.assertEquals(Collections.emptyList(), this.index.expired(300));
+    Assert.assertEquals(Collections.singletonList("a"), this.index.expired(500));
+    Assert.assertEquals(0, this.index.size());
+  }
+
+  @Test
+  public void test_disabled() {
+    this.index.setEnabled(false);
+    this.index.touch("a", 100);
+    Assert.assertEquals(0, this.index.size());
+  }
+
+  @Test
+  public void test_clean_indexed() throws IOException {
+    File base = new File(OXConfig.getOXTempFolder(), "test-index");
+    if (base.exists()) FileUtils.delete(base);
+    Assert.assertTrue(base.mkdirs());
+    long old = System.currentTimeMillis() - 60000;
+
+    File expired = newPackage(base, "expired", old);
+    File seeded = newPackage(base, "seeded", old);
+    File recent = newPackage(base, "recent", System.currentTimeMillis());
+    File upload = new File(base, OXConfig.TEMP_UPLOAD_FOLDER_NAME);
+    Assert.assertTrue(upload.mkdir());
+
+    this.index.touch("expired", old);
+    this.index.touch("recent", System.currentTimeMillis());
+
+    CleanUpJob job = new CleanUpJob(1000, 1000, base, CleanUpMode.INDEX);
+    job.addFileToIgnore(upload);
+    job.clean();
+
+    Assert.assertFalse(expired.exists());
+    // "seeded" was not in the index, it is found when the base directory is listed
+    Assert.assertFalse(seeded.exists());
+    Assert.assertTrue(recent.exists());
+    Assert.assertTrue(upload.exists());
+
+    CleanUpStatistics statistics = job.getStatistics();
+    Assert.assertEquals(1, statistics.sweeps());
+    Assert.assertEquals(2, statistics.packagesDeleted());
+    Assert.assertEquals(4, statistics.filesDeleted());
+    Assert.assertEquals(4 * 100, statistics.bytesReclaimed());
+    Assert.assertEquals(0, statistics.failures());
+    FileUtils.delete(base);
+  }
+
+  private static File newPackage(File base, String id, long modified) throws IOException {
+    File dir = new File(base, id);
+    Assert.assertTrue(dir.mkdir());
+    for (String name : new String[]{"a.xml", "b.xml"}) {
+      File file = new File(dir, name);
+      Files.write(file.toPath(), new byte[100]);
+      Assert.assertTrue(file.setLastModified(modified));
+    }
+    Assert.assertTrue(dir.setLastModified(modified));
+    return dir;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.ox.OXConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class ModelRegistryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File models;
+
+  @Before
+  public void init() throws IOException {
+    this.models = this.folder.newFolder("models");
+    writeModel("a", "p1", 1000);
+    OXConfig.get().setModelsDirectory(this.models);
+  }
+
+  @After
+  public void reset() {
+    ModelRegistry.get().stopWatching();
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+  }
+
+  @Test
+  public void testGetModel() {
+    ModelRegistry registry = ModelRegistry.get();
+    Model model = registry.getModel("a");
+    Assert.assertNotNull(model);
+    Assert.assertSame(model, registry.getModel("a"));
+    Assert.assertSame(model, registry.getDefault());
+    Assert.assertNotNull(registry.getPipeline("a", "p1"));
+    Assert.assertNotNull(registry.getPipeline("a", "p1").getStep("s1"));
+    Assert.assertNull(registry.getPipeline("a", "p2"));
+    Assert.assertNull(registry.getModel("b"));
+  }
+
+  @Test
+  public void testModelChanged() throws IOException {
+    ModelRegistry registry = ModelRegistry.get();
+    Pipeline running = registry.getPipeline("a", "p1");
+    Assert.assertNotNull(running);
+
+    writeModel("a", "p2", 2000);
+    Model model = registry.getModel("a");
+    Assert.assertNotNull(model.getPipeline("p2"));
+    Assert.assertNull(model.getPipeline("p1"));
+    // The previous version is not modified
+    Assert.assertEquals("p1", running.id());
+    Assert.assertNotNull(running.getStep("s1"));
+
+    writeModel("b", "p1", 2000);
+    Assert.assertEquals(2, registry.listModels().size());
+  }
+
+  @Test
+  public void testInvalidModelKeepsPreviousVersion() throws IOException {
+    ModelRegistry registry = ModelRegistry.get();
+    Model model = registry.getModel("a");
+    File definition = new File(new File(this.models, "a"), "model.xml");
+    Files.write(definition.toPath(), "<pipelines><pipeline".getBytes(StandardCharsets.UTF_8));
+    definition.setLastModified(3000);
+    Assert.assertSame(model, registry.getModel("a"));
+  }
+
+  @Test
+  public void testWatching() throws Exception {
+    ModelRegistry registry = ModelRegistry.get();
+    registry.startWatching();
+    Assert.assertTrue(registry.isWatching());
+    Model model = registry.getModel("a");
+
+    writeModel("a", "p2", 4000);
+    long until = System.currentTimeMillis() + 20000;
+    while (registry.getModel("a") == model && System.currentTimeMillis() < until) {
+      Thread.sleep(100);
+    }
+    Assert.assertNotSame(model, registry.getModel("a"));
+    Assert.assertNotNull(registry.getPipeline("a", "p2"));
+
+    registry.stopWatching();
+    Assert.assertFalse(registry.isWatching());
+  }
+
+  private void writeModel(String name, String pipeline, long modified) throws IOException {
+    File dir = new File(this.models, name);
+    dir.mkdirs();
+    File definition = new File(dir, "model.xml");
+    String xml = "<pipelines><pipeline id=\"" + pipeline + "\" name=\"" + pipeline + "\" accepts=\"text/xml\">"
+        + "<step id=\"s1\" class=\"org.pageseeder.ox.step.NOPStep\"/></pipeline></pipelines>";
+    Files.write(definition.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    definition.setLastModified(modified);
+  }
+}
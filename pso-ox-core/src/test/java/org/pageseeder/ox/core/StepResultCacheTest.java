@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class StepResultCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private StepDefinition step;
+
+  @Before
+  public void init() throws IOException {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    Model model = new Model("m1");
+    model.load();
+    this.step = model.getPipeline("cached-pipeline").getStep("transform");
+    StepResultCache.get().setDirectory(this.folder.newFolder("cache"));
+  }
+
+  @After
+  public void reset() {
+    StepResultCache.get().setDirectory(null);
+    StepResultCache.get().setMaxSize(StepResultCache.DEFAULT_MAX_SIZE);
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    StepResultCache cache = StepResultCache.get();
+    Assert.assertTrue(cache.isCached(this.step));
+    long hits = cache.hits();
+    long misses = cache.misses();
+
+    PackageData first = newPackage("sample.xml", "<note>first</note>");
+    Result result = this.step.exec(first);
+    Assert.assertEquals(ResultStatus.OK, result.status());
+    Assert.assertEquals(misses + 1, cache.misses());
+    Assert.assertEquals(hits, cache.hits());
+
+    PackageData second = newPackage("sample.xml", "<note>first</note>");
+    Result cached = this.step.exec(second);
+    Assert.assertEquals(ResultStatus.OK, cached.status());
+    Assert.assertEquals(hits + 1, cache.hits());
+    File output = second.getFile("transformed.xml");
+    Assert.assertTrue(output.exists());
+    Assert.assertEquals(read(first.getFile("transformed.xml")), read(output));
+
+    // The XML of the result refers to the new package
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    cached.toXML(xml);
+    xml.flush();
+    Assert.assertFalse(xml.toString().contains(first.id()));
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    StepResultCache cache = StepResultCache.get();
+    this.step.exec(newPackage("sample.xml", "<note>miss</note>"));
+    this.step.exec(newPackage("sample.xml", "<note>miss</note>"));
+    long hits = cache.hits();
+    long misses = cache.misses();
+    Assert.assertTrue(hits > 0 && misses > 0);
+
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    cache.toXML(xml);
+    xml.flush();
+    String rate = String.format(Locale.ROOT, "%.3f", (double) hits / (hits + misses));
+    Assert.assertTrue(xml.toString(), xml.toString().startsWith("<step-cache enabled=\"true\" entries="));
+    Assert.assertTrue(xml.toString(), xml.toString().contains(" hits=\"" + hits + "\" misses=\"" + misses + "\""));
+    Assert.assertTrue(xml.toString(), xml.toString().contains(" hit-rate=\"" + rate + "\""));
+  }
+
+  @Test
+  public void testOutputCopied() throws Exception {
+    PackageData first = newPackage("sample.xml", "<note>first</note>");
+    this.step.exec(first);
+    String expected = read(first.getFile("transformed.xml"));
+
+    // Modifying the output of a package does not change the cached output
+    PackageData second = newPackage("sample.xml", "<note>first</note>");
+    this.step.exec(second);
+    Files.write(second.getFile("transformed.xml").toPath(), "modified".getBytes(StandardCharsets.UTF_8));
+
+    PackageData third = newPackage("sample.xml", "<note>first</note>");
+    this.step.exec(third);
+    Assert.assertEquals(expected, read(third.getFile("transformed.xml")));
+  }
+
+  @Test
+  public void testPackageFileInKey() throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put("xsl", "xslt-sample.xsl");
+    params.put("lookup", "lookup.xml");
+    StepInfoImpl info = new StepInfoImpl("transform", "transform", "sample.xml", "transformed.xml", params);
+    PackageData first = newPackage("sample.xml", "<note>first</note>");
+    PackageData second = newPackage("sample.xml", "<note>first</note>");
+    Files.write(new File(first.directory(), "lookup.xml").toPath(), "<a/>".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(second.directory(), "lookup.xml").toPath(), "<b/>".getBytes(StandardCharsets.UTF_8));
+    Assert.assertNotEquals(StepResultCache.key(this.step, first, info), StepResultCache.key(this.step, second, info));
+
+    Files.write(new File(second.directory(), "lookup.xml").toPath(), "<a/>".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(StepResultCache.key(this.step, first, info), StepResultCache.key(this.step, second, info));
+  }
+
+  @Test
+  public void testPackageParametersNotInKey() throws Exception {
+    StepInfoImpl info = new StepInfoImpl("transform", "transform", "sample.xml", "transformed.xml", this.step.parameters());
+    PackageData first = newPackage("sample.xml", "<note>first</note>");
+    PackageData second = newPackage("sample.xml", "<note>first</note>");
+    first.setParameter("upload-id", "1");
+    second.setParameter("upload-id", "2");
+    Assert.assertEquals(StepResultCache.key(this.step, first, info), StepResultCache.key(this.step, second, info));
+  }
+
+  @Test
+  public void testDynamicParameterInKey() throws Exception {
+    Map<String, String> params = new HashMap<>(this.step.parameters());
+    params.put("title", "{doc-title}");
+    StepInfoImpl info = new StepInfoImpl("transform", "transform", "sample.xml", "transformed.xml", params);
+    PackageData first = newPackage("sample.xml", "<note>first</note>");
+    PackageData second = newPackage("sample.xml", "<note>first</note>");
+    first.setParameter("doc-title", "First");
+    second.setParameter("doc-title", "Second");
+    Assert.assertNotEquals(StepResultCache.key(this.step, first, info), StepResultCache.key(this.step, second, info));
+
+    second.setParameter("doc-title", "First");
+    Assert.assertEquals(StepResultCache.key(this.step, first, info), StepResultCache.key(this.step, second, info));
+  }
+
+  @Test
+  public void testDifferentInput() throws Exception {
+    StepResultCache cache = StepResultCache.get();
+    long misses = cache.misses();
+    long stores = cache.stores();
+    this.step.exec(newPackage("sample.xml", "<note>first</note>"));
+    this.step.exec(newPackage("sample.xml", "<note>second</note>"));
+    Assert.assertEquals(misses + 2, cache.misses());
+    Assert.assertEquals(stores + 2, cache.stores());
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    StepResultCache cache = StepResultCache.get();
+    long evictions = cache.evictions();
+    cache.setMaxSize(1);
+    this.step.exec(newPackage("sample.xml", "<note>first</note>"));
+    Assert.assertEquals(evictions + 1, cache.evictions());
+    long misses = cache.misses();
+    this.step.exec(newPackage("sample.xml", "<note>first</note>"));
+    Assert.assertEquals(misses + 1, cache.misses());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    StepResultCache.get().setDirectory(null);
+    Assert.assertFalse(StepResultCache.get().isCached(this.step));
+  }
+
+  private PackageData newPackage(String name, String content) throws IOException {
+    File source = new File(this.folder.newFolder(), name);
+    Files.write(source.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return PackageData.newPackageData("m1", source);
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+}
@@ -23,6 +23,7 @@ import org.pageseeder.ox.OXConfig;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The type Test model.
@@ -167,4 +168,28 @@ public class TestModel {
       Assert.assertTrue(ex.getMessage(), true);
     }
   }
+
+  /**
+   * Test the stylesheets referenced by the steps.
+   */
+  @Test
+  public void test_listStylesheets() {
+    Model model = new Model("m1");
+    List<File> stylesheets = model.listStylesheets();
+    Assert.assertEquals(1, stylesheets.size());
+    Assert.assertEquals("xslt-sample.xsl", stylesheets.get(0).getName());
+  }
+
+  /**
+   * Test the stylesheets are compiled in the background.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void test_warmUp() throws Exception {
+    ModelWarmUp warmUp = ModelWarmUp.start(Model.listModels(), 2);
+    Assert.assertSame(warmUp, ModelWarmUp.last());
+    Assert.assertTrue(warmUp.await(30, TimeUnit.SECONDS));
+    Assert.assertTrue(warmUp.isWarm());
+  }
 }
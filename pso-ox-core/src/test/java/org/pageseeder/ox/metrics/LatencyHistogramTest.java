@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123456789L, Long.MAX_VALUE};
+    for (long value : values) {
+      int index = LatencyHistogram.index(value);
+      Assert.assertTrue("upper bound of " + value, LatencyHistogram.upperBound(index) >= value);
+      if (index > 0) {
+        Assert.assertTrue("lower bound of " + value, LatencyHistogram.upperBound(index - 1) < value);
+      }
+    }
+    for (int i = 1; i < LatencyHistogram.index(Long.MAX_VALUE); i++) {
+      Assert.assertTrue(LatencyHistogram.upperBound(i) > LatencyHistogram.upperBound(i - 1));
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram(Metric.STEP, Metrics.get().tags("test", "percentiles", null));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i), i > 98);
+    }
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(2, histogram.getErrors());
+    Assert.assertEquals(50.5, histogram.getMeanMillis(), 0.001);
+    Assert.assertEquals(100, histogram.getMaxMillis(), 0.001);
+    // within the precision of the buckets
+    Assert.assertEquals(50, histogram.getP50Millis(), 50 * 0.25);
+    Assert.assertEquals(95, histogram.getP95Millis(), 95 * 0.25);
+    Assert.assertTrue(histogram.getP99Millis() <= 100);
+
+    histogram.reset();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.percentile(0.5));
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.metrics;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.StepDefinition;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class MetricsTest {
+
+  @After
+  public void reset() {
+    Metrics.get().unregisterMBeans();
+    Metrics.get().setEnabled(true);
+  }
+
+  @Test
+  public void testTags() {
+    Metrics metrics = Metrics.get();
+    Assert.assertSame(metrics.tags("m", "p", "s"), metrics.tags("m", "p", "s"));
+    Assert.assertNotSame(metrics.tags("m", "p", "s"), metrics.tags("m", "p", null));
+    Assert.assertSame(metrics.global(), metrics.current());
+    MetricTags tags = metrics.tags("m", "p", "s");
+    MetricTags previous = metrics.enter(tags);
+    Assert.assertSame(tags, metrics.current());
+    metrics.exit(previous);
+    Assert.assertSame(metrics.global(), metrics.current());
+  }
+
+  @Test
+  public void testDisabled() {
+    MetricTags tags = Metrics.get().tags("m", "p", "disabled");
+    Metrics.get().setEnabled(false);
+    tags.record(Metric.STEP, 1000);
+    Assert.assertEquals(0, tags.histogram(Metric.STEP).getCount());
+  }
+
+  @Test
+  public void testStep() throws Exception {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    Model model = new Model("m1");
+    model.load();
+    StepDefinition step = model.getPipeline("transform-pipeline").getStep("transform");
+    File source = new File("src/test/resources/models/m1/sample.xml");
+    step.exec(PackageData.newPackageData("m1", source));
+
+    LatencyHistogram histogram = step.metricTags().histogram(Metric.STEP);
+    Assert.assertTrue(histogram.getCount() >= 1);
+    // the transformation is recorded against the step
+    Assert.assertTrue(step.metricTags().histogram(Metric.XSLT_TRANSFORM).getCount() >= 1);
+
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    Metrics.get().toXML(xml, "m1");
+    xml.flush();
+    XMLAssert.assertXpathExists("metrics/metric[@name='step'][@model='m1'][@pipeline='transform-pipeline'][@step='transform']", xml.toString());
+    XMLAssert.assertXpathNotExists("metrics/metric[not(@model='m1')]", xml.toString());
+  }
+
+  @Test
+  public void testMBeans() throws Exception {
+    MetricTags tags = Metrics.get().tags("jmx", "p", "s");
+    tags.record(Metric.STEP, 1000);
+    Metrics.get().registerMBeans();
+    ObjectName name = Metrics.objectName(tags.histogram(Metric.STEP));
+    Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    Assert.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+
+    // created after the registration
+    tags.record(Metric.DOWNLOAD, 1000);
+    Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(Metrics.objectName(tags.histogram(Metric.DOWNLOAD))));
+
+    Metrics.get().unregisterMBeans();
+    Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class FairShareJobSchedulerTest {
+
+  @Test
+  public void test_fair_share() throws InterruptedException {
+    FairShareJobScheduler scheduler = new FairShareJobScheduler();
+    PipelineJob a1 = newJob("a", 0);
+    PipelineJob a2 = newJob("a", 0);
+    PipelineJob a3 = newJob("a", 0);
+    PipelineJob b1 = newJob("b", 0);
+    scheduler.add(a1);
+    scheduler.add(a2);
+    scheduler.add(a3);
+    scheduler.add(b1);
+    Assert.assertEquals(4, scheduler.size());
+
+    Assert.assertSame(a1, scheduler.take());
+    // group "a" has one job running, so "b" goes next
+    Assert.assertSame(b1, scheduler.take());
+    Assert.assertSame(a2, scheduler.take());
+    Assert.assertSame(a3, scheduler.take());
+    Assert.assertEquals(0, scheduler.size());
+  }
+
+  @Test
+  public void test_priority() throws InterruptedException {
+    FairShareJobScheduler scheduler = new FairShareJobScheduler();
+    PipelineJob low = newJob("a", 0);
+    PipelineJob high = newJob("a", 5);
+    scheduler.add(low);
+    scheduler.add(high);
+    Assert.assertSame(high, scheduler.take());
+    Assert.assertSame(low, scheduler.take());
+  }
+
+  @Test
+  public void test_aging() throws InterruptedException {
+    FairShareJobScheduler scheduler = new FairShareJobScheduler(1);
+    PipelineJob low = newJob("a", 0);
+    scheduler.add(low);
+    // waiting more than 2ms is worth more than one priority level
+    Thread.sleep(5);
+    PipelineJob high = newJob("a", 1);
+    scheduler.add(high);
+    Assert.assertSame(low, scheduler.take());
+    Assert.assertSame(high, scheduler.take());
+  }
+
+  @Test
+  public void test_toXML() throws Exception {
+    FairShareJobScheduler scheduler = new FairShareJobScheduler();
+    PipelineJob a1 = newJob("a", 0);
+    scheduler.add(a1);
+    scheduler.add(newJob("a", 0));
+    scheduler.add(newJob("b", 0));
+    scheduler.take();
+
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    scheduler.toXML(xml);
+    xml.flush();
+    XMLAssert.assertXpathEvaluatesTo("fair-share", "scheduler/@type", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("2", "scheduler/@waiting", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("1", "scheduler/class[@name='a']/@waiting", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("1", "scheduler/class[@name='a']/@running", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("1", "scheduler/class[@name='b']/@waiting", xml.toString());
+
+    scheduler.completed(a1);
+    xml = new XMLStringWriter(NamespaceAware.No);
+    scheduler.toXML(xml);
+    xml.flush();
+    XMLAssert.assertXpathEvaluatesTo("0", "scheduler/class[@name='a']/@running", xml.toString());
+  }
+
+  @Test
+  public void test_idle_groups_removed() throws Exception {
+    FairShareJobScheduler scheduler = new FairShareJobScheduler();
+    scheduler.setIdleRetention(0);
+    PipelineJob a1 = newJob("a", 0);
+    scheduler.add(a1);
+    scheduler.add(newJob("b", 0));
+    scheduler.add(newJob("b", 0));
+    Assert.assertSame(a1, scheduler.take());
+    PipelineJob b1 = scheduler.take();
+    scheduler.completed(a1);
+    scheduler.completed(b1);
+
+    // Group "a" has nothing waiting or running, group "b" still has a job waiting
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    scheduler.toXML(xml);
+    xml.flush();
+    XMLAssert.assertXpathEvaluatesTo("0", "count(scheduler/class[@name='a'])", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("1", "scheduler/class[@name='b']/@waiting", xml.toString());
+  }
+
+  private static PipelineJob newJob(String group, int priority) {
+    PipelineJob job = new PipelineJob(new Pipeline("id", "name", "type"), PackageData.newPackageData("test", null));
+    job.setGroup(group);
+    job.setPriority(priority);
+    return job;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time taken by a burst of small pipeline jobs with the previous scheduler (a new processor for each
+ * job added, pausing one second after each job) and with the pool and virtual executor modes.
+ *
+ * <p>This is not a unit test, run it from the <code>pso-ox-core</code> directory with:
+ * <code>java PipelineJobManagerBenchmark [jobs] [threads]</code> (default: 200 jobs, 4 threads).
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class PipelineJobManagerBenchmark {
+
+  public static void main(String[] args) throws InterruptedException {
+    int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    long baseline = runBaseline(threads, jobs);
+    System.out.printf("%-8s %5d jobs %6d ms%n", "BASELINE", jobs, baseline);
+    for (OXConfig.ExecutorMode mode : OXConfig.ExecutorMode.values()) {
+      OXConfig.get().setExecutorMode(mode);
+      PipelineJobManager manager = new PipelineJobManager(threads, jobs);
+      try {
+        long elapsed = runBurst(manager, jobs);
+        System.out.printf("%-8s %5d jobs %6d ms%n", mode, jobs, elapsed);
+      } finally {
+        manager.stop();
+      }
+    }
+    OXConfig.get().setExecutorMode(OXConfig.ExecutorMode.POOL);
+  }
+
+  /**
+   * Runs a burst of NOP jobs the way the jobs were scheduled before the processors were started once: every job
+   * added submits a never ending processor to a fixed thread pool, and the processors pause one second after each job.
+   *
+   * @return the time taken in milliseconds
+   */
+  private static long runBaseline(int threads, int size) throws InterruptedException {
+    PipelineJobQueue queue = PipelineJobQueue.getInstance(size);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<PipelineJob> jobs = newJobs(size);
+      long start = System.nanoTime();
+      for (PipelineJob job : jobs) {
+        queue.add(job);
+        executor.execute(new BaselineProcessor(queue));
+      }
+      waitFor(jobs);
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    } finally {
+      executor.shutdownNow();
+      queue.clear();
+    }
+  }
+
+  /**
+   * Add a burst of NOP jobs to the manager and wait until they are all completed.
+   *
+   * @return the time taken in milliseconds
+   */
+  private static long runBurst(PipelineJobManager manager, int size) throws InterruptedException {
+    List<PipelineJob> jobs = newJobs(size);
+    long start = System.nanoTime();
+    for (PipelineJob job : jobs) {
+      manager.addJob(job);
+    }
+    waitFor(jobs);
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  private static List<PipelineJob> newJobs(int size) {
+    Pipeline pipeline = new Model("m1").getPipeline("nop-pipeline");
+    List<PipelineJob> jobs = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      jobs.add(new PipelineJob(pipeline, PackageData.newPackageData("m1", null)));
+    }
+    return jobs;
+  }
+
+  private static void waitFor(List<PipelineJob> jobs) throws InterruptedException {
+    for (PipelineJob job : jobs) {
+      while (!job.getStatus().hasCompleted()) {
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  /**
+   * The processor loop of the previous scheduler.
+   */
+  private static final class BaselineProcessor implements Runnable {
+
+    private final PipelineJobQueue _queue;
+
+    private final PipelineProcessor _processor;
+
+    BaselineProcessor(PipelineJobQueue queue) {
+      this._queue = queue;
+      this._processor = new PipelineProcessor(queue);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          this._processor.handle(this._queue.next(false));
+          Thread.sleep(1000);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
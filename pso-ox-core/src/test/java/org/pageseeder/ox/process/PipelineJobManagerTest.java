@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.JobStatus;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes bursts of small pipeline jobs, see {@link PipelineJobManagerBenchmark} to measure the latency.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public class PipelineJobManagerTest {
+
+  /** Number of jobs in the burst. */
+  private static final int BURST_SIZE = 200;
+
+  @Before
+  public void init() {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    // The processors are shared, stop any processors started by other tests
+    new PipelineJobManager(1, 1).stop();
+  }
+
+  @Test
+  public void test_fixed_processors() throws InterruptedException {
+    ThreadStep.reset(0, 0);
+    PipelineJobManager manager = new PipelineJobManager(4, BURST_SIZE);
+    try {
+      long elapsed = runJobs(manager, "thread-pipeline", BURST_SIZE);
+      Assert.assertEquals(0, manager.noWaitingJob());
+
+      // The jobs are shared by the same four processors rather than one thread per job
+      Assert.assertFalse(ThreadStep.THREADS.isEmpty());
+      Assert.assertTrue(ThreadStep.THREADS.toString(), ThreadStep.THREADS.size() <= 4);
+      for (String thread : ThreadStep.THREADS) {
+        Assert.assertTrue(thread, thread.startsWith("Pipeline Processor - "));
+      }
+
+      // With a one second pause per job this would take at least BURST_SIZE / 4 seconds
+      Assert.assertTrue("Burst took " + elapsed + "ms", elapsed < TimeUnit.SECONDS.toMillis(BURST_SIZE / 4));
+    } finally {
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void test_virtual_mode() throws InterruptedException {
+    OXConfig.get().setExecutorMode(OXConfig.ExecutorMode.VIRTUAL);
+    OXConfig.get().setMaxConcurrentJobs(50);
+    PipelineJobManager manager = new PipelineJobManager(1, BURST_SIZE);
+    try {
+      // Each job waits until the four jobs have started, which only works if they run at the same time
+      ThreadStep.reset(4, 10000);
+      runJobs(manager, "thread-pipeline", 4);
+      Assert.assertEquals(0, ThreadStep.TIMEOUTS.get());
+      Assert.assertEquals(4, ThreadStep.THREADS.size());
+      for (String thread : ThreadStep.THREADS) {
+        Assert.assertTrue(thread, thread.startsWith("Pipeline Job - "));
+      }
+
+      runJobs(manager, "nop-pipeline", BURST_SIZE);
+      Assert.assertEquals(0, manager.noWaitingJob());
+    } finally {
+      ThreadStep.reset(0, 0);
+      manager.stop();
+      OXConfig.get().setExecutorMode(OXConfig.ExecutorMode.POOL);
+      OXConfig.get().setMaxConcurrentJobs(OXConfig.DEFAULT_MAX_CONCURRENT_JOBS);
+    }
+  }
+
+  @Test
+  public void test_pool_mode_single_processor() throws InterruptedException {
+    PipelineJobManager manager = new PipelineJobManager(1, BURST_SIZE);
+    try {
+      // With a single processor the jobs are processed one after the other, so the first job gives up
+      // waiting before the second one starts
+      ThreadStep.reset(2, 100);
+      runJobs(manager, "thread-pipeline", 2);
+      Assert.assertEquals(1, ThreadStep.TIMEOUTS.get());
+      Assert.assertEquals(1, ThreadStep.THREADS.size());
+    } finally {
+      ThreadStep.reset(0, 0);
+      manager.stop();
+    }
+  }
+
+  /**
+   * Add a burst of jobs to the manager and wait until they are all completed.
+   *
+   * @return the time taken in milliseconds
+   */
+  private static long runJobs(PipelineJobManager manager, String pipelineId, int size) throws InterruptedException {
+    Pipeline pipeline = new Model("m1").getPipeline(pipelineId);
+    Assert.assertNotNull(pipeline);
+    List<PipelineJob> jobs = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      jobs.add(new PipelineJob(pipeline, PackageData.newPackageData("m1", null)));
+    }
+
+    long start = System.nanoTime();
+    for (PipelineJob job : jobs) {
+      manager.addJob(job);
+    }
+    for (PipelineJob job : jobs) {
+      long deadline = start + TimeUnit.SECONDS.toNanos(60);
+      while (!job.getStatus().hasCompleted() && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      Assert.assertEquals(JobStatus.STATUS.COMPLETED.name(), job.getStatus().toString());
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.JobStatus;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.ox.core.ResultStatus;
+import org.pageseeder.ox.tool.ResultBase;
+import org.pageseeder.xmlwriter.XMLWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class PipelineJobQueueTest {
+
+  @After
+  public void clear() {
+    PipelineJobQueue.getInstance(1).clear();
+  }
+
+  @Test
+  public void test_get_by_id() throws InterruptedException {
+    PipelineJobQueue queue = PipelineJobQueue.getInstance(10);
+    PipelineJob job1 = newJob(false);
+    PipelineJob job2 = newJob(true);
+    queue.add(job1);
+    queue.add(job2);
+
+    Assert.assertSame(job1, queue.get(job1.getId()));
+    Assert.assertSame(job2, queue.get(job2.getId()));
+    Assert.assertNull(queue.get("unknown"));
+    Assert.assertEquals(2, queue.total());
+
+    // Running
+    Assert.assertSame(job1, queue.next(false));
+    Assert.assertSame(job1, queue.get(job1.getId()));
+    Assert.assertEquals(1, queue.total());
+
+    // Completed
+    job1.completed();
+    queue.completed(job1);
+    Assert.assertSame(job1, queue.get(job1.getId()));
+    Assert.assertEquals(job1.getId(), PipelineJobQueue.getJobId(job1.getPackageData().id()));
+  }
+
+  @Test
+  public void test_completed_eviction() throws InterruptedException {
+    PipelineJobQueue queue = PipelineJobQueue.getInstance(2);
+    PipelineJob job1 = newJob(false);
+    PipelineJob job2 = newJob(false);
+    PipelineJob job3 = newJob(false);
+    job1.setMaxInactiveTimeAllowed(1);
+    queue.add(job1);
+    queue.add(job2);
+    queue.completed(queue.next(false));
+    queue.completed(queue.next(false));
+    Thread.sleep(10);
+
+    // Adding a new job evicts the first inactive completed job only
+    queue.add(job3);
+    Assert.assertNull(queue.get(job1.getId()));
+    Assert.assertNull(PipelineJobQueue.getJobId(job1.getPackageData().id()));
+    Assert.assertSame(job2, queue.get(job2.getId()));
+    Assert.assertSame(job3, queue.get(job3.getId()));
+  }
+
+  @Test
+  public void test_completed_eviction_skips_active() throws InterruptedException {
+    PipelineJobQueue queue = PipelineJobQueue.getInstance(2);
+    PipelineJob active = newJob(false);
+    PipelineJob job2 = newJob(false);
+    PipelineJob job3 = newJob(false);
+    PipelineJob job4 = newJob(false);
+    job2.setMaxInactiveTimeAllowed(1);
+    job3.setMaxInactiveTimeAllowed(1);
+    queue.add(active);
+    queue.add(job2);
+    queue.add(job3);
+    queue.completed(queue.next(false));
+    queue.completed(queue.next(false));
+    queue.completed(queue.next(false));
+    Thread.sleep(10);
+
+    // The first completed job is still active but the inactive jobs behind it are evicted
+    queue.add(job4);
+    Assert.assertSame(active, queue.get(active.getId()));
+    Assert.assertNull(queue.get(job2.getId()));
+    Assert.assertNull(queue.get(job3.getId()));
+  }
+
+  @Test
+  public void test_job_store() throws Exception {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    FileJobStore store = new FileJobStore(OXConfig.getOXTempFolder());
+    PipelineJobManager.setJobStore(store);
+    Pipeline pipeline = new Model("m1").getPipeline("nop-pipeline");
+    PipelineJob job1 = new PipelineJob(pipeline, PackageData.newPackageData("m1", null));
+    PipelineJob job2 = new PipelineJob(pipeline, PackageData.newPackageData("m1", null));
+    job2.setPriority(3);
+    try {
+      PipelineJobQueue queue = PipelineJobQueue.getInstance(10);
+      queue.add(job1);
+      queue.add(job2);
+      Assert.assertSame(job1, queue.next(false));
+      job1.completed();
+      queue.completed(job1);
+
+      // Simulate a restart
+      queue.clear();
+      queue = PipelineJobQueue.getInstance(10);
+
+      PipelineJob completed = queue.get(job1.getId());
+      Assert.assertNotNull(completed);
+      Assert.assertNotSame(job1, completed);
+      Assert.assertEquals(JobStatus.STATUS.COMPLETED.name(), completed.getStatus().toString());
+      Assert.assertEquals(job1.getId(), PipelineJobQueue.getJobId(job1.getPackageData().id()));
+
+      PipelineJob waiting = queue.get(job2.getId());
+      Assert.assertNotNull(waiting);
+      Assert.assertFalse(waiting.getStatus().hasCompleted());
+      Assert.assertEquals(3, waiting.getPriority());
+      Assert.assertEquals(job2.getStartTime(), waiting.getStartTime());
+      Assert.assertSame(waiting, queue.next(false));
+    } finally {
+      PipelineJobManager.setJobStore(null);
+      store.remove(job1.getPackageData().id(), job1.getId());
+      store.remove(job2.getPackageData().id(), job2.getId());
+    }
+  }
+
+  @Test
+  public void test_job_record_summary() {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    Model model = new Model("m1");
+    PipelineJob job = new PipelineJob(model.getPipeline("nop-pipeline"), PackageData.newPackageData("m1", null));
+    ResultBase result = new ResultBase(model, job.getPackageData()) {
+      @Override
+      public boolean isDownloadable() {
+        return false;
+      }
+
+      @Override
+      public void toXML(XMLWriter xml) throws IOException {
+        xml.openElement("result");
+        xml.writeCDATA("the content of the output file");
+        xml.closeElement();
+      }
+    };
+    result.setError(new IllegalStateException("failed"));
+    result.setStatus(ResultStatus.ERROR);
+    job.addStepResult(result);
+    job.completed();
+
+    // Only the summary of the results is saved
+    String results = JobRecord.of(job).toProperties().getProperty("results");
+    Assert.assertNotNull(results);
+    Assert.assertFalse(results, results.contains("the content of the output file"));
+    Assert.assertTrue(results, results.contains("status=\"error\""));
+    Assert.assertTrue(results, results.contains("<message>failed</message>"));
+  }
+
+  @Test
+  public void test_job_store_claim() throws Exception {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    FileJobStore store = new FileJobStore(OXConfig.getOXTempFolder(), "node1");
+    FileJobStore other = new FileJobStore(OXConfig.getOXTempFolder(), "node2");
+    PipelineJobManager.setJobStore(store);
+    Pipeline pipeline = new Model("m1").getPipeline("nop-pipeline");
+    PipelineJob job1 = new PipelineJob(pipeline, PackageData.newPackageData("m1", null));
+    PipelineJob job2 = new PipelineJob(pipeline, PackageData.newPackageData("m1", null));
+    String package1 = job1.getPackageData().id();
+    try {
+      // Only one node can claim a job, the same node can claim it again
+      Assert.assertTrue(other.claim(package1, job1.getId()));
+      Assert.assertFalse(store.claim(package1, job1.getId()));
+      Assert.assertTrue(other.claim(package1, job1.getId()));
+
+      // The job claimed by the other node is skipped
+      PipelineJobQueue queue = PipelineJobQueue.getInstance(10);
+      queue.add(job1);
+      queue.add(job2);
+      Assert.assertSame(job2, queue.next(false));
+      Assert.assertNull(queue.get(job1.getId()));
+      Assert.assertEquals(0, queue.total());
+      Assert.assertFalse(other.claim(job2.getPackageData().id(), job2.getId()));
+
+      // Released once completed
+      job2.completed();
+      queue.completed(job2);
+      Assert.assertTrue(other.claim(job2.getPackageData().id(), job2.getId()));
+      other.release(package1, job1.getId());
+      Assert.assertTrue(store.claim(package1, job1.getId()));
+    } finally {
+      PipelineJobManager.setJobStore(null);
+      store.remove(package1, job1.getId());
+      store.remove(job2.getPackageData().id(), job2.getId());
+    }
+  }
+
+  private static PipelineJob newJob(boolean slow) {
+    PipelineJob job = new PipelineJob(new Pipeline("id", "name", "type"), PackageData.newPackageData("test", null));
+    job.setSlowMode(slow);
+    return job;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.OXException;
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.ox.api.Step;
+import org.pageseeder.ox.api.StepInfo;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.ResultStatus;
+import org.pageseeder.ox.step.NOPStep;
+import org.pageseeder.ox.tool.InvalidResult;
+
+/**
+ * A step which waits for the number of milliseconds specified by the <code>ms</code> parameter, then fails when
+ * the <code>fail</code> parameter is true.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class SleepStep implements Step {
+
+  @Override
+  public Result process(Model model, PackageData data, StepInfo info) {
+    try {
+      Thread.sleep(Long.parseLong(info.getParameter("ms", "0")));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if ("true".equals(info.getParameter("fail"))) {
+      InvalidResult result = new InvalidResult(model, data);
+      result.error(new OXException("Failed on purpose"));
+      result.setStatus(ResultStatus.ERROR);
+      return result;
+    }
+    return new NOPStep().process(model, data, info);
+  }
+}
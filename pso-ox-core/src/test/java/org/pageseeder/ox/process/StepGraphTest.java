@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.JobStatus;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.Pipeline;
+import org.pageseeder.ox.core.PipelineJob;
+import org.pageseeder.ox.core.StepTiming;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class StepGraphTest {
+
+  @Before
+  public void init() {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+  }
+
+  @Test
+  public void testDependencies() {
+    Pipeline pipeline = new Model("m1").getPipeline("graph-pipeline");
+    Assert.assertTrue(PipelineProcessor.isGraph(pipeline));
+    StepGraph graph = StepGraph.of(pipeline);
+    Assert.assertEquals(5, graph.size());
+    // prepare is not async
+    Assert.assertArrayEquals(new int[0], graph.dependencies(0));
+    // validate, report and preview only depend on prepare
+    Assert.assertArrayEquals(new int[]{0}, graph.dependencies(1));
+    Assert.assertArrayEquals(new int[]{0}, graph.dependencies(2));
+    Assert.assertArrayEquals(new int[]{0}, graph.dependencies(3));
+    // publish depends on report and preview
+    Assert.assertArrayEquals(new int[]{2, 3}, graph.dependencies(4));
+  }
+
+  @Test
+  public void testSequentialPipeline() {
+    Pipeline pipeline = new Model("m1").getPipeline("sample-pipeline");
+    Assert.assertFalse(PipelineProcessor.isGraph(pipeline));
+    StepGraph graph = StepGraph.of(pipeline);
+    // The second step is not async so it waits for the first one
+    Assert.assertArrayEquals(new int[]{0}, graph.dependencies(1));
+  }
+
+  @Test
+  public void testGraphExecution() throws InterruptedException {
+    PipelineJob job = run("graph-pipeline");
+    Assert.assertEquals(JobStatus.STATUS.COMPLETED.name(), job.getStatus().toString());
+    Map<String, StepTiming> timings = new HashMap<>();
+    for (StepTiming timing : job.getStepTimings()) {
+      timings.put(timing.step(), timing);
+    }
+    Assert.assertEquals(5, timings.size());
+
+    // The three branches overlap
+    StepTiming validate = timings.get("validate");
+    StepTiming report = timings.get("report");
+    StepTiming preview = timings.get("preview");
+    long lastStart = Math.max(validate.start(), Math.max(report.start(), preview.start()));
+    long firstEnd = Math.min(validate.start() + validate.duration(),
+        Math.min(report.start() + report.duration(), preview.start() + preview.duration()));
+    Assert.assertTrue("Branches did not overlap " + job.getStepTimings(), lastStart < firstEnd);
+
+    // Publish waits for report and preview
+    StepTiming publish = timings.get("publish");
+    Assert.assertTrue(publish.start() >= report.start() + report.duration());
+    Assert.assertTrue(publish.start() >= preview.start() + preview.duration());
+  }
+
+  @Test
+  public void testGraphFailOnError() throws InterruptedException {
+    PipelineJob job = run("graph-failure-pipeline");
+    Assert.assertEquals(JobStatus.STATUS.ERROR.name(), job.getStatus().toString());
+    Assert.assertEquals(1, job.getStepTimings().size());
+    Assert.assertEquals("fail", job.getStepTimings().get(0).step());
+  }
+
+  @Test
+  public void testGraphLateFailure() throws InterruptedException {
+    PipelineJob job = run("graph-late-failure-pipeline", new File("src/test/resources/models/m1/sample.xml"));
+    Assert.assertEquals(JobStatus.STATUS.ERROR.name(), job.getStatus().toString());
+    Assert.assertEquals(2, job.getStepTimings().size());
+    Assert.assertEquals("copy", job.getStepTimings().get(0).step());
+    Assert.assertNotNull(job.getDownload());
+    Assert.assertTrue(new File(OXConfig.getOXTempFolder(), job.getDownload()).isFile());
+  }
+
+  @Test
+  public void testStepExecutorShutdown() throws InterruptedException {
+    PipelineJob job = run("graph-pipeline");
+    Assert.assertEquals(JobStatus.STATUS.COMPLETED.name(), job.getStatus().toString());
+    ExecutorService executor = PipelineJobManager.stepExecutor();
+    PipelineJobManager.shutdown();
+    Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    // Created again for the next jobs
+    Assert.assertNotSame(executor, PipelineJobManager.stepExecutor());
+  }
+
+  private static PipelineJob run(String pipelineId) throws InterruptedException {
+    return run(pipelineId, null);
+  }
+
+  private static PipelineJob run(String pipelineId, File file) throws InterruptedException {
+    Pipeline pipeline = new Model("m1").getPipeline(pipelineId);
+    PipelineJob job = new PipelineJob(pipeline, PackageData.newPackageData("m1", file));
+    PipelineJobManager manager = new PipelineJobManager(1, 10);
+    try {
+      manager.addJob(job);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (!job.getStatus().hasCompleted() && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+    } finally {
+      manager.stop();
+    }
+    return job;
+  }
+}
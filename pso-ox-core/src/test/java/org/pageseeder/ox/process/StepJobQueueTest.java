@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.StepDefinition;
+import org.pageseeder.ox.core.StepJob;
+
+import java.io.File;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class StepJobQueueTest {
+
+  @After
+  public void clear() {
+    StepJobQueue.getInstance(1).clear();
+  }
+
+  @Test
+  public void test_completed_eviction() throws InterruptedException {
+    StepJobQueue queue = StepJobQueue.getInstance(2);
+    StepJob job1 = newJob(1);
+    StepJob job2 = newJob(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS);
+    StepJob job3 = newJob(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS);
+    queue.add(job1);
+    queue.add(job2);
+    queue.completed(queue.next());
+    queue.completed(queue.next());
+    Thread.sleep(10);
+
+    // Adding a new job evicts the first inactive completed job only
+    queue.add(job3);
+    Assert.assertNull(queue.get(job1.getId()));
+    Assert.assertSame(job2, queue.get(job2.getId()));
+    Assert.assertSame(job3, queue.get(job3.getId()));
+  }
+
+  @Test
+  public void test_completed_eviction_skips_active() throws InterruptedException {
+    StepJobQueue queue = StepJobQueue.getInstance(2);
+    StepJob active = newJob(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS);
+    StepJob job2 = newJob(1);
+    StepJob job3 = newJob(1);
+    StepJob job4 = newJob(StepJob.DEFAULT_MAX_INACTIVE_TIME_MS);
+    queue.add(active);
+    queue.add(job2);
+    queue.add(job3);
+    queue.completed(queue.next());
+    queue.completed(queue.next());
+    queue.completed(queue.next());
+    Thread.sleep(10);
+
+    // The first completed job is still active but the inactive jobs behind it are evicted
+    queue.add(job4);
+    Assert.assertSame(active, queue.get(active.getId()));
+    Assert.assertNull(queue.get(job2.getId()));
+    Assert.assertNull(queue.get(job3.getId()));
+  }
+
+  private static StepJob newJob(long maxInactiveTime) {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+    StepDefinition step = new Model("m1").getPipeline("transform-pipeline").getStep("transform");
+    return new StepJob(step, PackageData.newPackageData("test", null), maxInactiveTime);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.process;
+
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.ox.api.Step;
+import org.pageseeder.ox.api.StepInfo;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.step.NOPStep;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A step which records the name of the threads processing it.
+ *
+ * <p>When a latch is set, the step counts it down and waits for the other jobs, so that a test can check
+ * whether jobs are processed at the same time.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class ThreadStep implements Step {
+
+  /** The names of the threads which processed the step. */
+  static final Set<String> THREADS = ConcurrentHashMap.newKeySet();
+
+  /** The number of steps which did not see the other jobs before the timeout. */
+  static final AtomicInteger TIMEOUTS = new AtomicInteger();
+
+  /** The latch counted down by each step, none by default. */
+  static volatile CountDownLatch latch = null;
+
+  /** How long to wait for the other jobs in milliseconds. */
+  static volatile long timeout = 10000;
+
+  /**
+   * Reset the recorded threads and sets the latch.
+   *
+   * @param jobs    the number of jobs to wait for, 0 for no latch
+   * @param timeout how long to wait in milliseconds
+   */
+  static void reset(int jobs, long timeout) {
+    THREADS.clear();
+    TIMEOUTS.set(0);
+    ThreadStep.latch = jobs > 0 ? new CountDownLatch(jobs) : null;
+    ThreadStep.timeout = timeout;
+  }
+
+  @Override
+  public Result process(Model model, PackageData data, StepInfo info) {
+    THREADS.add(Thread.currentThread().getName());
+    CountDownLatch latch = ThreadStep.latch;
+    if (latch != null) {
+      latch.countDown();
+      try {
+        if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+          TIMEOUTS.incrementAndGet();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return new NOPStep().process(model, data, info);
+  }
+}
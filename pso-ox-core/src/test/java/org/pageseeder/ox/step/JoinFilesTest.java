@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.step;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.PackageData;
+import org.pageseeder.ox.core.ResultStatus;
+import org.pageseeder.ox.core.StepInfoImpl;
+import org.pageseeder.ox.util.FileUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class JoinFilesTest {
+
+  @Before
+  public void init() {
+    OXConfig.get().setModelsDirectory(new File("src/test/resources/models"));
+  }
+
+  @Test
+  public void test_process() throws Exception {
+    for (String parallel : new String[]{"1", "2"}) {
+      PackageData data = PackageData.newPackageData("JoinFiles", null);
+      FileUtils.write("<?xml version=\"1.0\"?>\n<!DOCTYPE a SYSTEM \"missing.dtd\">\n<a x=\"1\">One &amp; <!--c--></a>", data.getFile("a.xml"));
+      FileUtils.write("<b xmlns=\"urn:b\"><c/></b>", data.getFile("b.xml"));
+
+      Result result = join(data, "a.xml,b.xml", parallel);
+      Assert.assertEquals("parallel=" + parallel, ResultStatus.OK, result.status());
+      String joined = FileUtils.read(data.getFile("joined.xml"));
+      XMLAssert.assertXMLEqual("<root><a x=\"1\">One &amp; <!-- c --></a><b xmlns=\"urn:b\"><c/></b></root>", joined);
+    }
+  }
+
+  @Test
+  public void test_processInvalid() throws Exception {
+    PackageData data = PackageData.newPackageData("JoinFiles", null);
+    FileUtils.write("<a>One</a>", data.getFile("a.xml"));
+    FileUtils.write("<b>", data.getFile("b.xml"));
+
+    Result result = join(data, "a.xml,b.xml", "2");
+    Assert.assertEquals(ResultStatus.ERROR, result.status());
+    Assert.assertFalse(data.getFile("joined.xml").exists());
+  }
+
+  private static Result join(PackageData data, String input, String parallel) {
+    Map<String, String> params = new HashMap<>();
+    params.put("parallel", parallel);
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", input, "joined.xml", params);
+    return new JoinFiles().process(new Model("m1"), data, info);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package org.pageseeder.ox.step;
 
+import org.custommonkey.xmlunit.XMLAssert;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -24,6 +25,7 @@ import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.core.StepInfoImpl;
+import org.pageseeder.ox.util.BoundedCache;
 import org.pageseeder.xmlwriter.XML.NamespaceAware;
 import org.pageseeder.xmlwriter.XMLStringWriter;
 
@@ -66,4 +68,63 @@ public class SchemaValidationTest {
     Assert.assertEquals(ResultStatus.OK, result.status());
 
   }
+
+  @Test
+  public void test_processMultipleFiles() throws Exception {
+    File file = new File("src/test/resources/models/m1/multiple-xmls.zip");
+    Model model = new Model("m1");
+    PackageData data = PackageData.newPackageData("SchemaValidation", file);
+    Map<String, String> params = new HashMap<>();
+    params.put("input", "multiple-xmls.zip");
+    params.put("schema", "schema-sample.xsd");
+    params.put("parallel", "2");
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", "model.xml", "model.xml", params);
+
+    SchemaValidation step = new SchemaValidation();
+    Result result = step.process(model, data, info);
+    long hits = xsdCache().hits();
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    result.toXML(xml);
+    xml.flush();
+
+    Assert.assertEquals(ResultStatus.ERROR, result.status());
+    XMLAssert.assertXpathEvaluatesTo("3", "count(result/files/file)", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("ok", "result/files/file[contains(@path, 'sample.xml')]/@status", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("error", "result/files/file[contains(@path, 'sample.psml')]/@status", xml.toString());
+
+    // The compiled schema is reused
+    step.process(model, data, info);
+    Assert.assertEquals(hits + 1, xsdCache().hits());
+
+    // Another package uses the same compiled schema
+    hits = xsdCache().hits();
+    long misses = xsdCache().misses();
+    PackageData other = PackageData.newPackageData("SchemaValidation", file);
+    Assert.assertEquals(ResultStatus.ERROR, step.process(model, other, info).status());
+    Assert.assertEquals(hits + 1, xsdCache().hits());
+    Assert.assertEquals(misses, xsdCache().misses());
+  }
+
+  @Test
+  public void test_processIncludedSchema() throws IOException {
+    File file = new File("src/test/resources/models/m1/sample.xml");
+    Model model = new Model("m1");
+    PackageData data = PackageData.newPackageData("SchemaValidation", file);
+    Map<String, String> params = new HashMap<>();
+    params.put("input", "sample.xml");
+    // The included schema location is relative to the model folder
+    params.put("schema", "xsd/schema-include.xsd");
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", "model.xml", "model.xml", params);
+
+    Result result = new SchemaValidation().process(model, data, info);
+    Assert.assertNull(result.error());
+    Assert.assertEquals(ResultStatus.OK, result.status());
+  }
+
+  private static BoundedCache<?> xsdCache() {
+    for (BoundedCache<?> cache : BoundedCache.caches()) {
+      if ("xsd".equals(cache.name())) return cache;
+    }
+    throw new IllegalStateException("No xsd cache");
+  }
 }
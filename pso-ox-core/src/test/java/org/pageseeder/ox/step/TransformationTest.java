@@ -34,10 +34,13 @@ import org.pageseeder.xmlwriter.XMLStringWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The type Transformation test.
@@ -245,6 +248,82 @@ public class TransformationTest {
     validateResult(targetExpected, resultExpected, targetCreated, resultXML, attributesToIgnore);
   }
 
+  @Test
+  public void test_processParallel() throws IOException {
+    File source = new File("src/test/resources/org/pageseeder/ox/step/transformation/common/sample.xml");
+    Model model = new Model("common");
+    String serial = transformFolder(model, source, "1");
+    String parallel = transformFolder(model, source, "4");
+
+    // Same files in the same order
+    Assert.assertEquals(resultFiles(serial), resultFiles(parallel));
+    Assert.assertEquals(20, resultFiles(parallel).size());
+    Assert.assertFalse(parallel.contains("status=\"ERROR\""));
+  }
+
+  @Test
+  public void test_processDisplayResultModes() throws IOException {
+    File source = new File("src/test/resources/org/pageseeder/ox/step/transformation/common/sample.xml");
+    Model model = new Model("common");
+
+    String link = transformWithDisplay(model, source, "link", null);
+    Assert.assertTrue(link.matches("(?s).*<content size=\"\\d+\" href=\"[^\"]+/output/sample.xml\"/>.*"));
+
+    String truncated = transformWithDisplay(model, source, "true", "20");
+    Assert.assertTrue(truncated.contains("truncated=\"true\""));
+    Assert.assertTrue(truncated.contains("<![CDATA[<?xml version=\"1.0\" ]]>"));
+  }
+
+  private String transformWithDisplay(Model model, File source, String display, String maxSize) throws IOException {
+    PackageData data = PackageData.newPackageData("Transformation", source);
+    Map<String, String> params = new HashMap<>();
+    params.put("input", "sample.xml");
+    params.put("output", "/output/sample.xml");
+    params.put("xsl", "xslt-sample.xsl");
+    params.put("display-result", display);
+    if (maxSize != null) params.put("display-result-max-size", maxSize);
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", "", "sample.xml", params);
+
+    Result result = new Transformation().process(model, data, info);
+    Assert.assertEquals(ResultStatus.OK, result.status());
+    XMLStringWriter xmlWriter = new XMLStringWriter(NamespaceAware.No);
+    result.toXML(xmlWriter);
+    xmlWriter.flush();
+    return xmlWriter.toString();
+  }
+
+  private String transformFolder(Model model, File source, String parallel) throws IOException {
+    PackageData data = PackageData.newPackageData("Transformation", null);
+    File folder = new File(data.directory(), "inputs");
+    folder.mkdirs();
+    for (int i = 0; i < 20; i++) {
+      Files.copy(source.toPath(), new File(folder, "sample-" + i + ".xml").toPath());
+    }
+    Map<String, String> params = new HashMap<>();
+    params.put("input", "inputs");
+    params.put("output", "output.zip");
+    params.put("xsl", "xslt-sample.xsl");
+    params.put("parallel", parallel);
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", "", "output.zip", params);
+
+    Result result = new Transformation().process(model, data, info);
+    Assert.assertEquals(ResultStatus.OK, result.status());
+    Assert.assertTrue(data.getFile("output.zip").exists());
+    XMLStringWriter xmlWriter = new XMLStringWriter(NamespaceAware.No);
+    result.toXML(xmlWriter);
+    xmlWriter.flush();
+    return xmlWriter.toString();
+  }
+
+  private static List<String> resultFiles(String xml) {
+    List<String> inputs = new ArrayList<>();
+    Matcher matcher = Pattern.compile("<result-file input=\"([^\"]+)\"").matcher(xml);
+    while (matcher.find()) {
+      inputs.add(matcher.group(1));
+    }
+    return inputs;
+  }
+
   private void validateResult(File targetExpected, File resultExpected, File targetCreated, String resultXML, List<String> attributesToIgnore) throws IOException {
     String resultXMLExpected = FileUtils.read(resultExpected);
     System.out.println(resultXML);
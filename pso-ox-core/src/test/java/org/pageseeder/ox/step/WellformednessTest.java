@@ -15,6 +15,7 @@
  */
 package org.pageseeder.ox.step;
 
+import org.custommonkey.xmlunit.XMLAssert;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -64,4 +65,24 @@ public class WellformednessTest {
     Assert.assertEquals(ResultStatus.OK, result.status());
 
   }
+
+  @Test
+  public void test_processMultipleFiles() throws Exception {
+    File file = new File("src/test/resources/models/m1/multiple-xmls.zip");
+    Model model = new Model("m1");
+    PackageData data = PackageData.newPackageData("Wellformness", file);
+    Map<String, String> params = new HashMap<>();
+    params.put("input-extensions", "xml,psml");
+    params.put("parallel", "2");
+    StepInfoImpl info = new StepInfoImpl("step-id", "step name", "multiple-xmls.zip", "myoutput.xml", params);
+
+    Wellformedness step = new Wellformedness();
+    Result result = step.process(model, data, info);
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    result.toXML(xml);
+    xml.flush();
+
+    Assert.assertEquals(ResultStatus.OK, result.status());
+    XMLAssert.assertXpathEvaluatesTo("2", "count(result/files/file[@status='ok'])", xml.toString());
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class BoundedCacheTest {
+
+  @Test
+  public void test_single_flight() throws Exception {
+    final BoundedCache<String> cache = new BoundedCache<>("test-single-flight");
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(20);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return cache.get("a", 1, () -> {
+            loads.incrementAndGet();
+            Thread.sleep(50);
+            return "A";
+          });
+        }));
+      }
+      start.countDown();
+      for (Future<String> result : results) {
+        Assert.assertEquals("A", result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void test_version() throws Exception {
+    BoundedCache<String> cache = new BoundedCache<>("test-version");
+    Assert.assertEquals("A1", cache.get("a", 1, () -> "A1"));
+    Assert.assertEquals("A1", cache.get("a", 1, () -> "X"));
+    // an older version must be reloaded as well (e.g. file restored from a backup)
+    Assert.assertEquals("A0", cache.get("a", 0, () -> "A0"));
+    Assert.assertEquals("A2", cache.get("a", 2, () -> "A2"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(1, cache.hits());
+    Assert.assertEquals(3, cache.misses());
+  }
+
+  @Test
+  public void test_lru_eviction() throws Exception {
+    BoundedCache<String> cache = new BoundedCache<>("test-lru", 2);
+    cache.get("a", 0, () -> "A");
+    cache.get("b", 0, () -> "B");
+    cache.get("a", 0, () -> "X");
+    cache.get("c", 0, () -> "C");
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(1, cache.evictions());
+    // "b" was the least recently used
+    Assert.assertEquals("A", cache.get("a", 0, () -> "X"));
+    Assert.assertEquals("B2", cache.get("b", 0, () -> "B2"));
+  }
+
+  @Test
+  public void test_shrink() throws Exception {
+    BoundedCache<String> cache = new BoundedCache<>("test-shrink", 100_000);
+    for (int i = 0; i < 100_000; i++) {
+      final String item = Integer.toString(i);
+      cache.get(item, 0, () -> item);
+    }
+    // Used again, so it is kept
+    cache.get("0", 0, () -> "X");
+    cache.setMaxEntries(10);
+    Assert.assertEquals(10, cache.size());
+    Assert.assertEquals(99_990, cache.evictions());
+    Assert.assertEquals("0", cache.get("0", 0, () -> "X"));
+    Assert.assertEquals("99999", cache.get("99999", 0, () -> "X"));
+    Assert.assertEquals("Y", cache.get("99990", 0, () -> "Y"));
+  }
+
+  @Test
+  public void test_weight_eviction() throws Exception {
+    BoundedCache<String> cache = new BoundedCache<>("test-weight");
+    cache.setMaxWeight(100);
+    cache.get("a", 0, 40, () -> "A");
+    cache.get("b", 0, 40, () -> "B");
+    cache.get("a", 0, 40, () -> "X");
+    Assert.assertEquals(80, cache.weight());
+    cache.get("c", 0, 40, () -> "C");
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(80, cache.weight());
+    Assert.assertEquals(1, cache.evictions());
+    // "b" was the least recently used
+    Assert.assertEquals("A", cache.get("a", 0, 40, () -> "X"));
+    Assert.assertEquals("C", cache.get("c", 0, 40, () -> "X"));
+
+    // An item heavier than the maximum is returned but not kept
+    Assert.assertEquals("D", cache.get("d", 0, 200, () -> "D"));
+    Assert.assertEquals(80, cache.weight());
+    Assert.assertEquals("D2", cache.get("d", 0, 200, () -> "D2"));
+
+    // Lowering the maximum weight evicts the least recently used items
+    cache.setMaxWeight(50);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals("C", cache.get("c", 0, 40, () -> "X"));
+  }
+
+  @Test
+  public void test_shared() throws Exception {
+    BoundedCache<String> cache = BoundedCache.shared("test-shared");
+    Assert.assertSame(cache, BoundedCache.shared("test-shared"));
+    Assert.assertNotSame(cache, BoundedCache.shared("test-other"));
+    cache.get("a", 0, () -> "A");
+    BoundedCache<String> same = BoundedCache.shared("test-shared");
+    Assert.assertEquals("A", same.get("a", 0, () -> "X"));
+    int count = 0;
+    for (BoundedCache<?> c : BoundedCache.caches()) {
+      if ("test-shared".equals(c.name())) count++;
+    }
+    Assert.assertEquals(1, count);
+  }
+
+  @Test
+  public void test_failure() throws Exception {
+    BoundedCache<String> cache = new BoundedCache<>("test-failure");
+    try {
+      cache.get("a", 0, () -> {
+        throw new IOException("failed");
+      });
+      Assert.fail("The exception should be thrown");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof IOException);
+    }
+    // failures are not cached
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals("A", cache.get("a", 0, () -> "A"));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class BufferPoolTest {
+
+  @Test
+  public void testReuse() {
+    BufferPool pool = new BufferPool(1024, 2);
+    ByteBuffer buffer = pool.acquire();
+    Assert.assertTrue(buffer.isDirect());
+    buffer.put((byte) 1);
+    pool.release(buffer);
+    ByteBuffer reused = pool.acquire();
+    Assert.assertSame(buffer, reused);
+    Assert.assertEquals(0, reused.position());
+    Assert.assertEquals(1024, reused.remaining());
+  }
+
+  @Test
+  public void testBounded() {
+    BufferPool pool = new BufferPool(1024, 2);
+    ByteBuffer a = pool.acquire();
+    ByteBuffer b = pool.acquire();
+    ByteBuffer c = pool.acquire();
+    Assert.assertTrue(a.isDirect());
+    Assert.assertTrue(b.isDirect());
+    Assert.assertFalse(c.isDirect());
+    Assert.assertEquals(1024, c.capacity());
+    pool.release(c);
+    pool.release(b);
+    pool.release(a);
+    Assert.assertEquals(2, pool.allocated());
+  }
+
+  @Test
+  public void testShortLivedThreads() throws Exception {
+    BufferPool pool = new BufferPool(1024, 2);
+    // A new thread for each task
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor.submit(() -> {
+          ByteBuffer buffer = pool.acquire();
+          try {
+            buffer.putInt(42);
+          } finally {
+            pool.release(buffer);
+          }
+        }));
+      }
+      for (Future<?> future : futures) future.get();
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertTrue(pool.allocated() <= 2);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class CDATAUtilsTest {
+
+  @Test
+  public void test_writeCDATA() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      content.append("<a>]]>😀é</a>");
+    }
+    Assert.assertEquals(content.toString(), write(content.toString(), -1));
+  }
+
+  @Test
+  public void test_writeCDATA_truncated() throws Exception {
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    xml.openElement("content");
+    boolean complete = CDATAUtils.writeCDATA(xml, new StringReader("abcé😀def"), 7);
+    xml.closeElement();
+    xml.flush();
+    Assert.assertFalse(complete);
+    // the emoji (4 bytes) does not fit
+    XMLAssert.assertXpathEvaluatesTo("abcé", "content", xml.toString());
+  }
+
+  private static String write(String content, long max) throws Exception {
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    xml.openElement("content");
+    Assert.assertTrue(CDATAUtils.writeCDATA(xml, new StringReader(content), max));
+    xml.closeElement();
+    xml.flush();
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new InputSource(new StringReader(xml.toString()))).getDocumentElement().getTextContent();
+  }
+}
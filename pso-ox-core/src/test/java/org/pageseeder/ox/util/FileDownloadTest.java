@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class FileDownloadTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file;
+
+  private final Map<String, String> request = new HashMap<>();
+
+  @Before
+  public void init() throws IOException {
+    this.file = this.folder.newFile("download.txt");
+    Files.write(this.file.toPath(), "0123456789".getBytes(StandardCharsets.US_ASCII));
+    Assert.assertTrue(this.file.setLastModified(1_700_000_000_123L));
+  }
+
+  @Test
+  public void testWholeFile() throws IOException {
+    FileDownload download = FileDownload.of(this.file, this.request::get);
+    Assert.assertEquals(FileDownload.SC_OK, download.status());
+    Assert.assertEquals(HTTPRange.etag(this.file), download.headers().get("ETag"));
+    Assert.assertEquals("Tue, 14 Nov 2023 22:13:20 GMT", download.headers().get("Last-Modified"));
+    Assert.assertEquals("bytes", download.headers().get("Accept-Ranges"));
+    Assert.assertEquals("10", download.headers().get("Content-Length"));
+    Assert.assertNull(download.headers().get("Content-Range"));
+    Assert.assertEquals("0123456789", transfer(download));
+  }
+
+  @Test
+  public void testRange() throws IOException {
+    this.request.put("Range", "bytes=2-5");
+    FileDownload download = FileDownload.of(this.file, this.request::get);
+    Assert.assertEquals(FileDownload.SC_PARTIAL_CONTENT, download.status());
+    Assert.assertEquals("bytes 2-5/10", download.headers().get("Content-Range"));
+    Assert.assertEquals("4", download.headers().get("Content-Length"));
+    Assert.assertEquals("2345", transfer(download));
+
+    // The file has changed since the client got the first part
+    this.request.put("If-Range", "\"x\"");
+    download = FileDownload.of(this.file, this.request::get);
+    Assert.assertEquals(FileDownload.SC_OK, download.status());
+    Assert.assertEquals("0123456789", transfer(download));
+  }
+
+  @Test
+  public void testRangeNotSatisfiable() throws IOException {
+    this.request.put("Range", "bytes=10-");
+    FileDownload download = FileDownload.of(this.file, this.request::get);
+    Assert.assertEquals(FileDownload.SC_REQUESTED_RANGE_NOT_SATISFIABLE, download.status());
+    Assert.assertTrue(download.isError());
+    Assert.assertEquals("bytes */10", download.headers().get("Content-Range"));
+    Assert.assertEquals("", transfer(download));
+  }
+
+  @Test
+  public void testNotModified() throws IOException {
+    this.request.put("If-None-Match", HTTPRange.etag(this.file));
+    FileDownload download = FileDownload.of(this.file, this.request::get);
+    Assert.assertEquals(FileDownload.SC_NOT_MODIFIED, download.status());
+    Assert.assertFalse(download.isError());
+    Assert.assertNull(download.headers().get("Content-Length"));
+    Assert.assertEquals("", transfer(download));
+
+    this.request.clear();
+    this.request.put("If-Modified-Since", "Tue, 14 Nov 2023 22:13:20 GMT");
+    Assert.assertEquals(FileDownload.SC_NOT_MODIFIED, FileDownload.of(this.file, this.request::get).status());
+    this.request.put("If-Modified-Since", "Tue, 14 Nov 2023 22:13:19 GMT");
+    Assert.assertEquals(FileDownload.SC_OK, FileDownload.of(this.file, this.request::get).status());
+    this.request.put("If-Modified-Since", "yesterday");
+    Assert.assertEquals(FileDownload.SC_OK, FileDownload.of(this.file, this.request::get).status());
+  }
+
+  private static String transfer(FileDownload download) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    download.transfer(out);
+    return out.toString("US-ASCII");
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class HTTPRangeTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParse() {
+    HTTPRange range = HTTPRange.parse("bytes=0-99", 1000);
+    Assert.assertEquals(0, range.start());
+    Assert.assertEquals(99, range.end());
+    Assert.assertEquals(100, range.length());
+    Assert.assertEquals("bytes 0-99/1000", range.toContentRange());
+
+    range = HTTPRange.parse("bytes=900-", 1000);
+    Assert.assertEquals("bytes 900-999/1000", range.toContentRange());
+
+    range = HTTPRange.parse("bytes=-100", 1000);
+    Assert.assertEquals("bytes 900-999/1000", range.toContentRange());
+
+    range = HTTPRange.parse("bytes=500-5000", 1000);
+    Assert.assertEquals("bytes 500-999/1000", range.toContentRange());
+  }
+
+  @Test
+  public void testParseWholeFile() {
+    Assert.assertNull(HTTPRange.parse(null, 1000));
+    Assert.assertNull(HTTPRange.parse("items=0-10", 1000));
+    Assert.assertNull(HTTPRange.parse("bytes=0-10,20-30", 1000));
+    Assert.assertNull(HTTPRange.parse("bytes=10-5", 1000));
+    Assert.assertNull(HTTPRange.parse("bytes=a-b", 1000));
+  }
+
+  @Test
+  public void testParseUnsatisfiable() {
+    HTTPRange range = HTTPRange.parse("bytes=1000-", 1000);
+    Assert.assertFalse(range.isSatisfiable());
+    Assert.assertEquals("bytes */1000", range.toContentRange());
+    Assert.assertFalse(HTTPRange.parse("bytes=-10", 0).isSatisfiable());
+  }
+
+  @Test
+  public void testConditional() {
+    String etag = "\"3e8-abc\"";
+    long modified = 1_700_000_000_123L;
+    Assert.assertTrue(HTTPRange.isNotModified(etag, -1, etag, modified));
+    Assert.assertTrue(HTTPRange.isNotModified("\"x\", W/" + etag, -1, etag, modified));
+    Assert.assertTrue(HTTPRange.isNotModified("*", -1, etag, modified));
+    Assert.assertFalse(HTTPRange.isNotModified("\"x\"", -1, etag, modified));
+    // If-None-Match takes precedence
+    Assert.assertFalse(HTTPRange.isNotModified("\"x\"", modified, etag, modified));
+    Assert.assertTrue(HTTPRange.isNotModified(null, 1_700_000_000_000L, etag, modified));
+    Assert.assertFalse(HTTPRange.isNotModified(null, 1_699_999_999_000L, etag, modified));
+    Assert.assertFalse(HTTPRange.isNotModified(null, -1, etag, modified));
+  }
+
+  @Test
+  public void testIfRange() {
+    String etag = "\"3e8-abc\"";
+    long modified = 1_700_000_000_123L;
+    Assert.assertTrue(HTTPRange.isRangeApplicable(null, etag, modified));
+    Assert.assertTrue(HTTPRange.isRangeApplicable(etag, etag, modified));
+    Assert.assertFalse(HTTPRange.isRangeApplicable("W/" + etag, etag, modified));
+    Assert.assertTrue(HTTPRange.isRangeApplicable("Tue, 14 Nov 2023 22:13:20 GMT", etag, modified));
+    Assert.assertFalse(HTTPRange.isRangeApplicable("Tue, 14 Nov 2023 22:13:21 GMT", etag, modified));
+  }
+
+  @Test
+  public void testTransfer() throws IOException {
+    File file = this.folder.newFile("range.txt");
+    Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.US_ASCII));
+    HTTPRange range = HTTPRange.parse("bytes=2-5", file.length());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Assert.assertEquals(4, FileUtils.transfer(file, range.start(), range.length(), out));
+    Assert.assertEquals("2345", out.toString("US-ASCII"));
+
+    out.reset();
+    Assert.assertEquals(10, FileUtils.transfer(file, 0, Long.MAX_VALUE - 1, out));
+    Assert.assertEquals("0123456789", out.toString("US-ASCII"));
+    Assert.assertTrue(HTTPRange.etag(file).startsWith("\"a-"));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class ScriptNonceWriterTest {
+
+  private static final String SOURCE = "<html><head><SCRIPT src=\"a.js\"></SCRIPT><scripts/><script>var a = '<scrip';</script>"
+      + "</head><body><p>a < b</p><script\ntype=\"module\"/></body></html><script";
+
+  private static final String EXPECTED = "<html><head><SCRIPT nonce=\"n1\" src=\"a.js\"></SCRIPT><scripts/>"
+      + "<script nonce=\"n1\">var a = '<scrip';</script></head><body><p>a < b</p><script nonce=\"n1\"\ntype=\"module\"/>"
+      + "</body></html><script";
+
+  @Test
+  public void testWrite() throws IOException {
+    StringWriter out = new StringWriter();
+    try (ScriptNonceWriter writer = new ScriptNonceWriter(out, "n1")) {
+      writer.write(SOURCE);
+    }
+    Assert.assertEquals(EXPECTED, out.toString());
+  }
+
+  @Test
+  public void testWriteSplit() throws IOException {
+    // The tags must be found wherever the content is split
+    for (int split = 1; split < SOURCE.length(); split++) {
+      StringWriter out = new StringWriter();
+      try (ScriptNonceWriter writer = new ScriptNonceWriter(out, "n1")) {
+        char[] chars = SOURCE.toCharArray();
+        for (int i = 0; i < chars.length; i += split) {
+          writer.write(chars, i, Math.min(split, chars.length - i));
+        }
+      }
+      Assert.assertEquals("Split at " + split, EXPECTED, out.toString());
+    }
+  }
+
+  @Test
+  public void testWriteLongString() throws IOException {
+    // Longer than the buffer used for strings, written from an offset
+    StringBuilder source = new StringBuilder("ignored");
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      source.append(SOURCE);
+      expected.append(EXPECTED);
+    }
+    StringWriter out = new StringWriter();
+    try (ScriptNonceWriter writer = new ScriptNonceWriter(out, "n1")) {
+      writer.write(source.toString(), 7, source.length() - 7);
+    }
+    Assert.assertEquals(expected.toString(), out.toString());
+  }
+
+  @Test
+  public void testWriteChar() throws IOException {
+    StringWriter out = new StringWriter();
+    try (ScriptNonceWriter writer = new ScriptNonceWriter(out, "n1")) {
+      for (char c : SOURCE.toCharArray()) {
+        writer.write(c);
+      }
+    }
+    Assert.assertEquals(EXPECTED, out.toString());
+  }
+}
@@ -64,6 +64,24 @@ public class StepUtilsTest {
     Assert.assertEquals("Info test value", StepUtils.getParameter(data, info,"test-info", ""));
   }
 
+  @Test
+  public void getParallelThreads_Clamped(){
+    int processors = Runtime.getRuntime().availableProcessors();
+    Assert.assertEquals(1, StepUtils.getParallelThreads(createPackageData(new HashMap<>()), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(processors, StepUtils.getParallelThreads(createPackageData(parallel("true")), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(1, StepUtils.getParallelThreads(createPackageData(parallel("false")), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(1, StepUtils.getParallelThreads(createPackageData(parallel("-5")), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(1, StepUtils.getParallelThreads(createPackageData(parallel("many")), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(processors, StepUtils.getParallelThreads(createPackageData(parallel("100000")), createStepInfo(new HashMap<>())));
+    Assert.assertEquals(processors, StepUtils.getParallelThreads(createPackageData(new HashMap<>()), createStepInfo(parallel("100000"))));
+  }
+
+  private static Map<String, String> parallel(String value) {
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put("parallel", value);
+    return parameters;
+  }
+
   @Test
   public void getParameter_DynamicValueFromBoth_Success(){
     //Both means DataPAckage and StepInfo
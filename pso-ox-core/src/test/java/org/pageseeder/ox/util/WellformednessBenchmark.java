@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares the time and memory used to check the well-formedness of a large file by building a DOM
+ * (previous implementation) and with the {@link WellformednessChecker}.
+ *
+ * <p>This is not a unit test, run it with: <code>java -Xmx2g WellformednessBenchmark [size in MB]</code>.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class WellformednessBenchmark {
+
+  private static final int RUNS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    File file = File.createTempFile("wellformedness", ".xml");
+    file.deleteOnExit();
+    generate(file, megabytes * 1024L * 1024L);
+    System.out.printf("File: %d MB%n", file.length() / (1024 * 1024));
+
+    for (int i = 0; i < RUNS; i++) {
+      measure("DOM", () -> {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(false);
+        factory.setNamespaceAware(true);
+        factory.newDocumentBuilder().parse(file);
+      });
+      measure("SAX", () -> WellformednessChecker.check(file, 1));
+    }
+  }
+
+  private static void measure(String name, Check check) {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    long peak = before;
+    long start = System.nanoTime();
+    MemorySampler sampler = new MemorySampler();
+    sampler.start();
+    String outcome = "ok";
+    try {
+      check.run();
+    } catch (Exception | OutOfMemoryError ex) {
+      outcome = ex.getClass().getSimpleName();
+    } finally {
+      sampler.interrupt();
+    }
+    long time = (System.nanoTime() - start) / 1000000;
+    peak = Math.max(peak, sampler.peak);
+    System.out.printf("%s: %d ms, peak heap increase %d MB (%s)%n", name, time, (peak - before) / (1024 * 1024), outcome);
+  }
+
+  private static void generate(File file, long size) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root xmlns:x=\"urn:x\">\n");
+      long written = 0;
+      for (int i = 0; written < size; i++) {
+        String line = "<x:item id=\"i" + i + "\" type=\"sample\"><title>Item " + i + "</title><p>Some text &amp; more text for item " + i + "</p></x:item>\n";
+        out.write(line);
+        written += line.length();
+      }
+      out.write("</root>\n");
+    }
+  }
+
+  private interface Check {
+    void run() throws Exception;
+  }
+
+  /**
+   * Samples the heap used every few milliseconds.
+   */
+  private static final class MemorySampler extends Thread {
+
+    private volatile long peak = 0;
+
+    private MemorySampler() {
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      Runtime runtime = Runtime.getRuntime();
+      while (!isInterrupted()) {
+        this.peak = Math.max(this.peak, runtime.totalMemory() - runtime.freeMemory());
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException ex) {
+          return;
+        }
+      }
+    }
+  }
+}
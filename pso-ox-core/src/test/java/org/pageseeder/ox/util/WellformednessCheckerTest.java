@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.xmlwriter.XML.NamespaceAware;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class WellformednessCheckerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void test_wellformed() throws IOException {
+    WellformednessChecker.Report report = WellformednessChecker.check(new File("src/test/resources/models/m1/sample.xml"), 10);
+    Assert.assertTrue(report.isWellformed());
+    Assert.assertTrue(report.errors().isEmpty());
+  }
+
+  @Test
+  public void test_first_error() throws IOException {
+    File file = write("<root>\n  <a>\n</root>");
+    WellformednessChecker.Report report = WellformednessChecker.check(file, 1);
+    Assert.assertFalse(report.isWellformed());
+    Assert.assertEquals(1, report.errors().size());
+    Assert.assertEquals(3, report.errors().get(0).getLineNumber());
+  }
+
+  @Test
+  public void test_max_errors() throws Exception {
+    File file = write("<root>\n<a x='1' x='2'/>\n<b y='1' y='2'/>\n<c z='1' z='2'/>\n</root>");
+    WellformednessChecker.Report report = WellformednessChecker.check(file, 2);
+    Assert.assertFalse(report.isWellformed());
+    Assert.assertEquals(2, report.errors().size());
+    Assert.assertEquals(2, report.errors().get(0).getLineNumber());
+    Assert.assertEquals(3, report.errors().get(1).getLineNumber());
+
+    XMLStringWriter xml = new XMLStringWriter(NamespaceAware.No);
+    report.toXML(xml);
+    xml.flush();
+    XMLAssert.assertXpathEvaluatesTo("2", "count(errors/error)", xml.toString());
+    XMLAssert.assertXpathEvaluatesTo("3", "errors/error[2]/@line", xml.toString());
+  }
+
+  private File write(String content) throws IOException {
+    File file = this.folder.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares zipping and unzipping a mixed corpus of XML files and images with the previous implementation
+ * (single thread, 2 KB buffers, every entry deflated) and with {@link ZipUtils}.
+ *
+ * <p>This is not a unit test, run it with: <code>java ZipBenchmark [size in MB] [threads]</code>
+ * (default: 1024 MB, {@link ZipUtils#DEFAULT_THREADS}).
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class ZipBenchmark {
+
+  private static final int LEGACY_BUFFER = 2048;
+
+  public static void main(String[] args) throws Exception {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : ZipUtils.DEFAULT_THREADS;
+    File root = Files.createTempDirectory("zip-benchmark").toFile();
+    try {
+      File corpus = new File(root, "corpus");
+      long size = generate(corpus, megabytes * 1024L * 1024L);
+      System.out.printf("Corpus: %d MB, %d threads%n", size / (1024 * 1024), threads);
+
+      File legacy = new File(root, "legacy.zip");
+      File parallel = new File(root, "parallel.zip");
+      long start = System.nanoTime();
+      legacyZip(corpus, legacy);
+      report("zip (legacy)", start, legacy);
+      start = System.nanoTime();
+      ZipUtils.zip(corpus, parallel, threads);
+      report("zip (parallel)", start, parallel);
+
+      start = System.nanoTime();
+      legacyUnzip(parallel, new File(root, "legacy"));
+      report("unzip (legacy)", start, null);
+      start = System.nanoTime();
+      ZipUtils.unzip(parallel, new File(root, "parallel"), threads);
+      report("unzip (parallel)", start, null);
+    } finally {
+      FileUtils.delete(root);
+    }
+  }
+
+  private static void report(String name, long start, File zip) {
+    long ms = (System.nanoTime() - start) / 1000000;
+    if (zip != null) {
+      System.out.printf("%-18s %6d ms  %6d MB%n", name, ms, zip.length() / (1024 * 1024));
+    } else {
+      System.out.printf("%-18s %6d ms%n", name, ms);
+    }
+  }
+
+  /**
+   * Generates XML documents (compressible) and images (random bytes, incompressible) in about equal proportions.
+   */
+  private static long generate(File corpus, long size) throws IOException {
+    Random random = new Random(1);
+    long written = 0;
+    for (int i = 0; written < size; i++) {
+      File dir = new File(corpus, "folder-" + (i % 20));
+      dir.mkdirs();
+      if (i % 2 == 0) {
+        StringBuilder xml = new StringBuilder("<document id=\"" + i + "\">");
+        int paragraphs = 500 + random.nextInt(5000);
+        for (int p = 0; p < paragraphs; p++) {
+          xml.append("<para id=\"p").append(p).append("\">Paragraph ").append(p).append(" of document ").append(i)
+             .append(" with value ").append(random.nextInt(100000)).append("</para>\n");
+        }
+        byte[] data = xml.append("</document>").toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(new File(dir, "doc-" + i + ".xml").toPath(), data);
+        written += data.length;
+      } else {
+        byte[] data = new byte[100 * 1024 + random.nextInt(4 * 1024 * 1024)];
+        random.nextBytes(data);
+        Files.write(new File(dir, "image-" + i + ".jpg").toPath(), data);
+        written += data.length;
+      }
+    }
+    return written;
+  }
+
+  private static void legacyZip(File src, File dest) throws IOException {
+    try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(dest)))) {
+      for (File f : src.listFiles()) {
+        legacyAdd(f, out, null);
+      }
+    }
+  }
+
+  private static void legacyAdd(File file, ZipOutputStream out, String folder) throws IOException {
+    String name = folder != null ? folder + file.getName() : file.getName();
+    if (file.isDirectory()) {
+      for (File f : file.listFiles()) {
+        legacyAdd(f, out, name + "/");
+      }
+    } else {
+      byte[] data = new byte[LEGACY_BUFFER];
+      try (BufferedInputStream origin = new BufferedInputStream(new FileInputStream(file), LEGACY_BUFFER)) {
+        out.putNextEntry(new ZipEntry(name));
+        int count;
+        while ((count = origin.read(data, 0, LEGACY_BUFFER)) != -1) {
+          out.write(data, 0, count);
+        }
+      }
+    }
+  }
+
+  private static void legacyUnzip(File src, File dest) throws IOException {
+    try (ZipFile zip = new ZipFile(src)) {
+      for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+        ZipEntry entry = e.nextElement();
+        File f = new File(dest, entry.getName());
+        f.getParentFile().mkdirs();
+        byte[] data = new byte[LEGACY_BUFFER];
+        try (BufferedInputStream is = new BufferedInputStream(zip.getInputStream(entry));
+             BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(f), LEGACY_BUFFER)) {
+          int count;
+          while ((count = is.read(data, 0, LEGACY_BUFFER)) != -1) {
+            out.write(data, 0, count);
+          }
+        }
+      }
+    }
+  }
+}
@@ -16,11 +16,24 @@
 package org.pageseeder.ox.util;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 /**
  * @author Carlos Cabral
@@ -30,6 +43,9 @@ public class ZipUtilsTest {
 
   public final static File _BASE_DIR = new File("src/test/resources/org/pageseeder/ox/util/filefinder");
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testZipFilesTo() {
     try {
@@ -42,4 +58,84 @@ public class ZipUtilsTest {
       Assert.fail("Failed: " + ex.getMessage());
     }
   }
+
+  @Test
+  public void testZipParallel() throws IOException {
+    File src = this.folder.newFolder("src");
+    Random random = new Random(42);
+    Map<String, byte[]> contents = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      StringBuilder xml = new StringBuilder("<doc>");
+      for (int j = 0; j < 1000 * i; j++) xml.append("<p>Paragraph ").append(j).append("</p>");
+      contents.put("sub" + (i % 3) + "/doc-" + i + ".xml", xml.append("</doc>").toString().getBytes(StandardCharsets.UTF_8));
+      byte[] image = new byte[1000 * i];
+      random.nextBytes(image);
+      contents.put("images/image-" + i + ".png", image);
+    }
+    contents.put("empty.txt", new byte[0]);
+    for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+      File f = new File(src, e.getKey());
+      f.getParentFile().mkdirs();
+      Files.write(f.toPath(), e.getValue());
+    }
+
+    File zip = new File(this.folder.getRoot(), "test.zip");
+    ZipUtils.zip(src, zip, 4);
+    try (ZipFile file = new ZipFile(zip)) {
+      Assert.assertEquals(contents.size(), file.size());
+      Assert.assertEquals(ZipEntry.STORED, file.getEntry("images/image-5.png").getMethod());
+      Assert.assertEquals(ZipEntry.DEFLATED, file.getEntry("sub2/doc-5.xml").getMethod());
+    }
+    // Also readable as a stream
+    int count = 0;
+    try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip.toPath()))) {
+      for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+        Assert.assertArrayEquals(entry.getName(), contents.get(entry.getName()), in.readAllBytes());
+        count++;
+      }
+    }
+    Assert.assertEquals(contents.size(), count);
+
+    File dest = this.folder.newFolder("dest");
+    ZipUtils.unzip(zip, dest, 4);
+    for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+      Assert.assertArrayEquals(e.getKey(), e.getValue(), Files.readAllBytes(new File(dest, e.getKey()).toPath()));
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testZipParallelFailure() throws IOException {
+    // Large enough to be deflated in a temporary file
+    File large = this.folder.newFile("large.xml");
+    StringBuilder xml = new StringBuilder("<doc>");
+    while (xml.length() < 5 * 1024 * 1024) xml.append("<p>Paragraph ").append(xml.length()).append("</p>");
+    Files.write(large.toPath(), xml.append("</doc>").toString().getBytes(StandardCharsets.UTF_8));
+
+    List<ZipWriter.Source> files = new ArrayList<>();
+    files.add(new ZipWriter.Source("missing.xml", new File(this.folder.getRoot(), "missing.xml")));
+    for (int i = 0; i < 40; i++) {
+      files.add(new ZipWriter.Source("doc-" + i + ".xml", large));
+    }
+    File out = this.folder.newFolder("out");
+    try {
+      ZipWriter.write(files, new File(out, "test.zip"), 2);
+      Assert.fail("The first entry is missing");
+    } catch (IOException ex) {
+      // expected
+    }
+    String[] temp = out.list((dir, name) -> name.endsWith(".deflate"));
+    Assert.assertNotNull(temp);
+    Assert.assertEquals(0, temp.length);
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnzipOutside() throws IOException {
+    File zip = new File(this.folder.getRoot(), "outside.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry("../outside.txt"));
+      out.write(1);
+      out.closeEntry();
+    }
+    ZipUtils.unzip(zip, this.folder.newFolder("dest"));
+  }
 }
@@ -15,6 +15,7 @@ dependencies {
   runtimeOnly (libs.logback.classic)
   runtimeOnly (libs.logback.core)
 
+  testImplementation(project(":pso-ox-test"))
   testImplementation (libs.junit)
   testImplementation (libs.xmlunit)
 }
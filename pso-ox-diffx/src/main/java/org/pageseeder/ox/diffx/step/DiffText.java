@@ -15,7 +15,6 @@
  */
 package org.pageseeder.ox.diffx.step;
 
-import org.apache.commons.io.FileUtils;
 import org.pageseeder.diffx.algorithm.DiffXAlgorithm;
 import org.pageseeder.diffx.config.DiffXConfig;
 import org.pageseeder.diffx.config.WhiteSpaceProcessing;
@@ -34,6 +33,7 @@ import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.diffx.tool.TidyCommand;
 import org.pageseeder.ox.diffx.util.DiffXBasic;
+import org.pageseeder.ox.diffx.util.DiffXLinear;
 import org.pageseeder.ox.step.SimplifyDOCX;
 import org.pageseeder.ox.tool.InvalidResult;
 import org.pageseeder.ox.tool.ResultBase;
@@ -41,14 +41,23 @@ import org.pageseeder.xmlwriter.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.tidy.Tidy;
-
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -62,6 +71,18 @@ import java.util.List;
  *  <li><var>xsl-psml</var> the specified transformation file for manipulated the psml before diff it. (Optional) </li>
  *  <li><var>xsl-html</var> the specified transformation file for manipulated the html before diff it. (Optional) </li>
  *  <li><var>xsl-docx</var> the specified transformation file for manipulated the docx before diff it. (Optional) </li>
+ *  <li><var>include-text</var> "false" to leave out the full text of the source and target from the result
+ *  (default: "true").</li>
+ *  <li><var>algorithm</var> the diff algorithm (Optional):
+ *    <ul>
+ *      <li><code>auto</code> (default) uses <code>basic</code> when both texts have at most 24,000 words,
+ *      <code>anchored</code> otherwise</li>
+ *      <li><code>basic</code> the LCS matrix algorithm, only the first 24,000 words are compared</li>
+ *      <li><code>linear</code> the linear space algorithm, all the words are compared</li>
+ *      <li><code>anchored</code> the linear space algorithm anchored on the paragraphs which have not changed,
+ *      all the words are compared</li>
+ *    </ul>
+ *  </li>
  * </ul>
  *
  *
@@ -69,6 +90,8 @@ import java.util.List;
  * <p>In order to identify what kind of file it is. It will use the extension.</p>
  * <p>However for docx, it needs this file simplified. Then before call this class, this step must be called {@link SimplifyDOCX}.
  * The {@link SimplifyDOCX} will generate the folder simplified, then this folder should be sent instead of the original docx.</p>
+ * <p>The text produced by the transformation is tokenized as it is written, so the whole text is only kept in memory
+ * when it is included in the result.</p>
  *
  * @author Carlos Cabral
  * @version 12 April 2015
@@ -78,10 +101,20 @@ public class DiffText implements Step {
   /** The Constant LOGGER. */
   private static final Logger LOGGER = LoggerFactory.getLogger(DiffText.class);
   /**
-   * We don't try to compare more that 24K events.
+   * The basic algorithm does not compare more that 24K events.
    */
   private static final int MAX_EVENTS = 24000;
 
+  /**
+   * The names of the algorithms which can be used.
+   */
+  private static final List<String> ALGORITHMS = Arrays.asList("auto", "basic", "linear", "anchored");
+
+  /**
+   * The maximum length of the XML declaration skipped before tidy.
+   */
+  private static final int MAX_XML_DECLARATION = 1024;
+
   /* (non-Javadoc)
    * @see org.pageseeder.ox.api.Step#process(org.pageseeder.ox.core.Model, org.pageseeder.ox.core.PackageData, org.pageseeder.ox.api.StepInfo)
    */
@@ -102,20 +135,29 @@ public class DiffText implements Step {
     // Then validate the target
     if (!valid(target)) return new InvalidResult(model, data).error(new IllegalArgumentException("The target is invalid"));
 
+    String algorithm = info.getParameter("algorithm", "auto");
+    if (!ALGORITHMS.contains(algorithm)) return new InvalidResult(model, data).error(new IllegalArgumentException("Unknown diff algorithm " + algorithm));
+
 
 
 
     //Getting the content(text)
+    boolean includeText = !"false".equalsIgnoreCase(info.getParameter("include-text", "true"));
 
     CheckTextResult result = new CheckTextResult(model, data, sourcePath, targetPath);
     try {
 
       String charset = data.getProperty("charset", "utf-8");
-      String sourceText = toText(model, info, source, charset);
-      String targetText = toText(model, info, target, charset);
-      result.sourceText = sourceText;
-      result.targetText = targetText;
-      processDiff(result);
+      TextTokenizer tokenizer = new TokenizerByWord(WhiteSpaceProcessing.IGNORE);
+      TextCollector sourceText = new TextCollector(tokenizer, includeText);
+      TextCollector targetText = new TextCollector(tokenizer, includeText);
+      toText(model, info, data, source, charset, sourceText);
+      toText(model, info, data, target, charset, targetText);
+      if (includeText) {
+        result.sourceText = sourceText.text();
+        result.targetText = targetText.text();
+      }
+      processDiff(result, sourceText.paragraphs(), targetText.paragraphs(), algorithm);
 
     } catch (IOException | TransformerException ex) {
       LOGGER.error("DIFF Text error: " + ex.getMessage());
@@ -178,100 +220,100 @@ public class DiffText implements Step {
   }
 
   /**
-   * Returns the content as plain text.
+   * Writes the content as plain text.
    *
    * The docx must be sent simplified (The Simplified Folder).
    *
    * @param model the model
    * @param info the info
+   * @param data the package data
    * @param file the file pointing to a HTML, DOCX (Simplified Folder) or PSML.
    * @param charset the charset
-   * @return The file as plain text.
+   * @param text receives the plain text
    * @throws IOException Should an error occur while reading the file.
    * @throws TransformerException Should an error occur while tranforming the content.
    */
-  private String toText(Model model, StepInfo info, File file, String charset) throws IOException, TransformerException {
-    String text = null;
+  private void toText(Model model, StepInfo info, PackageData data, File file, String charset, Writer text) throws IOException, TransformerException {
     if (file.getName().toLowerCase().endsWith("simplified")) {
-      text = toDOCXText(model, info, file);
+      toDOCXText(model, info, file, text);
     } else if (file.getName().toLowerCase().endsWith("html")) {
-      text = toHTMLText(model, info, file, charset);
+      toHTMLText(model, info, data, file, charset, text);
     } else if (file.getName().toLowerCase().endsWith("psml")) {
-      text = toPSMLText(model, info, file, charset);
+      toPSMLText(model, info, file, charset, text);
     }
-    return text;
   }
 
   /**
-   * Returns the PSML as plain text.
+   * Writes the PSML as plain text.
    *
    * @param model the model
    * @param info the info
    * @param psml the file pointing to psml document.
    * @param charset the charset
-   * @return The file as plain text.
+   * @param text receives the plain text
    * @throws IOException Should an error occur while reading the file.
    * @throws TransformerException Should an error occur while tranforming the content.
    */
-  private String toPSMLText(Model model, StepInfo info, File psml, String charset) throws IOException, TransformerException {
+  private void toPSMLText(Model model, StepInfo info, File psml, String charset, Writer text) throws IOException, TransformerException {
     LOGGER.debug("Getting text for PSML.");
-    String source = FileUtils.readFileToString(psml, charset);
-
-    // Convert to plain text
-    StringWriter text = new StringWriter();
     Templates templates = getTemplate(model, info, "xsl-psml", "psml-text.xsl");
     Transformer transformer = templates.newTransformer();
-    transformer.transform(new StreamSource(new StringReader(source)), new StreamResult(text));
-
-    return text.toString();
+    try (Reader source = new InputStreamReader(new FileInputStream(psml), charset)) {
+      InputSource input = new InputSource(source);
+      input.setSystemId(psml.toURI().toString());
+      transformer.transform(new SAXSource(newXMLReader(), input), new StreamResult(text));
+    }
   }
 
   /**
-   * Returns the HTML as plain text.
+   * Writes the HTML as plain text.
+   *
+   * <p>The XHTML produced by tidy is written to a temporary file in the package rather than kept in memory.
    *
    * @param model the model
    * @param info the info
+   * @param data the package data
    * @param html the file pointing to html document.
    * @param charset the charset
-   * @return The file as plain text.
+   * @param text receives the plain text
    * @throws IOException Should an error occur while reading the file.
    * @throws TransformerException Should an error occur while tranforming the content.
    */
-  private String toHTMLText(Model model, StepInfo info, File html, String charset) throws IOException, TransformerException {
+  private void toHTMLText(Model model, StepInfo info, PackageData data, File html, String charset, Writer text) throws IOException, TransformerException {
     LOGGER.debug("Getting text for HTML.");
     // We may need to run tidy first
     Tidy tidy = TidyCommand.newTidy(model);
     // tidy.setOnlyErrors(true);
     // tidy.setShowErrors(0);
-    StringWriter buffer = new StringWriter();
-    String source = FileUtils.readFileToString(html, charset);
-    source = source.replaceAll("<\\?xml(.*?)\\>", "");
-    tidy.parse(new StringReader(source), buffer);
-    String xhtml = buffer.toString();
-
-    // We must remove the XHTML DOCTYPE declaration since W3 has shutdown its servers for XHTML DTDs
-    xhtml = xhtml.replaceAll("<\\!DOCTYPE(.*?)\\>\n?", "");
-
-    // Convert to plain text
-    StringWriter text = new StringWriter();
-    Templates templates = getTemplate(model, info, "xsl-html", "html-text.xsl");
-    Transformer transformer = templates.newTransformer();
-    transformer.transform(new StreamSource(new StringReader(xhtml)), new StreamResult(text));
+    File xhtml = File.createTempFile("diff-text-", ".xhtml", data.directory());
+    try {
+      try (Reader source = skipXMLDeclaration(new InputStreamReader(new FileInputStream(html), charset));
+           OutputStream out = new BufferedOutputStream(new FileOutputStream(xhtml))) {
+        tidy.parse(source, out);
+      }
 
-    return text.toString();
+      // Convert to plain text
+      Templates templates = getTemplate(model, info, "xsl-html", "html-text.xsl");
+      Transformer transformer = templates.newTransformer();
+      transformer.transform(toXHTMLSource(xhtml), new StreamResult(text));
+    } finally {
+      if (!xhtml.delete()) {
+        LOGGER.warn("Unable to delete {}", xhtml);
+      }
+    }
   }
 
   /**
-   * Returns the main document part as plain text.
+   * Writes the main document part as plain text.
    *
    * @param model the model
    * @param info the info
    * @param simplified the simplified
-   * @return The file as plain text.
+   * @param text receives the plain text
    * @throws IOException Should an error occur while reading the file.
    * @throws TransformerException Should an error occur while tranforming the content.
    */
-  private String toDOCXText(Model model, StepInfo info, File simplified) throws IOException, TransformerException {
+  private void toDOCXText(Model model, StepInfo info, File simplified, Writer text) throws IOException, TransformerException {
     LOGGER.debug("Getting text for DOCX.");
 
     //The word file that has the content.
@@ -284,35 +326,104 @@ public class DiffText implements Step {
     }
 
     //Extract the text.
-    StringWriter text = new StringWriter();
-
     Templates templates = getTemplate(model, info, "xsl-docx", "docx-text.xsl");
     Transformer transformer = templates.newTransformer();
-    transformer.transform(new StreamSource(documentXML), new StreamResult(text));
-    return text.toString();
+    transformer.transform(new SAXSource(newXMLReader(), new InputSource(documentXML.toURI().toString())), new StreamResult(text));
   }
 
+  /**
+   * Skips the XML declaration at the start of the content, as tidy doesn't recognise it.
+   *
+   * @param reader the content
+   * @return the content without the XML declaration
+   * @throws IOException Should an error occur while reading the content.
+   */
+  private static Reader skipXMLDeclaration(Reader reader) throws IOException {
+    BufferedReader buffered = new BufferedReader(reader);
+    buffered.mark(MAX_XML_DECLARATION);
+    StringBuilder start = new StringBuilder();
+    int c;
+    while (start.length() < MAX_XML_DECLARATION && (c = buffered.read()) != -1) {
+      start.append((char) c);
+      if (c == '>') break;
+    }
+    String declaration = start.toString();
+    if (declaration.startsWith("\uFEFF")) declaration = declaration.substring(1);
+    if (!(declaration.startsWith("<?xml") && declaration.endsWith(">"))) {
+      buffered.reset();
+    }
+    return buffered;
+  }
 
+  /**
+   * Returns a SAX source for the XHTML produced by tidy.
+   *
+   * <p>The XHTML DOCTYPE declaration is ignored since W3 has shutdown its servers for XHTML DTDs.
+   *
+   * @param xhtml the XHTML file
+   * @return the source
+   * @throws TransformerException Should the parser be unavailable.
+   */
+  private static Source toXHTMLSource(File xhtml) throws TransformerException {
+    XMLReader reader = newXMLReader();
+    reader.setEntityResolver(new EntityResolver() {
+      @Override
+      public InputSource resolveEntity(String publicId, String systemId) {
+        return new InputSource(new StringReader(""));
+      }
+    });
+    return new SAXSource(reader, new InputSource(xhtml.toURI().toString()));
+  }
 
   /**
-   * Check the differences between result.sourceText and result.targetText and
+   * Returns a new namespace aware XML reader.
+   *
+   * @return the XML reader
+   * @throws TransformerException Should the parser be unavailable.
+   */
+  private static XMLReader newXMLReader() throws TransformerException {
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newSAXParser().getXMLReader();
+    } catch (ParserConfigurationException | SAXException ex) {
+      throw new TransformerException(ex);
+    }
+  }
+
+  /**
+   * Check the differences between the source and target paragraphs and
    * then update the result.
    *
    * @param result the result
-   * @return the check text result
+   * @param sourceParagraphs the events of each paragraph of the source
+   * @param targetParagraphs the events of each paragraph of the target
+   * @param name the name of the algorithm
    * @throws IllegalStateException the illegal state exception
    * @throws IOException Signals that an I/O exception has occurred.
    */
-  private void processDiff(CheckTextResult result) throws IllegalStateException, IOException{
+  private void processDiff(CheckTextResult result, List<EventSequence> sourceParagraphs, List<EventSequence> targetParagraphs,
+                           String name) throws IllegalStateException, IOException{
 
     //Start the comparison logic
-    TextTokenizer tokenizer = new TokenizerByWord(WhiteSpaceProcessing.IGNORE);
-    List<TextEvent> htmlEvents = tokenizer.tokenize(result.sourceText);
-    List<TextEvent> docxEvents = tokenizer.tokenize(result.targetText);
+    int sourceSize = size(sourceParagraphs);
+    int targetSize = size(targetParagraphs);
+    if ("auto".equals(name)) {
+      name = sourceSize <= MAX_EVENTS && targetSize <= MAX_EVENTS ? "basic" : "anchored";
+    }
 
-    EventSequence htmlSequence = toSequence(htmlEvents);
-    EventSequence docxSequence = toSequence(docxEvents);
-    DiffXAlgorithm algorithm = new DiffXBasic(htmlSequence, docxSequence);
+    DiffXAlgorithm algorithm;
+    if ("anchored".equals(name)) {
+      algorithm = new DiffXLinear(sourceParagraphs, targetParagraphs);
+    } else if ("linear".equals(name)) {
+      algorithm = new DiffXLinear(toSequence(sourceParagraphs, sourceSize), toSequence(targetParagraphs, targetSize));
+    } else {
+      if (sourceSize > MAX_EVENTS || targetSize > MAX_EVENTS) {
+        LOGGER.warn("Only the first {} words are compared ({} and {} words)", MAX_EVENTS, sourceSize, targetSize);
+      }
+      algorithm = new DiffXBasic(toSequence(sourceParagraphs, MAX_EVENTS), toSequence(targetParagraphs, MAX_EVENTS));
+    }
+    LOGGER.debug("Comparing {} and {} words using the {} algorithm", sourceSize, targetSize, name);
     StringWriter diff = new StringWriter();
     TextDiffxFormatter formatter = new TextDiffxFormatter(diff);
     algorithm.process(formatter);
@@ -324,16 +435,32 @@ public class DiffText implements Step {
 
 
   /**
-   * To sequence.
+   * Returns the number of events in all the paragraphs.
    *
-   * @param events the events
+   * @param paragraphs the paragraphs
+   * @return the number of events
+   */
+  private static int size(List<EventSequence> paragraphs) {
+    int size = 0;
+    for (EventSequence paragraph : paragraphs) {
+      size += paragraph.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the first events of the paragraphs as a single sequence.
+   *
+   * @param paragraphs the paragraphs
+   * @param max the maximum number of events
    * @return the event sequence
    */
-  private EventSequence toSequence(List<TextEvent> events) {
-    int to = Math.min(events.size(), MAX_EVENTS);
-    EventSequence sequence = new EventSequence(events.size());
-    for (int i = 0; i < to; i++) {
-      sequence.addEvent(events.get(i));
+  private static EventSequence toSequence(List<EventSequence> paragraphs, int max) {
+    EventSequence sequence = new EventSequence(Math.min(size(paragraphs), max));
+    for (EventSequence paragraph : paragraphs) {
+      for (int i = 0; i < paragraph.size() && sequence.size() < max; i++) {
+        sequence.addEvent(paragraph.getEvent(i));
+      }
     }
     return sequence;
   }
@@ -350,11 +477,11 @@ public class DiffText implements Step {
    */
   private final class CheckTextResult extends ResultBase implements Result {
 
-    /** The source text. */
-    private String sourceText = "";
+    /** The source text, <code>null</code> if not included. */
+    private String sourceText = null;
 
-    /** The target text. */
-    private String targetText = "";
+    /** The target text, <code>null</code> if not included. */
+    private String targetText = null;
 
     /** The diff xml. */
     private String diffXML = "";
@@ -399,13 +526,17 @@ public class DiffText implements Step {
       // Source document
       xml.openElement("source");
       xml.attribute("path", this._sourcePath);
-      xml.writeCDATA(this.sourceText);
+      if (this.sourceText != null) {
+        xml.writeCDATA(this.sourceText);
+      }
       xml.closeElement();
 
       // Target document
       xml.openElement("target");
       xml.attribute("path", this._targetPath);
-      xml.writeCDATA(this.targetText);
+      if (this.targetText != null) {
+        xml.writeCDATA(this.targetText);
+      }
       xml.closeElement();
 
       // Settings specified
@@ -431,6 +562,86 @@ public class DiffText implements Step {
 
   }
 
+  /**
+   * Receives the plain text and tokenizes each line into a paragraph as it is written, empty lines are ignored.
+   */
+  private static final class TextCollector extends Writer {
+
+    /** The tokenizer. */
+    private final TextTokenizer _tokenizer;
+
+    /** The events of each paragraph. */
+    private final List<EventSequence> paragraphs = new ArrayList<>();
+
+    /** The current line. */
+    private final StringBuilder line = new StringBuilder();
+
+    /** The whole text, <code>null</code> unless it is kept. */
+    private final StringBuilder text;
+
+    /**
+     * Instantiates a new text collector.
+     *
+     * @param tokenizer the tokenizer
+     * @param keepText whether to keep the whole text
+     */
+    TextCollector(TextTokenizer tokenizer, boolean keepText) {
+      this._tokenizer = tokenizer;
+      this.text = keepText ? new StringBuilder() : null;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      if (this.text != null) {
+        this.text.append(cbuf, off, len);
+      }
+      for (int i = off; i < off + len; i++) {
+        if (cbuf[i] == '\n') {
+          endParagraph();
+        } else {
+          this.line.append(cbuf[i]);
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      endParagraph();
+    }
+
+    /**
+     * @return the events of each paragraph
+     */
+    List<EventSequence> paragraphs() {
+      endParagraph();
+      return this.paragraphs;
+    }
+
+    /**
+     * @return the whole text or <code>null</code> if it was not kept
+     */
+    String text() {
+      return this.text != null ? this.text.toString() : null;
+    }
+
+    private void endParagraph() {
+      if (this.line.length() == 0) return;
+      List<TextEvent> events = this._tokenizer.tokenize(this.line.toString());
+      this.line.setLength(0);
+      if (!events.isEmpty()) {
+        EventSequence paragraph = new EventSequence(events.size());
+        for (TextEvent event : events) {
+          paragraph.addEvent(event);
+        }
+        this.paragraphs.add(paragraph);
+      }
+    }
+  }
+
   /**
    * The Class TextDiffxFormatter.
    */
@@ -0,0 +1,449 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.diffx.util;
+
+import org.pageseeder.diffx.algorithm.DiffXAlgorithmBase;
+import org.pageseeder.diffx.event.DiffXEvent;
+import org.pageseeder.diffx.format.DiffXFormatter;
+import org.pageseeder.diffx.sequence.EventSequence;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs the diff comparison using the linear space algorithm of Myers ("An O(ND) Difference Algorithm and
+ * Its Variations", 1986).
+ *
+ * <p>Unlike {@link DiffXBasic} which needs a matrix of <code>n&times;m</code> values, this algorithm only needs
+ * memory proportional to <code>n+m</code> and its time is proportional to <code>(n+m)&times;d</code> where
+ * <code>d</code> is the number of differences, so long sequences do not need to be truncated.
+ *
+ * <p>The sequences can also be split into chunks, for example paragraphs. The chunks which appear once in each
+ * sequence are matched first and used as anchors, then the events between the anchors are compared. The
+ * differences remain exact but the time is bounded by the size of the chunks which have changed.
+ *
+ * <p>This algorithm does not check that elements are balanced, it is meant for sequences of text events.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class DiffXLinear extends DiffXAlgorithmBase {
+
+  /**
+   * The events of each sequence as symbols, equal events have the same symbol.
+   */
+  private final int[] symbols1;
+
+  private final int[] symbols2;
+
+  /**
+   * The start index of each chunk followed by the length of the sequence.
+   */
+  private final int[] chunks1;
+
+  private final int[] chunks2;
+
+  /**
+   * Furthest reaching paths of the forward and backward searches (by diagonal).
+   */
+  private int[] forward;
+
+  private int[] backward;
+
+  /**
+   * Creates a new linear diff.
+   *
+   * @param seq0 The first sequence to compare.
+   * @param seq1 The second sequence to compare.
+   */
+  public DiffXLinear(EventSequence seq0, EventSequence seq1) {
+    this(seq0, seq1, new int[]{0, seq0.size()}, new int[]{0, seq1.size()});
+  }
+
+  /**
+   * Creates a new linear diff anchored on the chunks which appear only once in each list.
+   *
+   * @param chunks0 The chunks of the first sequence to compare.
+   * @param chunks1 The chunks of the second sequence to compare.
+   */
+  public DiffXLinear(List<EventSequence> chunks0, List<EventSequence> chunks1) {
+    this(concat(chunks0), concat(chunks1), offsets(chunks0), offsets(chunks1));
+  }
+
+  private DiffXLinear(EventSequence seq0, EventSequence seq1, int[] chunks0, int[] chunks1) {
+    super(seq0, seq1);
+    Map<Symbol, Integer> symbols = new HashMap<>();
+    this.symbols1 = toSymbols(seq0, symbols);
+    this.symbols2 = toSymbols(seq1, symbols);
+    this.chunks1 = chunks0;
+    this.chunks2 = chunks1;
+  }
+
+  /**
+   * Returns the length of the longest common sequence, that is the number of events which are the same.
+   *
+   * @return the length of the longest common sequence.
+   */
+  @Override
+  public int length() {
+    if (this.length < 0) {
+      final int[] count = new int[1];
+      try {
+        diff(new Edits() {
+          @Override
+          public void match(int i, int j) {
+            count[0]++;
+          }
+
+          @Override
+          public void insert(int i) {
+          }
+
+          @Override
+          public void delete(int j) {
+          }
+        });
+      } catch (IOException ex) {
+        // Counting the matches does not write anything
+        throw new IllegalStateException(ex);
+      }
+      this.length = count[0];
+    }
+    return this.length;
+  }
+
+  /**
+   * Writes the diff sequence using the specified formatter.
+   *
+   * <p>Events of the first sequence which are not in the second sequence are inserted, events of the second
+   * sequence which are not in the first sequence are deleted.
+   *
+   * @param formatter The formatter that will handle the output.
+   *
+   * @throws IOException If thrown by the formatter.
+   */
+  @Override
+  public void process(final DiffXFormatter formatter) throws IOException {
+    diff(new Edits() {
+      @Override
+      public void match(int i, int j) throws IOException {
+        formatter.format(DiffXLinear.this.sequence1.getEvent(i));
+      }
+
+      @Override
+      public void insert(int i) throws IOException {
+        formatter.insert(DiffXLinear.this.sequence1.getEvent(i));
+      }
+
+      @Override
+      public void delete(int j) throws IOException {
+        formatter.delete(DiffXLinear.this.sequence2.getEvent(j));
+      }
+    });
+  }
+
+  /**
+   * Compares the events between the anchors.
+   */
+  private void diff(Edits edits) throws IOException {
+    int size = this.symbols1.length + this.symbols2.length;
+    this.forward = new int[2 * size + 3];
+    this.backward = new int[2 * size + 3];
+    try {
+      int i = 0;
+      int j = 0;
+      for (int[] anchor : anchors()) {
+        int from1 = this.chunks1[anchor[0]];
+        int from2 = this.chunks2[anchor[1]];
+        diff(i, from1, j, from2, edits);
+        i = this.chunks1[anchor[0] + 1];
+        j = this.chunks2[anchor[1] + 1];
+        for (int k = 0; k < i - from1; k++) {
+          edits.match(from1 + k, from2 + k);
+        }
+      }
+      diff(i, this.symbols1.length, j, this.symbols2.length, edits);
+    } finally {
+      this.forward = null;
+      this.backward = null;
+    }
+  }
+
+  /**
+   * Compares the events from <code>[a0, a1)</code> in the first sequence and <code>[b0, b1)</code>
+   * in the second sequence.
+   */
+  private void diff(int a0, int a1, int b0, int b1, Edits edits) throws IOException {
+    int[] a = this.symbols1;
+    int[] b = this.symbols2;
+    // Common prefix
+    while (a0 < a1 && b0 < b1 && a[a0] == b[b0]) {
+      edits.match(a0++, b0++);
+    }
+    // Common suffix, reported last
+    int suffix = 0;
+    while (a0 < a1 && b0 < b1 && a[a1 - 1] == b[b1 - 1]) {
+      a1--;
+      b1--;
+      suffix++;
+    }
+    if (a0 == a1) {
+      for (int j = b0; j < b1; j++) edits.delete(j);
+    } else if (b0 == b1) {
+      for (int i = a0; i < a1; i++) edits.insert(i);
+    } else {
+      // Since the first and last events are different there are at least two differences,
+      // so both halves are smaller
+      int[] snake = middleSnake(a0, a1, b0, b1);
+      diff(a0, snake[0], b0, snake[1], edits);
+      for (int k = 0; k < snake[2] - snake[0]; k++) {
+        edits.match(snake[0] + k, snake[1] + k);
+      }
+      diff(snake[2], a1, snake[3], b1, edits);
+    }
+    for (int k = 0; k < suffix; k++) {
+      edits.match(a1 + k, b1 + k);
+    }
+  }
+
+  /**
+   * Finds the middle snake of an optimal path by searching forward and backward at the same time.
+   *
+   * @return the start and end of the snake as <code>{x, y, u, v}</code>
+   */
+  private int[] middleSnake(int a0, int a1, int b0, int b1) {
+    int[] a = this.symbols1;
+    int[] b = this.symbols2;
+    int[] vf = this.forward;
+    int[] vb = this.backward;
+    int n = a1 - a0;
+    int m = b1 - b0;
+    int delta = n - m;
+    boolean odd = (delta & 1) != 0;
+    int offset = this.symbols1.length + this.symbols2.length + 1;
+    int max = (n + m + 1) / 2;
+    vf[offset + 1] = 0;
+    vb[offset + 1] = 0;
+    for (int d = 0; d <= max; d++) {
+      // Forward paths, x is the number of events of the first sequence consumed on diagonal k = x - y
+      for (int k = -d; k <= d; k += 2) {
+        int x = (k == -d || (k != d && vf[offset + k - 1] < vf[offset + k + 1])) ? vf[offset + k + 1] : vf[offset + k - 1] + 1;
+        int y = x - k;
+        int x0 = x;
+        int y0 = y;
+        while (x < n && y < m && a[a0 + x] == b[b0 + y]) {
+          x++;
+          y++;
+        }
+        vf[offset + k] = x;
+        if (odd && k >= delta - (d - 1) && k <= delta + (d - 1) && x + vb[offset + delta - k] >= n) {
+          return new int[]{a0 + x0, b0 + y0, a0 + x, b0 + y};
+        }
+      }
+      // Backward paths, x is the number of events consumed from the end on diagonal delta - k
+      for (int k = -d; k <= d; k += 2) {
+        int x = (k == -d || (k != d && vb[offset + k - 1] < vb[offset + k + 1])) ? vb[offset + k + 1] : vb[offset + k - 1] + 1;
+        int y = x - k;
+        int x0 = x;
+        int y0 = y;
+        while (x < n && y < m && a[a1 - 1 - x] == b[b1 - 1 - y]) {
+          x++;
+          y++;
+        }
+        vb[offset + k] = x;
+        if (!odd && k >= delta - d && k <= delta + d && x + vf[offset + delta - k] >= n) {
+          return new int[]{a1 - x, b1 - y, a1 - x0, b1 - y0};
+        }
+      }
+    }
+    throw new IllegalStateException("No middle snake found");
+  }
+
+  /**
+   * Returns the chunks which appear once in each sequence and in the same order.
+   *
+   * @return the index of the matching chunks in each sequence.
+   */
+  private List<int[]> anchors() {
+    int count1 = this.chunks1.length - 1;
+    int count2 = this.chunks2.length - 1;
+    if (count1 < 2 && count2 < 2) return new ArrayList<>();
+    // Chunks appearing once in each sequence
+    Map<Chunk, int[]> unique = new HashMap<>();
+    for (int c = 0; c < count1; c++) {
+      if (this.chunks1[c] == this.chunks1[c + 1]) continue;
+      Chunk chunk = new Chunk(this.symbols1, this.chunks1[c], this.chunks1[c + 1]);
+      int[] found = unique.get(chunk);
+      if (found == null) unique.put(chunk, new int[]{c, -1, 1});
+      else found[2]++;
+    }
+    int[] matches = new int[count2];
+    Arrays.fill(matches, -1);
+    for (int c = 0; c < count2; c++) {
+      if (this.chunks2[c] == this.chunks2[c + 1]) continue;
+      int[] found = unique.get(new Chunk(this.symbols2, this.chunks2[c], this.chunks2[c + 1]));
+      if (found == null || found[2] != 1) continue;
+      if (found[1] == -1) {
+        found[1] = c;
+        matches[c] = found[0];
+      } else {
+        // Not unique in the second sequence
+        matches[found[1]] = -1;
+        found[2] = 2;
+      }
+    }
+    // Longest increasing subsequence of the matches (patience sorting)
+    int[] tails = new int[count2];
+    int[] previous = new int[count2];
+    int length = 0;
+    for (int c = 0; c < count2; c++) {
+      if (matches[c] < 0) continue;
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (matches[tails[mid]] < matches[c]) low = mid + 1;
+        else high = mid;
+      }
+      previous[c] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = c;
+      if (low == length) length++;
+    }
+    int[][] anchors = new int[length][];
+    for (int k = length - 1, c = length > 0 ? tails[length - 1] : -1; k >= 0; k--, c = previous[c]) {
+      anchors[k] = new int[]{matches[c], c};
+    }
+    return Arrays.asList(anchors);
+  }
+
+  /**
+   * Returns the symbols for the events, the same symbol is used for events which are equal.
+   */
+  private static int[] toSymbols(EventSequence sequence, Map<Symbol, Integer> symbols) {
+    int[] s = new int[sequence.size()];
+    for (int i = 0; i < s.length; i++) {
+      Symbol key = new Symbol(sequence.getEvent(i));
+      Integer symbol = symbols.get(key);
+      if (symbol == null) {
+        symbol = symbols.size();
+        symbols.put(key, symbol);
+      }
+      s[i] = symbol;
+    }
+    return s;
+  }
+
+  private static EventSequence concat(List<EventSequence> chunks) {
+    int size = 0;
+    for (EventSequence chunk : chunks) size += chunk.size();
+    EventSequence sequence = new EventSequence(size);
+    for (EventSequence chunk : chunks) {
+      for (int i = 0; i < chunk.size(); i++) {
+        sequence.addEvent(chunk.getEvent(i));
+      }
+    }
+    return sequence;
+  }
+
+  private static int[] offsets(List<EventSequence> chunks) {
+    int[] offsets = new int[chunks.size() + 1];
+    for (int c = 0; c < chunks.size(); c++) {
+      offsets[c + 1] = offsets[c] + chunks.get(c).size();
+    }
+    return offsets;
+  }
+
+  /**
+   * Receives the edit script.
+   */
+  private interface Edits {
+
+    void match(int i, int j) throws IOException;
+
+    void insert(int i) throws IOException;
+
+    void delete(int j) throws IOException;
+  }
+
+  /**
+   * An event which can be used as a key.
+   *
+   * <p>Events are only guaranteed to implement <code>equals</code>, so the hash code is computed from their XML
+   * which is the same for events which are equal.
+   */
+  private static final class Symbol {
+
+    private final DiffXEvent _event;
+
+    private final int _hash;
+
+    Symbol(DiffXEvent event) {
+      this._event = event;
+      this._hash = event.toXML().hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return this._hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Symbol)) return false;
+      Symbol s = (Symbol) o;
+      return this._hash == s._hash && this._event.equals(s._event);
+    }
+  }
+
+  /**
+   * A range of symbols which can be used as a key.
+   */
+  private static final class Chunk {
+
+    private final int[] _symbols;
+
+    private final int _from;
+
+    private final int _to;
+
+    private final int _hash;
+
+    Chunk(int[] symbols, int from, int to) {
+      this._symbols = symbols;
+      this._from = from;
+      this._to = to;
+      int hash = 1;
+      for (int i = from; i < to; i++) hash = 31 * hash + symbols[i];
+      this._hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return this._hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Chunk)) return false;
+      Chunk c = (Chunk) o;
+      return this._hash == c._hash && Arrays.equals(this._symbols, this._from, this._to, c._symbols, c._from, c._to);
+    }
+  }
+}
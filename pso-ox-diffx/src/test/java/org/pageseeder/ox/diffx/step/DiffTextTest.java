@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.diffx.step;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.ox.api.Result;
+import org.pageseeder.ox.core.ResultStatus;
+import org.pageseeder.ox.step.StepSimulator;
+import org.pageseeder.ox.tool.InvalidResult;
+import org.pageseeder.xmlwriter.XML;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class DiffTextTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File input;
+
+  private StepSimulator simulator;
+
+  @Before
+  public void init() throws IOException {
+    this.input = this.folder.newFolder("diff");
+  }
+
+  @Test
+  public void testUnknownAlgorithm() throws IOException {
+    write("source.psml", psml("<para>Hello world</para>"));
+    Result result = process("source.psml", "source.psml", "fastest");
+    Assert.assertTrue(result instanceof InvalidResult);
+    Assert.assertEquals(ResultStatus.ERROR, result.status());
+  }
+
+  @Test
+  public void testAutoAboveMaxWords() throws IOException {
+    // 25,000 words with a difference in the last paragraph, after the first 24,000 words
+    StringBuilder source = new StringBuilder();
+    StringBuilder target = new StringBuilder();
+    for (int p = 0; p < 250; p++) {
+      StringBuilder para = new StringBuilder("<para>");
+      for (int w = 0; w < 100; w++) para.append(" w").append(p).append('_').append(w);
+      para.append("</para>");
+      source.append(para);
+      target.append(p < 249 ? para : "<para>changed</para>");
+    }
+    write("source.psml", psml(source.toString()));
+    write("target.psml", psml(target.toString()));
+
+    // The basic algorithm would only compare the first 24,000 words, auto uses the anchored algorithm
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put("include-text", "false");
+    for (String algorithm : new String[]{"auto", null, "anchored"}) {
+      Result result = process("source.psml", "target.psml", algorithm, new HashMap<>(parameters));
+      Assert.assertEquals(algorithm, ResultStatus.ERROR, result.status());
+      Assert.assertTrue(algorithm, toXML(result).contains("changed"));
+    }
+  }
+
+  @Test
+  public void testAutoBelowMaxWords() throws IOException {
+    write("source.psml", psml("<para>the quick brown fox</para><para>jumps over the lazy dog</para>"));
+    write("target.psml", psml("<para>the quick brown fox</para><para>jumps over the lazy dog</para>"));
+    Assert.assertEquals(ResultStatus.OK, process("source.psml", "target.psml", "auto").status());
+    write("target.psml", psml("<para>the slow brown fox</para><para>jumps over the lazy dog</para>"));
+    for (String algorithm : new String[]{"auto", "basic", "linear", "anchored"}) {
+      Assert.assertEquals(algorithm, ResultStatus.ERROR, process("source.psml", "target.psml", algorithm).status());
+    }
+  }
+
+  @Test
+  public void testHTMLSourceAndPSMLTarget() throws IOException {
+    write("source.html", "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+        + "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">\n"
+        + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Title</title></head>"
+        + "<body><h1>Heading</h1><p>the quick brown fox</p><p>jumps over the lazy dog</p></body></html>");
+    write("target.psml", psml("<heading level=\"1\">Heading</heading><para>the quick brown fox</para>"
+        + "<para>jumps over the lazy dog</para>"));
+    Result result = process("source.html", "target.psml", null);
+    Assert.assertEquals(ResultStatus.OK, result.status());
+    String xml = toXML(result);
+    Assert.assertFalse(xml, xml.contains("xml version"));
+    Assert.assertFalse(xml, xml.contains("Title"));
+    Assert.assertTrue(xml, xml.contains("jumps over the lazy dog"));
+
+    write("target.psml", psml("<heading level=\"1\">Heading</heading><para>the quick brown fox</para>"
+        + "<para>jumps over the sleepy dog</para>"));
+    result = process("source.html", "target.psml", null);
+    Assert.assertEquals(ResultStatus.ERROR, result.status());
+    Assert.assertTrue(toXML(result).contains("sleepy"));
+  }
+
+  @Test
+  public void testDOCXSourceAndPSMLTarget() throws IOException {
+    write("source-simplified/word/document.xml", "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+        + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>"
+        + "<w:p><w:r><w:t>the quick </w:t></w:r><w:r><w:t>brown fox</w:t></w:r></w:p>"
+        + "<w:p><w:r><w:t>jumps over the lazy dog</w:t></w:r></w:p></w:body></w:document>");
+    write("target.psml", psml("<para>the quick brown fox</para><para>jumps over the lazy dog</para>"));
+    Result result = process("source-simplified", "target.psml", null);
+    Assert.assertEquals(toXML(result), ResultStatus.OK, result.status());
+
+    write("target.psml", psml("<para>the quick brown fox</para><para>jumps over the sleepy dog</para>"));
+    result = process("source-simplified", "target.psml", null);
+    Assert.assertEquals(ResultStatus.ERROR, result.status());
+    Assert.assertTrue(toXML(result).contains("sleepy"));
+  }
+
+  @Test
+  public void testIncludeText() throws IOException {
+    write("source.psml", psml("<para>the quick brown fox</para>"));
+    write("target.psml", psml("<para>the slow brown fox</para>"));
+    String xml = toXML(process("source.psml", "target.psml", null));
+    Assert.assertTrue(xml, xml.contains("<source path=\"diff/source.psml\"><![CDATA["));
+    Assert.assertTrue(xml, xml.contains("<target path=\"diff/target.psml\"><![CDATA["));
+
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put("include-text", "false");
+    xml = toXML(process("source.psml", "target.psml", null, parameters));
+    Assert.assertFalse(xml, xml.contains("CDATA"));
+    Assert.assertTrue(xml, xml.contains("<source path=\"diff/source.psml\"/>"));
+    Assert.assertTrue(xml, xml.contains("<target path=\"diff/target.psml\"/>"));
+    Assert.assertTrue(xml, xml.contains("slow"));
+  }
+
+  @Test
+  public void testTemporaryFileDeleted() throws IOException {
+    write("source.html", "<html><body><p>the quick brown fox</p></body></html>");
+    write("target.html", "<html><body><p>the slow brown fox</p></body></html>");
+    Assert.assertEquals(ResultStatus.ERROR, process("source.html", "target.html", null).status());
+    File[] xhtml = this.simulator.getData().directory().listFiles((dir, name) -> name.endsWith(".xhtml"));
+    Assert.assertNotNull(xhtml);
+    Assert.assertEquals(0, xhtml.length);
+  }
+
+  private Result process(String source, String target, String algorithm) {
+    return process(source, target, algorithm, new HashMap<>());
+  }
+
+  private Result process(String source, String target, String algorithm, Map<String, String> parameters) {
+    this.simulator = new StepSimulator("test", this.input, new HashMap<>());
+    parameters.put("source", "diff/" + source);
+    parameters.put("target", "diff/" + target);
+    if (algorithm != null) parameters.put("algorithm", algorithm);
+    return this.simulator.process(new DiffText(), null, null, "diff-text", parameters);
+  }
+
+  private static String toXML(Result result) throws IOException {
+    XMLStringWriter xml = new XMLStringWriter(XML.NamespaceAware.No);
+    result.toXML(xml);
+    return xml.toString();
+  }
+
+  private void write(String name, String content) throws IOException {
+    File file = new File(this.input, name);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String psml(String content) {
+    return "<document level=\"portable\"><section id=\"content\"><fragment id=\"1\">" + content
+        + "</fragment></section></document>";
+  }
+}
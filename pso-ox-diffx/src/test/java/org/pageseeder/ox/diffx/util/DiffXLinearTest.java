@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.diffx.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.diffx.config.WhiteSpaceProcessing;
+import org.pageseeder.diffx.event.TextEvent;
+import org.pageseeder.diffx.load.text.TextTokenizer;
+import org.pageseeder.diffx.load.text.TokenizerByWord;
+import org.pageseeder.diffx.sequence.EventSequence;
+import org.pageseeder.ox.diffx.step.DiffText;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class DiffXLinearTest {
+
+  private static final TextTokenizer TOKENIZER = new TokenizerByWord(WhiteSpaceProcessing.IGNORE);
+
+  @Test
+  public void testSame() throws IOException {
+    DiffXLinear diff = new DiffXLinear(toSequence("the quick brown fox"), toSequence("the quick brown fox"));
+    Assert.assertEquals(4, diff.length());
+    Assert.assertEquals("the quick brown fox ", process(diff));
+  }
+
+  @Test
+  public void testDifferent() throws IOException {
+    DiffXLinear diff = new DiffXLinear(toSequence("the quick brown fox"), toSequence("the slow brown dog"));
+    Assert.assertEquals(2, diff.length());
+    String output = process(diff);
+    Assert.assertTrue(output, output.contains("<ins>quick </ins>"));
+    Assert.assertTrue(output, output.contains("<del>slow </del>"));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    DiffXLinear diff = new DiffXLinear(toSequence(""), toSequence("a b"));
+    Assert.assertEquals(0, diff.length());
+    Assert.assertEquals("<del>a b </del>", process(diff));
+  }
+
+  @Test
+  public void testLongerThanBasic() throws IOException {
+    StringBuilder source = new StringBuilder();
+    StringBuilder target = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      source.append("word").append(i % 1000).append(' ');
+      target.append(i == 40000 ? "changed" : "word" + (i % 1000)).append(' ');
+    }
+    DiffXLinear diff = new DiffXLinear(toSequence(source.toString()), toSequence(target.toString()));
+    Assert.assertEquals(49999, diff.length());
+  }
+
+  @Test
+  public void testAnchored() throws IOException {
+    List<EventSequence> source = new ArrayList<>();
+    List<EventSequence> target = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      source.add(toSequence("paragraph " + i + " with some text"));
+      if (i != 500) target.add(toSequence("paragraph " + i + " with some text"));
+    }
+    target.add(100, toSequence("a new paragraph"));
+    DiffXLinear diff = new DiffXLinear(source, target);
+    // The paragraphs which have not changed are matched first
+    Assert.assertEquals(999 * 5, diff.length());
+    String output = process(diff);
+    Assert.assertTrue(output, output.contains("text <del>a new paragraph </del>paragraph 100 "));
+    Assert.assertTrue(output, output.contains("text <ins>paragraph 500 with some text </ins>paragraph 501 "));
+  }
+
+  private static EventSequence toSequence(String text) {
+    List<TextEvent> events = TOKENIZER.tokenize(text);
+    EventSequence sequence = new EventSequence(events.size());
+    for (TextEvent event : events) {
+      sequence.addEvent(event);
+    }
+    return sequence;
+  }
+
+  private static String process(DiffXLinear diff) throws IOException {
+    StringWriter out = new StringWriter();
+    DiffText.TextDiffxFormatter formatter = new DiffText.TextDiffxFormatter(out);
+    diff.process(formatter);
+    formatter.checkClose();
+    return out.toString();
+  }
+}
@@ -28,11 +28,18 @@ import org.pageseeder.ox.psml.validation.ValidationResult;
 import org.pageseeder.ox.psml.validation.ValidationStepResult;
 import org.pageseeder.ox.tool.InvalidResult;
 import org.pageseeder.ox.util.FileUtils;
+import org.pageseeder.ox.util.StepUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -42,8 +49,13 @@ import java.util.List;
  *   <li><var>extension</var>The extension of the files to validate, only used if input is a folder.</li>
  *   <li><var>type</var>The type of validation, one of "characters", "well-formed", "schema", "schematron".</li>
  *   <li><var>output</var>The validation report as CSV or HTML.</li>
+ *   <li><var>parallel</var>The number of files validated at the same time, "true" to use one thread per
+ *   processor (default: 1).</li>
  * </ul>
  *
+ * <p>When the files are validated in parallel, each thread reuses its own validator (and parsed schema) and
+ * the results are always reported in the order of the files.
+ *
  *
  * @author Jean-Baptiste Reure
  * @version 8 March 2018
@@ -53,7 +65,8 @@ public class Validate implements Step, Measurable {
   /** The logger. */
   private static Logger LOGGER = LoggerFactory.getLogger(Validate.class);
 
-  private int progress = 0;
+  /** The percentage of files validated, it only increases while the files are validated. */
+  private final AtomicInteger progress = new AtomicInteger();
 
   private enum VALIDATION_TYPE {
     CHARACTERS, WELL_FORMED, SCHEMA, SCHEMATRON;
@@ -99,13 +112,26 @@ public class Validate implements Step, Measurable {
     ValidationStepResult results = new ValidationStepResult(model, data, output);
 
     // validate all docs
-    int done = 0;
+    this.progress.set(0);
     List<File> files = FileUtils.findFiles(file, extension);
-    for (File f : files) {
-      ValidationResult result = validate(f, vtype);
+    int threads = Math.min(StepUtils.getParallelThreads(data, info), files.size());
+    List<ValidationResult> validated;
+    try {
+      validated = threads > 1 ? validateParallel(files, vtype, threads) : validateSequence(files, vtype);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return new InvalidResult(model, data).error(ex);
+    } catch (ExecutionException ex) {
+      LOGGER.error("Unable to validate the files: {}", ex.getMessage(), ex);
+      return new InvalidResult(model, data).error(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+    }
+
+    // merge the results in the order of the files
+    for (int i = 0; i < files.size(); i++) {
+      File f = files.get(i);
+      ValidationResult result = validated.get(i);
       results.addResults(f.equals(file) ? f.getName() : FileUtils.relativePath(f, file), result);
       if (vtype == VALIDATION_TYPE.CHARACTERS && result.hasErrors()) results.setStatus(ResultStatus.WARNING);
-      this.progress = (++done) * 100 / files.size();
     }
 
     // create reports and return
@@ -115,17 +141,60 @@ public class Validate implements Step, Measurable {
 
   @Override
   public int percentage() {
-    return this.progress;
+    return this.progress.get();
+  }
+
+  /**
+   * Validates the files one after the other.
+   */
+  private List<ValidationResult> validateSequence(List<File> files, VALIDATION_TYPE vtype) {
+    PSMLValidator validator = new PSMLValidator();
+    List<ValidationResult> results = new ArrayList<>(files.size());
+    for (File f : files) {
+      results.add(validate(validator, f, vtype));
+      this.progress.set(results.size() * 100 / files.size());
+    }
+    return results;
+  }
+
+  /**
+   * Validates the files in parallel, each thread uses its own validator.
+   *
+   * @return the results in the same order as the files
+   */
+  private List<ValidationResult> validateParallel(final List<File> files, final VALIDATION_TYPE vtype, int threads)
+      throws InterruptedException, ExecutionException {
+    final ThreadLocal<PSMLValidator> validators = ThreadLocal.withInitial(PSMLValidator::new);
+    final AtomicInteger done = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ValidationResult>> futures = new ArrayList<>(files.size());
+      for (final File f : files) {
+        futures.add(executor.submit(() -> {
+          ValidationResult result = validate(validators.get(), f, vtype);
+          int percentage = done.incrementAndGet() * 100 / files.size();
+          this.progress.accumulateAndGet(percentage, Math::max);
+          return result;
+        }));
+      }
+      List<ValidationResult> results = new ArrayList<>(files.size());
+      for (Future<ValidationResult> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
-  private ValidationResult validate(File file, VALIDATION_TYPE vtype) {
+  private ValidationResult validate(PSMLValidator validator, File file, VALIDATION_TYPE vtype) {
     switch (vtype) {
       case WELL_FORMED:
-        return new PSMLValidator().validateWellFormed(file);
+        return validator.validateWellFormed(file);
       case SCHEMATRON:
-        return new PSMLValidator().validateWithSchematron(file);
+        return validator.validateWithSchematron(file);
       case SCHEMA:
-        return new PSMLValidator().validateWithSchema(file);
+        return validator.validateWithSchema(file);
       case CHARACTERS:
         return new CharactersValidator().validateCharacters(file);
     }
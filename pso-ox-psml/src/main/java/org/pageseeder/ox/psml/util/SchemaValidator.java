@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.psml.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Validates XML documents with a schema, reusing the same XML reader and the parsed schema for each document.
+ *
+ * <p>The schema grammars are kept in a Xerces grammar pool, so the schema is only read and parsed for the first
+ * document. If the grammar pool of the parser cannot be found, the schema is parsed for each document as
+ * {@link Validators#validateXmlFileWithSchemaReturnErrors(InputStream, String, String)} does.
+ *
+ * <p>This class is not thread-safe, each thread should use its own instance.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class SchemaValidator {
+
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchemaValidator.class);
+
+  /** The Xerces property to set the grammar pool. */
+  private static final String GRAMMAR_POOL_PROPERTY = "http://apache.org/xml/properties/internal/grammar-pool";
+
+  /** The grammar pool implementation of the Topologi Xerces parser (repackaged Xerces). */
+  private static final String GRAMMAR_POOL_CLASS = "com.topologi.xerces.util.XMLGrammarPoolImpl";
+
+  /** The XML reader reused for each document. */
+  private final XMLReader _reader;
+
+  /** Whether the schema grammars are pooled. */
+  private final boolean _pooled;
+
+  /**
+   * Creates a new validator.
+   *
+   * @param schemaPath The path to the XSD file.
+   * @param namespace  Namespace used for the external schema location property.
+   *
+   * @throws IOException  If the path of the schema is invalid
+   * @throws SAXException If the XML reader could not be created
+   */
+  public SchemaValidator(String schemaPath, String namespace) throws SAXException, IOException {
+    this._reader = Validators.newSchemaReader(schemaPath, namespace);
+    this._pooled = setGrammarPool(this._reader);
+  }
+
+  /**
+   * Validates the specified document.
+   *
+   * @param in A stream on the XML content to validate
+   *
+   * @return the list of errors.
+   *
+   * @throws IOException  Should any IO error occur
+   * @throws SAXException Should any parsing error occur
+   */
+  public List<String> validate(InputStream in) throws SAXException, IOException {
+    if (in == null) throw new NullPointerException("Cannot validate a null file");
+    ValidationErrorHandler eh = new ValidationErrorHandler();
+    this._reader.setErrorHandler(eh);
+    this._reader.parse(new InputSource(in));
+    return eh.getErrorList();
+  }
+
+  /**
+   * @return <code>true</code> if the parsed schema is reused for each document.
+   */
+  public boolean isPooled() {
+    return this._pooled;
+  }
+
+  /**
+   * Sets a new grammar pool on the specified reader.
+   *
+   * <p>The pool is created by reflection because the parser is only available at runtime.
+   */
+  private static boolean setGrammarPool(XMLReader reader) {
+    try {
+      Object pool = Class.forName(GRAMMAR_POOL_CLASS).getDeclaredConstructor().newInstance();
+      reader.setProperty(GRAMMAR_POOL_PROPERTY, pool);
+      return true;
+    } catch (ReflectiveOperationException | SAXException | LinkageError ex) {
+      LOGGER.debug("Unable to use a grammar pool, the schema is parsed for each document: {}", ex.getMessage());
+      return false;
+    }
+  }
+}
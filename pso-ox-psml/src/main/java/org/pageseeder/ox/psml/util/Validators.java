@@ -15,10 +15,13 @@
  */
 package org.pageseeder.ox.psml.util;
 
+import org.pageseeder.ox.util.BoundedCache;
 import org.pageseeder.schematron.SchematronException;
 import org.pageseeder.schematron.SchematronResult;
 import org.pageseeder.schematron.Validator;
 import org.pageseeder.schematron.ValidatorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -30,7 +33,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * General XML Utilities.
@@ -42,14 +48,20 @@ import java.util.List;
  */
 public final class Validators {
 
+  /** Logger for this class */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Validators.class);
+
   // Messages customized by Rick are in 'XMLSchemaMessages.properties'
   // See on how to customize this for xerces http://xerces.apache.org/xerces2-j/properties.html
   private static final String TOPOLOGI_PARSER = "com.topologi.xerces.parsers.SAXParser";
 
   /**
-   * Schematron validator factory object
+   * The compiled schematron validators by URL, a schematron is compiled only once when several threads
+   * request it and is recompiled when its file is modified.
+   *
+   * <p>The cache is shared with the schematron steps so that a schematron used by both is only compiled once.
    */
-  private static final ValidatorFactory SCHEMATRON_FACTORY = new ValidatorFactory();
+  private static final BoundedCache<Validator> SCHEMATRON_CACHE = BoundedCache.shared(BoundedCache.SCHEMATRON);
 
   /**
    * No constructor for utility classes.
@@ -189,12 +201,29 @@ public final class Validators {
   private static ValidationErrorHandler validateWithSchema(InputSource in, String schemaPath, String namespace) throws SAXException,
       IOException {
     if (in == null) throw new NullPointerException("Cannot validate a null file");
+    XMLReader reader = newSchemaReader(schemaPath, namespace);
+    ValidationErrorHandler eh = new ValidationErrorHandler();
+    reader.setErrorHandler(eh);
+    reader.parse(in);
+    return eh;
+  }
+
+  /**
+   * Creates a new XML reader validating with the specified schema.
+   *
+   * @param schemaPath The path to the XSD file.
+   * @param namespace  Namespace used for the external schema location property.
+   *
+   * @return the XML reader (without error handler)
+   *
+   * @throws IOException          If the path of the schema is invalid
+   * @throws SAXException         If the reader could not be created
+   */
+  static XMLReader newSchemaReader(String schemaPath, String namespace) throws SAXException, IOException {
     XMLReader reader = XMLReaderFactory.createXMLReader(TOPOLOGI_PARSER);
     reader.setFeature("http://xml.org/sax/features/validation", true);
     reader.setFeature("http://apache.org/xml/features/validation/schema", true);
     reader.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
-    ValidationErrorHandler eh = new ValidationErrorHandler();
-    reader.setErrorHandler(eh);
     String path = new File(schemaPath).exists() ?
                   new File(schemaPath).toURI().toURL().toString().replaceAll(" ", "%20") : schemaPath;
     if (namespace == null) {
@@ -203,8 +232,7 @@ public final class Validators {
       reader.setProperty("http://apache.org/xml/properties/schema/external-schemaLocation", namespace+" "+path);
     }
     reader.setEntityResolver(new ValidationEntityResolver());
-    reader.parse(in);
-    return eh;
+    return reader;
   }
 
   /**
@@ -220,8 +248,7 @@ public final class Validators {
   public static String validateXmlFileWithSchematron(String in, Source schematronSource) throws SchematronException {
     if (in == null) throw new NullPointerException("Cannot validate a null file");
     if (schematronSource == null) return null;
-    // use default preprocessor: iso_svrl.xsl (included in ant_schematron.jar)
-    Validator validator = SCHEMATRON_FACTORY.newValidator(schematronSource);
+    Validator validator = getSchematronValidator(schematronSource);
     SchematronResult result = validator.validate(new StreamSource(new StringReader(in)));
     if (!result.isValid()) {
       List<String> errors = result.getFailedAssertions();
@@ -233,4 +260,117 @@ public final class Validators {
     }
     return null;
   }
+
+  /**
+   * Returns the compiled schematron validator for the specified URL.
+   *
+   * @param url The URL of the schematron
+   *
+   * @return the validator
+   *
+   * @throws SchematronException if the schematron could not be read or compiled.
+   */
+  public static Validator getSchematronValidator(final URL url) throws SchematronException {
+    if (url == null) throw new NullPointerException("Cannot load a null schematron");
+    try {
+      return SCHEMATRON_CACHE.get(url.toString(), lastModified(url), () -> {
+        try (InputStream in = url.openStream()) {
+          return compile(new StreamSource(in, url.toString()));
+        }
+      });
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof SchematronException) throw (SchematronException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new SchematronException("Unable to read schematron " + url, cause);
+    }
+  }
+
+  /**
+   * Returns the compiled schematron validator for the specified source.
+   *
+   * <p>The validator is cached when the schematron is read from the system ID of the source, that is a stream
+   * source without a stream or reader. Otherwise the content may be different for the same system ID, so it is
+   * compiled each time.
+   *
+   * @param source The schematron source
+   *
+   * @return the validator
+   *
+   * @throws SchematronException if the schematron could not be read or compiled.
+   */
+  public static Validator getSchematronValidator(final Source source) throws SchematronException {
+    String systemId = source.getSystemId();
+    if (systemId == null || !isReadFromSystemId(source)) return compile(source);
+    try {
+      return SCHEMATRON_CACHE.get(systemId, lastModified(new URL(systemId)), () -> compile(source));
+    } catch (IOException ex) {
+      // Not a URL
+      return compile(source);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof SchematronException) throw (SchematronException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new SchematronException(cause);
+    }
+  }
+
+  /**
+   * Compiles the specified schematrons so that the first validations do not have to wait for them.
+   *
+   * @param urls The URLs of the schematrons
+   *
+   * @return the number of schematrons compiled
+   */
+  public static int warmUpSchematron(URL... urls) {
+    int compiled = 0;
+    for (URL url : urls) {
+      try {
+        if (url != null) {
+          getSchematronValidator(url);
+          compiled++;
+        }
+      } catch (SchematronException ex) {
+        LOGGER.warn("Unable to compile schematron {}: {}", url, ex.getMessage());
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * Sets the maximum number of compiled schematron validators kept in the cache.
+   *
+   * <p>The cache is shared with the schematron steps, so this also bounds their validators.
+   *
+   * @param maxEntries the maximum number of validators
+   */
+  public static void setSchematronCacheSize(int maxEntries) {
+    SCHEMATRON_CACHE.setMaxEntries(maxEntries);
+  }
+
+  /**
+   * @return <code>true</code> if the content of the source is read from its system ID
+   */
+  private static boolean isReadFromSystemId(Source source) {
+    if (!(source instanceof StreamSource)) return false;
+    StreamSource stream = (StreamSource) source;
+    return stream.getInputStream() == null && stream.getReader() == null;
+  }
+
+  private static Validator compile(Source source) throws SchematronException {
+    // use default preprocessor: iso_svrl.xsl (included in ant_schematron.jar)
+    return new ValidatorFactory().newValidator(source);
+  }
+
+  /**
+   * @return the last modified date of the file or 0 if the URL is not a file
+   */
+  private static long lastModified(URL url) {
+    if (!"file".equals(url.getProtocol())) return 0;
+    try {
+      return new File(url.toURI()).lastModified();
+    } catch (URISyntaxException | IllegalArgumentException ex) {
+      return 0;
+    }
+  }
 }
@@ -18,17 +18,89 @@ package org.pageseeder.ox.psml.validation;
 import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Reports the characters which are not in the Basic Latin block (ASCII).
+ *
+ * <p>The file is decoded as UTF-8 by a single decoder so that characters split between two buffers are
+ * decoded correctly, and the characters found are counted by code point without boxing. Large files are
+ * memory-mapped rather than read into a buffer.
+ *
+ * <p>Only the first errors are reported (see {@link #DEFAULT_MAX_ERRORS}), the number of other suspicious
+ * characters is reported in a last error.
+ */
 public class CharactersValidator {
 
+  /** The default maximum number of errors reported for a file. */
+  public static final int DEFAULT_MAX_ERRORS = 1000;
+
+  /** Files of this size or larger are memory-mapped. */
+  public static final long DEFAULT_MAPPED_THRESHOLD = 16L * 1024 * 1024;
+
+  /** The size of the buffers used to read the files. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The maximum size of a mapped region. */
+  private static final long MAX_MAPPED_REGION = 1L << 30;
+
+  /** The smallest mapped region, large enough for any UTF-8 character. */
+  private static final long MIN_MAPPED_REGION = 4;
+
+  /** The maximum number of errors reported. */
+  private final int _maxErrors;
+
+  /** Files of this size or larger are memory-mapped. */
+  private final long _mappedThreshold;
+
+  /** The maximum size of a mapped region. */
+  private final long _maxMappedRegion;
+
+  /**
+   * Creates a validator reporting at most {@value #DEFAULT_MAX_ERRORS} errors per file.
+   */
+  public CharactersValidator() {
+    this(DEFAULT_MAX_ERRORS, DEFAULT_MAPPED_THRESHOLD);
+  }
+
+  /**
+   * Creates a validator.
+   *
+   * @param maxErrors       the maximum number of errors reported per file
+   * @param mappedThreshold files of this size or larger are memory-mapped
+   */
+  public CharactersValidator(int maxErrors, long mappedThreshold) {
+    this(maxErrors, mappedThreshold, MAX_MAPPED_REGION);
+  }
+
+  /**
+   * Creates a validator mapping large files in smaller regions, so that tests can split characters between regions.
+   *
+   * @param maxErrors       the maximum number of errors reported per file
+   * @param mappedThreshold files of this size or larger are memory-mapped
+   * @param maxMappedRegion the maximum size of a mapped region (at least 4 bytes)
+   */
+  CharactersValidator(int maxErrors, long mappedThreshold, long maxMappedRegion) {
+    if (maxMappedRegion < MIN_MAPPED_REGION)
+      throw new IllegalArgumentException("Mapped regions must be at least " + MIN_MAPPED_REGION + " bytes");
+    this._maxErrors = maxErrors;
+    this._mappedThreshold = mappedThreshold;
+    this._maxMappedRegion = maxMappedRegion;
+  }
+
   /**
    * Validate well formed XML
    *
@@ -38,52 +110,209 @@ public class CharactersValidator {
    */
   public ValidationResult validateCharacters(File original) {
     String error;
-    try (InputStream reader = new FileInputStream(original)) {
-      CharactersData data = new CharactersData();
-      List<String> errors = new ArrayList<>();
-      int linenb = 1;
-      int colnb = 1;
-      byte[] buffer = new byte[1024 * 4];
-      int read;
-      while ((read = reader.read(buffer)) != -1) {
-        String s = new String(buffer, 0, read, StandardCharsets.UTF_8);
-        for (int i = 0; i < s.length(); i++) {
-          char c = s.charAt(i);
-          if (c == '\n') {
-            linenb++;
-            colnb = 0;
-          } else if (invalidChar(c)) {
-            data.addChar(c);
-            errors.add("Suspicious character '"+c+"' found at line "+linenb+", character "+colnb+". It can be replaced by entity &#x"+Integer.toHexString(c)+";");
-          }
-          colnb++;
-        }
+    try (FileChannel channel = FileChannel.open(original.toPath(), StandardOpenOption.READ)) {
+      Scanner scanner = new Scanner(this._maxErrors);
+      long size = channel.size();
+      if (size >= this._mappedThreshold) {
+        scanMapped(channel, size, scanner);
+      } else {
+        scanStream(channel, scanner);
       }
-      return new ValidationResult("characters", true, null, errors, data);
+      return new ValidationResult("characters", true, null, scanner.errors(), scanner._data);
     } catch (IOException ex) {
       error = "Error when inspecting file: " + ex.getMessage();
     }
     return new ValidationResult("characters", true, null, error);
   }
 
-  private boolean invalidChar(char c) {
-    return Character.UnicodeBlock.of(c) != Character.UnicodeBlock.BASIC_LATIN;
+  /**
+   * Reads the file into a buffer, the bytes of a character split between two reads are kept for the next one.
+   */
+  private static void scanStream(FileChannel channel, Scanner scanner) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    while (channel.read(buffer) != -1) {
+      buffer.flip();
+      scanner.decode(buffer, false);
+      buffer.compact();
+    }
+    buffer.flip();
+    scanner.decode(buffer, true);
+  }
+
+  /**
+   * Maps the file by regions, a region starts with the bytes the previous region could not decode.
+   */
+  private void scanMapped(FileChannel channel, long size, Scanner scanner) throws IOException {
+    long position = 0;
+    boolean end = false;
+    while (!end) {
+      long length = Math.min(this._maxMappedRegion, size - position);
+      end = position + length >= size;
+      MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      scanner.decode(region, end);
+      position += region.position();
+    }
+  }
+
+  /**
+   * Decodes the bytes and records the characters outside the Basic Latin block.
+   */
+  private static final class Scanner {
+
+    private final CharsetDecoder _decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final CharBuffer _chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    private final CharactersData _data = new CharactersData();
+
+    private final List<String> _errors = new ArrayList<>();
+
+    private final int _maxErrors;
+
+    /** Number of errors not reported. */
+    private long omitted = 0;
+
+    private int line = 1;
+
+    private int column = 1;
+
+    /** A high surrogate waiting for the next char, 0 if none. */
+    private char high = 0;
+
+    Scanner(int maxErrors) {
+      this._maxErrors = maxErrors;
+    }
+
+    void decode(ByteBuffer in, boolean endOfInput) {
+      while (true) {
+        CoderResult result = this._decoder.decode(in, this._chars, endOfInput);
+        scan();
+        if (result.isUnderflow()) break;
+      }
+      if (endOfInput) {
+        while (this._decoder.flush(this._chars).isOverflow()) {
+          scan();
+        }
+        scan();
+        if (this.high != 0) {
+          codePoint(this.high);
+          this.high = 0;
+        }
+      }
+    }
+
+    private void scan() {
+      CharBuffer chars = this._chars;
+      chars.flip();
+      while (chars.hasRemaining()) {
+        char c = chars.get();
+        if (this.high != 0) {
+          char h = this.high;
+          this.high = 0;
+          if (Character.isLowSurrogate(c)) {
+            codePoint(Character.toCodePoint(h, c));
+            continue;
+          }
+          codePoint(h);
+        }
+        if (Character.isHighSurrogate(c)) {
+          this.high = c;
+        } else if (c < 0x80) {
+          // Fast path for ASCII
+          if (c == '\n') {
+            this.line++;
+            this.column = 1;
+          } else {
+            this.column++;
+          }
+        } else {
+          codePoint(c);
+        }
+      }
+      chars.clear();
+    }
+
+    private void codePoint(int cp) {
+      this._data.add(cp);
+      if (this._errors.size() < this._maxErrors) {
+        this._errors.add("Suspicious character '" + new String(Character.toChars(cp)) + "' found at line " + this.line
+            + ", character " + this.column + ". It can be replaced by entity &#x" + Integer.toHexString(cp) + ";");
+      } else {
+        this.omitted++;
+      }
+      this.column++;
+    }
+
+    List<String> errors() {
+      if (this.omitted > 0) {
+        this._errors.add(this.omitted + " more suspicious characters found.");
+        this.omitted = 0;
+      }
+      return this._errors;
+    }
   }
 
+  /**
+   * The number of occurrences of each character outside the Basic Latin block.
+   */
   public static class CharactersData implements ValidationResult.ExtraData {
-    private Map<Character, Integer> characters = new HashMap<>();
-    void addChar(char c) {
-      Integer v = this.characters.get(c);
-      if (v == null) this.characters.put(c, 1);
-      else this.characters.put(c, v.intValue() + 1);
+
+    /** The counts by code point in pages of 256 code points, created when first needed. */
+    private final int[][] pages = new int[(Character.MAX_CODE_POINT >>> 8) + 1][];
+
+    /** The number of different characters. */
+    private int distinct = 0;
+
+    void add(int cp) {
+      int[] page = this.pages[cp >>> 8];
+      if (page == null) {
+        page = new int[256];
+        this.pages[cp >>> 8] = page;
+      }
+      if (page[cp & 0xFF]++ == 0) this.distinct++;
+    }
+
+    /**
+     * @param cp the code point
+     * @return the number of occurrences of the character
+     */
+    public int count(int cp) {
+      int[] page = this.pages[cp >>> 8];
+      return page != null ? page[cp & 0xFF] : 0;
+    }
+
+    /**
+     * @return the code points found in ascending order
+     */
+    public int[] codePoints() {
+      int[] codePoints = new int[this.distinct];
+      int i = 0;
+      for (int p = 0; p < this.pages.length; p++) {
+        int[] page = this.pages[p];
+        if (page == null) continue;
+        for (int j = 0; j < 256; j++) {
+          if (page[j] > 0) codePoints[i++] = (p << 8) | j;
+        }
+      }
+      return codePoints;
     }
+
+    /**
+     * @return <code>true</code> if no character was found
+     */
+    public boolean isEmpty() {
+      return this.distinct == 0;
+    }
+
     @Override
     public void toXML(XMLWriter xml) throws IOException {
       xml.openElement("characters");
-      for (Character c : this.characters.keySet()) {
+      for (int cp : codePoints()) {
         xml.openElement("character");
-        xml.attribute("value", c);
-        xml.attribute("occurrence", this.characters.get(c));
+        xml.attribute("value", cp);
+        xml.attribute("occurrence", count(cp));
         xml.closeElement();
       }
       xml.closeElement();
@@ -91,18 +320,18 @@ public class CharactersValidator {
   }
 
   public static void charactersDataToPSML(CharactersData data, XMLWriter psml) throws IOException {
-    if (data == null || data.characters.isEmpty()) return;
+    if (data == null || data.isEmpty()) return;
     psml.openElement("section");
     psml.attribute("id", "extra");
     psml.openElement("fragment");
     psml.attribute("id", "extra");
     psml.openElement("table");
     psml.writeXML("<row part='header'><hcell>Character</hcell><hcell>Entity</hcell><hcell>Occurrences</hcell></row>");
-    for (Character c : data.characters.keySet()) {
+    for (int cp : data.codePoints()) {
       psml.openElement("row");
-      psml.element("hcell", c.toString());
-      psml.element("cell", "&#x"+Integer.toHexString(c)+";");
-      psml.element("cell", data.characters.get(c).toString());
+      psml.element("hcell", new String(Character.toChars(cp)));
+      psml.element("cell", "&#x"+Integer.toHexString(cp)+";");
+      psml.element("cell", Integer.toString(data.count(cp)));
       psml.closeElement();
     }
     psml.closeElement(); // table
@@ -112,19 +341,19 @@ public class CharactersValidator {
 
   public static void charactersDataToPSML(Map<String, ValidationResult.ExtraData> datas, XMLWriter psml) throws IOException {
     if (datas == null || datas.isEmpty()) return;
-    Map<Character, CharacterData> characters = new HashMap<>();
+    Map<Integer, CharacterData> characters = new TreeMap<>();
     for (String path : datas.keySet()) {
       ValidationResult.ExtraData data = datas.get(path);
       if (data instanceof CharactersData) {
-        boolean newdoc = true;
-        for (Character c : ((CharactersData) data).characters.keySet()) {
-          CharacterData cdata = characters.get(c);
-          if (cdata == null) characters.put(c, new CharacterData(path));
-          else {
-            if (newdoc) cdata.files.add(path);
-            cdata.occurrence++;
+        CharactersData cdatas = (CharactersData) data;
+        for (int cp : cdatas.codePoints()) {
+          CharacterData cdata = characters.get(cp);
+          if (cdata == null) {
+            cdata = new CharacterData();
+            characters.put(cp, cdata);
           }
-          newdoc = false;
+          cdata.files.add(path);
+          cdata.occurrence += cdatas.count(cp);
         }
       }
     }
@@ -136,12 +365,13 @@ public class CharactersValidator {
     psml.openElement("table");
     psml.writeXML("<col width='20%' /><col width='20%' /><col />");
     psml.writeXML("<row part='header'><hcell align='center'>Character</hcell><hcell align='center'>Entity</hcell><hcell>Occurrences</hcell></row>");
-    for (Character c : characters.keySet()) {
-      String id = String.valueOf(c.hashCode());
-      CharacterData cdata = characters.get(c);
+    for (Map.Entry<Integer, CharacterData> entry : characters.entrySet()) {
+      int cp = entry.getKey();
+      String id = String.valueOf(cp);
+      CharacterData cdata = entry.getValue();
       psml.openElement("row");
-      psml.element("hcell", c.toString());
-      psml.element("hcell", "&#x"+Integer.toHexString(c)+";");
+      psml.element("hcell", new String(Character.toChars(cp)));
+      psml.element("hcell", "&#x"+Integer.toHexString(cp)+";");
       psml.openElement("cell");
       psml.writeXML("<link role='toggle-c"+id+"'>"+cdata.occurrence+" in "+cdata.files.size()+" document"+(cdata.files.size()==1?"":"s")+"</link>");
       psml.openElement("list");
@@ -164,8 +394,7 @@ public class CharactersValidator {
   }
 
   private static class CharacterData {
-    int occurrence = 1;
+    long occurrence = 0;
     List<String> files = new ArrayList<>();
-    CharacterData(String p) { this.files.add(p); }
   }
 }
@@ -15,11 +15,11 @@
  */
 package org.pageseeder.ox.psml.validation;
 
+import org.pageseeder.ox.psml.util.SchemaValidator;
 import org.pageseeder.ox.psml.util.Validators;
 import org.pageseeder.schematron.SchematronException;
 import org.pageseeder.schematron.SchematronResult;
 import org.pageseeder.schematron.Validator;
-import org.pageseeder.schematron.ValidatorFactory;
 import org.xml.sax.SAXException;
 
 import javax.xml.transform.stream.StreamSource;
@@ -27,10 +27,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.URL;
 
 /**
+ * <p>An instance reuses the same schema validator for all the files it validates, so it should be used for
+ * several files but not by several threads at the same time.
+ *
  * @author Jean-Baptiste Reure
  * @version 8 March 2018
  */
@@ -48,18 +50,31 @@ public class PSMLValidator {
    * <p>
    * <p>If <code>null</code>, then the default will be used (using the format of the XML file)
    */
-  private String schematron = "/org/pageseeder/ox/psml/psml-portable.sch";
+  private String schematron = DEFAULT_SCHEMATRON;
+
+  /**
+   * The default schematron.
+   */
+  private static final String DEFAULT_SCHEMATRON = "/org/pageseeder/ox/psml/psml-portable.sch";
 
   /**
-   * Schematron validator factory object
+   * The schema validator reused for each file (created when first needed).
    */
-  private static final ValidatorFactory SCHEMATRON_FACTORY = new ValidatorFactory();
+  private SchemaValidator schemaValidator = null;
 
   /**
-   * An internal cache for schematron validators
-   * (only for this instance: if schematrons change, they are reloaded for each upload)
+   * The path of the schema used by the schema validator.
    */
-  private static final Map<String, Validator> validators = new HashMap<>();
+  private String schemaValidatorPath = null;
+
+  /**
+   * Compiles the default schematron so that the first validation does not have to wait for it.
+   *
+   * @return <code>true</code> if the schematron was compiled
+   */
+  public static boolean warmUp() {
+    return Validators.warmUpSchematron(PSMLValidator.class.getResource(DEFAULT_SCHEMATRON)) == 1;
+  }
 
   /**
    * Validate with a schema.
@@ -83,7 +98,7 @@ public class PSMLValidator {
     String error = null;
     try (InputStream reader = new FileInputStream(original);) {
 
-      return new ValidationResult("schema", true, schemaName, Validators.validateXmlFileWithSchemaReturnErrors(reader, schemaPath, null));
+      return new ValidationResult("schema", true, schemaName, getSchemaValidator(schemaPath).validate(reader));
     } catch (SAXException ex) {
       error = "Error when validating file: " + ex.getMessage();
     } catch (IOException ex) {
@@ -92,6 +107,17 @@ public class PSMLValidator {
     return new ValidationResult("schema", false, schemaName, error);
   }
 
+  /**
+   * Returns the schema validator for the specified schema, reusing the previous one if it is the same schema.
+   */
+  private SchemaValidator getSchemaValidator(String schemaPath) throws SAXException, IOException {
+    if (this.schemaValidator == null || !schemaPath.equals(this.schemaValidatorPath)) {
+      this.schemaValidator = new SchemaValidator(schemaPath, null);
+      this.schemaValidatorPath = schemaPath;
+    }
+    return this.schemaValidator;
+  }
+
   /**
    * Validate with a schematron
    *
@@ -112,13 +138,17 @@ public class PSMLValidator {
   public ValidationResult validateWithSchematron(String schematron, File original) {
     String error = null;
     // find schematron and build validator
-    InputStream schematronStream = PSMLValidator.class.getResourceAsStream(schematron);
+    URL schematronURL = PSMLValidator.class.getResource(schematron);
     Validator validator = null;
-    try {
-      // find a schematron validator (re-use old one if it's there)
-      validator = loadSchematronValidator(schematron, schematronStream);
-    } catch (SchematronException ex) {
-      error = "Error when loading schematron schema " + schematron + ": " + ex.getMessage();
+    if (schematronURL == null) {
+      error = "Unable to find schematron schema " + schematron;
+    } else {
+      try {
+        // find a schematron validator (compiled once and shared)
+        validator = Validators.getSchematronValidator(schematronURL);
+      } catch (SchematronException ex) {
+        error = "Error when loading schematron schema " + schematron + ": " + ex.getMessage();
+      }
     }
     if (validator != null) {
       // validate then if found
@@ -135,23 +165,6 @@ public class PSMLValidator {
     return new ValidationResult("schematron", false, schematron, error);
   }
 
-  /**
-   * Find a schematron validator: re-use an old one if there is one.
-   *
-   * @param key the key that defines the validator
-   * @param sch the schematron source
-   * @return a scheamtron validator ready to be used
-   */
-  private Validator loadSchematronValidator(String key, InputStream sch) throws SchematronException {
-    // use default preprocessor: iso_svrl.xsl (included in ant_schematron.jar)
-    Validator validator = validators.get(key);
-    if (validator == null) {
-      validator = SCHEMATRON_FACTORY.newValidator(new StreamSource(sch));
-      validators.put(key, validator);
-    }
-    return validator;
-  }
-
   /**
    * Validate well formed XML
    *
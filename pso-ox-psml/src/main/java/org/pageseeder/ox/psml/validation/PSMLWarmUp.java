@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.psml.validation;
+
+import org.pageseeder.ox.api.WarmUpTask;
+import org.pageseeder.ox.core.Model;
+
+/**
+ * Compiles the default PSML schematron when the models are warmed up.
+ *
+ * <p>The schematron does not depend on the model, it is only compiled for the first one and then taken from the
+ * cache.
+ *
+ * @see PSMLValidator#warmUp()
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class PSMLWarmUp implements WarmUpTask {
+
+  @Override
+  public String getName() {
+    return "ox-psml-schematron";
+  }
+
+  @Override
+  public int warmUp(Model model) {
+    return PSMLValidator.warmUp() ? 1 : 0;
+  }
+}
@@ -25,12 +25,14 @@ import org.pageseeder.xmlwriter.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ValidationStepResult extends ResultBase implements Downloadable {
 
-  private Map<String, ValidationResult> _results = new HashMap<>();
+  /** The results in the order they were added. */
+  private Map<String, ValidationResult> _results = new LinkedHashMap<>();
 
   private final String _output;
 
@@ -45,6 +47,13 @@ public class ValidationStepResult extends ResultBase implements Downloadable {
     if (results.hasErrors()) setStatus(ResultStatus.ERROR);
   }
 
+  /**
+   * @return the results by file in the order they were added
+   */
+  public Map<String, ValidationResult> results() {
+    return Collections.unmodifiableMap(this._results);
+  }
+
   public void finished() {
     if (this._output != null && this._output.endsWith(".psml"))
       this.error = ReportsBuilder.createPSMLReport(downloadPath(), this._results, this.status());
@@ -23,11 +23,15 @@ import org.pageseeder.ox.core.Model;
 import org.pageseeder.ox.core.Pipeline;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.core.StepDefinition;
+import org.pageseeder.ox.psml.validation.ValidationResult;
 import org.pageseeder.ox.psml.validation.ValidationStepResult;
 import org.pageseeder.ox.step.StepSimulator;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -77,4 +81,37 @@ public class ValidateTest {
     }
 
   }
+
+  @Test
+  public void testParallel() throws Exception {
+    File input = new File("src/test/resources/org/pageseeder/ox/psml/step/validate/input");
+    Model model = new Model("test");
+    Pipeline pipeline = model.getPipeline("test-pipeline");
+    StepSimulator simulator = new StepSimulator(model.name(), input, new HashMap<>());
+
+    for (String id : new String[]{"validate-char", "validate-wf", "validate-xsd", "validate-sch"}) {
+      StepDefinition stepDefinition = pipeline.getStep(id);
+      ValidationStepResult sequential = (ValidationStepResult) simulator.process(stepDefinition.getStep(), null, null, stepDefinition.name(), stepDefinition.parameters());
+
+      Map<String, String> parameters = new HashMap<>(stepDefinition.parameters());
+      parameters.put("parallel", "4");
+      ValidationStepResult parallel = (ValidationStepResult) simulator.process(stepDefinition.getStep(), null, null, stepDefinition.name(), parameters);
+      Assert.assertNotNull(parallel);
+      Assert.assertEquals(id, sequential.status(), parallel.status());
+      Assert.assertEquals(100, ((Validate) stepDefinition.getStep()).percentage());
+
+      // The same result for each file, in the order of the files
+      Assert.assertEquals(id, 7, sequential.results().size());
+      Assert.assertEquals(id, new ArrayList<>(sequential.results().keySet()), new ArrayList<>(parallel.results().keySet()));
+      for (Map.Entry<String, ValidationResult> e : sequential.results().entrySet()) {
+        ValidationResult result = parallel.results().get(e.getKey());
+        Assert.assertEquals(id + " " + e.getKey(), e.getValue().isValidated(), result.isValidated());
+        Assert.assertEquals(id + " " + e.getKey(), errors(e.getValue()), errors(result));
+      }
+    }
+  }
+
+  private static List<String> errors(ValidationResult result) {
+    return result.errors() == null ? Collections.emptyList() : new ArrayList<>(result.errors());
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.psml.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class SchemaValidatorTest {
+
+  private static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+      + "<xs:element name=\"a\"><xs:complexType><xs:attribute name=\"b\" use=\"required\"/></xs:complexType></xs:element>"
+      + "</xs:schema>";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPooled() throws IOException, SAXException {
+    File schema = this.folder.newFile("test.xsd");
+    Files.write(schema.toPath(), SCHEMA.getBytes(StandardCharsets.UTF_8));
+    SchemaValidator validator = new SchemaValidator(schema.getAbsolutePath(), null);
+    Assert.assertTrue(validator.isPooled());
+
+    // The same validator gives the same results for each document
+    Assert.assertTrue(validate(validator, "<a b=\"1\"/>").isEmpty());
+    Assert.assertFalse(validate(validator, "<a/>").isEmpty());
+    Assert.assertTrue(validate(validator, "<a b=\"2\"/>").isEmpty());
+  }
+
+  private static List<String> validate(SchemaValidator validator, String xml) throws IOException, SAXException {
+    return validator.validate(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+}
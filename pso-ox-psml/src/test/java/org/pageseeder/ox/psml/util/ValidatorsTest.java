@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.psml.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.ox.util.BoundedCache;
+import org.pageseeder.schematron.SchematronException;
+import org.pageseeder.schematron.Validator;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class ValidatorsTest {
+
+  private static final String SCHEMA = "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\" queryBinding=\"xslt2\">"
+      + "<sch:pattern><sch:rule context=\"a\"><sch:assert test=\"@b\">b is required</sch:assert></sch:rule></sch:pattern>"
+      + "</sch:schema>";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File schema;
+
+  private URL url;
+
+  @Before
+  public void init() throws IOException {
+    this.schema = this.folder.newFile("test.sch");
+    write(this.schema, SCHEMA);
+    this.url = this.schema.toURI().toURL();
+    // Also creates the cache
+    Validators.setSchematronCacheSize(BoundedCache.DEFAULT_MAX_ENTRIES);
+  }
+
+  @Test
+  public void testHit() throws SchematronException {
+    long hits = cache().hits();
+    Validator validator = Validators.getSchematronValidator(this.url);
+    Assert.assertSame(validator, Validators.getSchematronValidator(this.url));
+    Assert.assertEquals(hits + 1, cache().hits());
+  }
+
+  @Test
+  public void testConcurrentCompile() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    long misses = cache().misses();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Validator>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return Validators.getSchematronValidator(this.url);
+        }));
+      }
+      start.countDown();
+      Validator validator = futures.get(0).get();
+      for (Future<Validator> future : futures) {
+        Assert.assertSame(validator, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(misses + 1, cache().misses());
+  }
+
+  @Test
+  public void testModified() throws SchematronException {
+    Validator validator = Validators.getSchematronValidator(this.url);
+    Assert.assertTrue(this.schema.setLastModified(this.schema.lastModified() + 2000));
+    Validator modified = Validators.getSchematronValidator(this.url);
+    Assert.assertNotSame(validator, modified);
+    Assert.assertSame(modified, Validators.getSchematronValidator(this.url));
+  }
+
+  @Test
+  public void testFailureNotCached() throws Exception {
+    long modified = this.schema.lastModified();
+    write(this.schema, "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\">");
+    this.schema.setLastModified(modified);
+    long failures = cache().failures();
+    try {
+      Validators.getSchematronValidator(this.url);
+      Assert.fail("The schema is not well-formed");
+    } catch (SchematronException ex) {
+      Assert.assertEquals(failures + 1, cache().failures());
+    }
+    // Same last modified date, the schema is compiled again
+    write(this.schema, SCHEMA);
+    this.schema.setLastModified(modified);
+    Assert.assertNotNull(Validators.getSchematronValidator(this.url));
+  }
+
+  @Test
+  public void testSource() throws SchematronException {
+    // Read from the system ID
+    String systemId = this.url.toString();
+    Validator validator = Validators.getSchematronValidator(new StreamSource(systemId));
+    Assert.assertSame(validator, Validators.getSchematronValidator(new StreamSource(systemId)));
+
+    // The content of the source may differ for the same system ID
+    Validator inline = Validators.getSchematronValidator(new StreamSource(new StringReader(SCHEMA), systemId));
+    Assert.assertNotSame(validator, inline);
+    Assert.assertNotSame(inline, Validators.getSchematronValidator(new StreamSource(new StringReader(SCHEMA), systemId)));
+  }
+
+  private static BoundedCache<?> cache() {
+    for (BoundedCache<?> cache : BoundedCache.caches()) {
+      if (BoundedCache.SCHEMATRON.equals(cache.name())) return cache;
+    }
+    throw new IllegalStateException("No schematron cache");
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.psml.validation;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class CharactersValidatorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAscii() throws IOException {
+    File file = write("<document><section/></document>");
+    ValidationResult result = new CharactersValidator().validateCharacters(file);
+    Assert.assertTrue(result.isValidated());
+    Assert.assertFalse(result.hasErrors());
+    Assert.assertTrue(((CharactersValidator.CharactersData) result.extraData()).isEmpty());
+  }
+
+  @Test
+  public void testLineAndColumn() throws IOException {
+    File file = write("<a>\n  caf\u00e9 \ud83d\ude00\u00e9</a>");
+    ValidationResult result = new CharactersValidator().validateCharacters(file);
+    List<String> errors = new ArrayList<>(result.errors());
+    Assert.assertEquals(3, errors.size());
+    Assert.assertTrue(errors.get(0), errors.get(0).contains("at line 2, character 6."));
+    Assert.assertTrue(errors.get(0), errors.get(0).endsWith("&#xe9;"));
+    // The emoji is a single character
+    Assert.assertTrue(errors.get(1), errors.get(1).contains("'\ud83d\ude00' found at line 2, character 8."));
+    Assert.assertTrue(errors.get(1), errors.get(1).endsWith("&#x1f600;"));
+    Assert.assertTrue(errors.get(2), errors.get(2).contains("at line 2, character 9."));
+
+    CharactersValidator.CharactersData data = (CharactersValidator.CharactersData) result.extraData();
+    Assert.assertArrayEquals(new int[]{0xE9, 0x1F600}, data.codePoints());
+    Assert.assertEquals(2, data.count(0xE9));
+    Assert.assertEquals(1, data.count(0x1F600));
+  }
+
+  @Test
+  public void testSplitAtBufferBoundary() throws IOException {
+    // The two bytes of e acute and the four bytes of the emoji are on either side of the 64KB buffers
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 64 * 1024 - 1; i++) content.append('x');
+    content.append('\u00e9');
+    for (int i = 0; i < 64 * 1024 - 3; i++) content.append('x');
+    content.append("\ud83d\ude00");
+    File file = write(content.toString());
+    for (long threshold : new long[]{Long.MAX_VALUE, 0}) {
+      ValidationResult result = new CharactersValidator(10, threshold).validateCharacters(file);
+      CharactersValidator.CharactersData data = (CharactersValidator.CharactersData) result.extraData();
+      Assert.assertArrayEquals(new int[]{0xE9, 0x1F600}, data.codePoints());
+      Assert.assertEquals(2, result.errors().size());
+      Assert.assertFalse(data.count(0xFFFD) > 0);
+    }
+  }
+
+  @Test
+  public void testSplitAtMappedRegionBoundary() throws IOException {
+    // e acute on bytes 7-8 and the emoji on bytes 13-16 are split by regions of 8 bytes,
+    // the next regions start with the bytes that could not be decoded
+    File file = write("xxxxxxx\u00e9xxxx\ud83d\ude00x\u00e9");
+    for (long region : new long[]{8, 5, 4}) {
+      ValidationResult result = new CharactersValidator(10, 0, region).validateCharacters(file);
+      CharactersValidator.CharactersData data = (CharactersValidator.CharactersData) result.extraData();
+      Assert.assertArrayEquals("Region " + region, new int[]{0xE9, 0x1F600}, data.codePoints());
+      Assert.assertEquals("Region " + region, 2, data.count(0xE9));
+      Assert.assertEquals("Region " + region, 3, result.errors().size());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMappedRegionTooSmall() {
+    new CharactersValidator(10, 0, 3);
+  }
+
+  @Test
+  public void testMaxErrors() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 25; i++) content.append("\u4e2d\n");
+    File file = write(content.toString());
+    ValidationResult result = new CharactersValidator(10, Long.MAX_VALUE).validateCharacters(file);
+    List<String> errors = new ArrayList<>(result.errors());
+    Assert.assertEquals(11, errors.size());
+    Assert.assertEquals("15 more suspicious characters found.", errors.get(10));
+    Assert.assertEquals(25, ((CharactersValidator.CharactersData) result.extraData()).count(0x4e2d));
+  }
+
+  @Test
+  public void testMalformed() throws IOException {
+    File file = folder.newFile("malformed.psml");
+    Files.write(file.toPath(), new byte[]{'a', (byte) 0xC3, 'b'});
+    ValidationResult result = new CharactersValidator().validateCharacters(file);
+    Assert.assertEquals(1, ((CharactersValidator.CharactersData) result.extraData()).count(0xFFFD));
+  }
+
+  /**
+   * Compares the streaming and mapped scans on a corpus of PSML files, for example:
+   * <code>-Dox.benchmark.corpus=/path/to/psml</code>
+   */
+  @Test
+  public void benchmark() throws IOException {
+    String corpus = System.getProperty("ox.benchmark.corpus");
+    Assume.assumeTrue("Set ox.benchmark.corpus to run the benchmark", corpus != null);
+    List<File> files;
+    try (Stream<java.nio.file.Path> paths = Files.walk(new File(corpus).toPath())) {
+      files = paths.filter(Files::isRegularFile).map(java.nio.file.Path::toFile).collect(Collectors.toList());
+    }
+    long bytes = 0;
+    for (File file : files) bytes += file.length();
+    for (int run = 0; run < 3; run++) {
+      for (long threshold : new long[]{Long.MAX_VALUE, 0}) {
+        CharactersValidator validator = new CharactersValidator(CharactersValidator.DEFAULT_MAX_ERRORS, threshold);
+        long start = System.nanoTime();
+        long errors = 0;
+        for (Iterator<File> i = files.iterator(); i.hasNext();) {
+          errors += validator.validateCharacters(i.next()).errors().size();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println((threshold == 0 ? "mapped" : "stream") + ": " + files.size() + " files, " + (bytes >> 20)
+            + "MB in " + millis + "ms (" + (bytes / 1024 / millis) + "MB/s), " + errors + " errors");
+      }
+    }
+  }
+
+  private File write(String content) throws IOException {
+    File file = folder.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
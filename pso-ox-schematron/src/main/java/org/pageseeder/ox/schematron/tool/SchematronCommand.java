@@ -22,7 +22,7 @@ import org.pageseeder.ox.core.PackageData;
 import org.pageseeder.ox.core.ResultStatus;
 import org.pageseeder.ox.tool.Command;
 import org.pageseeder.ox.tool.ResultBase;
-import org.pageseeder.ox.util.BasicCache;
+import org.pageseeder.ox.util.BoundedCache;
 import org.pageseeder.schematron.SchematronException;
 import org.pageseeder.schematron.SchematronResult;
 import org.pageseeder.schematron.Validator;
@@ -37,6 +37,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Runs schematron on the specified document.
@@ -50,9 +56,12 @@ public class SchematronCommand implements Command<Result> {
   private final static Logger LOGGER = LoggerFactory.getLogger(SchematronCommand.class);
 
   /**
-   * Maps XSLT templates to their URL as a string for easy retrieval.
+   * Maps the compiled validators to the URL of their schema, a schema is compiled only once when several
+   * threads request it and is recompiled when it is modified.
+   *
+   * <p>The cache is shared with the PSML validation so that a schema used by both is only compiled once.
    */
-  private static final BasicCache<Validator> CACHE = new BasicCache<>();
+  private static final BoundedCache<Validator> CACHE = BoundedCache.shared(BoundedCache.SCHEMATRON);
 
   /**
    * The name of the default schematron to use for this.
@@ -173,16 +182,15 @@ public class SchematronCommand implements Command<Result> {
    *
    * @throws SchematronException If the schematron could not be parsed as a validator.
    */
-  private static Validator getModelValidator(File schema) throws SchematronException {
-    String url = schema.toURI().toString();
-    Validator validator = CACHE.get(schema.toURI().toString(), schema.lastModified());
-    if (validator == null) {
-      LOGGER.debug("Using schematron schema: {}", schema.getName());
-      ValidatorFactory factory = new ValidatorFactory();
-      validator = factory.newValidator(schema);
-      CACHE.put(url, validator);
+  private static Validator getModelValidator(final File schema) throws SchematronException {
+    try {
+      return CACHE.get(schema.toURI().toString(), schema.lastModified(), () -> {
+        LOGGER.debug("Compiling schematron schema: {}", schema.getName());
+        return new ValidatorFactory().newValidator(schema);
+      });
+    } catch (ExecutionException ex) {
+      throw toSchematronException(ex);
     }
-    return validator;
   }
 
   /**
@@ -192,20 +200,72 @@ public class SchematronCommand implements Command<Result> {
    * @throws SchematronException If the schematron could not be parsed as a validator.
    */
   public static Validator getBuiltinValidator() throws SchematronException {
-    URL url = SchematronCommand.class.getResource("/" + BUILTIN_SCHEMA);
-    Validator validator = CACHE.get(url.toString(), 0L);
-    if (validator == null) {
-      try (InputStream in = url.openStream()) {
-        Source source = new StreamSource(in);
-        LOGGER.debug("Using builtin schema: {}", BUILTIN_SCHEMA);
-        ValidatorFactory factory = new ValidatorFactory();
-        validator = factory.newValidator(source);
-        CACHE.put(url.toString(), validator);
-      } catch (IOException ex) {
-        LOGGER.error("Cannot load the built in validator.", ex);
+    final URL url = SchematronCommand.class.getResource("/" + BUILTIN_SCHEMA);
+    try {
+      return CACHE.get(url.toString(), 0L, () -> {
+        try (InputStream in = url.openStream()) {
+          Source source = new StreamSource(in, url.toString());
+          LOGGER.debug("Compiling builtin schema: {}", BUILTIN_SCHEMA);
+          return new ValidatorFactory().newValidator(source);
+        }
+      });
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        LOGGER.error("Cannot load the built in validator.", ex.getCause());
+        return null;
+      }
+      throw toSchematronException(ex);
+    }
+  }
+
+  /**
+   * Compiles the built-in schema and the schemas (<code>.sch</code> files) of the specified model so that the
+   * first validations do not have to wait for them.
+   *
+   * @param model the model
+   * @return the number of schemas compiled
+   */
+  public static int warmUp(Model model) {
+    int compiled = 0;
+    try {
+      if (getBuiltinValidator() != null) compiled++;
+    } catch (SchematronException ex) {
+      LOGGER.warn("Unable to compile the builtin schema: {}", ex.getMessage());
+    }
+    List<Path> schemas;
+    try (Stream<Path> files = Files.walk(model.getRoot().toPath())) {
+      schemas = files.filter(f -> f.toString().endsWith(".sch") && Files.isRegularFile(f)).collect(Collectors.toList());
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to list the schemas of model {}: {}", model.name(), ex.getMessage());
+      return compiled;
+    }
+    for (Path schema : schemas) {
+      try {
+        getModelValidator(schema.toFile());
+        compiled++;
+      } catch (SchematronException ex) {
+        LOGGER.warn("Unable to compile schema {} of model {}: {}", schema.getFileName(), model.name(), ex.getMessage());
       }
     }
-    return validator;
+    return compiled;
+  }
+
+  /**
+   * Sets the maximum number of compiled validators kept in the cache.
+   *
+   * <p>The cache is shared with the PSML validation, so this also bounds its validators.
+   *
+   * @param maxEntries the maximum number of validators
+   */
+  public static void setCacheSize(int maxEntries) {
+    CACHE.setMaxEntries(maxEntries);
+  }
+
+  private static SchematronException toSchematronException(ExecutionException ex) {
+    Throwable cause = ex.getCause();
+    if (cause instanceof SchematronException) return (SchematronException) cause;
+    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    return new SchematronException(cause);
   }
 
   private static class SchemaResult extends ResultBase implements Result {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.schematron.tool;
+
+import org.pageseeder.ox.api.WarmUpTask;
+import org.pageseeder.ox.core.Model;
+
+/**
+ * Compiles the built-in schema and the schemas of the model when the models are warmed up.
+ *
+ * @see SchematronCommand#warmUp(Model)
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class SchematronWarmUp implements WarmUpTask {
+
+  @Override
+  public String getName() {
+    return "ox-schematron";
+  }
+
+  @Override
+  public int warmUp(Model model) {
+    return SchematronCommand.warmUp(model);
+  }
+}
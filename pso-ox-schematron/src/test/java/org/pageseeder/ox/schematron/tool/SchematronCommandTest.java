@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.schematron.tool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.core.Model;
+import org.pageseeder.ox.core.ModelWarmUp;
+import org.pageseeder.ox.util.BoundedCache;
+import org.pageseeder.schematron.SchematronException;
+import org.pageseeder.schematron.Validator;
+import org.pageseeder.xmlwriter.XML;
+import org.pageseeder.xmlwriter.XMLStringWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class SchematronCommandTest {
+
+  private static final String SCHEMA = "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\" queryBinding=\"xslt2\">"
+      + "<sch:pattern><sch:rule context=\"a\"><sch:assert test=\"@b\">b is required</sch:assert></sch:rule></sch:pattern>"
+      + "</sch:schema>";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File models;
+
+  private File schema;
+
+  @Before
+  public void init() throws IOException {
+    this.models = OXConfig.get().getModelsDirectory();
+    File root = this.folder.newFolder("models");
+    OXConfig.get().setModelsDirectory(root);
+    this.schema = new File(new File(root, "test"), "test.sch");
+    this.schema.getParentFile().mkdirs();
+    write(this.schema, SCHEMA);
+  }
+
+  @After
+  public void reset() {
+    OXConfig.get().setModelsDirectory(this.models);
+  }
+
+  @Test
+  public void testHit() throws SchematronException {
+    SchematronCommand command = new SchematronCommand(new Model("test"));
+    long hits = cache().hits();
+    Validator validator = command.getValidator("test.sch");
+    Assert.assertSame(validator, command.getValidator("test.sch"));
+    Assert.assertEquals(hits + 1, cache().hits());
+  }
+
+  @Test
+  public void testConcurrentCompile() throws Exception {
+    final SchematronCommand command = new SchematronCommand(new Model("test"));
+    final CountDownLatch start = new CountDownLatch(1);
+    long misses = cache().misses();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Validator>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return command.getValidator("test.sch");
+        }));
+      }
+      start.countDown();
+      Validator validator = futures.get(0).get();
+      for (Future<Validator> future : futures) {
+        Assert.assertSame(validator, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(misses + 1, cache().misses());
+  }
+
+  @Test
+  public void testModified() throws SchematronException {
+    SchematronCommand command = new SchematronCommand(new Model("test"));
+    Validator validator = command.getValidator("test.sch");
+    Assert.assertTrue(this.schema.setLastModified(this.schema.lastModified() + 2000));
+    Validator modified = command.getValidator("test.sch");
+    Assert.assertNotSame(validator, modified);
+    Assert.assertSame(modified, command.getValidator("test.sch"));
+  }
+
+  @Test
+  public void testFailureNotCached() throws Exception {
+    SchematronCommand command = new SchematronCommand(new Model("test"));
+    long modified = this.schema.lastModified();
+    write(this.schema, "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\">");
+    this.schema.setLastModified(modified);
+    long failures = cache().failures();
+    try {
+      command.getValidator("test.sch");
+      Assert.fail("The schema is not well-formed");
+    } catch (SchematronException ex) {
+      Assert.assertEquals(failures + 1, cache().failures());
+    }
+    // Same last modified date, the schema is compiled again
+    write(this.schema, SCHEMA);
+    this.schema.setLastModified(modified);
+    Assert.assertNotNull(command.getValidator("test.sch"));
+  }
+
+  @Test
+  public void testWarmUp() throws Exception {
+    ModelWarmUp warmUp = ModelWarmUp.start(Collections.singletonList(new Model("test")), 2);
+    Assert.assertTrue(warmUp.await(30, TimeUnit.SECONDS));
+    XMLStringWriter xml = new XMLStringWriter(XML.NamespaceAware.No);
+    warmUp.toXML(xml);
+    Assert.assertTrue(xml.toString(), xml.toString().contains("<task name=\"ox-schematron\" model=\"test\""));
+    long hits = cache().hits();
+    new SchematronCommand(new Model("test")).getValidator("test.sch");
+    Assert.assertEquals(hits + 1, cache().hits());
+  }
+
+  private static BoundedCache<?> cache() {
+    for (BoundedCache<?> cache : BoundedCache.caches()) {
+      if (BoundedCache.SCHEMATRON.equals(cache.name())) return cache;
+    }
+    throw new IllegalStateException("No schematron cache");
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2025 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.sql.core;
+
+import org.pageseeder.ox.OXConfig;
+import org.pageseeder.ox.process.JobRecord;
+import org.pageseeder.ox.process.JobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A job store saving the pipeline jobs in a SQLite database.
+ *
+ * <p>The database is created if it does not exist. Each job is a row with its id, package, status and the
+ * properties of its {@link JobRecord}.
+ *
+ * <p>To use it with Berlioz, set <code>ox2.job-store</code> to the name of this class; the database is then
+ * <code>ox-jobs.db</code> next to the OX temporary folder so that it is not removed by the clean up manager.
+ *
+ * <p>A job is claimed by setting the owner of its row with a conditional update, so only one node can claim it.
+ * A claim older than the claim timeout is considered abandoned and can be taken by another node. The name of the
+ * node is the host name unless the system property {@value #NODE_PROPERTY} is set, so that a node which restarts
+ * can process again the jobs it had claimed. The processes sharing the database must therefore set different
+ * node names.
+ *
+ * <p>The database uses the SQLite write-ahead log, which needs memory shared between the processes using it and
+ * is not safe over a network filesystem. This store must therefore only be shared by the OX instances running
+ * on the same host; use a store on a shared server for nodes on different hosts.
+ *
+ * @author agent
+ * @since 2.2.94
+ */
+public final class SqliteJobStore implements JobStore {
+
+  /** the logger */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SqliteJobStore.class);
+
+  private static final String CREATE = "CREATE TABLE IF NOT EXISTS ox_job ("
+      + "id TEXT PRIMARY KEY, package_id TEXT NOT NULL, status TEXT NOT NULL, start INTEGER NOT NULL, "
+      + "updated INTEGER NOT NULL, record TEXT NOT NULL, owner TEXT, claimed_at INTEGER)";
+
+  /** Saves the job without changing its owner. */
+  private static final String SAVE = "INSERT INTO ox_job (id, package_id, status, start, updated, record) "
+      + "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(id) DO UPDATE SET package_id = excluded.package_id, "
+      + "status = excluded.status, start = excluded.start, updated = excluded.updated, record = excluded.record";
+
+  private static final String REMOVE = "DELETE FROM ox_job WHERE id = ?";
+
+  private static final String LOAD = "SELECT record FROM ox_job ORDER BY start";
+
+  private static final String CLAIM = "UPDATE ox_job SET owner = ?, claimed_at = ? "
+      + "WHERE id = ? AND (owner IS NULL OR owner = ? OR claimed_at < ?)";
+
+  private static final String EXISTS = "SELECT 1 FROM ox_job WHERE id = ?";
+
+  private static final String RELEASE = "UPDATE ox_job SET owner = NULL, claimed_at = NULL WHERE id = ? AND owner = ?";
+
+  /** The system property defining the name of this node, the host name by default. */
+  public static final String NODE_PROPERTY = "ox2.job-store.node";
+
+  /** The default time after which a claim is considered abandoned (24 hours). */
+  public static final long DEFAULT_CLAIM_TIMEOUT = 24 * 60 * 60 * 1000L;
+
+  /** The database connection */
+  private final Connection _conn;
+
+  /** The name of the node claiming the jobs. */
+  private final String _node;
+
+  /** The time in milliseconds after which a claim is considered abandoned. */
+  private final long _claimTimeout;
+
+  /**
+   * Creates a job store using <code>ox-jobs.db</code> next to the OX temporary folder.
+   *
+   * @throws SQLException if the database could not be opened
+   */
+  public SqliteJobStore() throws SQLException {
+    this(new File(OXConfig.getOXTempFolder().getParentFile(), "ox-jobs.db"));
+  }
+
+  /**
+   * Creates a job store.
+   *
+   * @param db the SQLite file, created if it does not exist.
+   * @throws SQLException if the database could not be opened
+   */
+  public SqliteJobStore(File db) throws SQLException {
+    this(db, System.getProperty(NODE_PROPERTY, hostName()), DEFAULT_CLAIM_TIMEOUT);
+  }
+
+  /**
+   * Creates a job store.
+   *
+   * @param db           the SQLite file, created if it does not exist.
+   * @param node         the name of this node, which must be different for each process using the database
+   * @param claimTimeout the time in milliseconds after which a claim is considered abandoned
+   * @throws SQLException if the database could not be opened
+   */
+  public SqliteJobStore(File db, String node, long claimTimeout) throws SQLException {
+    if (db == null || db.isDirectory()) {
+      throw new IllegalArgumentException("DB must be a file." + db);
+    }
+    if (node == null) throw new NullPointerException("node is null.");
+    this._node = node;
+    this._claimTimeout = claimTimeout;
+    this._conn = DriverManager.getConnection("jdbc:sqlite:" + db.getAbsolutePath());
+    try (Statement statement = this._conn.createStatement()) {
+      statement.execute("PRAGMA journal_mode=WAL");
+      statement.execute("PRAGMA busy_timeout=5000");
+      statement.executeUpdate(CREATE);
+    }
+    LOGGER.info("Using SQLite job store {}", db);
+  }
+
+  @Override
+  public synchronized void save(JobRecord record) throws IOException {
+    try (PreparedStatement statement = this._conn.prepareStatement(SAVE)) {
+      StringWriter properties = new StringWriter();
+      record.toProperties().store(properties, null);
+      statement.setString(1, record.id());
+      statement.setString(2, record.packageId());
+      statement.setString(3, record.status().name());
+      statement.setLong(4, record.start());
+      statement.setLong(5, System.currentTimeMillis());
+      statement.setString(6, properties.toString());
+      statement.executeUpdate();
+    } catch (SQLException ex) {
+      throw new IOException("Unable to save job " + record.id(), ex);
+    }
+  }
+
+  @Override
+  public synchronized void remove(String packageId, String id) throws IOException {
+    try (PreparedStatement statement = this._conn.prepareStatement(REMOVE)) {
+      statement.setString(1, id);
+      statement.executeUpdate();
+    } catch (SQLException ex) {
+      throw new IOException("Unable to remove job " + id, ex);
+    }
+  }
+
+  @Override
+  public synchronized List<JobRecord> load() throws IOException {
+    List<JobRecord> records = new ArrayList<>();
+    try (Statement statement = this._conn.createStatement(); ResultSet rs = statement.executeQuery(LOAD)) {
+      while (rs.next()) {
+        Properties p = new Properties();
+        p.load(new StringReader(rs.getString(1)));
+        try {
+          records.add(JobRecord.fromProperties(p));
+        } catch (IllegalArgumentException ex) {
+          LOGGER.warn("Ignoring invalid job record", ex);
+        }
+      }
+    } catch (SQLException ex) {
+      throw new IOException("Unable to load the jobs", ex);
+    }
+    return records;
+  }
+
+  @Override
+  public synchronized boolean claim(String packageId, String id) throws IOException {
+    long now = System.currentTimeMillis();
+    try (PreparedStatement statement = this._conn.prepareStatement(CLAIM)) {
+      statement.setString(1, this._node);
+      statement.setLong(2, now);
+      statement.setString(3, id);
+      statement.setString(4, this._node);
+      statement.setLong(5, now - this._claimTimeout);
+      if (statement.executeUpdate() == 1) return true;
+    } catch (SQLException ex) {
+      throw new IOException("Unable to claim job " + id, ex);
+    }
+    // A job which was not saved cannot be claimed by another node
+    try (PreparedStatement statement = this._conn.prepareStatement(EXISTS)) {
+      statement.setString(1, id);
+      try (ResultSet rs = statement.executeQuery()) {
+        return !rs.next();
+      }
+    } catch (SQLException ex) {
+      throw new IOException("Unable to claim job " + id, ex);
+    }
+  }
+
+  @Override
+  public synchronized void release(String packageId, String id) throws IOException {
+    try (PreparedStatement statement = this._conn.prepareStatement(RELEASE)) {
+      statement.setString(1, id);
+      statement.setString(2, this._node);
+      statement.executeUpdate();
+    } catch (SQLException ex) {
+      throw new IOException("Unable to release job " + id, ex);
+    }
+  }
+
+  /**
+   * Closes the database connection.
+   */
+  public synchronized void close() {
+    try {
+      this._conn.close();
+    } catch (SQLException ex) {
+      LOGGER.warn("Unable to close connection", ex);
+    }
+  }
+
+  /**
+   * @return the name of this host
+   */
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException ex) {
+      LOGGER.warn("Unable to get the host name, using localhost", ex);
+      return "localhost";
+    }
+  }
+}
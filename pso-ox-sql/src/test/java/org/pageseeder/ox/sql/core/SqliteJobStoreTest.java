@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 Allette Systems (Australia)
+ * http://www.allette.com.au
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.pageseeder.ox.sql.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pageseeder.ox.process.JobRecord;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @author agent
+ * @since 2.2.94
+ */
+public class SqliteJobStoreTest {
+
+  @Test
+  public void test_save_load_remove() throws Exception {
+    File db = new File(Files.createTempDirectory("ox-jobs").toFile(), "ox-jobs.db");
+    SqliteJobStore store = new SqliteJobStore(db);
+    try {
+      store.save(record("j2", "p2", 2000, "STOPPED"));
+      store.save(record("j1", "p1", 1000, "STOPPED"));
+      // replaces the previous state
+      store.save(record("j1", "p1", 1000, "COMPLETED"));
+
+      List<JobRecord> records = store.load();
+      Assert.assertEquals(2, records.size());
+      Assert.assertEquals("j1", records.get(0).id());
+      Assert.assertEquals("COMPLETED", records.get(0).status().name());
+      Assert.assertEquals("p2", records.get(1).packageId());
+
+      store.remove("p1", "j1");
+      Assert.assertEquals(1, store.load().size());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void test_claim_release() throws Exception {
+    File db = new File(Files.createTempDirectory("ox-jobs").toFile(), "ox-jobs.db");
+    SqliteJobStore node1 = new SqliteJobStore(db, "node1", SqliteJobStore.DEFAULT_CLAIM_TIMEOUT);
+    SqliteJobStore node2 = new SqliteJobStore(db, "node2", SqliteJobStore.DEFAULT_CLAIM_TIMEOUT);
+    try {
+      node1.save(record("j1", "p1", 1000, "STOPPED"));
+      Assert.assertTrue(node1.claim("p1", "j1"));
+      Assert.assertFalse(node2.claim("p1", "j1"));
+      // The node which claimed the job can claim it again, saving the job keeps the claim
+      node1.save(record("j1", "p1", 1000, "PROCESSING"));
+      Assert.assertTrue(node1.claim("p1", "j1"));
+      Assert.assertFalse(node2.claim("p1", "j1"));
+
+      // Only the owner can release the claim
+      node2.release("p1", "j1");
+      Assert.assertFalse(node2.claim("p1", "j1"));
+      node1.release("p1", "j1");
+      Assert.assertTrue(node2.claim("p1", "j1"));
+      Assert.assertFalse(node1.claim("p1", "j1"));
+
+      // A job which was not saved is not shared
+      Assert.assertTrue(node2.claim("p2", "j2"));
+    } finally {
+      node1.close();
+      node2.close();
+    }
+  }
+
+  @Test
+  public void test_claim_timeout() throws Exception {
+    File db = new File(Files.createTempDirectory("ox-jobs").toFile(), "ox-jobs.db");
+    SqliteJobStore node1 = new SqliteJobStore(db, "node1", SqliteJobStore.DEFAULT_CLAIM_TIMEOUT);
+    SqliteJobStore node2 = new SqliteJobStore(db, "node2", 1);
+    try {
+      node1.save(record("j1", "p1", 1000, "STOPPED"));
+      Assert.assertTrue(node1.claim("p1", "j1"));
+      Thread.sleep(10);
+      // The claim of node1 is abandoned for node2
+      Assert.assertTrue(node2.claim("p1", "j1"));
+      Assert.assertFalse(node1.claim("p1", "j1"));
+    } finally {
+      node1.close();
+      node2.close();
+    }
+  }
+
+  private static JobRecord record(String id, String packageId, long start, String status) {
+    Properties p = new Properties();
+    p.setProperty("id", id);
+    p.setProperty("package", packageId);
+    p.setProperty("pipeline", "pipeline");
+    p.setProperty("start", Long.toString(start));
+    p.setProperty("status", status);
+    return JobRecord.fromProperties(p);
+  }
+}